@@ -0,0 +1,117 @@
+package ecommerce.shoestore.benchmark;
+
+import ecommerce.shoestore.BackendApplication;
+import ecommerce.shoestore.promotion.ProductTargetType;
+import ecommerce.shoestore.promotion.PromotionCampaignStatus;
+import ecommerce.shoestore.promotion.VoucherDiscountType;
+import ecommerce.shoestore.promotion.VoucherStatus;
+import ecommerce.shoestore.shoes.crud.SearchSuggestionIndex;
+import ecommerce.shoestore.shoes.listing.ProductFacetIndex;
+import ecommerce.shoestore.shoes.listing.ProductListingService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Postgres nhúng + application context dùng chung cho các benchmark cần DB.
+ *
+ * Schema do Hibernate tạo (ddl-auto=create), sau đó schema.sql bổ sung extension,
+ * hàm search_normalize, product_listing và các index giống môi trường thật.
+ * Các kiểu enum của Postgres (voucher_status, ...) vốn được tạo tay trên DB thật
+ * nên phải tạo trước khi Hibernate dựng bảng.
+ * Mỗi fork JMH dựng một bản riêng, dọn sạch trong close().
+ */
+public final class BenchmarkCatalog implements AutoCloseable {
+
+    private final EmbeddedPostgres postgres;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkCatalog(EmbeddedPostgres postgres, ConfigurableApplicationContext context) {
+        this.postgres = postgres;
+        this.context = context;
+    }
+
+    public static BenchmarkCatalog start(String catalogSize) throws IOException, SQLException {
+        CatalogDataGenerator.CatalogSize size = CatalogDataGenerator.CatalogSize.fromLabel(catalogSize);
+        EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+        ConfigurableApplicationContext context;
+        try {
+            createEnumTypes(postgres.getPostgresDatabase());
+            // Tham số dòng lệnh để ghi đè application.properties (DB Supabase, VNPAY_RETURN_URL, ...)
+            context = new SpringApplicationBuilder(BackendApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .logStartupInfo(false)
+                    .run(
+                            "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                            "--spring.datasource.username=postgres",
+                            "--spring.datasource.password=",
+                            "--spring.datasource.hikari.maximum-pool-size=4",
+                            "--spring.jpa.hibernate.ddl-auto=create",
+                            "--spring.jpa.defer-datasource-initialization=true",
+                            "--spring.jpa.show-sql=false",
+                            "--spring.jpa.properties.hibernate.format_sql=false",
+                            "--spring.cache.type=none",
+                            "--spring.main.banner-mode=off",
+                            "--logging.level.root=WARN",
+                            "--logging.level.org.hibernate.engine.jdbc.spi.SqlExceptionHelper=ERROR",
+                            "--logging.level.org.hibernate.tool.schema=ERROR",
+                            "--vnpay.return-url=http://localhost:8080/payment/vnpay-return"
+                    );
+        } catch (RuntimeException | SQLException e) {
+            postgres.close();
+            throw e;
+        }
+
+        DataSource dataSource = context.getBean(DataSource.class);
+        // product_listing do Hibernate tạo thiếu DEFAULT của các cột đếm → dựng lại theo schema.sql
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE product_listing");
+        }
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+        try (Connection connection = dataSource.getConnection()) {
+            CatalogDataGenerator.generate(connection, size);
+        }
+        // Dữ liệu được nạp sau khi app đã sẵn sàng → dựng lại các bản chiếu phía đọc
+        context.getBean(ProductListingService.class).backfillOnStartup();
+        context.getBean(ProductFacetIndex.class).rebuild();
+        context.getBean(SearchSuggestionIndex.class).rebuild();
+        return new BenchmarkCatalog(postgres, context);
+    }
+
+    private static void createEnumTypes(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(createEnum("voucher_discount_type", VoucherDiscountType.values()));
+            statement.execute(createEnum("voucher_status", VoucherStatus.values()));
+            statement.execute(createEnum("promotion_campaign_status", PromotionCampaignStatus.values()));
+            statement.execute(createEnum("promotion_target_type", ProductTargetType.values()));
+        }
+    }
+
+    private static String createEnum(String typeName, Enum<?>[] values) {
+        return Arrays.stream(values)
+                .map(value -> "'" + value.name() + "'")
+                .collect(Collectors.joining(", ", "CREATE TYPE " + typeName + " AS ENUM (", ")"));
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        postgres.close();
+    }
+}
@@ -0,0 +1,123 @@
+package ecommerce.shoestore.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Sinh danh mục sản phẩm giả lập cho benchmark, ngay trong Postgres bằng generate_series
+ * (không đẩy từng dòng qua JDBC nên 1M biến thể chỉ mất vài giây).
+ *
+ * Mỗi sản phẩm có 10 biến thể (đủ 10 size, màu xoay vòng) và 2 ảnh; tên có dấu
+ * tiếng Việt để tìm kiếm đi qua search_normalize/unaccent như dữ liệu thật.
+ * Dữ liệu chỉ phụ thuộc vào số thứ tự nên giống hệt nhau giữa các lần chạy.
+ *
+ * Có thể dùng riêng để nạp dữ liệu vào một DB bất kỳ đã có schema:
+ *   java ... CatalogDataGenerator jdbc:postgresql://localhost:5432/shoes postgres secret 100k
+ */
+public final class CatalogDataGenerator {
+
+    public enum CatalogSize {
+        SMALL("1k", 1_000),
+        MEDIUM("100k", 100_000),
+        LARGE("1M", 1_000_000);
+
+        private final String label;
+        private final int variants;
+
+        CatalogSize(String label, int variants) {
+            this.label = label;
+            this.variants = variants;
+        }
+
+        public int variants() {
+            return variants;
+        }
+
+        public int shoes() {
+            return variants / VARIANTS_PER_SHOE;
+        }
+
+        public static CatalogSize fromLabel(String label) {
+            return Arrays.stream(values())
+                    .filter(s -> s.label.equalsIgnoreCase(label))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Kích thước không hợp lệ: " + label + " (1k, 100k, 1M)"));
+        }
+    }
+
+    static final int VARIANTS_PER_SHOE = 10;
+    static final int CATEGORY_COUNT = 12;
+
+    private static final String CATEGORIES = """
+            INSERT INTO category (name)
+            SELECT 'Danh mục ' || i FROM generate_series(1, %d) i
+            """;
+
+    private static final String SHOES = """
+            INSERT INTO shoes (name, brand, type, "basePrice", description, collection,
+                               "categoryId", status, "createdAt")
+            SELECT (ARRAY['Giày chạy bộ', 'Giày thể thao', 'Giày da', 'Giày lười', 'Sneaker',
+                          'Giày cao gót', 'Dép quai hậu', 'Boot cổ cao'])[1 + i %% 8]
+                       || ' ' || (ARRAY['Air', 'Ultra', 'Classic', 'Đen Trắng', 'Phối Màu',
+                                        'Cổ Điển', 'Năng Động', 'Pro'])[1 + (i / 8) %% 8]
+                       || ' ' || i,
+                   (ARRAY['Nike', 'Adidas', 'Puma', 'Bitis', 'Converse', 'Vans', 'Asics',
+                          'New Balance', 'Skechers', 'Fila'])[1 + (i * 7) %% 10],
+                   (ARRAY['FOR_MALE', 'FOR_FEMALE', 'FOR_UNISEX'])[1 + i %% 3],
+                   300000 + ((i * 7919) %% 60) * 50000,
+                   'Mô tả sản phẩm số ' || i,
+                   'BST ' || (2020 + i %% 6),
+                   (SELECT min("categoryId") FROM category) + i %% %d,
+                   i %% 20 <> 0,
+                   now() - ((i %% 365) || ' days')::interval
+            FROM generate_series(1, %d) i
+            """;
+
+    private static final String IMAGES = """
+            INSERT INTO shoes_image (url, "isThumbnail", "shoeId")
+            SELECT 'https://img.example.com/shoes/' || s."shoeId" || '/' || k || '.jpg', k = 1, s."shoeId"
+            FROM shoes s CROSS JOIN generate_series(1, 2) k
+            """;
+
+    // Mỗi sản phẩm đủ 10 size SIZE_35..SIZE_44 nên cặp (size, color) luôn khác nhau
+    private static final String VARIANTS = """
+            INSERT INTO shoes_variant (size, color, stock, "shoeId")
+            SELECT 'SIZE_' || (35 + k),
+                   (ARRAY['BLACK', 'WHITE', 'RED', 'GRAY', 'BROWN', 'PINK', 'BLUE', 'GREEN'])[1 + (s."shoeId" + k) %% 8],
+                   (s."shoeId" * 31 + k * 17) %% 50,
+                   s."shoeId"
+            FROM shoes s CROSS JOIN generate_series(0, %d) k
+            """;
+
+    private CatalogDataGenerator() {
+    }
+
+    /**
+     * Nạp dữ liệu vào các bảng category/shoes/shoes_image/shoes_variant (đã tồn tại, đang trống).
+     * product_listing và các chỉ mục trong bộ nhớ do phía gọi dựng lại.
+     */
+    public static void generate(Connection connection, CatalogSize size) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CATEGORIES.formatted(CATEGORY_COUNT));
+            statement.execute(SHOES.formatted(CATEGORY_COUNT, size.shoes()));
+            statement.execute(IMAGES);
+            statement.execute(VARIANTS.formatted(VARIANTS_PER_SHOE - 1));
+            statement.execute("ANALYZE category, shoes, shoes_image, shoes_variant");
+        }
+    }
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length != 4) {
+            System.err.println("Cách dùng: CatalogDataGenerator <jdbcUrl> <user> <password> <1k|100k|1M>");
+            System.exit(1);
+        }
+        CatalogSize size = CatalogSize.fromLabel(args[3]);
+        try (Connection connection = DriverManager.getConnection(args[0], args[1], args[2])) {
+            generate(connection, size);
+        }
+        System.out.printf("Đã sinh %d sản phẩm, %d biến thể%n", size.shoes(), size.variants());
+    }
+}
@@ -0,0 +1,58 @@
+package ecommerce.shoestore.payment;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tạo URL thanh toán VNPay và chữ ký HMAC-SHA512 (chạy trên mỗi lần bấm thanh toán).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VNPayBenchmark {
+
+    private VNPayService vnPayService;
+    private String secret;
+    private String hashData;
+
+    @Setup
+    public void setUp() {
+        VNPayConfig config = new VNPayConfig();
+        ReflectionTestUtils.setField(config, "vnpTmnCode", "YZ312VU8");
+        ReflectionTestUtils.setField(config, "vnpHashSecret", "BENCHMARKSECRETBENCHMARKSECRET00");
+        ReflectionTestUtils.setField(config, "vnpPayUrl", "https://sandbox.vnpayment.vn/paymentv2/vpcpay.html");
+        ReflectionTestUtils.setField(config, "vnpReturnUrl", "http://localhost:8080/payment/vnpay-return");
+        vnPayService = new VNPayService(config);
+
+        secret = config.getVnpHashSecret();
+        // Chuỗi cỡ bằng dữ liệu ký thật của một giao dịch
+        hashData = "vnp_Amount=189000000&vnp_Command=pay&vnp_CreateDate=20250101120000&vnp_CurrCode=VND"
+                + "&vnp_IpAddr=127.0.0.1&vnp_Locale=vn&vnp_OrderInfo=Thanh+toan+don+hang+123456"
+                + "&vnp_OrderType=other&vnp_ReturnUrl=http%3A%2F%2Flocalhost%3A8080%2Fpayment%2Fvnpay-return"
+                + "&vnp_TmnCode=YZ312VU8&vnp_TxnRef=123456&vnp_Version=2.1.0";
+    }
+
+    @Benchmark
+    public String createPaymentUrl() {
+        return vnPayService.createPaymentUrl(123456L, 42L, 1_890_000L, "Thanh toan don hang 123456", "127.0.0.1");
+    }
+
+    @Benchmark
+    public String hmacSHA512() {
+        return vnPayService.hmacSHA512(secret, hashData);
+    }
+}
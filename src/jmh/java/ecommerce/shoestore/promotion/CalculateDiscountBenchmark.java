@@ -0,0 +1,60 @@
+package ecommerce.shoestore.promotion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CustomerPromotionService.calculateDiscount: thuần tính toán BigDecimal, không cần DB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculateDiscountBenchmark {
+
+    private CustomerPromotionService customerPromotionService;
+    private Voucher percentVoucher;
+    private Voucher fixedVoucher;
+    private BigDecimal subTotal;
+
+    @Setup
+    public void setUp() {
+        // calculateDiscount không dùng repository nào
+        customerPromotionService = new CustomerPromotionService(null, null, null, null);
+        percentVoucher = Voucher.builder()
+                .code("SALE15")
+                .discountType(VoucherDiscountType.PERCENT)
+                .discountValue(new BigDecimal("15"))
+                .maxDiscountValue(new BigDecimal("200000"))
+                .build();
+        fixedVoucher = Voucher.builder()
+                .code("GIAM50K")
+                .discountType(VoucherDiscountType.FIXED_AMOUNT)
+                .discountValue(new BigDecimal("50000"))
+                .build();
+        subTotal = new BigDecimal("1890000");
+    }
+
+    @Benchmark
+    public BigDecimal percentWithCap() {
+        return customerPromotionService.calculateDiscount(percentVoucher, subTotal);
+    }
+
+    @Benchmark
+    public BigDecimal fixedAmount() {
+        return customerPromotionService.calculateDiscount(fixedVoucher, subTotal);
+    }
+}
@@ -0,0 +1,89 @@
+package ecommerce.shoestore.shoes;
+
+import ecommerce.shoestore.benchmark.BenchmarkCatalog;
+import ecommerce.shoestore.shoes.dto.ShoesDetailDto;
+import ecommerce.shoestore.shoes.listing.ProductListing;
+import ecommerce.shoestore.shoes.listing.ProductListingRepository;
+import ecommerce.shoestore.shoes.listing.ProductListingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dựng DTO cho trang danh sách (ProductListingService.toSummaryDto - thay cho
+ * ShoesService.convertToSummaryDto cũ) và trang chi tiết (ShoesService.convertToDetailDto,
+ * gồm cả truy vấn sản phẩm liên quan).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductDtoBenchmark {
+
+    private static final int PAGE_SIZE = 24;
+
+    @Param({"1k", "100k", "1M"})
+    public String catalogSize;
+
+    private BenchmarkCatalog catalog;
+    private ProductListingService productListingService;
+    private ShoesService shoesService;
+    private List<ProductListing> listingPage;
+    private Shoes detailShoes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        catalog = BenchmarkCatalog.start(catalogSize);
+        productListingService = catalog.bean(ProductListingService.class);
+        shoesService = catalog.bean(ShoesService.class);
+
+        listingPage = catalog.bean(ProductListingRepository.class)
+                .findAll(PageRequest.of(0, PAGE_SIZE, Sort.by("shoeId").descending()))
+                .getContent();
+
+        // Nạp giống ShoesService.getShoesDetail: ảnh + danh mục, rồi biến thể bằng query riêng
+        ShoesRepository shoesRepository = catalog.bean(ShoesRepository.class);
+        Long shoeId = listingPage.stream()
+                .filter(ProductListing::getStatus)
+                .findFirst()
+                .orElseThrow()
+                .getShoeId();
+        detailShoes = shoesRepository.findByIdWithImages(shoeId).orElseThrow();
+        detailShoes.setVariants(shoesRepository.findByIdWithVariants(shoeId).orElseThrow().getVariants());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        catalog.close();
+    }
+
+    @Benchmark
+    public void summaryDtoPage(Blackhole blackhole) {
+        for (ProductListing listing : listingPage) {
+            blackhole.consume(productListingService.toSummaryDto(listing));
+        }
+    }
+
+    @Benchmark
+    public ShoesDetailDto detailDto() {
+        return shoesService.convertToDetailDto(detailShoes);
+    }
+}
@@ -0,0 +1,79 @@
+package ecommerce.shoestore.shoes.crud;
+
+import ecommerce.shoestore.benchmark.BenchmarkCatalog;
+import ecommerce.shoestore.category.CategoryRepository;
+import ecommerce.shoestore.shoes.dto.ShoesListDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ShoesSearchService.searchProducts trên Postgres nhúng (trigram + unaccent thật),
+ * với các tổ hợp thường gặp ở trang /products.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShoesSearchBenchmark {
+
+    private static final int PAGE_SIZE = 12;
+
+    @Param({"1k", "100k", "1M"})
+    public String catalogSize;
+
+    private BenchmarkCatalog catalog;
+    private ShoesSearchService shoesSearchService;
+    private Long categoryId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        catalog = BenchmarkCatalog.start(catalogSize);
+        shoesSearchService = catalog.bean(ShoesSearchService.class);
+        categoryId = catalog.bean(CategoryRepository.class)
+                .findAllCategories().get(0).getCategoryId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        catalog.close();
+    }
+
+    /** Từ khóa không dấu khớp tên có dấu, sắp theo độ liên quan */
+    @Benchmark
+    public ShoesListDto keywordRelevance() {
+        return shoesSearchService.searchProducts("giay chay", null, null, null, null, null, 1, PAGE_SIZE, "relevance");
+    }
+
+    @Benchmark
+    public ShoesListDto keywordWithFilters() {
+        return shoesSearchService.searchProducts("sneaker", categoryId, "nike", "FOR_MALE",
+                new BigDecimal("500000"), new BigDecimal("2000000"), 1, PAGE_SIZE, "price_asc");
+    }
+
+    @Benchmark
+    public ShoesListDto categoryBrowseNewest() {
+        return shoesSearchService.searchProducts(null, categoryId, null, null, null, null, 1, PAGE_SIZE, "newest");
+    }
+
+    /** Trang sâu ở chế độ OFFSET (để so với phân trang keyset) */
+    @Benchmark
+    public ShoesListDto deepOffsetPage() {
+        return shoesSearchService.searchProducts(null, null, null, null, null, null, 50, PAGE_SIZE, "price_asc");
+    }
+}
@@ -1,9 +1,17 @@
 package ecommerce.shoestore.admin.order;
 
+import ecommerce.shoestore.common.KeysetCursor;
+import ecommerce.shoestore.common.KeysetLinks;
+import ecommerce.shoestore.common.KeysetPage;
+import ecommerce.shoestore.inventory.OutOfStockException;
+import ecommerce.shoestore.order.AdminOrderQueryRepository;
 import ecommerce.shoestore.order.OrderHistoryService;
 import ecommerce.shoestore.order.OrderStatus;
+import ecommerce.shoestore.order.OrderStatusView;
+import ecommerce.shoestore.order.dto.BulkStatusChangeResult;
 import ecommerce.shoestore.order.dto.OrderHistoryDto;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -11,12 +19,18 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.util.List;
+import java.util.stream.Collectors;
 
 @Controller
 @RequestMapping("/admin/orders")
 @RequiredArgsConstructor
 public class AdminOrderController {
 
+    private static final String CHANGED_BY = "Chủ cửa hàng";
+
     private final OrderHistoryService orderHistoryService;
 
     @GetMapping
@@ -25,13 +39,33 @@ public class AdminOrderController {
                                 @RequestParam(defaultValue = "10") int size,
                                 @RequestParam(required = false) String status,
                                 @RequestParam(required = false) String searchType,
-                                @RequestParam(required = false) String searchKeyword) {
-        
+                                @RequestParam(required = false) String searchKeyword,
+                                @RequestParam(required = false) String cursor,
+                                @RequestParam(defaultValue = "false") boolean count) {
+        if (size < 1) {
+            size = 10;
+        }
+        boolean searching = searchKeyword != null && !searchKeyword.trim().isEmpty() &&
+                searchType != null && !searchType.trim().isEmpty();
+
+        // Chế độ cursor (?cursor=...): phân trang keyset, không OFFSET/COUNT
+        if (cursor != null && !searching) {
+            KeysetPage<OrderHistoryDto> slice = orderHistoryService.getAllOrdersKeyset(
+                    status, KeysetCursor.decodeOrFirstPage(cursor), size, count);
+
+            model.addAttribute("orders", slice.content());
+            model.addAttribute("totalPages", 0);
+            model.addAttribute("currentPage", 0);
+            model.addAttribute("totalElements", slice.totalItems());
+            model.addAttribute("nextPageUrl", KeysetLinks.nextPageUrl(slice.nextCursor()));
+            addListAttributes(model, status, searchType, searchKeyword);
+            return "order/admin-order-list";
+        }
+
         Page<OrderHistoryDto> orderPage;
         
         // Nếu có search thì dùng search, không thì dùng filter status thông thường
-        if (searchKeyword != null && !searchKeyword.trim().isEmpty() && 
-            searchType != null && !searchType.trim().isEmpty()) {
+        if (searching) {
             orderPage = orderHistoryService.searchOrders(searchType, searchKeyword, page, size);
         } else {
             orderPage = orderHistoryService.getAllOrders(status, page, size);
@@ -53,6 +87,14 @@ public class AdminOrderController {
         model.addAttribute("totalPages", orderPage.getTotalPages());
         model.addAttribute("currentPage", page);
         model.addAttribute("totalElements", orderPage.getTotalElements());
+        // Kết quả tìm kiếm chỉ được đếm tới COUNT_CAP
+        model.addAttribute("totalCapped", searching && orderPage.getTotalElements() >= AdminOrderQueryRepository.COUNT_CAP);
+        addListAttributes(model, status, searchType, searchKeyword);
+        
+        return "order/admin-order-list";
+    }
+
+    private void addListAttributes(Model model, String status, String searchType, String searchKeyword) {
         model.addAttribute("currentStatus", status != null ? status : "ALL");
         model.addAttribute("searchType", searchType);
         model.addAttribute("searchKeyword", searchKeyword);
@@ -65,15 +107,53 @@ public class AdminOrderController {
         model.addAttribute("pendingCount", pendingCount);
         model.addAttribute("completedCount", completedCount);
         model.addAttribute("cancelledCount", cancelledCount);
-        
-        return "order/admin-order-list";
     }
 
     @PostMapping("/update-status")
     public String updateStatus(@RequestParam("orderId") Long orderId, 
-                               @RequestParam("newStatus") String newStatusStr) {
-        String currentStatus = orderHistoryService.getCurrentOrderStatus(orderId);
-        orderHistoryService.addOrderStatusChange(orderId, currentStatus, newStatusStr, "Chủ cửa hàng", "Cập nhật bởi chủ cửa hàng");
+                               @RequestParam("newStatus") String newStatusStr,
+                               @RequestParam(value = "version", required = false) Long version,
+                               RedirectAttributes redirectAttributes) {
+        try {
+            orderHistoryService.addOrderStatusChange(orderId, newStatusStr, CHANGED_BY, "Cập nhật bởi chủ cửa hàng", version);
+        } catch (OptimisticLockingFailureException e) {
+            redirectAttributes.addFlashAttribute("errorMessage",
+                    "Đơn #" + orderId + " vừa được cập nhật ở nơi khác, vui lòng kiểm tra lại");
+        } catch (OutOfStockException | IllegalStateException | IllegalArgumentException e) {
+            // Xác nhận đơn đã bị hoàn kho mà không còn đủ hàng để giữ lại
+            redirectAttributes.addFlashAttribute("errorMessage", "Đơn #" + orderId + ": " + e.getMessage());
+        }
+        return "redirect:/admin/orders";
+    }
+
+    /**
+     * Chuyển các đơn đã chọn sang cùng một trạng thái (vd. giao hàng cả lô).
+     * Đơn không ở trạng thái cho phép, hoặc không đủ hàng để xác nhận, thì bỏ qua và được báo lại.
+     */
+    @PostMapping("/bulk-status")
+    public String bulkUpdateStatus(@RequestParam(value = "orderIds", required = false) List<Long> orderIds,
+                                   @RequestParam("newStatus") OrderStatus newStatus,
+                                   RedirectAttributes redirectAttributes) {
+        if (orderIds == null || orderIds.isEmpty()) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Chưa chọn đơn hàng nào");
+            return "redirect:/admin/orders";
+        }
+        try {
+            BulkStatusChangeResult result = orderHistoryService.changeStatusInBulk(
+                    orderIds, newStatus, CHANGED_BY, "Cập nhật hàng loạt bởi chủ cửa hàng");
+            if (!result.changed().isEmpty()) {
+                redirectAttributes.addFlashAttribute("successMessage", String.format("Đã chuyển %d đơn sang \"%s\"",
+                        result.changed().size(), OrderStatusView.display(newStatus)));
+            }
+            if (!result.skipped().isEmpty()) {
+                redirectAttributes.addFlashAttribute("errorMessage", String.format(
+                        "Bỏ qua %d đơn không thể chuyển sang \"%s\": %s", result.skipped().size(),
+                        OrderStatusView.display(newStatus),
+                        result.skipped().stream().map(id -> "#" + id).collect(Collectors.joining(", "))));
+            }
+        } catch (OutOfStockException | IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        }
         return "redirect:/admin/orders";
     }
-}
\ No newline at end of file
+}
@@ -5,16 +5,22 @@ import ecommerce.shoestore.admin.product.dto.AdminShoesListItemDto;
 import ecommerce.shoestore.admin.product.dto.CreateShoesRequest;
 import ecommerce.shoestore.admin.product.dto.UpdateShoesRequest;
 import ecommerce.shoestore.category.CategoryRepository;
+import ecommerce.shoestore.common.KeysetCursor;
+import ecommerce.shoestore.common.KeysetLinks;
+import ecommerce.shoestore.common.KeysetPage;
 import ecommerce.shoestore.common.NotFoundException;
 import ecommerce.shoestore.shoes.ShoesType;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 @Controller
@@ -25,6 +31,7 @@ public class AdminProductController {
 
     private final AdminProductService adminProductService;
     private final CategoryRepository categoryRepository;
+    private final ProductImportService productImportService;
 
     /**
      * Danh sách sản phẩm + phân trang + lọc
@@ -37,8 +44,32 @@ public class AdminProductController {
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) String brand,
             @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean count,
             Model model
     ) {
+        if (size < 1) {
+            size = 10;
+        }
+        model.addAttribute("keyword", keyword);
+        model.addAttribute("categoryId", categoryId);
+        model.addAttribute("brand", brand);
+        model.addAttribute("status", status);
+        model.addAttribute("categories", categoryRepository.findAllByOrderByNameAsc());
+
+        // Chế độ cursor (?cursor=...): phân trang keyset, không OFFSET/COUNT
+        if (cursor != null) {
+            KeysetPage<AdminShoesListItemDto> slice = adminProductService.getAdminProductListKeyset(
+                    KeysetCursor.decodeOrFirstPage(cursor), size, count, keyword, categoryId, brand, status);
+
+            model.addAttribute("productsPage", new PageImpl<>(slice.content()));
+            model.addAttribute("products", slice.content());
+            model.addAttribute("currentPage", 1);
+            model.addAttribute("totalPages", 1);
+            model.addAttribute("totalItems", slice.totalItems());
+            model.addAttribute("nextPageUrl", KeysetLinks.nextPageUrl(slice.nextCursor()));
+            return "admin/product/list";
+        }
 
         Page<AdminShoesListItemDto> productPage
                 = adminProductService.getAdminProductList(page, size, keyword, categoryId, brand, status);
@@ -51,11 +82,6 @@ public class AdminProductController {
         model.addAttribute("products", productPage.getContent());
         model.addAttribute("currentPage", page);
         model.addAttribute("totalPages", productPage.getTotalPages());
-        model.addAttribute("keyword", keyword);
-        model.addAttribute("categoryId", categoryId);
-        model.addAttribute("brand", brand);
-        model.addAttribute("status", status);
-        model.addAttribute("categories", categoryRepository.findAllByOrderByNameAsc());
         return "admin/product/list";
     }
 
@@ -100,6 +126,52 @@ public class AdminProductController {
         }
     }
 
+    /**
+     * Trang nhập sản phẩm hàng loạt (CSV/JSON) + các lần nhập gần đây
+     */
+    @GetMapping("/import")
+    public String showImportForm(Model model) {
+        model.addAttribute("jobs", productImportService.recentJobs());
+        return "admin/product/import";
+    }
+
+    @PostMapping("/import")
+    public String importProducts(@RequestParam("file") MultipartFile file, RedirectAttributes redirectAttributes) {
+        try {
+            ProductImportJob job = productImportService.startImport(file);
+            return "redirect:/admin/products/import/" + job.getJobId();
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        } catch (Exception e) {
+            log.error("Lỗi khi nhận file nhập sản phẩm", e);
+            redirectAttributes.addFlashAttribute("errorMessage", "Không thể đọc file. Vui lòng thử lại.");
+        }
+        return "redirect:/admin/products/import";
+    }
+
+    /**
+     * Tiến độ và danh sách dòng lỗi của một lần nhập
+     */
+    @GetMapping("/import/{jobId}")
+    public String viewImportJob(@PathVariable String jobId, Model model, RedirectAttributes redirectAttributes) {
+        return productImportService.findJob(jobId)
+                .map(job -> {
+                    model.addAttribute("job", job);
+                    model.addAttribute("jobs", productImportService.recentJobs());
+                    return "admin/product/import";
+                })
+                .orElseGet(() -> {
+                    redirectAttributes.addFlashAttribute("errorMessage", "Không tìm thấy lần nhập: " + jobId);
+                    return "redirect:/admin/products/import";
+                });
+    }
+
+    @GetMapping("/import/{jobId}/status")
+    @ResponseBody
+    public ResponseEntity<ProductImportJob> importJobStatus(@PathVariable String jobId) {
+        return ResponseEntity.of(productImportService.findJob(jobId));
+    }
+
     /**
      * Mở form chỉnh sửa sản phẩm
      */
@@ -6,12 +6,17 @@ import ecommerce.shoestore.admin.product.dto.CreateShoesRequest;
 import ecommerce.shoestore.admin.product.dto.UpdateShoesRequest;
 import ecommerce.shoestore.category.Category;
 import ecommerce.shoestore.category.CategoryRepository;
+import ecommerce.shoestore.common.KeysetCursor;
+import ecommerce.shoestore.common.KeysetPage;
 import ecommerce.shoestore.common.NotFoundException;
 import ecommerce.shoestore.shoes.Shoes;
+import ecommerce.shoestore.shoes.ShoesChangedEvent;
 import ecommerce.shoestore.shoesimage.ShoesImage;
 import ecommerce.shoestore.shoesvariant.ShoesVariant;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -36,6 +41,7 @@ public class AdminProductService {
 
     private final AdminShoesRepository adminShoesRepository;
     private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     private String normalizeSize(String raw) {
         if (raw == null) return null;
@@ -52,6 +58,39 @@ public class AdminProductService {
         return trimmed.toUpperCase();
     }
 
+    /**
+     * Chuẩn hóa size, bỏ biến thể trống và kiểm tra trùng màu-size.
+     * Dùng chung cho tạo sản phẩm từ form và nhập hàng loạt (ProductImportService).
+     */
+    List<CreateShoesRequest.VariantDto> validateVariants(List<CreateShoesRequest.VariantDto> variants) {
+        List<CreateShoesRequest.VariantDto> validVariants = new ArrayList<>();
+
+        for (CreateShoesRequest.VariantDto vDto : variants) {
+            if (vDto == null) {
+                continue;
+            }
+            String normSize = normalizeSize(vDto.getSize());
+            if (!StringUtils.hasText(vDto.getColor()) || !StringUtils.hasText(normSize)) {
+                continue; // bỏ qua biến thể trống hoặc thiếu dữ liệu
+            }
+            vDto.setSize(normSize); // giữ kích thước đã chuẩn hóa cho các bước sau
+            validVariants.add(vDto);
+        }
+
+        if (validVariants.isEmpty()) {
+            throw new IllegalArgumentException("Vui lòng nhập ít nhất 1 biến thể hợp lệ (màu và size)");
+        }
+
+        Set<String> variantKeys = new HashSet<>();
+        for (CreateShoesRequest.VariantDto vDto : validVariants) {
+            String key = vDto.getColor() + "-" + vDto.getSize();
+            if (!variantKeys.add(key)) {
+                throw new IllegalArgumentException("Biến thể " + key + " bị trùng lặp");
+            }
+        }
+        return validVariants;
+    }
+
     /* =========================
        ADMIN – LIST PRODUCT
        ========================= */
@@ -75,14 +114,46 @@ public class AdminProductService {
                 pageable
         );
 
-        return shoesPage.map(shoes -> AdminShoesListItemDto.builder()
+        return shoesPage.map(this::toListItemDto);
+    }
+
+    /**
+     * Danh sách ở chế độ keyset (?cursor=...): không OFFSET, chỉ đếm khi được yêu cầu
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<AdminShoesListItemDto> getAdminProductListKeyset(
+            KeysetCursor cursor,
+            int size,
+            boolean withCount,
+            String keyword,
+            Long categoryId,
+            String brand,
+            String status
+    ) {
+        Boolean statusFilter = (status == null || status.isBlank()) ? null : Boolean.valueOf(status);
+        KeysetCursor c = cursor != null ? cursor.forSort("id") : null;
+        Long afterId = c != null ? c.id() : null;
+
+        List<Shoes> rows = adminShoesRepository.searchProductsAfter(
+                keyword, categoryId, brand, statusFilter, afterId, Limit.of(size + 1));
+
+        Long total = withCount
+                ? adminShoesRepository.countProducts(keyword, categoryId, brand, statusFilter)
+                : null;
+
+        return KeysetPage.of(rows, size, last -> new KeysetCursor("id", null, last.getShoeId()), total)
+                .map(this::toListItemDto);
+    }
+
+    private AdminShoesListItemDto toListItemDto(Shoes shoes) {
+        return AdminShoesListItemDto.builder()
                 .shoeId(shoes.getShoeId())
                 .name(shoes.getName())
                 .brand(shoes.getBrand())
                 .categoryName(shoes.getCategory() != null ? shoes.getCategory().getName() : null)
                 .basePrice(shoes.getBasePrice())
                 .status(shoes.getStatus() != null ? shoes.getStatus() : Boolean.FALSE)
-                .build());
+                .build();
     }
 
     /* =========================
@@ -168,31 +239,7 @@ public class AdminProductService {
         }
 
         if (request.getVariants() != null && !request.getVariants().isEmpty()) {
-            List<CreateShoesRequest.VariantDto> validVariants = new ArrayList<>();
-
-            for (CreateShoesRequest.VariantDto vDto : request.getVariants()) {
-                if (vDto == null) {
-                    continue;
-                }
-                String normSize = normalizeSize(vDto.getSize());
-                if (!StringUtils.hasText(vDto.getColor()) || !StringUtils.hasText(normSize)) {
-                    continue; // bỏ qua biến thể trống hoặc thiếu dữ liệu
-                }
-                vDto.setSize(normSize); // giữ kích thước đã chuẩn hóa cho các bước sau
-                validVariants.add(vDto);
-            }
-
-            if (validVariants.isEmpty()) {
-                throw new IllegalArgumentException("Vui lòng nhập ít nhất 1 biến thể hợp lệ (màu và size)");
-            }
-
-            Set<String> variantKeys = new HashSet<>();
-            for (CreateShoesRequest.VariantDto vDto : validVariants) {
-                String key = vDto.getColor() + "-" + vDto.getSize();
-                if (!variantKeys.add(key)) {
-                    throw new IllegalArgumentException("Biến thể " + key + " bị trùng lặp");
-                }
-            }
+            List<CreateShoesRequest.VariantDto> validVariants = validateVariants(request.getVariants());
 
             Set<ShoesVariant> variants = new HashSet<>();
             for (CreateShoesRequest.VariantDto vDto : validVariants) {
@@ -207,6 +254,7 @@ public class AdminProductService {
         }
 
         shoes = adminShoesRepository.save(shoes);
+        eventPublisher.publishEvent(ShoesChangedEvent.of(shoes.getShoeId()));
         log.info("Admin created product: {} with ID: {}", shoes.getName(), shoes.getShoeId());
         return shoes.getShoeId();
     }
@@ -296,6 +344,7 @@ public class AdminProductService {
         }
 
         adminShoesRepository.save(shoes);
+        eventPublisher.publishEvent(ShoesChangedEvent.of(shoeId));
         log.info("Admin updated product ID: {}", shoeId);
     }
 
@@ -309,6 +358,7 @@ public class AdminProductService {
 
         shoes.setStatus(status);
         adminShoesRepository.save(shoes);
+        eventPublisher.publishEvent(ShoesChangedEvent.of(shoeId));
 
         String statusText = status ? "ĐANG BÁN" : "NGỪNG BÁN";
         log.info("Admin thay đổi trạng thái sản phẩm ID: {} thành {}", shoeId, statusText);
@@ -322,6 +372,7 @@ public class AdminProductService {
         boolean current = shoes.getStatus() != null && shoes.getStatus();
         shoes.setStatus(!current);
         adminShoesRepository.save(shoes);
+        eventPublisher.publishEvent(ShoesChangedEvent.of(shoeId));
         log.info("Admin toggled status for product ID: {} to {}", shoeId, !current ? "ĐANG BÁN" : "NGỪNG BÁN");
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package ecommerce.shoestore.admin.product;
 
 import ecommerce.shoestore.shoes.Shoes;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -8,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -36,6 +38,44 @@ public interface AdminShoesRepository extends JpaRepository<Shoes, Long> {
             Pageable pageable
     );
 
+    /* =========================
+       ADMIN – LIST (KEYSET)
+       Cùng điều kiện lọc như searchProducts, trang sau = shoeId < afterId
+       ========================= */
+    @Query("SELECT s FROM Shoes s " +
+           "LEFT JOIN FETCH s.category c " +
+           "WHERE (:keyword IS NULL OR :keyword = '' " +
+           "   OR LOWER(s.name) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
+           "   OR LOWER(s.brand) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
+           "AND (:categoryId IS NULL OR c.categoryId = :categoryId) " +
+           "AND (:brand IS NULL OR :brand = '' OR LOWER(s.brand) = LOWER(:brand)) " +
+           "AND (:status IS NULL OR s.status = :status) " +
+           "AND (:afterId IS NULL OR s.shoeId < :afterId) " +
+           "ORDER BY s.shoeId DESC")
+    List<Shoes> searchProductsAfter(
+            @Param("keyword") String keyword,
+            @Param("categoryId") Long categoryId,
+            @Param("brand") String brand,
+            @Param("status") Boolean status,
+            @Param("afterId") Long afterId,
+            Limit limit
+    );
+
+    @Query("SELECT COUNT(s) FROM Shoes s " +
+           "LEFT JOIN s.category c " +
+           "WHERE (:keyword IS NULL OR :keyword = '' " +
+           "   OR LOWER(s.name) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
+           "   OR LOWER(s.brand) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
+           "AND (:categoryId IS NULL OR c.categoryId = :categoryId) " +
+           "AND (:brand IS NULL OR :brand = '' OR LOWER(s.brand) = LOWER(:brand)) " +
+           "AND (:status IS NULL OR s.status = :status)")
+    long countProducts(
+            @Param("keyword") String keyword,
+            @Param("categoryId") Long categoryId,
+            @Param("brand") String brand,
+            @Param("status") Boolean status
+    );
+
     /* =========================
        ADMIN – GET DETAIL FOR EDIT
        ========================= */
@@ -0,0 +1,189 @@
+package ecommerce.shoestore.admin.product;
+
+import ecommerce.shoestore.admin.product.dto.CreateShoesRequest;
+import ecommerce.shoestore.shoes.ShoesType;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Đọc CSV theo từng bản ghi (RFC 4180: dấu phẩy, giá trị trong ngoặc kép, "" để thoát).
+ *
+ * Dòng đầu là tiêu đề, các cột: name, brand, type, basePrice, categoryId,
+ * description, collection, images, variants.
+ * - images: các URL cách nhau bởi "|", ảnh đầu tiên là thumbnail
+ * - variants: các cặp MÀU:SIZE cách nhau bởi "|", ví dụ BLACK:40|WHITE:41
+ */
+class CsvProductImportReader implements ProductImportReader {
+
+    static final List<String> REQUIRED_COLUMNS = List.of("name", "brand", "type", "basePrice", "categoryId", "variants");
+
+    private final BufferedReader reader;
+    private final Map<String, Integer> columns = new HashMap<>();
+    private int row;
+
+    CsvProductImportReader(Reader source) throws IOException {
+        this.reader = source instanceof BufferedReader br ? br : new BufferedReader(source);
+        List<String> header = readRecord();
+        if (header == null) {
+            throw new IllegalArgumentException("File CSV rỗng");
+        }
+        for (int i = 0; i < header.size(); i++) {
+            // bỏ BOM nếu file được lưu từ Excel
+            String name = header.get(i).replace("\uFEFF", "").trim();
+            columns.put(name.toLowerCase(Locale.ROOT), i);
+        }
+        for (String required : REQUIRED_COLUMNS) {
+            if (!columns.containsKey(required.toLowerCase(Locale.ROOT))) {
+                throw new IllegalArgumentException("File CSV thiếu cột: " + required);
+            }
+        }
+    }
+
+    @Override
+    public ImportRecord next() throws IOException {
+        List<String> values;
+        do {
+            values = readRecord();
+            if (values == null) {
+                return null;
+            }
+            row++;
+        } while (values.size() == 1 && values.get(0).isBlank()); // bỏ dòng trống
+
+        try {
+            return new ImportRecord(row, toRequest(values), null);
+        } catch (IllegalArgumentException e) {
+            return new ImportRecord(row, null, e.getMessage());
+        }
+    }
+
+    private CreateShoesRequest toRequest(List<String> values) {
+        CreateShoesRequest request = new CreateShoesRequest();
+        request.setName(value(values, "name"));
+        request.setBrand(value(values, "brand"));
+        request.setDescription(value(values, "description"));
+        request.setCollection(value(values, "collection"));
+
+        String type = value(values, "type");
+        if (type != null) {
+            try {
+                request.setType(ShoesType.valueOf(type.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Loại giày không hợp lệ: " + type);
+            }
+        }
+
+        String price = value(values, "basePrice");
+        if (price != null) {
+            try {
+                request.setBasePrice(new BigDecimal(price));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Giá không hợp lệ: " + price);
+            }
+        }
+
+        String categoryId = value(values, "categoryId");
+        if (categoryId != null) {
+            try {
+                request.setCategoryId(Long.valueOf(categoryId));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Mã danh mục không hợp lệ: " + categoryId);
+            }
+        }
+
+        List<CreateShoesRequest.ImageDto> images = new ArrayList<>();
+        for (String url : split(value(values, "images"))) {
+            images.add(new CreateShoesRequest.ImageDto(url, images.isEmpty()));
+        }
+        request.setImages(images);
+
+        List<CreateShoesRequest.VariantDto> variants = new ArrayList<>();
+        for (String pair : split(value(values, "variants"))) {
+            int sep = pair.indexOf(':');
+            if (sep < 0) {
+                throw new IllegalArgumentException("Biến thể phải có dạng MÀU:SIZE: " + pair);
+            }
+            variants.add(new CreateShoesRequest.VariantDto(
+                    pair.substring(0, sep).trim(), pair.substring(sep + 1).trim()));
+        }
+        request.setVariants(variants);
+        return request;
+    }
+
+    private String value(List<String> values, String column) {
+        Integer idx = columns.get(column.toLowerCase(Locale.ROOT));
+        if (idx == null || idx >= values.size()) {
+            return null;
+        }
+        String value = values.get(idx).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static List<String> split(String value) {
+        List<String> parts = new ArrayList<>();
+        if (value == null) {
+            return parts;
+        }
+        for (String part : value.split("\\|")) {
+            if (StringUtils.hasText(part)) {
+                parts.add(part.trim());
+            }
+        }
+        return parts;
+    }
+
+    /** Đọc một bản ghi (có thể trải nhiều dòng nếu giá trị trong ngoặc kép chứa xuống dòng) */
+    private List<String> readRecord() throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (c != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (next != -1) {
+                            reader.reset();
+                        }
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+        values.add(field.toString());
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,54 @@
+package ecommerce.shoestore.admin.product;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ecommerce.shoestore.admin.product.dto.CreateShoesRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Đọc file JSON dạng mảng [{...}, {...}] từng phần tử một bằng streaming parser,
+ * mỗi phần tử có cấu trúc như CreateShoesRequest.
+ */
+class JsonProductImportReader implements ProductImportReader {
+
+    private final ObjectMapper objectMapper;
+    private final JsonParser parser;
+    private int row;
+
+    JsonProductImportReader(ObjectMapper objectMapper, InputStream source) throws IOException {
+        this.objectMapper = objectMapper;
+        this.parser = objectMapper.getFactory().createParser(source);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            parser.close();
+            throw new IllegalArgumentException("File JSON phải là một mảng sản phẩm");
+        }
+    }
+
+    @Override
+    public ImportRecord next() throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null || token == JsonToken.END_ARRAY) {
+            return null;
+        }
+        row++;
+        // Đọc trọn phần tử ra cây trước, để lỗi kiểu dữ liệu chỉ làm hỏng phần tử đó
+        JsonNode node = parser.readValueAsTree();
+        try {
+            return new ImportRecord(row, objectMapper.treeToValue(node, CreateShoesRequest.class), null);
+        } catch (JsonProcessingException e) {
+            return new ImportRecord(row, null, "Dữ liệu không hợp lệ: " + e.getOriginalMessage());
+        } catch (IllegalArgumentException e) {
+            return new ImportRecord(row, null, "Dữ liệu không hợp lệ: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
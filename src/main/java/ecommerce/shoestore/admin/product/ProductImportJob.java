@@ -0,0 +1,95 @@
+package ecommerce.shoestore.admin.product;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Trạng thái một lần nhập sản phẩm hàng loạt (đọc bởi trang tiến độ).
+ * Chỉ giữ tối đa MAX_ERRORS lỗi để file lớn nhiều lỗi không làm đầy bộ nhớ.
+ */
+@Getter
+public class ProductImportJob {
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    public record RowError(int row, String message) {
+    }
+
+    static final int MAX_ERRORS = 1000;
+
+    private final String jobId = UUID.randomUUID().toString();
+    private final String fileName;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private volatile LocalDateTime finishedAt;
+    private volatile Status status = Status.RUNNING;
+    private volatile String failureMessage;
+
+    private final AtomicInteger processedRows = new AtomicInteger();
+    private final AtomicInteger importedProducts = new AtomicInteger();
+    private final AtomicInteger failedRows = new AtomicInteger();
+    private final List<RowError> errors = Collections.synchronizedList(new ArrayList<>());
+
+    ProductImportJob(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public int getProcessedRows() {
+        return processedRows.get();
+    }
+
+    public int getImportedProducts() {
+        return importedProducts.get();
+    }
+
+    public int getFailedRows() {
+        return failedRows.get();
+    }
+
+    public List<RowError> getErrors() {
+        synchronized (errors) {
+            return List.copyOf(errors);
+        }
+    }
+
+    public boolean isErrorsTruncated() {
+        return failedRows.get() > errors.size();
+    }
+
+    public boolean isRunning() {
+        return status == Status.RUNNING;
+    }
+
+    void rowProcessed() {
+        processedRows.incrementAndGet();
+    }
+
+    void imported(int count) {
+        importedProducts.addAndGet(count);
+    }
+
+    void rowFailed(int row, String message) {
+        failedRows.incrementAndGet();
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new RowError(row, message));
+        }
+    }
+
+    void complete() {
+        status = Status.COMPLETED;
+        finishedAt = LocalDateTime.now();
+    }
+
+    void fail(String message) {
+        failureMessage = message;
+        status = Status.FAILED;
+        finishedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,24 @@
+package ecommerce.shoestore.admin.product;
+
+import ecommerce.shoestore.admin.product.dto.CreateShoesRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Đọc từng sản phẩm một từ file nhập (không nạp cả file vào bộ nhớ).
+ */
+interface ProductImportReader extends Closeable {
+
+    /**
+     * @param row     số thứ tự dòng/phần tử trong file (để báo lỗi)
+     * @param request null nếu dòng không đọc được, khi đó error chứa lý do
+     */
+    record ImportRecord(int row, CreateShoesRequest request, String error) {
+    }
+
+    /**
+     * @return null khi đã hết file
+     */
+    ImportRecord next() throws IOException;
+}
@@ -0,0 +1,86 @@
+package ecommerce.shoestore.admin.product;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Nhập sản phẩm hàng loạt từ file CSV/JSON.
+ * File upload được lưu ra file tạm rồi xử lý trong nền (ProductImportTask);
+ * trạng thái các lần nhập gần nhất được giữ trong bộ nhớ để xem tiến độ.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductImportService {
+
+    public enum Format {
+        CSV, JSON
+    }
+
+    private static final int MAX_TRACKED_JOBS = 20;
+
+    private final ProductImportTask productImportTask;
+
+    private final Map<String, ProductImportJob> jobs = Collections.synchronizedMap(
+            new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ProductImportJob> eldest) {
+                    return size() > MAX_TRACKED_JOBS;
+                }
+            });
+
+    public ProductImportJob startImport(MultipartFile file) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("Vui lòng chọn file cần nhập");
+        }
+        Format format = detectFormat(file.getOriginalFilename());
+
+        Path tempFile = Files.createTempFile("product-import-", "." + format.name().toLowerCase(Locale.ROOT));
+        file.transferTo(tempFile);
+
+        ProductImportJob job = new ProductImportJob(file.getOriginalFilename());
+        jobs.put(job.getJobId(), job);
+        log.info("Bắt đầu nhập sản phẩm từ {} ({} bytes), job {}", file.getOriginalFilename(), file.getSize(), job.getJobId());
+
+        productImportTask.run(job, tempFile, format);
+        return job;
+    }
+
+    public Optional<ProductImportJob> findJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /** Các lần nhập gần nhất, mới nhất trước */
+    public List<ProductImportJob> recentJobs() {
+        List<ProductImportJob> recent;
+        synchronized (jobs) {
+            recent = new ArrayList<>(jobs.values());
+        }
+        Collections.reverse(recent);
+        return recent;
+    }
+
+    private Format detectFormat(String fileName) {
+        String name = fileName != null ? fileName.toLowerCase(Locale.ROOT) : "";
+        if (name.endsWith(".csv")) {
+            return Format.CSV;
+        }
+        if (name.endsWith(".json")) {
+            return Format.JSON;
+        }
+        throw new IllegalArgumentException("Chỉ hỗ trợ file .csv hoặc .json");
+    }
+}
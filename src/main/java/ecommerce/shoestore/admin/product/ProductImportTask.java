@@ -0,0 +1,158 @@
+package ecommerce.shoestore.admin.product;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ecommerce.shoestore.admin.product.dto.CreateShoesRequest;
+import ecommerce.shoestore.category.Category;
+import ecommerce.shoestore.category.CategoryRepository;
+import ecommerce.shoestore.shoesvariant.Color;
+import ecommerce.shoestore.shoesvariant.Size;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Chạy một lần nhập trong nền: đọc file từng dòng, kiểm tra theo đúng quy tắc
+ * của form tạo sản phẩm, rồi ghi theo lô admin.product-import.chunk-size dòng.
+ * Bộ nhớ chỉ giữ một lô tại một thời điểm, không phụ thuộc kích thước file.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+class ProductImportTask {
+
+    private record PendingRow(int row, CreateShoesRequest request) {
+    }
+
+    private final AdminProductService adminProductService;
+    private final ProductImportWriter productImportWriter;
+    private final CategoryRepository categoryRepository;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+
+    @Value("${admin.product-import.chunk-size:500}")
+    private int chunkSize;
+
+    @Async
+    public void run(ProductImportJob job, Path file, ProductImportService.Format format) {
+        Set<Long> categoryIds = categoryRepository.findAll().stream()
+                .map(Category::getCategoryId)
+                .collect(Collectors.toSet());
+
+        try (ProductImportReader reader = openReader(file, format)) {
+            List<PendingRow> chunk = new ArrayList<>(chunkSize);
+            ProductImportReader.ImportRecord record;
+            while ((record = reader.next()) != null) {
+                job.rowProcessed();
+                if (record.error() != null) {
+                    job.rowFailed(record.row(), record.error());
+                    continue;
+                }
+                try {
+                    chunk.add(new PendingRow(record.row(), prepare(record.request(), categoryIds)));
+                } catch (IllegalArgumentException e) {
+                    job.rowFailed(record.row(), e.getMessage());
+                    continue;
+                }
+                if (chunk.size() >= chunkSize) {
+                    flush(job, chunk);
+                    chunk.clear();
+                }
+            }
+            flush(job, chunk);
+            job.complete();
+            log.info("Nhập sản phẩm {} xong: {} dòng, {} sản phẩm, {} lỗi",
+                    job.getFileName(), job.getProcessedRows(), job.getImportedProducts(), job.getFailedRows());
+        } catch (IOException | RuntimeException e) {
+            log.error("Nhập sản phẩm {} thất bại", job.getFileName(), e);
+            job.fail(e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Không xóa được file tạm {}", file, e);
+            }
+        }
+    }
+
+    private ProductImportReader openReader(Path file, ProductImportService.Format format) throws IOException {
+        return switch (format) {
+            case CSV -> new CsvProductImportReader(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+            case JSON -> new JsonProductImportReader(objectMapper, Files.newInputStream(file));
+        };
+    }
+
+    /**
+     * Cùng quy tắc với AdminProductService.createShoes: ràng buộc của CreateShoesRequest,
+     * danh mục phải tồn tại, size được chuẩn hóa, không trùng màu-size.
+     */
+    private CreateShoesRequest prepare(CreateShoesRequest request, Set<Long> categoryIds) {
+        Set<ConstraintViolation<CreateShoesRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+        if (!categoryIds.contains(request.getCategoryId())) {
+            throw new IllegalArgumentException("Không tìm thấy danh mục ID: " + request.getCategoryId());
+        }
+
+        List<CreateShoesRequest.VariantDto> variants = adminProductService.validateVariants(
+                request.getVariants() != null ? request.getVariants() : List.of());
+        for (CreateShoesRequest.VariantDto variant : variants) {
+            String color = variant.getColor().trim().toUpperCase(Locale.ROOT);
+            try {
+                Color.valueOf(color);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Màu không hợp lệ: " + variant.getColor());
+            }
+            try {
+                Size.valueOf(variant.getSize());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Size không hợp lệ: " + variant.getSize());
+            }
+            variant.setColor(color);
+        }
+        request.setVariants(variants);
+        return request;
+    }
+
+    /**
+     * Ghi cả lô; nếu lô lỗi (vd. vi phạm ràng buộc DB) thì ghi lại từng dòng
+     * để chỉ những dòng hỏng bị đánh dấu lỗi.
+     */
+    private void flush(ProductImportJob job, List<PendingRow> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            productImportWriter.write(chunk.stream().map(PendingRow::request).toList());
+            job.imported(chunk.size());
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Ghi lô {} dòng thất bại, thử lại từng dòng: {}", chunk.size(), e.getMessage());
+        }
+        for (PendingRow pending : chunk) {
+            try {
+                productImportWriter.write(List.of(pending.request()));
+                job.imported(1);
+            } catch (RuntimeException e) {
+                job.rowFailed(pending.row(), "Lỗi ghi dữ liệu: " + e.getMessage());
+            }
+        }
+    }
+}
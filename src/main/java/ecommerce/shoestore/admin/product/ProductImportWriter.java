@@ -0,0 +1,122 @@
+package ecommerce.shoestore.admin.product;
+
+import ecommerce.shoestore.admin.product.dto.CreateShoesRequest;
+import ecommerce.shoestore.shoes.ShoesChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ghi một lô sản phẩm đã kiểm tra bằng JDBC batch: mỗi bảng (shoes, shoes_image,
+ * shoes_variant) chỉ tốn một lượt gửi cho cả lô, không qua persistence context.
+ */
+@Component
+@RequiredArgsConstructor
+class ProductImportWriter {
+
+    private static final String NEXT_SHOE_IDS = """
+            SELECT nextval(pg_get_serial_sequence('shoes', '"shoeId"'))
+            FROM generate_series(1, ?)
+            """;
+
+    private static final String INSERT_SHOES = """
+            INSERT INTO shoes ("shoeId", name, brand, type, "basePrice", description,
+                               collection, "categoryId", status, "createdAt")
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, true, now())
+            """;
+
+    private static final String INSERT_IMAGE = """
+            INSERT INTO shoes_image (url, "isThumbnail", "shoeId") VALUES (?, ?, ?)
+            """;
+
+    private static final String INSERT_VARIANT = """
+            INSERT INTO shoes_variant (size, color, "shoeId") VALUES (?, ?, ?)
+            """;
+
+    private record ImageRow(long shoeId, CreateShoesRequest.ImageDto image) {
+    }
+
+    private record VariantRow(long shoeId, CreateShoesRequest.VariantDto variant) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Ghi cả lô trong một transaction. Id được lấy trước từ sequence để ảnh và
+     * biến thể cũng ghi được bằng batch mà không cần đọc lại khóa sinh ra.
+     *
+     * @return id các sản phẩm vừa tạo, theo đúng thứ tự của rows
+     */
+    @Transactional
+    public List<Long> write(List<CreateShoesRequest> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = jdbcTemplate.queryForList(NEXT_SHOE_IDS, Long.class, rows.size());
+
+        jdbcTemplate.batchUpdate(INSERT_SHOES, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                CreateShoesRequest request = rows.get(i);
+                ps.setLong(1, ids.get(i));
+                ps.setString(2, request.getName());
+                ps.setString(3, request.getBrand());
+                ps.setObject(4, request.getType().name(), Types.OTHER);
+                ps.setBigDecimal(5, request.getBasePrice());
+                ps.setString(6, request.getDescription());
+                ps.setString(7, request.getCollection());
+                ps.setLong(8, request.getCategoryId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+
+        List<ImageRow> images = new ArrayList<>();
+        List<VariantRow> variants = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            CreateShoesRequest request = rows.get(i);
+            if (request.getImages() != null) {
+                for (CreateShoesRequest.ImageDto image : request.getImages()) {
+                    if (image != null && StringUtils.hasText(image.getUrl())) {
+                        images.add(new ImageRow(ids.get(i), image));
+                    }
+                }
+            }
+            for (CreateShoesRequest.VariantDto variant : request.getVariants()) {
+                variants.add(new VariantRow(ids.get(i), variant));
+            }
+        }
+
+        if (!images.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_IMAGE, images, images.size(), (ps, row) -> {
+                ps.setString(1, row.image().getUrl());
+                ps.setBoolean(2, row.image().isThumbnail());
+                ps.setLong(3, row.shoeId());
+            });
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_VARIANT, variants, variants.size(), (ps, row) -> {
+            ps.setObject(1, row.variant().getSize(), Types.OTHER);
+            ps.setObject(2, row.variant().getColor(), Types.OTHER);
+            ps.setLong(3, row.shoeId());
+        });
+
+        // product_listing được cập nhật trước commit, các chỉ mục đọc sau commit
+        eventPublisher.publishEvent(new ShoesChangedEvent(ids));
+        return ids;
+    }
+}
@@ -4,10 +4,13 @@ import ecommerce.shoestore.category.CategoryRepository;
 import ecommerce.shoestore.promotion.*;
 import ecommerce.shoestore.promotion.dto.CampaignForm;
 import ecommerce.shoestore.promotion.dto.VoucherForm;
+import ecommerce.shoestore.promotion.dto.VoucherGenerationForm;
 import ecommerce.shoestore.shoes.ShoesRepository;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -26,6 +29,10 @@ public class PromotionAdminController {
     private final PromotionService promotionService;
     private final ShoesRepository shoesRepository;
     private final CategoryRepository categoryRepository;
+    private final VoucherGenerationService voucherGenerationService;
+    private final VoucherRedemptionService voucherRedemptionService;
+
+    private static final int MAX_PAGE_SIZE = 100;
 
     /* ===== Campaign ===== */
     @GetMapping("/campaigns")
@@ -33,7 +40,13 @@ public class PromotionAdminController {
                                 @RequestParam(required = false) String discountType,
                                 @RequestParam(required = false) String status,
                                 @RequestParam(required = false) Boolean enabled,
+                                @RequestParam(defaultValue = "1") int page,
+                                @RequestParam(defaultValue = "20") int size,
+                                @RequestParam(required = false) String sort,
                                 Model model) {
+        int pageSize = clampPageSize(size);
+        Page<PromotionCampaign> campaignsPage =
+                promotionService.searchCampaigns(keyword, discountType, status, enabled, page, pageSize, sort);
         model.addAttribute("activeMenu", "promotions");
         model.addAttribute("pageTitle", "Chiến dịch khuyến mãi");
         model.addAttribute("tab", "campaigns");
@@ -41,7 +54,12 @@ public class PromotionAdminController {
         model.addAttribute("discountType", discountType);
         model.addAttribute("status", status);
         model.addAttribute("enabled", enabled);
-        model.addAttribute("campaigns", promotionService.searchCampaigns(keyword, discountType, status, enabled));
+        model.addAttribute("sort", sort);
+        model.addAttribute("size", pageSize);
+        model.addAttribute("campaignsPage", campaignsPage);
+        model.addAttribute("campaigns", campaignsPage.getContent());
+        model.addAttribute("currentPage", campaignsPage.getNumber() + 1);
+        model.addAttribute("totalPages", campaignsPage.getTotalPages());
         return "admin/promotion/campaign-list";
     }
 
@@ -54,6 +72,7 @@ public class PromotionAdminController {
         // Load vouchers của campaign này
         List<Voucher> vouchers = promotionService.getVouchersByCampaign(id);
         model.addAttribute("vouchers", vouchers);
+        model.addAttribute("generatedVoucherCount", promotionService.countGeneratedVouchers(id));
         
         return "admin/promotion/campaign-detail";
     }
@@ -194,13 +213,86 @@ public class PromotionAdminController {
         return "redirect:/admin/promotions/campaigns";
     }
 
+    /* ===== Sinh mã hàng loạt ===== */
+
+    /**
+     * Form sinh mã voucher hàng loạt cho chiến dịch + các lần sinh gần đây
+     */
+    @GetMapping("/campaigns/{id}/vouchers/generate")
+    public String generateVouchersForm(@PathVariable Long id, Model model) {
+        if (!model.containsAttribute("generation")) {
+            model.addAttribute("generation", new VoucherGenerationForm());
+        }
+        return generateVouchersPage(id, model);
+    }
+
+    @PostMapping("/campaigns/{id}/vouchers/generate")
+    public String generateVouchers(@PathVariable Long id,
+                                   @Valid @ModelAttribute("generation") VoucherGenerationForm form,
+                                   BindingResult bindingResult,
+                                   Model model,
+                                   RedirectAttributes redirectAttributes) {
+        if (bindingResult.hasErrors()) {
+            return generateVouchersPage(id, model);
+        }
+        try {
+            VoucherGenerationJob job = voucherGenerationService.startGeneration(id, form);
+            return "redirect:/admin/promotions/campaigns/" + id + "/vouchers/generate/" + job.getJobId();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            model.addAttribute("error", e.getMessage());
+            return generateVouchersPage(id, model);
+        }
+    }
+
+    /**
+     * Tiến độ của một lần sinh mã
+     */
+    @GetMapping("/campaigns/{id}/vouchers/generate/{jobId}")
+    public String viewGenerationJob(@PathVariable Long id, @PathVariable String jobId,
+                                    Model model, RedirectAttributes redirectAttributes) {
+        return voucherGenerationService.findJob(jobId)
+                .filter(job -> job.getCampaignId().equals(id))
+                .map(job -> {
+                    model.addAttribute("job", job);
+                    model.addAttribute("generation", new VoucherGenerationForm());
+                    return generateVouchersPage(id, model);
+                })
+                .orElseGet(() -> {
+                    redirectAttributes.addFlashAttribute("errorMessage", "Không tìm thấy lần sinh mã: " + jobId);
+                    return "redirect:/admin/promotions/campaigns/" + id + "/vouchers/generate";
+                });
+    }
+
+    @GetMapping("/campaigns/{id}/vouchers/generate/{jobId}/status")
+    @ResponseBody
+    public ResponseEntity<VoucherGenerationJob> generationJobStatus(@PathVariable Long id, @PathVariable String jobId) {
+        return ResponseEntity.of(voucherGenerationService.findJob(jobId)
+                .filter(job -> job.getCampaignId().equals(id)));
+    }
+
+    private String generateVouchersPage(Long campaignId, Model model) {
+        model.addAttribute("activeMenu", "promotions");
+        model.addAttribute("pageTitle", "Sinh mã voucher hàng loạt");
+        model.addAttribute("campaign", promotionService.getCampaign(campaignId));
+        model.addAttribute("generatedVoucherCount", promotionService.countGeneratedVouchers(campaignId));
+        model.addAttribute("jobs", voucherGenerationService.recentJobs(campaignId));
+        model.addAttribute("maxCount", VoucherGenerationForm.MAX_COUNT);
+        return "admin/promotion/voucher-generate";
+    }
+
     /* ===== Voucher ===== */
     @GetMapping("/vouchers")
     public String listVouchers(@RequestParam(required = false) String keyword,
                                @RequestParam(required = false) Long campaignId,
                                @RequestParam(required = false) String discountType,
                                @RequestParam(required = false) Boolean enabled,
+                               @RequestParam(defaultValue = "1") int page,
+                               @RequestParam(defaultValue = "20") int size,
+                               @RequestParam(required = false) String sort,
                                Model model) {
+        int pageSize = clampPageSize(size);
+        Page<Voucher> vouchersPage =
+                promotionService.searchVouchers(keyword, campaignId, discountType, enabled, page, pageSize, sort);
         model.addAttribute("activeMenu", "promotions");
         model.addAttribute("pageTitle", "Voucher");
         model.addAttribute("tab", "vouchers");
@@ -208,8 +300,13 @@ public class PromotionAdminController {
         model.addAttribute("campaignId", campaignId);
         model.addAttribute("discountType", discountType);
         model.addAttribute("enabled", enabled);
+        model.addAttribute("sort", sort);
+        model.addAttribute("size", pageSize);
         model.addAttribute("campaigns", promotionService.listCampaigns());
-        model.addAttribute("vouchers", promotionService.searchVouchers(keyword, campaignId, discountType, enabled));
+        model.addAttribute("vouchersPage", vouchersPage);
+        model.addAttribute("vouchers", vouchersPage.getContent());
+        model.addAttribute("currentPage", vouchersPage.getNumber() + 1);
+        model.addAttribute("totalPages", vouchersPage.getTotalPages());
         return "admin/promotion/voucher-list";
     }
 
@@ -217,6 +314,7 @@ public class PromotionAdminController {
     public String viewVoucher(@PathVariable Long id, Model model) {
         model.addAttribute("activeMenu", "promotions");
         model.addAttribute("voucher", promotionService.getVoucher(id));
+        model.addAttribute("redeemedCount", voucherRedemptionService.countRedeemed(id));
         return "admin/promotion/voucher-detail";
     }
 
@@ -236,6 +334,7 @@ public class PromotionAdminController {
             form.setStartDate(v.getStartDate());
             form.setEndDate(v.getEndDate());
             form.setMaxRedeemPerCustomer(v.getMaxRedeemPerCustomer());
+            form.setMaxRedemptions(v.getMaxRedemptions());
             form.setEnabled(v.getEnabled());
             form.setCampaignId(v.getCampaign().getCampaignId());
         }
@@ -310,4 +409,8 @@ public class PromotionAdminController {
         }
         return "redirect:/admin/promotions/vouchers";
     }
+
+    private static int clampPageSize(int size) {
+        return Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+    }
 }
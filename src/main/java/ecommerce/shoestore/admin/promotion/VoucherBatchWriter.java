@@ -0,0 +1,89 @@
+package ecommerce.shoestore.admin.promotion;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Ghi một lô mã voucher sinh hàng loạt bằng một câu INSERT (mảng mã qua unnest),
+ * không qua persistence context. Mã đã tồn tại (bị tạo ở nơi khác sau khi nạp
+ * Bloom filter) được bỏ qua bằng ON CONFLICT để cả lô không hỏng vì một mã trùng;
+ * RETURNING cho biết mã nào đã ghi (batch với reWriteBatchedInserts không trả số dòng từng mã).
+ */
+@Component
+@RequiredArgsConstructor
+class VoucherBatchWriter {
+
+    private static final String INSERT_VOUCHERS = """
+            INSERT INTO voucher (code, title, description, "discountType", "discountValue", "maxDiscountValue",
+                                 "minOrderValue", "startDate", "endDate", "maxRedeemPerCustomer", "maxRedemptions",
+                                 enabled, status, "campaignId", "bulkGenerated")
+            SELECT code, ?, ?, CAST(? AS voucher_discount_type), ?, ?, ?, ?, ?, ?, ?, ?, CAST(? AS voucher_status), ?, true
+            FROM unnest(?::text[]) AS code
+            ON CONFLICT (code) DO NOTHING
+            RETURNING code
+            """;
+
+    private static final int CODE_FETCH_SIZE = 10_000;
+
+    /** Các giá trị chung của cả lần sinh (theo quy tắc của chiến dịch) */
+    record Template(String title, String description, String discountType, BigDecimal discountValue,
+                    BigDecimal maxDiscountValue, BigDecimal minOrderValue, LocalDate startDate, LocalDate endDate,
+                    Long maxRedeemPerCustomer, Long maxRedemptions, boolean enabled, String status,
+                    Long campaignId) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Đọc dần toàn bộ mã hiện có (cursor theo lô, không nạp cả bảng vào bộ nhớ) */
+    @Transactional(readOnly = true)
+    public void forEachExistingCode(Consumer<String> consumer) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT code FROM voucher");
+            ps.setFetchSize(CODE_FETCH_SIZE);
+            return ps;
+        }, rs -> {
+            consumer.accept(rs.getString(1));
+        });
+    }
+
+    /**
+     * @return các mã không ghi được vì đã tồn tại (cần sinh mã khác thay thế)
+     */
+    @Transactional
+    public List<String> write(Template template, List<String> codes) {
+        Set<String> inserted = new HashSet<>(jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_VOUCHERS);
+            ps.setString(1, template.title());
+            ps.setString(2, template.description());
+            ps.setString(3, template.discountType());
+            ps.setBigDecimal(4, template.discountValue());
+            ps.setBigDecimal(5, template.maxDiscountValue());
+            ps.setBigDecimal(6, template.minOrderValue());
+            ps.setDate(7, Date.valueOf(template.startDate()));
+            ps.setDate(8, Date.valueOf(template.endDate()));
+            ps.setObject(9, template.maxRedeemPerCustomer(), Types.BIGINT);
+            ps.setObject(10, template.maxRedemptions(), Types.BIGINT);
+            ps.setBoolean(11, template.enabled());
+            ps.setString(12, template.status());
+            ps.setLong(13, template.campaignId());
+            ps.setArray(14, con.createArrayOf("text", codes.toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getString(1)));
+        if (inserted.size() == codes.size()) {
+            return List.of();
+        }
+        return codes.stream().filter(code -> !inserted.contains(code)).toList();
+    }
+}
@@ -0,0 +1,74 @@
+package ecommerce.shoestore.admin.promotion;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Trạng thái một lần sinh mã voucher hàng loạt (đọc bởi trang tiến độ).
+ */
+@Getter
+public class VoucherGenerationJob {
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    private final String jobId = UUID.randomUUID().toString();
+    private final Long campaignId;
+    private final String campaignName;
+    private final int requested;
+    private final String prefix;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private volatile LocalDateTime finishedAt;
+    private volatile Status status = Status.RUNNING;
+    private volatile String failureMessage;
+
+    private final AtomicInteger generated = new AtomicInteger();
+    /** Mã sinh ra nhưng trùng với mã vừa được tạo ở nơi khác (ON CONFLICT), đã sinh mã khác thay thế */
+    private final AtomicInteger conflicts = new AtomicInteger();
+
+    VoucherGenerationJob(Long campaignId, String campaignName, int requested, String prefix) {
+        this.campaignId = campaignId;
+        this.campaignName = campaignName;
+        this.requested = requested;
+        this.prefix = prefix;
+    }
+
+    public int getGenerated() {
+        return generated.get();
+    }
+
+    public int getConflicts() {
+        return conflicts.get();
+    }
+
+    public int getProgressPercent() {
+        return requested == 0 ? 100 : (int) (100L * generated.get() / requested);
+    }
+
+    public boolean isRunning() {
+        return status == Status.RUNNING;
+    }
+
+    void inserted(int count) {
+        generated.addAndGet(count);
+    }
+
+    void conflicted(int count) {
+        conflicts.addAndGet(count);
+    }
+
+    void complete() {
+        status = Status.COMPLETED;
+        finishedAt = LocalDateTime.now();
+    }
+
+    void fail(String message) {
+        failureMessage = message;
+        status = Status.FAILED;
+        finishedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,83 @@
+package ecommerce.shoestore.admin.promotion;
+
+import ecommerce.shoestore.promotion.PromotionCampaign;
+import ecommerce.shoestore.promotion.PromotionService;
+import ecommerce.shoestore.promotion.dto.VoucherGenerationForm;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Sinh mã voucher hàng loạt cho một chiến dịch.
+ * Việc sinh và ghi chạy trong nền (VoucherGenerationTask); trạng thái các lần
+ * sinh gần nhất được giữ trong bộ nhớ để xem tiến độ.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VoucherGenerationService {
+
+    private static final int MAX_TRACKED_JOBS = 20;
+
+    private final PromotionService promotionService;
+    private final VoucherGenerationTask voucherGenerationTask;
+
+    private final Map<String, VoucherGenerationJob> jobs = Collections.synchronizedMap(
+            new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, VoucherGenerationJob> eldest) {
+                    return size() > MAX_TRACKED_JOBS;
+                }
+            });
+
+    public VoucherGenerationJob startGeneration(Long campaignId, VoucherGenerationForm form) {
+        PromotionCampaign campaign = promotionService.getCampaign(campaignId);
+        if (campaign.getEndDate().isBefore(LocalDate.now())) {
+            throw new IllegalStateException("Chiến dịch đã kết thúc, không thể sinh thêm mã");
+        }
+        if (campaign.getDiscountType() == null || campaign.getDiscountValue() == null) {
+            throw new IllegalStateException("Chiến dịch chưa có quy tắc giảm giá, không thể sinh mã");
+        }
+
+        String prefix = form.getPrefix() != null ? form.getPrefix().trim().toUpperCase(Locale.ROOT) : "";
+        VoucherGenerationJob job;
+        synchronized (jobs) {
+            boolean running = jobs.values().stream()
+                    .anyMatch(j -> j.isRunning() && j.getCampaignId().equals(campaignId));
+            if (running) {
+                throw new IllegalStateException("Chiến dịch đang có một lần sinh mã chưa xong");
+            }
+            job = new VoucherGenerationJob(campaignId, campaign.getName(), form.getCount(), prefix);
+            jobs.put(job.getJobId(), job);
+        }
+        log.info("Bắt đầu sinh {} mã voucher cho chiến dịch {}, job {}", form.getCount(), campaignId, job.getJobId());
+
+        voucherGenerationTask.run(job, campaign, form);
+        return job;
+    }
+
+    public Optional<VoucherGenerationJob> findJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /** Các lần sinh mã gần nhất của chiến dịch, mới nhất trước */
+    public List<VoucherGenerationJob> recentJobs(Long campaignId) {
+        List<VoucherGenerationJob> recent;
+        synchronized (jobs) {
+            recent = new ArrayList<>(jobs.values().stream()
+                    .filter(j -> j.getCampaignId().equals(campaignId))
+                    .toList());
+        }
+        Collections.reverse(recent);
+        return recent;
+    }
+}
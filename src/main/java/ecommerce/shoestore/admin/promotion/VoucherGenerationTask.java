@@ -0,0 +1,118 @@
+package ecommerce.shoestore.admin.promotion;
+
+import ecommerce.shoestore.common.BloomFilter;
+import ecommerce.shoestore.promotion.PromotionCampaign;
+import ecommerce.shoestore.promotion.Voucher;
+import ecommerce.shoestore.promotion.VoucherRepository;
+import ecommerce.shoestore.promotion.dto.VoucherGenerationForm;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chạy một lần sinh mã trong nền. Mã = tiền tố + phần ngẫu nhiên base32 (bảng chữ
+ * Crockford, bỏ I, L, O, U cho dễ đọc). Mọi mã đã có trong DB và mã vừa sinh được
+ * đưa vào Bloom filter: mã ứng viên mà filter báo "có thể đã có" bị bỏ và sinh lại,
+ * nên không cần hỏi DB cho từng mã. Trùng lặp còn sót (mã tạo ở nơi khác trong lúc
+ * chạy) do ON CONFLICT bắt và được sinh bù.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+class VoucherGenerationTask {
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final double FALSE_POSITIVE_RATE = 0.001;
+    /** Số lần sinh bù tối đa cho các mã bị ON CONFLICT bỏ qua */
+    private static final int MAX_RETRY_ROUNDS = 5;
+    /** Mã phát riêng: tổng cộng chỉ dùng được một lần, dù ai dùng */
+    static final long MAX_REDEMPTIONS_PER_CODE = 1;
+
+    private final VoucherBatchWriter voucherBatchWriter;
+    private final VoucherRepository voucherRepository;
+    private final SecureRandom random = new SecureRandom();
+
+    @Value("${admin.voucher-generation.chunk-size:5000}")
+    private int chunkSize;
+
+    @Async
+    public void run(VoucherGenerationJob job, PromotionCampaign campaign, VoucherGenerationForm form) {
+        try {
+            BloomFilter seen = new BloomFilter(voucherRepository.count() + job.getRequested(), FALSE_POSITIVE_RATE);
+            voucherBatchWriter.forEachExistingCode(seen::put);
+
+            VoucherBatchWriter.Template template = toTemplate(campaign, form);
+            int remaining = job.getRequested();
+            int retryRounds = 0;
+            while (remaining > 0) {
+                List<String> codes = new ArrayList<>(Math.min(chunkSize, remaining));
+                while (codes.size() < Math.min(chunkSize, remaining)) {
+                    String code = nextCode(job.getPrefix(), form.getRandomLength());
+                    if (!seen.mightContain(code)) {
+                        seen.put(code);
+                        codes.add(code);
+                    }
+                }
+                List<String> rejected = voucherBatchWriter.write(template, codes);
+                job.inserted(codes.size() - rejected.size());
+                remaining -= codes.size() - rejected.size();
+                if (!rejected.isEmpty()) {
+                    job.conflicted(rejected.size());
+                    if (++retryRounds > MAX_RETRY_ROUNDS) {
+                        throw new IllegalStateException("Quá nhiều mã bị trùng, hãy dùng tiền tố khác hoặc phần ngẫu nhiên dài hơn");
+                    }
+                }
+            }
+            job.complete();
+            log.info("Sinh mã cho chiến dịch {} xong: {} mã, {} mã trùng đã sinh lại",
+                    job.getCampaignId(), job.getGenerated(), job.getConflicts());
+        } catch (RuntimeException e) {
+            log.error("Sinh mã cho chiến dịch {} thất bại", job.getCampaignId(), e);
+            job.fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Mỗi mã kế thừa quy tắc của chiến dịch, như validateAndAdjustVouchersForCampaignDateChange.
+     * maxRedeemPerCustomer chỉ giới hạn lượt của từng khách nên mỗi mã còn có tổng giới hạn
+     * MAX_REDEMPTIONS_PER_CODE: mã bị lộ ra ngoài không dùng được cho khách thứ hai.
+     */
+    private VoucherBatchWriter.Template toTemplate(PromotionCampaign campaign, VoucherGenerationForm form) {
+        Voucher voucher = Voucher.builder()
+                .enabled(!Boolean.FALSE.equals(form.getEnabled()))
+                .startDate(campaign.getStartDate())
+                .endDate(campaign.getEndDate())
+                .build();
+        voucher.updateStatus();
+        return new VoucherBatchWriter.Template(
+                form.getTitle(),
+                form.getDescription(),
+                campaign.getDiscountType().name(),
+                campaign.getDiscountValue(),
+                campaign.getMaxDiscountAmount() != null ? campaign.getMaxDiscountAmount() : BigDecimal.ZERO,
+                campaign.getMinOrderValue() != null ? campaign.getMinOrderValue() : BigDecimal.ZERO,
+                campaign.getStartDate(),
+                campaign.getEndDate(),
+                form.getMaxRedeemPerCustomer(),
+                MAX_REDEMPTIONS_PER_CODE,
+                voucher.getEnabled(),
+                voucher.getStatus().name(),
+                campaign.getCampaignId());
+    }
+
+    private String nextCode(String prefix, int randomLength) {
+        char[] code = new char[prefix.length() + randomLength];
+        prefix.getChars(0, prefix.length(), code, 0);
+        for (int i = prefix.length(); i < code.length; i++) {
+            code[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(code);
+    }
+}
@@ -58,6 +58,7 @@ public class SecurityConfig {
                 ).permitAll()
                 // ADMIN
                 .requestMatchers("/admin/**").hasRole("ADMIN")
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 // Authentication required for other requests
                 .anyRequest().authenticated()
             )
@@ -12,6 +12,11 @@ public class EmailService {
 
     @Async
    public void sendEmail(String to, String subject, String body) {
+        sendEmailNow(to, subject, body);
+    }
+
+    // Gửi ngay trên luồng hiện tại (bên gọi đã chạy ở nền và cần biết lỗi)
+    public void sendEmailNow(String to, String subject, String body) {
         SimpleMailMessage message = new SimpleMailMessage();
         message.setTo(to);
         message.setSubject(subject);
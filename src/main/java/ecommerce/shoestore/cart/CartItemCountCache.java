@@ -0,0 +1,64 @@
+package ecommerce.shoestore.cart;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import ecommerce.shoestore.auth.user.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Số sản phẩm trong giỏ của từng user (badge giỏ hàng trên header).
+ *
+ * Chỉ truy vấn DB khi chưa có trong cache; CartService và việc tạo đơn
+ * cập nhật/xóa giá trị sau khi transaction commit thành công.
+ */
+@Component
+@RequiredArgsConstructor
+public class CartItemCountCache {
+
+    private final CartRepository cartRepository;
+
+    private final Cache<Long, Integer> counts = Caffeine.newBuilder()
+            .maximumSize(20_000)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    public int get(Long userId) {
+        return counts.get(userId, id -> {
+            User user = new User();
+            user.setUserId(id);
+            return cartRepository.countItemsByUser(user);
+        });
+    }
+
+    /**
+     * Cộng delta vào số đang cache (nếu có) sau khi commit
+     */
+    public void adjustAfterCommit(Long userId, int delta) {
+        afterCommit(() -> counts.asMap().computeIfPresent(userId, (id, count) -> Math.max(0, count + delta)));
+    }
+
+    /**
+     * Bỏ giá trị đang cache sau khi commit, lần xem trang sau sẽ đếm lại
+     */
+    public void evictAfterCommit(Long userId) {
+        afterCommit(() -> counts.invalidate(userId));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -21,6 +21,7 @@ public class CartService {
     private final CartRepository cartRepository;
     private final CartItemRepository cartItemRepository;
     private final ShoesVariantRepository shoesVariantRepository;
+    private final CartItemCountCache cartItemCountCache;
 
     // ================== ADD ITEM ==================
     @Transactional
@@ -55,6 +56,7 @@ public class CartService {
             }
             item.setQuantity(newQty);
         }
+        cartItemCountCache.adjustAfterCommit(user.getUserId(), quantity);
     }
 
     // ================== INCREASE ==================
@@ -79,6 +81,7 @@ public class CartService {
         }
 
         item.setQuantity(newQty);
+        cartItemCountCache.adjustAfterCommit(user.getUserId(), 1);
         return true;
     }
 
@@ -103,6 +106,7 @@ public class CartService {
         } else {
             item.setQuantity(newQty);
         }
+        cartItemCountCache.adjustAfterCommit(user.getUserId(), -1);
     }
 
     // ================== GET CART SUMMARY FOR VIEW ==================
@@ -0,0 +1,25 @@
+package ecommerce.shoestore.common;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * JdbcTemplate báo cho SqlStatementCounter mỗi câu lệnh nó tạo ra.
+ * applyStatementSettings được gọi đúng một lần cho mọi Statement/PreparedStatement
+ * của JdbcTemplate (kể cả batchUpdate) nên chỉ cần ghi đè chỗ này.
+ */
+public class CountingJdbcTemplate extends JdbcTemplate {
+
+    public CountingJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        SqlStatementCounter.record();
+        super.applyStatementSettings(stmt);
+    }
+}
@@ -0,0 +1,12 @@
+package ecommerce.shoestore.common;
+
+/**
+ * Request trùng khóa idempotency trong lúc lần gửi đầu vẫn đang được xử lý.
+ * Bên gọi nên đưa người dùng tới trang xem kết quả thay vì báo lỗi.
+ */
+public class IdempotencyInProgressException extends RuntimeException {
+
+    public IdempotencyInProgressException() {
+        super("Yêu cầu đang được xử lý, vui lòng thử lại sau");
+    }
+}
@@ -0,0 +1,74 @@
+package ecommerce.shoestore.common;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Bảng idempotency_key. Mỗi thao tác chạy trong transaction riêng để trạng thái
+ * khóa được thấy ngay bởi các request khác, không phụ thuộc transaction của bên gọi.
+ */
+@Component
+@RequiredArgsConstructor
+class IdempotencyKeyStore {
+
+    static final String COMPLETED = "COMPLETED";
+
+    record StoredKey(String status, String result) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Giành quyền xử lý khóa. Thành công nếu khóa chưa có, đã hết hạn, hoặc đang
+     * IN_PROGRESS quá lâu (request trước đã chết giữa chừng).
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean claim(String scope, Long userId, String key, long ttlSeconds, long inProgressTimeoutSeconds) {
+        return jdbcTemplate.update("""
+                INSERT INTO idempotency_key (scope, "userId", "idempotencyKey", status, "createdAt", "expiresAt")
+                VALUES (?, ?, ?, 'IN_PROGRESS', now(), now() + make_interval(secs => ?))
+                ON CONFLICT (scope, "userId", "idempotencyKey") DO UPDATE
+                SET status = 'IN_PROGRESS', result = NULL, "createdAt" = now(), "expiresAt" = EXCLUDED."expiresAt"
+                WHERE idempotency_key."expiresAt" < now()
+                   OR (idempotency_key.status = 'IN_PROGRESS'
+                       AND idempotency_key."createdAt" < now() - make_interval(secs => ?))
+                """, scope, userId, key, ttlSeconds, inProgressTimeoutSeconds) == 1;
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void complete(String scope, Long userId, String key, String result) {
+        jdbcTemplate.update("""
+                UPDATE idempotency_key SET status = 'COMPLETED', result = ?
+                WHERE scope = ? AND "userId" = ? AND "idempotencyKey" = ? AND status = 'IN_PROGRESS'
+                """, result, scope, userId, key);
+    }
+
+    /** Bỏ khóa của lần xử lý thất bại để lần gửi lại được xử lý như mới */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void release(String scope, Long userId, String key) {
+        jdbcTemplate.update("""
+                DELETE FROM idempotency_key
+                WHERE scope = ? AND "userId" = ? AND "idempotencyKey" = ? AND status = 'IN_PROGRESS'
+                """, scope, userId, key);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<StoredKey> find(String scope, Long userId, String key) {
+        List<StoredKey> rows = jdbcTemplate.query("""
+                SELECT status, result FROM idempotency_key
+                WHERE scope = ? AND "userId" = ? AND "idempotencyKey" = ? AND "expiresAt" >= now()
+                """, (rs, i) -> new StoredKey(rs.getString(1), rs.getString(2)), scope, userId, key);
+        return rows.stream().findFirst();
+    }
+
+    @Transactional
+    public int purgeExpired() {
+        return jdbcTemplate.update("DELETE FROM idempotency_key WHERE \"expiresAt\" < now()");
+    }
+}
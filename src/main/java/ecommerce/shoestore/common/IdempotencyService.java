@@ -0,0 +1,235 @@
+package ecommerce.shoestore.common;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Chống xử lý trùng cho các request tạo dữ liệu (đặt hàng, tạo thanh toán).
+ *
+ * Client gửi kèm một khóa (header Idempotency-Key hoặc field idempotencyKey của form).
+ * Lần đầu: chạy thao tác và lưu kết quả (view/redirect kèm các flash attribute dạng chuỗi,
+ * ví dụ "message"). Các lần gửi lại cùng khóa nhận lại đúng kết quả đó mà không chạy
+ * lại thao tác. Gửi lại khi lần đầu chưa xong (bấm đúp: trình duyệt bỏ response đầu, chỉ
+ * hiển thị response sau) thì chờ lần đầu xong tối đa idempotency.wait-ms rồi trả lại kết quả
+ * của nó; quá thời gian đó, hoặc lần đầu đang chạy ở instance khác, thì nhận
+ * IdempotencyInProgressException.
+ *
+ * - Bộ nhớ trong (Caffeine, giới hạn số khóa, hết hạn theo TTL): request trùng trên
+ *   cùng instance.
+ * - Bảng idempotency_key: dùng khi khóa đã bị đẩy khỏi bộ nhớ, sau khi khởi động lại,
+ *   hoặc khi request trùng rơi vào instance khác.
+ * Thao tác ném exception thì khóa bị bỏ, lần gửi lại được xử lý như mới.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    /** Kết quả được trả lại cho các lần gửi lại: view và các flash attribute dạng chuỗi */
+    record Outcome(String view, Map<String, String> flash) {
+    }
+
+    private final IdempotencyKeyStore store;
+    private final ObjectMapper objectMapper;
+    private final long ttlSeconds;
+    private final long inProgressTimeoutSeconds;
+    private final long waitMillis;
+    private final Cache<String, CompletableFuture<Outcome>> results;
+
+    public IdempotencyService(IdempotencyKeyStore store,
+                              ObjectMapper objectMapper,
+                              @Value("${idempotency.ttl-minutes:1440}") long ttlMinutes,
+                              @Value("${idempotency.in-progress-timeout-seconds:120}") long inProgressTimeoutSeconds,
+                              @Value("${idempotency.memory-max-keys:10000}") long memoryMaxKeys,
+                              @Value("${idempotency.wait-ms:5000}") long waitMillis) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.ttlSeconds = TimeUnit.MINUTES.toSeconds(ttlMinutes);
+        this.inProgressTimeoutSeconds = inProgressTimeoutSeconds;
+        this.waitMillis = waitMillis;
+        this.results = Caffeine.newBuilder()
+                .maximumSize(memoryMaxKeys)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+    }
+
+    /**
+     * Chạy action đúng một lần cho mỗi (scope, userId, key).
+     *
+     * @param key                khóa từ client; rỗng thì chạy action như bình thường
+     * @param redirectAttributes flash attribute action đã thêm được lưu cùng kết quả
+     *                           và được thêm lại khi trả kết quả cho lần gửi lại
+     * @param action             trả về kết quả cần trả lại cho các lần gửi lại (ví dụ "redirect:...")
+     * @throws IdempotencyInProgressException nếu lần gửi đầu với khóa này chưa xử lý xong
+     *                                        (sau khi đã chờ, nếu lần đầu chạy trên instance này)
+     */
+    public String execute(String scope, Long userId, String key, RedirectAttributes redirectAttributes,
+                          Supplier<String> action) {
+        if (!StringUtils.hasText(key)) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key không hợp lệ");
+        }
+
+        String cacheKey = scope + ':' + userId + ':' + key;
+        CompletableFuture<Outcome> mine = new CompletableFuture<>();
+        CompletableFuture<Outcome> existing = results.asMap().putIfAbsent(cacheKey, mine);
+        if (existing != null) {
+            log.info("Request trùng khóa {} ({}), trả lại kết quả lần đầu", key, scope);
+            return replay(awaitOutcome(existing), redirectAttributes);
+        }
+
+        try {
+            Optional<Outcome> stored = claimOrFindStored(scope, userId, key);
+            if (stored.isPresent()) {
+                log.info("Request trùng khóa {} ({}), trả lại kết quả đã lưu", key, scope);
+                mine.complete(stored.get());
+                return replay(stored.get(), redirectAttributes);
+            }
+        } catch (RuntimeException e) {
+            fail(cacheKey, mine, e);
+            throw e;
+        }
+
+        Outcome outcome;
+        try {
+            outcome = new Outcome(action.get(), stringFlashAttributes(redirectAttributes));
+        } catch (RuntimeException e) {
+            store.release(scope, userId, key);
+            fail(cacheKey, mine, e);
+            throw e;
+        }
+
+        // Chỉ ghi nhận kết quả khi dữ liệu của action đã commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        finish(scope, userId, key, mine, outcome);
+                    } else {
+                        store.release(scope, userId, key);
+                        fail(cacheKey, mine, new IllegalStateException("Yêu cầu trước đó không thành công, vui lòng thử lại"));
+                    }
+                }
+            });
+        } else {
+            finish(scope, userId, key, mine, outcome);
+        }
+        return outcome.view();
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        int purged = store.purgeExpired();
+        if (purged > 0) {
+            log.info("Đã xóa {} idempotency key hết hạn", purged);
+        }
+    }
+
+    /**
+     * @return kết quả đã lưu nếu khóa đã được xử lý xong; rỗng nếu request này giành được quyền xử lý
+     * @throws IdempotencyInProgressException nếu khóa đang được xử lý ở request/instance khác
+     */
+    private Optional<Outcome> claimOrFindStored(String scope, Long userId, String key) {
+        if (store.claim(scope, userId, key, ttlSeconds, inProgressTimeoutSeconds)) {
+            return Optional.empty();
+        }
+        Optional<IdempotencyKeyStore.StoredKey> stored = store.find(scope, userId, key);
+        if (stored.isPresent() && IdempotencyKeyStore.COMPLETED.equals(stored.get().status())) {
+            return Optional.of(readOutcome(stored.get().result()));
+        }
+        throw new IdempotencyInProgressException();
+    }
+
+    /**
+     * Kết quả của lần đầu, chờ tối đa waitMillis nếu lần đầu chưa xong (thời gian chờ có
+     * giới hạn để request trùng không giữ luồng xử lý lâu). Lần đầu thất bại thì ném lại lỗi của nó.
+     */
+    private Outcome awaitOutcome(CompletableFuture<Outcome> future) {
+        try {
+            return future.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyInProgressException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyInProgressException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static String replay(Outcome outcome, RedirectAttributes redirectAttributes) {
+        if (redirectAttributes != null) {
+            outcome.flash().forEach(redirectAttributes::addFlashAttribute);
+        }
+        return outcome.view();
+    }
+
+    private static Map<String, String> stringFlashAttributes(RedirectAttributes redirectAttributes) {
+        Map<String, String> flash = new LinkedHashMap<>();
+        if (redirectAttributes != null) {
+            redirectAttributes.getFlashAttributes().forEach((name, value) -> {
+                if (value instanceof String text) {
+                    flash.put(name, text);
+                }
+            });
+        }
+        return flash;
+    }
+
+    private void finish(String scope, Long userId, String key, CompletableFuture<Outcome> future, Outcome outcome) {
+        try {
+            store.complete(scope, userId, key, objectMapper.writeValueAsString(outcome));
+        } catch (JsonProcessingException | RuntimeException e) {
+            // Bản trong bộ nhớ vẫn chặn được request trùng trên instance này
+            log.warn("Không lưu được kết quả idempotency key {}: {}", key, e.getMessage());
+        }
+        future.complete(outcome);
+    }
+
+    /** Dòng lưu trước khi có flash attribute chỉ chứa tên view */
+    private Outcome readOutcome(String result) {
+        if (result == null || !result.startsWith("{")) {
+            return new Outcome(result, Map.of());
+        }
+        try {
+            Outcome outcome = objectMapper.readValue(result, Outcome.class);
+            return outcome.flash() != null ? outcome : new Outcome(outcome.view(), Map.of());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Kết quả idempotency đã lưu không đọc được", e);
+        }
+    }
+
+    private void fail(String cacheKey, CompletableFuture<Outcome> future, RuntimeException e) {
+        results.asMap().remove(cacheKey, future);
+        future.completeExceptionally(e);
+    }
+}
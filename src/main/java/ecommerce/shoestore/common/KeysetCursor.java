@@ -0,0 +1,83 @@
+package ecommerce.shoestore.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Function;
+
+/**
+ * Vị trí con trỏ cho phân trang keyset (seek): kiểu sắp xếp đã tạo ra cursor,
+ * giá trị khóa sắp xếp của dòng cuối cùng đã trả về và id của dòng đó (khóa phụ
+ * để thứ tự luôn ổn định). Được mã hóa base64url để đặt thẳng lên URL (?cursor=...).
+ *
+ * Cursor đến từ URL nên có thể cũ (người dùng đổi kiểu sắp xếp) hoặc bị sửa:
+ * nơi dùng phải kiểm tra bằng forSort() và đọc giá trị qua sortValueAs().
+ */
+public record KeysetCursor(String sortKey, String sortValue, Long id) {
+
+    private static final char SEPARATOR = '|';
+
+    public String encode() {
+        String raw = sortKey + SEPARATOR + (sortValue != null ? sortValue : "") + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return chính cursor này nếu được tạo cho kiểu sắp xếp expectedSortKey,
+     *         null (= trang đầu) nếu là cursor của kiểu sắp xếp khác
+     */
+    public KeysetCursor forSort(String expectedSortKey) {
+        return expectedSortKey.equals(sortKey) ? this : null;
+    }
+
+    /**
+     * Đọc giá trị khóa sắp xếp.
+     *
+     * @return null nếu cursor không có giá trị hoặc giá trị không đọc được
+     */
+    public <T> T sortValueAs(Function<String, T> parser) {
+        if (sortValue == null) {
+            return null;
+        }
+        try {
+            return parser.apply(sortValue);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Như decode() nhưng cursor hỏng/giả mạo được coi là trang đầu thay vì báo lỗi
+     */
+    public static KeysetCursor decodeOrFirstPage(String token) {
+        try {
+            return decode(token);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return null nếu token rỗng (= trang đầu tiên)
+     * @throws IllegalArgumentException nếu token không hợp lệ
+     */
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // Khóa sắp xếp không chứa '|', giá trị thì có thể (tên sản phẩm)
+            int keyEnd = raw.indexOf(SEPARATOR);
+            int idStart = raw.lastIndexOf(SEPARATOR);
+            if (keyEnd <= 0 || keyEnd == idStart) {
+                throw new IllegalArgumentException("Thiếu khóa sắp xếp");
+            }
+            String value = raw.substring(keyEnd + 1, idStart);
+            Long id = Long.valueOf(raw.substring(idStart + 1));
+            return new KeysetCursor(raw.substring(0, keyEnd), value.isEmpty() ? null : value, id);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor phân trang không hợp lệ", e);
+        }
+    }
+}
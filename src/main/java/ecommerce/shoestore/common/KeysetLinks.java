@@ -0,0 +1,34 @@
+package ecommerce.shoestore.common;
+
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponents;
+
+/**
+ * Tạo link "trang sau" / "trang đầu" cho phân trang keyset: giữ nguyên các
+ * tham số lọc của request hiện tại, chỉ thay tham số cursor.
+ */
+public final class KeysetLinks {
+
+    private KeysetLinks() {
+    }
+
+    /**
+     * @return URL tương đối (path + query), null nếu không còn trang sau
+     */
+    public static String nextPageUrl(String nextCursor) {
+        if (nextCursor == null) {
+            return null;
+        }
+        UriComponents uri = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("cursor", nextCursor)
+                .build();
+        return uri.getPath() + "?" + uri.getQuery();
+    }
+
+    /**
+     * Link về trang đầu của chế độ cursor (cursor rỗng)
+     */
+    public static String firstPageUrl() {
+        return nextPageUrl("");
+    }
+}
@@ -0,0 +1,36 @@
+package ecommerce.shoestore.common;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Một trang kết quả phân trang keyset.
+ *
+ * @param nextCursor  cursor của trang kế tiếp, null nếu đã hết dữ liệu
+ * @param totalItems  tổng số dòng, null nếu không yêu cầu đếm
+ */
+public record KeysetPage<T>(List<T> content, String nextCursor, Long totalItems) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public <R> KeysetPage<R> map(Function<? super T, ? extends R> mapper) {
+        List<R> mapped = content.stream().<R>map(mapper).toList();
+        return new KeysetPage<>(mapped, nextCursor, totalItems);
+    }
+
+    /**
+     * Dựng trang từ kết quả đã lấy dư 1 dòng (limit = size + 1):
+     * có dòng dư nghĩa là còn trang sau.
+     */
+    public static <T> KeysetPage<T> of(List<T> rowsPlusOne, int size,
+                                       Function<T, KeysetCursor> cursorOf, Long totalItems) {
+        if (rowsPlusOne.size() <= size) {
+            return new KeysetPage<>(rowsPlusOne, null, totalItems);
+        }
+        List<T> content = rowsPlusOne.subList(0, size);
+        String next = cursorOf.apply(content.get(size - 1)).encode();
+        return new KeysetPage<>(List.copyOf(content), next, totalItems);
+    }
+}
@@ -0,0 +1,25 @@
+package ecommerce.shoestore.common;
+
+/**
+ * Đưa chuỗi người dùng nhập vào mẫu LIKE: thoát \, % và _ để chúng được so khớp
+ * đúng ký tự (dùng kèm ESCAPE '\').
+ */
+public final class LikePatterns {
+
+    public static final char ESCAPE = '\\';
+
+    private LikePatterns() {
+    }
+
+    public static String escape(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 4);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ESCAPE || c == '%' || c == '_') {
+                sb.append(ESCAPE);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,86 @@
+package ecommerce.shoestore.common;
+
+import ecommerce.shoestore.cart.CartItemCountCache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.ui.ModelMap;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.view.RedirectView;
+
+/**
+ * Tự động thêm thông tin session vào tất cả các view
+ * Không cần lặp lại code xử lý login ở mỗi controller
+ *
+ * Chạy sau handler (postHandle) và chỉ xử lý handler trả về view được render.
+ * Bỏ qua (xem rendersView):
+ * - handler không phải method của controller (tài nguyên tĩnh, ...)
+ * - method/controller có @ResponseBody (kể cả @RestController): body đã được ghi
+ * - không có ModelAndView (handler tự ghi response)
+ * - redirect ("redirect:..." hoặc RedirectView): thuộc tính model sẽ bị đưa lên URL
+ * Số sản phẩm trong giỏ lấy từ CartItemCountCache, không truy vấn DB mỗi request.
+ */
+@Component
+@RequiredArgsConstructor
+public class SessionModelInterceptor implements HandlerInterceptor {
+
+    private final CartItemCountCache cartItemCountCache;
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response,
+                           Object handler, ModelAndView modelAndView) {
+        if (!rendersView(handler, modelAndView)) {
+            return;
+        }
+        HttpSession session = request.getSession(false);
+        addSessionAttributes(session, modelAndView.getModelMap());
+    }
+
+    private void addSessionAttributes(HttpSession session, ModelMap model) {
+        String fullname = session != null ? (String) session.getAttribute("FULLNAME") : null;
+
+        if (fullname != null) {
+            model.putIfAbsent("isLoggedIn", true);
+            model.putIfAbsent("fullname", fullname);
+            model.putIfAbsent("role", session.getAttribute("ROLE"));
+            model.putIfAbsent("avatar", session.getAttribute("AVATAR"));
+
+            // Thêm số lượng sản phẩm trong giỏ hàng
+            Long userId = (Long) session.getAttribute("USER_ID");
+            if (userId != null) {
+                model.putIfAbsent("cartItemCount", cartItemCountCache.get(userId));
+            }
+        } else {
+            model.putIfAbsent("isLoggedIn", false);
+            model.putIfAbsent("cartItemCount", 0);
+        }
+    }
+
+    static boolean rendersView(Object handler, ModelAndView modelAndView) {
+        if (!(handler instanceof HandlerMethod handlerMethod) || isResponseBody(handlerMethod)) {
+            return false;
+        }
+        return modelAndView != null && !isRedirect(modelAndView);
+    }
+
+    private static boolean isResponseBody(HandlerMethod handlerMethod) {
+        return handlerMethod.hasMethodAnnotation(ResponseBody.class)
+                || AnnotatedElementUtils.hasAnnotation(handlerMethod.getBeanType(), ResponseBody.class);
+    }
+
+    private static boolean isRedirect(ModelAndView modelAndView) {
+        String viewName = modelAndView.getViewName();
+        if (viewName != null) {
+            return viewName.startsWith("redirect:");
+        }
+        View view = modelAndView.getView();
+        return view instanceof RedirectView;
+    }
+}
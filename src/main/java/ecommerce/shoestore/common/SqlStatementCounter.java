@@ -0,0 +1,55 @@
+package ecommerce.shoestore.common;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Đếm số câu lệnh SQL mà luồng hiện tại gửi xuống DB trong một phạm vi đo
+ * (hiện chỉ có transaction đặt hàng, xem CheckoutMetrics).
+ *
+ * Chỉ gắn vào hai đường gửi SQL của ứng dụng, không bọc DataSource/Connection:
+ * - Hibernate (JPA, native query): StatementInspector, đăng ký bằng
+ *   spring.jpa.properties.hibernate.session_factory.statement_inspector
+ * - JdbcTemplate: CountingJdbcTemplate
+ * Mỗi lần prepare một câu lệnh tính là một, một JDBC batch cũng chỉ tính là một.
+ * Ngoài phạm vi đo thì không đếm gì, chi phí chỉ là một lần đọc ThreadLocal.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Bắt đầu đếm cho luồng hiện tại.
+     *
+     * @return false nếu luồng đang ở trong một phạm vi đo khác (phạm vi ngoài giữ nguyên)
+     */
+    public static boolean start() {
+        if (CURRENT.get() != null) {
+            return false;
+        }
+        CURRENT.set(new int[1]);
+        return true;
+    }
+
+    /**
+     * Kết thúc phạm vi đo và trả về số câu lệnh đã gửi (0 nếu chưa start)
+     */
+    public static int stop() {
+        int[] counter = CURRENT.get();
+        CURRENT.remove();
+        return counter == null ? 0 : counter[0];
+    }
+
+    /** Ghi nhận một câu lệnh nếu luồng hiện tại đang được đo */
+    static void record() {
+        int[] counter = CURRENT.get();
+        if (counter != null) {
+            counter[0]++;
+        }
+    }
+
+    @Override
+    public String inspect(String sql) {
+        record();
+        return sql;
+    }
+}
@@ -0,0 +1,19 @@
+package ecommerce.shoestore.common;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final SessionModelInterceptor sessionModelInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(sessionModelInterceptor)
+                .excludePathPatterns("/css/**", "/js/**", "/images/**", "/api/**");
+    }
+}
@@ -6,15 +6,17 @@ import ecommerce.shoestore.shoes.ShoesRepository;
 import ecommerce.shoestore.shoesvariant.ShoesVariant;
 import ecommerce.shoestore.shoesvariant.ShoesVariantRepository;
 import ecommerce.shoestore.shoes.Shoes;
-import ecommerce.shoestore.order.OrderItem;
+import ecommerce.shoestore.shoes.ShoesChangedEvent;
 import io.micrometer.common.util.StringUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +28,7 @@ public class InventoryService {
     private final InventoryRepository inventoryRepository;
     private final ShoesRepository shoesRepository;
     private final ShoesVariantRepository shoesVariantRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public Page<InventoryResponseDto> getAllInventory(String keyword, InventoryStatus status, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
@@ -114,27 +117,13 @@ public class InventoryService {
         }
         inventoryRepository.save(inventory);
     }
+    /**
+     * Tính lại tổng tồn kho theo biến thể cho các sản phẩm (xem StockChangeBuffer)
+     */
     @Transactional
-    public void restoreStock(List<OrderItem> items){
-        if (items == null || items.isEmpty()) return;
-        for (OrderItem item : items){
-            Inventory inventory = inventoryRepository.findByShoeId(item.getShoeId()).orElse(null);
-            if (inventory != null){
-                long currentQty = inventory.getQuantity() != null ? inventory.getQuantity() : 0;
-                long newQty = currentQty + item.getQuantity();
-                inventory.setQuantity(newQty);
-                inventory.setType(InventoryTransaction.RETURN);
-                inventory.setNote("Hoàn kho do huỷ đơn hàng");
-                inventory.setUpdateAt(LocalDateTime.now());
-                if (newQty == 0){
-                    inventory.setStatus(InventoryStatus.OUT_OF_STOCK);
-                }else if (newQty <= 5){
-                    inventory.setStatus(InventoryStatus.ALMOST_OUT_OF_STOCK);
-                }else{
-                    inventory.setStatus(InventoryStatus.IN_STOCK);
-                }
-                inventoryRepository.save(inventory);
-            }
+    public void syncInventoryTotals(Collection<Long> shoeIds) {
+        for (Long shoeId : shoeIds) {
+            syncInventoryFromVariant(shoeId);
         }
     }
     public List<Map<String, Object>> getVariantsForDropdown(Long shoeId) {
@@ -165,6 +154,7 @@ public class InventoryService {
         }
         shoesVariantRepository.save(variant);
         syncInventoryFromVariant(variant.getShoes().getShoeId());
+        eventPublisher.publishEvent(ShoesChangedEvent.of(variant.getShoes().getShoeId()));
     }
     private void syncInventoryFromVariant(Long shoeId) {
         // Gọi sang hàm chính với type và note là null
@@ -0,0 +1,11 @@
+package ecommerce.shoestore.inventory;
+
+/**
+ * Không đủ tồn kho để giữ hàng cho đơn
+ */
+public class OutOfStockException extends RuntimeException {
+
+    public OutOfStockException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,70 @@
+package ecommerce.shoestore.inventory;
+
+import ecommerce.shoestore.shoes.ShoesChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gom các sản phẩm vừa đổi tồn kho do đặt/huỷ đơn rồi cập nhật bảng inventory,
+ * product_listing và cache theo lô định kỳ.
+ *
+ * Không làm ngay trong transaction đặt hàng: với sản phẩm bán chạy, mỗi lần
+ * refresh sẽ khóa thêm dòng product_listing/inventory và các đơn phải xếp hàng chờ nhau.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StockChangeBuffer {
+
+    private final InventoryService inventoryService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    /** Ghi nhận sau khi transaction hiện tại commit (bỏ qua nếu rollback) */
+    public void markChanged(Collection<Long> shoeIds) {
+        if (shoeIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            pending.addAll(shoeIds);
+            return;
+        }
+        List<Long> ids = List.copyOf(shoeIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pending.addAll(ids);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.stock-sync-interval-ms:5000}")
+    @Transactional
+    public void flush() {
+        List<Long> shoeIds = new ArrayList<>();
+        for (Iterator<Long> it = pending.iterator(); it.hasNext(); ) {
+            shoeIds.add(it.next());
+            it.remove();
+        }
+        if (shoeIds.isEmpty()) {
+            return;
+        }
+        inventoryService.syncInventoryTotals(shoeIds);
+        eventPublisher.publishEvent(new ShoesChangedEvent(shoeIds));
+        log.debug("Đã đồng bộ tồn kho cho {} sản phẩm", shoeIds.size());
+    }
+}
@@ -0,0 +1,249 @@
+package ecommerce.shoestore.inventory;
+
+import ecommerce.shoestore.shoesvariant.ShoesVariant;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+/**
+ * Trừ/hoàn tồn kho theo biến thể và ghi sổ giữ hàng (stock_reservation).
+ * Mọi thao tác là một câu lệnh có điều kiện, không đọc-rồi-ghi.
+ *
+ * Các câu UPDATE ... RETURNING (tryDecrementAll, releaseOrder, releaseExpired, reacquireAll) trả về
+ * dòng nên không dùng @Modifying được (executeUpdate không nhận result set), và cũng
+ * không thể clearAutomatically vì bên gọi còn giữ Order đang được quản lý.
+ * Thay vào đó:
+ * - Hibernate tự flush toàn bộ persistence context trước mọi native query (flush mode AUTO);
+ * - các câu này trả về variantId đã đổi để StockReservationService gỡ đúng các
+ *   ShoesVariant đó khỏi persistence context (không đọc/ghi lại stock cũ).
+ */
+public interface StockReservationRepository extends Repository<ShoesVariant, Long> {
+
+    /**
+     * Trừ tồn kho nếu còn đủ. Trả về 0 nếu không đủ hàng (không có gì bị thay đổi).
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE shoes_variant
+            SET stock = stock - :quantity
+            WHERE "variantId" = :variantId
+              AND stock >= :quantity
+            """, nativeQuery = true)
+    int tryDecrement(@Param("variantId") Long variantId, @Param("quantity") int quantity);
+
+    /**
+     * Khóa các dòng biến thể theo thứ tự variantId (hai đơn chéo nhau không deadlock).
+     * Trả về các variantId còn tồn tại.
+     */
+    @Query(value = """
+            SELECT "variantId" FROM shoes_variant
+            WHERE "variantId" = ANY(CAST(:variantIds AS bigint[]))
+            ORDER BY "variantId"
+            FOR UPDATE
+            """, nativeQuery = true)
+    List<Long> lockVariants(@Param("variantIds") Long[] variantIds);
+
+    /**
+     * Trừ tồn kho cho cả đơn trong một câu lệnh; dòng nào không đủ hàng thì giữ nguyên.
+     * Trả về [variantId, shoeId] của các dòng đã trừ.
+     */
+    @Query(value = """
+            UPDATE shoes_variant v
+            SET stock = v.stock - l.quantity
+            FROM unnest(CAST(:variantIds AS bigint[]), CAST(:quantities AS int[])) AS l("variantId", quantity)
+            WHERE v."variantId" = l."variantId"
+              AND v.stock >= l.quantity
+            RETURNING v."variantId", v."shoeId"
+            """, nativeQuery = true)
+    List<Object[]> tryDecrementAll(@Param("variantIds") Long[] variantIds,
+                                   @Param("quantities") Integer[] quantities);
+
+    /**
+     * holdMinutes > 0: giữ có thời hạn (đơn chờ thanh toán online), 0: giữ đến khi đơn kết thúc
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO stock_reservation ("orderId", "variantId", quantity, status, "expiresAt")
+            SELECT :orderId, l."variantId", l.quantity, 'HELD',
+                   CASE WHEN :holdMinutes > 0 THEN now() + make_interval(mins => :holdMinutes) END
+            FROM unnest(CAST(:variantIds AS bigint[]), CAST(:quantities AS int[])) AS l("variantId", quantity)
+            """, nativeQuery = true)
+    int insertHolds(@Param("orderId") Long orderId,
+                    @Param("variantIds") Long[] variantIds,
+                    @Param("quantities") Integer[] quantities,
+                    @Param("holdMinutes") int holdMinutes);
+
+    /**
+     * Hoàn kho các dòng đang giữ của đơn (kèm các dòng đã chốt nếu includeCommitted)
+     * trong một câu lệnh. Trả về [variantId, shoeId] của các biến thể có tồn kho thay đổi.
+     */
+    @Query(value = """
+            WITH released AS (
+                UPDATE stock_reservation
+                SET status = 'RELEASED', "expiresAt" = NULL, "releasedAt" = now()
+                WHERE "orderId" = :orderId
+                  AND (status = 'HELD' OR (:includeCommitted AND status = 'COMMITTED'))
+                RETURNING "variantId", quantity
+            ), restored AS (
+                UPDATE shoes_variant v
+                SET stock = v.stock + r.quantity
+                FROM (SELECT "variantId", SUM(quantity) AS quantity FROM released GROUP BY "variantId") r
+                WHERE v."variantId" = r."variantId"
+                RETURNING v."variantId", v."shoeId"
+            )
+            SELECT "variantId", "shoeId" FROM restored
+            """, nativeQuery = true)
+    List<Object[]> releaseOrder(@Param("orderId") Long orderId, @Param("includeCommitted") boolean includeCommitted);
+
+    /**
+     * Hoàn kho mọi dòng giữ đã quá hạn (đơn VNPay không thanh toán kịp).
+     * Trả về [variantId, shoeId] như releaseOrder.
+     */
+    @Query(value = """
+            WITH released AS (
+                UPDATE stock_reservation
+                SET status = 'RELEASED', "expiresAt" = NULL, "releasedAt" = now()
+                WHERE status = 'HELD'
+                  AND "expiresAt" < now()
+                RETURNING "variantId", quantity
+            ), restored AS (
+                UPDATE shoes_variant v
+                SET stock = v.stock + r.quantity
+                FROM (SELECT "variantId", SUM(quantity) AS quantity FROM released GROUP BY "variantId") r
+                WHERE v."variantId" = r."variantId"
+                RETURNING v."variantId", v."shoeId"
+            )
+            SELECT "variantId", "shoeId" FROM restored
+            """, nativeQuery = true)
+    List<Object[]> releaseExpired();
+
+    @Modifying
+    @Query(value = """
+            UPDATE stock_reservation
+            SET status = 'COMMITTED', "expiresAt" = NULL
+            WHERE "orderId" = :orderId
+              AND status = 'HELD'
+            """, nativeQuery = true)
+    int commitHeld(@Param("orderId") Long orderId);
+
+    @Modifying
+    @Query(value = """
+            UPDATE stock_reservation
+            SET "expiresAt" = now() + make_interval(mins => :holdMinutes)
+            WHERE "orderId" = :orderId
+              AND status = 'HELD'
+              AND "expiresAt" IS NOT NULL
+            """, nativeQuery = true)
+    int extendHeld(@Param("orderId") Long orderId, @Param("holdMinutes") int holdMinutes);
+
+    /**
+     * Các dòng đã hoàn kho của đơn: [reservationId, variantId, quantity]
+     */
+    @Query(value = """
+            SELECT "reservationId", "variantId", quantity
+            FROM stock_reservation
+            WHERE "orderId" = :orderId
+              AND status = 'RELEASED'
+            ORDER BY "variantId"
+            """, nativeQuery = true)
+    List<Object[]> findReleased(@Param("orderId") Long orderId);
+
+    @Modifying
+    @Query(value = """
+            UPDATE stock_reservation
+            SET status = :status,
+                "expiresAt" = CASE WHEN :holdMinutes > 0 THEN now() + make_interval(mins => :holdMinutes) END,
+                "releasedAt" = NULL
+            WHERE "reservationId" = :reservationId
+              AND status = 'RELEASED'
+            """, nativeQuery = true)
+    int reacquire(@Param("reservationId") Long reservationId,
+                  @Param("status") String status,
+                  @Param("holdMinutes") int holdMinutes);
+
+    /**
+     * Khóa (theo thứ tự variantId) các biến thể có dòng đã hoàn kho của các đơn
+     */
+    @Query(value = """
+            SELECT v."variantId" FROM shoes_variant v
+            WHERE v."variantId" IN (
+                SELECT "variantId" FROM stock_reservation
+                WHERE "orderId" = ANY(CAST(:orderIds AS bigint[]))
+                  AND status = 'RELEASED')
+            ORDER BY v."variantId"
+            FOR UPDATE
+            """, nativeQuery = true)
+    List<Long> lockReleasedVariants(@Param("orderIds") Long[] orderIds);
+
+    /**
+     * Các đơn không giữ lại được phần đã hoàn kho: cộng dồn nhu cầu theo biến thể
+     * (theo thứ tự orderId) vượt quá tồn kho. Đơn đứng sau một đơn thiếu hàng cũng
+     * bị tính thiếu nếu phần cộng dồn vượt tồn, kể cả khi riêng nó còn đủ.
+     */
+    @Query(value = """
+            WITH demand AS (
+                SELECT "orderId", "variantId", SUM(quantity) AS quantity
+                FROM stock_reservation
+                WHERE "orderId" = ANY(CAST(:orderIds AS bigint[]))
+                  AND status = 'RELEASED'
+                GROUP BY "orderId", "variantId"
+            ), running AS (
+                SELECT "orderId", "variantId",
+                       SUM(quantity) OVER (PARTITION BY "variantId" ORDER BY "orderId") AS needed
+                FROM demand
+            )
+            SELECT DISTINCT r."orderId"
+            FROM running r
+            LEFT JOIN shoes_variant v ON v."variantId" = r."variantId"
+            WHERE r.needed > COALESCE(v.stock, 0)
+            """, nativeQuery = true)
+    List<Long> findOrdersShortOfStock(@Param("orderIds") Long[] orderIds);
+
+    @Modifying
+    @Query(value = """
+            UPDATE stock_reservation
+            SET status = 'COMMITTED', "expiresAt" = NULL
+            WHERE "orderId" = ANY(CAST(:orderIds AS bigint[]))
+              AND status = 'HELD'
+            """, nativeQuery = true)
+    int commitHeldAll(@Param("orderIds") Long[] orderIds);
+
+    /**
+     * Giữ lại (đã chốt) mọi dòng đã hoàn kho của các đơn và trừ tồn kho trong một câu lệnh.
+     * Bên gọi phải khóa biến thể và loại các đơn thiếu hàng trước (findOrdersShortOfStock).
+     * Trả về [variantId, shoeId] như releaseOrder.
+     */
+    @Query(value = """
+            WITH reacquired AS (
+                UPDATE stock_reservation
+                SET status = 'COMMITTED', "expiresAt" = NULL, "releasedAt" = NULL
+                WHERE "orderId" = ANY(CAST(:orderIds AS bigint[]))
+                  AND status = 'RELEASED'
+                RETURNING "variantId", quantity
+            ), taken AS (
+                UPDATE shoes_variant v
+                SET stock = v.stock - r.quantity
+                FROM (SELECT "variantId", SUM(quantity) AS quantity FROM reacquired GROUP BY "variantId") r
+                WHERE v."variantId" = r."variantId"
+                RETURNING v."variantId", v."shoeId"
+            )
+            SELECT "variantId", "shoeId" FROM taken
+            """, nativeQuery = true)
+    List<Object[]> reacquireAll(@Param("orderIds") Long[] orderIds);
+
+    @Query(value = """
+            SELECT DISTINCT v."shoeId"
+            FROM stock_reservation r
+            JOIN shoes_variant v ON v."variantId" = r."variantId"
+            WHERE r."orderId" = :orderId
+            """, nativeQuery = true)
+    List<Long> findShoeIdsByOrder(@Param("orderId") Long orderId);
+
+    @Query(value = """
+            SELECT stock FROM shoes_variant WHERE "variantId" = :variantId
+            """, nativeQuery = true)
+    Integer findStock(@Param("variantId") Long variantId);
+}
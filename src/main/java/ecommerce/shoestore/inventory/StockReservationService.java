@@ -0,0 +1,220 @@
+package ecommerce.shoestore.inventory;
+
+import ecommerce.shoestore.order.OrderStatus;
+import ecommerce.shoestore.shoesvariant.ShoesVariant;
+import ecommerce.shoestore.shoesvariant.ShoesVariantRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Giữ hàng cho đơn: trừ shoes_variant.stock bằng UPDATE có điều kiện
+ * (stock >= số lượng) nên hai đơn cùng lúc không thể bán quá số tồn.
+ *
+ * - Đơn COD/chuyển khoản: giữ đến khi đơn bị huỷ.
+ * - Đơn VNPay: giữ có thời hạn (inventory.reservation.payment-hold-minutes);
+ *   hết hạn hoặc thanh toán thất bại thì hoàn kho, thanh toán lại thì giữ lại.
+ * - Đơn được thanh toán / xác nhận: chốt giữ hàng (bỏ thời hạn).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationService {
+
+    private static final String COMMITTED = "COMMITTED";
+    private static final String HELD = "HELD";
+
+    private final StockReservationRepository stockReservationRepository;
+    private final ShoesVariantRepository shoesVariantRepository;
+    private final StockChangeBuffer stockChangeBuffer;
+    private final EntityManager entityManager;
+
+    @Value("${inventory.reservation.payment-hold-minutes:15}")
+    private int paymentHoldMinutes;
+
+    /**
+     * Giữ hàng cho đơn vừa tạo, trong transaction tạo đơn.
+     * Nên gọi ở cuối transaction: dòng shoes_variant bị khóa từ lúc trừ đến lúc commit,
+     * gọi càng muộn thì các đơn cùng sản phẩm càng ít phải chờ nhau.
+     *
+     * @param quantities      số lượng theo variantId (đã gộp nếu cùng biến thể)
+     * @param awaitingPayment true nếu đơn chờ thanh toán online → giữ có thời hạn
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reserve(Long orderId, Map<Long, Integer> quantities, boolean awaitingPayment) {
+        int holdMinutes = awaitingPayment ? paymentHoldMinutes : 0;
+        Long[] variantIds = quantities.keySet().toArray(Long[]::new);
+        Integer[] lineQuantities = new Integer[variantIds.length];
+        for (int i = 0; i < variantIds.length; i++) {
+            lineQuantities[i] = quantities.get(variantIds[i]);
+        }
+
+        // Số câu lệnh không phụ thuộc số dòng của đơn: khóa, trừ, ghi giữ hàng
+        stockReservationRepository.lockVariants(variantIds);
+        List<Object[]> decremented = stockReservationRepository.tryDecrementAll(variantIds, lineQuantities);
+        if (decremented.size() < variantIds.length) {
+            Set<Long> done = new HashSet<>();
+            decremented.forEach(row -> done.add(((Number) row[0]).longValue()));
+            Long failed = new TreeMap<>(quantities).keySet().stream()
+                    .filter(id -> !done.contains(id))
+                    .findFirst()
+                    .orElseThrow();
+            // Các dòng đã trừ được hoàn lại khi transaction tạo đơn rollback
+            throw outOfStock(failed);
+        }
+        stockReservationRepository.insertHolds(orderId, variantIds, lineQuantities, holdMinutes);
+        stockChangeBuffer.markChanged(changedShoeIds(decremented));
+    }
+
+    /**
+     * Đơn đổi trạng thái: huỷ → hoàn kho, xác nhận → chốt giữ hàng.
+     * Gọi cùng chỗ với SalesCounterService.onOrderStatusChanged.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onOrderStatusChanged(Long orderId, OrderStatus newStatus) {
+        if (newStatus == OrderStatus.CANCELLED) {
+            release(orderId, true);
+        } else if (newStatus == OrderStatus.CONFIRMED) {
+            commit(orderId);
+        }
+    }
+
+    /**
+     * Xác nhận cả lô đơn (bên gọi đã khóa các đơn): chốt giữ hàng và giữ lại phần đã hoàn kho
+     * bằng một số câu lệnh cố định, không phụ thuộc số đơn. Đơn không đủ hàng để giữ lại
+     * thì không bị thay đổi gì.
+     *
+     * @return các orderId không đủ hàng (bên gọi bỏ qua, không chuyển trạng thái)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Set<Long> commitOrders(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Set.of();
+        }
+        Long[] ids = orderIds.toArray(Long[]::new);
+        stockReservationRepository.lockReleasedVariants(ids);
+        Set<Long> shortOfStock = new HashSet<>(stockReservationRepository.findOrdersShortOfStock(ids));
+        Long[] accepted = orderIds.stream().filter(id -> !shortOfStock.contains(id)).toArray(Long[]::new);
+        if (accepted.length > 0) {
+            stockReservationRepository.commitHeldAll(accepted);
+            stockChangeBuffer.markChanged(changedShoeIds(stockReservationRepository.reacquireAll(accepted)));
+        }
+        return shortOfStock;
+    }
+
+    /**
+     * Thanh toán thành công. Chạy trong transaction riêng: nếu hàng đã bị hoàn kho
+     * (thanh toán về sau khi hết hạn giữ) và không còn đủ, OutOfStockException chỉ
+     * huỷ phần giữ hàng, việc ghi nhận thanh toán của bên gọi vẫn được commit.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void confirmPayment(Long orderId) {
+        commit(orderId);
+    }
+
+    /**
+     * Tạo lại link thanh toán: gia hạn giữ hàng, hoặc giữ lại nếu đã bị hoàn kho.
+     * Transaction riêng để OutOfStockException không làm hỏng transaction của bên gọi.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void holdForPayment(Long orderId) {
+        stockReservationRepository.extendHeld(orderId, paymentHoldMinutes);
+        reacquireReleased(orderId, HELD, paymentHoldMinutes);
+    }
+
+    /**
+     * Thanh toán thất bại: trả lại phần đang giữ (phần đã chốt không bị ảnh hưởng).
+     */
+    @Transactional
+    public void releaseHold(Long orderId) {
+        release(orderId, false);
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.reservation.sweep-interval-ms:60000}")
+    @Transactional
+    public void releaseExpiredHolds() {
+        List<Long> shoeIds = changedShoeIds(stockReservationRepository.releaseExpired());
+        if (!shoeIds.isEmpty()) {
+            log.info("Hoàn kho giữ hàng quá hạn thanh toán cho {} sản phẩm", shoeIds.size());
+            stockChangeBuffer.markChanged(shoeIds);
+        }
+    }
+
+    /** Bỏ thời hạn giữ; giữ lại phần đã bị hoàn kho (báo lỗi nếu không còn đủ hàng) */
+    private void commit(Long orderId) {
+        stockReservationRepository.commitHeld(orderId);
+        reacquireReleased(orderId, COMMITTED, 0);
+    }
+
+    private void release(Long orderId, boolean includeCommitted) {
+        List<Long> shoeIds = changedShoeIds(stockReservationRepository.releaseOrder(orderId, includeCommitted));
+        stockChangeBuffer.markChanged(shoeIds);
+    }
+
+    private void reacquireReleased(Long orderId, String status, int holdMinutes) {
+        List<Object[]> released = stockReservationRepository.findReleased(orderId);
+        if (released.isEmpty()) {
+            return;
+        }
+        for (Object[] row : released) {
+            Long reservationId = ((Number) row[0]).longValue();
+            Long variantId = ((Number) row[1]).longValue();
+            int quantity = ((Number) row[2]).intValue();
+            decrementOrThrow(variantId, quantity);
+            stockReservationRepository.reacquire(reservationId, status, holdMinutes);
+        }
+        stockChangeBuffer.markChanged(stockReservationRepository.findShoeIdsByOrder(orderId));
+    }
+
+    private void decrementOrThrow(Long variantId, int quantity) {
+        if (stockReservationRepository.tryDecrement(variantId, quantity) != 1) {
+            throw outOfStock(variantId);
+        }
+        evictVariant(variantId);
+    }
+
+    /**
+     * Các dòng [variantId, shoeId] vừa đổi tồn kho bằng SQL: gỡ ShoesVariant tương ứng
+     * khỏi persistence context để không đọc, hay ghi đè lại, giá trị stock cũ.
+     *
+     * @return các shoeId (không trùng) có tồn kho thay đổi
+     */
+    private List<Long> changedShoeIds(List<Object[]> rows) {
+        Set<Long> shoeIds = new LinkedHashSet<>();
+        for (Object[] row : rows) {
+            evictVariant(((Number) row[0]).longValue());
+            shoeIds.add(((Number) row[1]).longValue());
+        }
+        return new ArrayList<>(shoeIds);
+    }
+
+    /** getReference trả về chính entity nếu đã được nạp, nếu chưa thì chỉ là proxy (không truy vấn) */
+    private void evictVariant(Long variantId) {
+        entityManager.detach(entityManager.getReference(ShoesVariant.class, variantId));
+    }
+
+    private OutOfStockException outOfStock(Long variantId) {
+        ShoesVariant variant = shoesVariantRepository.findById(variantId).orElse(null);
+        if (variant == null) {
+            return new OutOfStockException("Sản phẩm không còn tồn tại");
+        }
+        Integer stock = stockReservationRepository.findStock(variantId);
+        int available = stock != null ? stock : 0;
+        return new OutOfStockException(String.format("%s (Size %s, màu %s) chỉ còn %d sản phẩm",
+                variant.getShoes().getName(), variant.getSizeValue(), variant.getColorValue(), Math.max(available, 0)));
+    }
+}
@@ -0,0 +1,131 @@
+package ecommerce.shoestore.order;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Danh sách đơn cho trang admin: mỗi trang là một câu SQL trên "order" JOIN users,
+ * chỉ lấy các cột hiển thị (không nạp entity, không tra user theo từng đơn).
+ */
+public interface AdminOrderQueryRepository extends org.springframework.data.repository.Repository<Order, Long> {
+
+    /** Một dòng của danh sách đơn admin */
+    interface AdminOrderRow {
+        Long getOrderId();
+        String getCustomerName();
+        String getCustomerEmail();
+        LocalDateTime getCreateAt();
+        String getStatus();
+        BigDecimal getSubTotal();
+        BigDecimal getDiscountAmount();
+        BigDecimal getTotalAmount();
+        String getNote();
+        Long getVersion();
+    }
+
+    String SELECT_ROW = """
+            SELECT o."orderId" AS "orderId",
+                   COALESCE(u.fullname, 'Customer') AS "customerName",
+                   COALESCE(NULLIF(o."recipientEmail", ''), u.email, 'customer@example.com') AS "customerEmail",
+                   o."createAt" AS "createAt",
+                   CAST(o.status AS text) AS status,
+                   o."subTotal" AS "subTotal",
+                   o."discountAmount" AS "discountAmount",
+                   o."totalAmount" AS "totalAmount",
+                   o.note AS note,
+                   o.version AS version
+            FROM "order" o
+            LEFT JOIN users u ON u."userId" = o."userId"
+            """;
+
+    String STATUS_FILTER = "(:status IS NULL OR o.status = CAST(:status AS order_status))";
+
+    String NEWEST_FIRST = " ORDER BY o.\"createAt\" DESC, o.\"orderId\" DESC";
+
+    @Query(value = SELECT_ROW + "WHERE " + STATUS_FILTER + NEWEST_FIRST,
+           countQuery = "SELECT count(*) FROM \"order\" o WHERE " + STATUS_FILTER,
+           nativeQuery = true)
+    Page<AdminOrderRow> findPage(@Param("status") String status, Pageable pageable);
+
+    // Phân trang keyset (mới nhất trước): trang đầu
+    @Query(value = SELECT_ROW + "WHERE " + STATUS_FILTER + NEWEST_FIRST + " LIMIT :limit",
+           nativeQuery = true)
+    List<AdminOrderRow> findFirstPageKeyset(@Param("status") String status, @Param("limit") int limit);
+
+    // Phân trang keyset: các đơn nằm sau (createAt, orderId) của dòng cuối trang trước
+    @Query(value = SELECT_ROW + "WHERE " + STATUS_FILTER
+                   + " AND (o.\"createAt\", o.\"orderId\") < (:afterCreateAt, :afterId)"
+                   + NEWEST_FIRST + " LIMIT :limit",
+           nativeQuery = true)
+    List<AdminOrderRow> findPageAfterKeyset(@Param("status") String status,
+                                            @Param("afterCreateAt") LocalDateTime afterCreateAt,
+                                            @Param("afterId") Long afterId,
+                                            @Param("limit") int limit);
+
+    /*
+     * Tìm kiếm cho admin, mọi điều kiện đều dùng được index (xem schema.sql):
+     * - mã đơn: khớp chính xác "orderId", tiền tố của "orderId" / order_code
+     * - khách hàng: trigram trên tên (bỏ dấu), email, số điện thoại người nhận
+     * Kết quả xếp theo độ khớp rồi tới đơn mới nhất. Số kết quả chỉ đếm tới
+     * COUNT_CAP (đủ cho phân trang, không quét hết bảng với từ khóa phổ biến).
+     */
+
+    int COUNT_CAP = 1000;
+
+    String CODE_MATCH = """
+            (o."orderId" = :orderId
+               OR CAST(o."orderId" AS text) LIKE :codePattern || '%' ESCAPE '\\'
+               OR o.order_code LIKE :codePattern || '%' ESCAPE '\\')
+            """;
+
+    String CODE_RANK = "CASE WHEN o.\"orderId\" = :orderId OR o.order_code = :code THEN 1 ELSE 0.5 END";
+
+    // keywordPattern: từ khóa đã thoát ký tự LIKE (LikePatterns); keyword: nguyên văn, để xếp hạng
+    String CUSTOMER_MATCH = """
+            (search_normalize(o."recipientName") LIKE '%' || search_normalize(:keywordPattern) || '%' ESCAPE '\\'
+               OR lower(o."recipientEmail") LIKE '%' || lower(:keywordPattern) || '%' ESCAPE '\\'
+               OR o."recipientPhone" LIKE '%' || :keywordPattern || '%' ESCAPE '\\')
+            """;
+
+    String CUSTOMER_RANK = """
+            GREATEST(word_similarity(search_normalize(:keyword), search_normalize(o."recipientName")),
+                     word_similarity(lower(:keyword), lower(o."recipientEmail")),
+                     word_similarity(:keyword, o."recipientPhone"))
+            """;
+
+    String CAPPED_COUNT_FROM = "SELECT count(*) FROM (SELECT 1 FROM \"order\" o WHERE ";
+
+    String CAPPED_COUNT_END = " LIMIT " + COUNT_CAP + ") capped";
+
+    // orderId: từ khóa dạng số, -1 nếu không phải số; code: từ khóa viết hoa (codePattern: đã thoát ký tự LIKE)
+    @Query(value = SELECT_ROW + "WHERE " + CODE_MATCH
+                   + " ORDER BY " + CODE_RANK + " DESC, o.\"createAt\" DESC, o.\"orderId\" DESC",
+           countQuery = CAPPED_COUNT_FROM + CODE_MATCH + CAPPED_COUNT_END,
+           nativeQuery = true)
+    Page<AdminOrderRow> searchByCode(@Param("orderId") long orderId, @Param("code") String code,
+                                     @Param("codePattern") String codePattern, Pageable pageable);
+
+    @Query(value = SELECT_ROW + "WHERE " + CUSTOMER_MATCH
+                   + " ORDER BY " + CUSTOMER_RANK + " DESC, o.\"createAt\" DESC, o.\"orderId\" DESC",
+           countQuery = CAPPED_COUNT_FROM + CUSTOMER_MATCH + CAPPED_COUNT_END,
+           nativeQuery = true)
+    Page<AdminOrderRow> searchByCustomer(@Param("keyword") String keyword,
+                                         @Param("keywordPattern") String keywordPattern, Pageable pageable);
+
+    // Tìm trong cả mã đơn và thông tin khách; khớp mã đơn xếp trước
+    @Query(value = SELECT_ROW + "WHERE " + CODE_MATCH + " OR " + CUSTOMER_MATCH
+                   + " ORDER BY CASE WHEN " + CODE_MATCH + " THEN 1 + " + CODE_RANK + " ELSE " + CUSTOMER_RANK + " END DESC,"
+                   + " o.\"createAt\" DESC, o.\"orderId\" DESC",
+           countQuery = CAPPED_COUNT_FROM + CODE_MATCH + " OR " + CUSTOMER_MATCH + CAPPED_COUNT_END,
+           nativeQuery = true)
+    Page<AdminOrderRow> searchAll(@Param("orderId") long orderId, @Param("code") String code,
+                                  @Param("codePattern") String codePattern,
+                                  @Param("keyword") String keyword,
+                                  @Param("keywordPattern") String keywordPattern, Pageable pageable);
+}
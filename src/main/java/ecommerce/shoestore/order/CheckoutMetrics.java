@@ -0,0 +1,65 @@
+package ecommerce.shoestore.order;
+
+import ecommerce.shoestore.common.SqlStatementCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Số câu lệnh SQL và thời gian của mỗi lần đặt hàng (xem /actuator/metrics):
+ * - checkout.statements: số lượt gửi SQL từ lúc bắt đầu tạo đơn tới khi commit
+ * - checkout.duration: thời gian tương ứng
+ * Tag "flow": buy_now (mua ngay) hoặc selected (đặt các món đã chọn trong giỏ).
+ * Mục tiêu là số câu lệnh không tăng theo số món trong giỏ; metric này là
+ * nơi theo dõi điều đó (câu lệnh được đếm bởi SqlStatementCounter).
+ */
+@Component
+@RequiredArgsConstructor
+public class CheckoutMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Bắt đầu đo cho transaction tạo đơn hiện tại; kết quả được ghi khi commit
+     */
+    public void track(String flow) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive() || !SqlStatementCounter.start()) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                // Chạy trước các afterCommit khác để không đếm câu lệnh của chúng
+                return Ordered.HIGHEST_PRECEDENCE;
+            }
+
+            @Override
+            public void afterCommit() {
+                int statements = SqlStatementCounter.stop();
+                DistributionSummary.builder("checkout.statements")
+                        .description("Số câu lệnh SQL cho một lần đặt hàng")
+                        .tag("flow", flow)
+                        .register(meterRegistry)
+                        .record(statements);
+                Timer.builder("checkout.duration")
+                        .tag("flow", flow)
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                // Rollback: bỏ kết quả đo
+                SqlStatementCounter.stop();
+            }
+        });
+    }
+}
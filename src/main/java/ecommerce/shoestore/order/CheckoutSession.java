@@ -0,0 +1,115 @@
+package ecommerce.shoestore.order;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Ảnh chụp một lần đặt hàng nhiều bước (/checkout → /shipping → /payment → /create):
+ * món hàng và giá lúc vào trang checkout, địa chỉ giao hàng, voucher đã áp dụng thử.
+ * Lưu trong HttpSession (CheckoutSessionService), hết hạn sau order.checkout-session.ttl-minutes;
+ * các bước sau đọc lại từ đây thay vì truy vấn user, giỏ hàng, địa chỉ mỗi lần.
+ * Giá chốt theo lúc vào trang checkout; quá hạn thì khách phải bắt đầu lại để lấy giá mới.
+ */
+@Getter
+public class CheckoutSession implements Serializable {
+
+    public static final String CART = "CART";
+    public static final String BUY_NOW = "BUY_NOW";
+
+    /** Một món trong đơn, đủ thông tin để hiển thị và ghi OrderItem */
+    @Getter
+    public static class Line implements Serializable {
+        private final Long cartItemId; // null với mua ngay
+        private final Long variantId;
+        private final Long shoeId;
+        private final String productName;
+        private final String size;
+        private final String color;
+        private final String imageUrl;
+        private final BigDecimal unitPrice;
+        private final int quantity;
+
+        public Line(Long cartItemId, Long variantId, Long shoeId, String productName, String size,
+                    String color, String imageUrl, BigDecimal unitPrice, int quantity) {
+            this.cartItemId = cartItemId;
+            this.variantId = variantId;
+            this.shoeId = shoeId;
+            this.productName = productName;
+            this.size = size;
+            this.color = color;
+            this.imageUrl = imageUrl;
+            this.unitPrice = unitPrice;
+            this.quantity = quantity;
+        }
+
+        public BigDecimal getLineTotal() {
+            return unitPrice.multiply(BigDecimal.valueOf(quantity));
+        }
+    }
+
+    private final Long userId;
+    private final String type;
+    /** Trang checkout đã tạo ảnh chụp này (quay lại khi thiếu thông tin giao hàng) */
+    private final String checkoutUrl;
+    private final List<Line> lines;
+    private final BigDecimal subtotal;
+    private final BigDecimal shipping;
+    private final Instant expiresAt;
+
+    // Bước /shipping
+    @Setter private Long addressId;
+    @Setter private String recipientName;
+    @Setter private String recipientPhone;
+    @Setter private String recipientAddress;
+    @Setter private String displayAddress;
+    @Setter private String recipientEmail;
+    @Setter private String note;
+
+    // Voucher hợp lệ gần nhất ở /voucher/validate; khi đặt hàng vẫn kiểm tra lại (lượt dùng có thể đã hết)
+    @Setter private String voucherCode;
+    @Setter private BigDecimal voucherDiscount;
+
+    public CheckoutSession(Long userId, String type, String checkoutUrl, List<Line> lines,
+                           BigDecimal shipping, Instant expiresAt) {
+        this.userId = userId;
+        this.type = type;
+        this.checkoutUrl = checkoutUrl;
+        this.lines = List.copyOf(lines);
+        this.subtotal = lines.stream().map(Line::getLineTotal).reduce(BigDecimal.ZERO, BigDecimal::add);
+        this.shipping = shipping;
+        this.expiresAt = expiresAt;
+    }
+
+    public BigDecimal getTotal() {
+        return subtotal.add(shipping);
+    }
+
+    public boolean isExpired(Instant now) {
+        return !now.isBefore(expiresAt);
+    }
+
+    public boolean hasShippingInfo() {
+        return addressId != null;
+    }
+
+    public Line getBuyNowLine() {
+        return BUY_NOW.equals(type) ? lines.get(0) : null;
+    }
+
+    public List<Long> getCartItemIds() {
+        return lines.stream().map(Line::getCartItemId).filter(Objects::nonNull).toList();
+    }
+
+    /** Gộp số lượng theo biến thể (giỏ có thể chứa cùng biến thể ở nhiều dòng) */
+    public Map<Long, Integer> getQuantitiesByVariant() {
+        return lines.stream().collect(Collectors.toMap(Line::getVariantId, Line::getQuantity, Integer::sum));
+    }
+}
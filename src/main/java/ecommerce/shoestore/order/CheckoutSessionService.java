@@ -0,0 +1,159 @@
+package ecommerce.shoestore.order;
+
+import ecommerce.shoestore.auth.user.User;
+import ecommerce.shoestore.cart.Cart;
+import ecommerce.shoestore.cart.CartRepository;
+import ecommerce.shoestore.cartitem.CartItem;
+import ecommerce.shoestore.shoesvariant.ShoesVariant;
+import ecommerce.shoestore.shoesvariant.ShoesVariantRepository;
+import jakarta.servlet.http.HttpSession;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Tạo và đọc CheckoutSession trong HttpSession. Giỏ hàng / sản phẩm chỉ được đọc
+ * một lần ở /checkout; ảnh chụp quá hạn thì bị bỏ và khách quay lại trang checkout.
+ */
+@Service
+@Slf4j
+public class CheckoutSessionService {
+
+    static final String SESSION_ATTRIBUTE = "CHECKOUT_SESSION";
+
+    private static final BigDecimal SHIPPING_FEE = new BigDecimal("30000");
+
+    private final CartRepository cartRepository;
+    private final ShoesVariantRepository shoesVariantRepository;
+    private final Duration ttl;
+    private final Clock clock = Clock.systemUTC();
+
+    public CheckoutSessionService(CartRepository cartRepository,
+                                  ShoesVariantRepository shoesVariantRepository,
+                                  @Value("${order.checkout-session.ttl-minutes:30}") long ttlMinutes) {
+        this.cartRepository = cartRepository;
+        this.shoesVariantRepository = shoesVariantRepository;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+    }
+
+    /**
+     * Đặt các món đã chọn trong giỏ (cartItemIds rỗng = cả giỏ).
+     *
+     * @throws IllegalArgumentException giỏ trống hoặc không có món nào được chọn
+     */
+    @Transactional(readOnly = true)
+    public CheckoutSession startFromCart(HttpSession session, User user, String cartItemIds) {
+        Cart cart = cartRepository.findCartWithItems(user).orElse(null);
+        if (cart == null || cart.getItems().isEmpty()) {
+            throw new IllegalArgumentException("Giỏ hàng trống!");
+        }
+
+        List<CartItem> selectedItems;
+        if (cartItemIds != null && !cartItemIds.isEmpty()) {
+            Set<Long> selectedIds = parseIds(cartItemIds);
+            selectedItems = cart.getItems().stream()
+                    .filter(item -> selectedIds.contains(item.getCartItemId()))
+                    .toList();
+        } else {
+            selectedItems = List.copyOf(cart.getItems());
+        }
+        if (selectedItems.isEmpty()) {
+            throw new IllegalArgumentException("Vui lòng chọn sản phẩm!");
+        }
+
+        List<CheckoutSession.Line> lines = selectedItems.stream()
+                .map(item -> toLine(item.getCartItemId(), item.getVariant(), null, item.getUnitPrice(), item.getQuantity()))
+                .toList();
+        String checkoutUrl = "/order/checkout?type=" + CheckoutSession.CART
+                + (cartItemIds != null && !cartItemIds.isEmpty() ? "&cartItemIds=" + cartItemIds : "");
+        return store(session, new CheckoutSession(user.getUserId(), CheckoutSession.CART, checkoutUrl, lines,
+                SHIPPING_FEE, clock.instant().plus(ttl)));
+    }
+
+    /**
+     * Mua ngay một biến thể.
+     *
+     * @throws IllegalArgumentException số lượng không hợp lệ hoặc sản phẩm không tồn tại
+     */
+    @Transactional(readOnly = true)
+    public CheckoutSession startBuyNow(HttpSession session, Long userId, Long variantId, Integer quantity) {
+        if (variantId == null || quantity == null) {
+            throw new IllegalArgumentException("Thông tin sản phẩm không hợp lệ!");
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Số lượng phải lớn hơn 0!");
+        }
+        ShoesVariant variant = shoesVariantRepository.findByIdWithShoes(variantId)
+                .orElseThrow(() -> new IllegalArgumentException("Sản phẩm không tồn tại"));
+
+        String imageUrl = !variant.getShoes().getImages().isEmpty()
+                ? variant.getShoes().getImages().iterator().next().getUrl()
+                : "/images/no-image.png";
+        CheckoutSession.Line line = toLine(null, variant, imageUrl, variant.getShoes().getBasePrice(), quantity);
+        String checkoutUrl = String.format("/order/checkout?type=%s&variantId=%d&quantity=%d",
+                CheckoutSession.BUY_NOW, variantId, quantity);
+        return store(session, new CheckoutSession(userId, CheckoutSession.BUY_NOW, checkoutUrl, List.of(line),
+                SHIPPING_FEE, clock.instant().plus(ttl)));
+    }
+
+    /**
+     * Ảnh chụp hiện tại của user; rỗng nếu chưa có, đã hết hạn hoặc thuộc user khác.
+     */
+    public Optional<CheckoutSession> current(HttpSession session, Long userId) {
+        if (!(session.getAttribute(SESSION_ATTRIBUTE) instanceof CheckoutSession checkout)) {
+            return Optional.empty();
+        }
+        if (!checkout.getUserId().equals(userId) || checkout.isExpired(clock.instant())) {
+            log.debug("Bỏ checkout session hết hạn của user {}", checkout.getUserId());
+            session.removeAttribute(SESSION_ATTRIBUTE);
+            return Optional.empty();
+        }
+        return Optional.of(checkout);
+    }
+
+    /** Ghi lại sau khi sửa (để session được lưu lại nếu dùng session store ngoài) */
+    public void update(HttpSession session, CheckoutSession checkout) {
+        session.setAttribute(SESSION_ATTRIBUTE, checkout);
+    }
+
+    public void clear(HttpSession session) {
+        session.removeAttribute(SESSION_ATTRIBUTE);
+    }
+
+    private CheckoutSession store(HttpSession session, CheckoutSession checkout) {
+        session.setAttribute(SESSION_ATTRIBUTE, checkout);
+        log.debug("Checkout session {} cho user {}: {} món, tạm tính {}",
+                checkout.getType(), checkout.getUserId(), checkout.getLines().size(), checkout.getSubtotal());
+        return checkout;
+    }
+
+    private static CheckoutSession.Line toLine(Long cartItemId, ShoesVariant variant, String imageUrl,
+                                               BigDecimal unitPrice, int quantity) {
+        return new CheckoutSession.Line(cartItemId, variant.getVariantId(), variant.getShoes().getShoeId(),
+                variant.getShoes().getName(), String.valueOf(variant.getSize()), String.valueOf(variant.getColor()),
+                imageUrl, unitPrice, quantity);
+    }
+
+    private static Set<Long> parseIds(String ids) {
+        try {
+            return Arrays.stream(ids.split(","))
+                    .map(String::trim)
+                    .filter(id -> !id.isEmpty())
+                    .map(Long::parseLong)
+                    .collect(Collectors.toSet());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Vui lòng chọn sản phẩm!");
+        }
+    }
+}
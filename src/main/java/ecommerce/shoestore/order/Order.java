@@ -47,7 +47,7 @@ public class Order {
     private String paymentMethod; // "COD", "VNPAY", "TRANSFER"
     
     @Column(name = "payment_status")
-    private String paymentStatus; // "UNPAID", "PAID", "REFUNDED"
+    private String paymentStatus; // "UNPAID", "PAID", "REFUND_PENDING" (đã trả tiền cho đơn đã huỷ), "REFUNDED"
     
     @Column(name = "\"order_code\"")
     private String orderCode;
@@ -83,6 +83,11 @@ public class Order {
     @Column(name = "\"createAt\"", nullable = false)
     private LocalDateTime createAt;
     
+    // Khóa lạc quan: đổi trạng thái dựa trên bản đọc cũ sẽ bị từ chối (xem OrderStateMachine)
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+    
     @PrePersist
     protected void onCreate() {
         createAt = LocalDateTime.now();
@@ -0,0 +1,78 @@
+package ecommerce.shoestore.order;
+
+import ecommerce.shoestore.promotion.dto.VoucherValidationResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Ghi các dòng phụ của một đơn vừa tạo bằng JDBC: mọi OrderItem đi chung một
+ * batch, thanh toán VNPay và voucher mỗi thứ một câu lệnh. Số lượt gửi SQL
+ * không phụ thuộc số món trong đơn (các entity đều dùng IDENTITY nên
+ * Hibernate không batch được).
+ */
+@Component
+@RequiredArgsConstructor
+class OrderCheckoutWriter {
+
+    private static final String INSERT_ITEM = """
+            INSERT INTO orderitem ("orderId", "shoeId", quantity, "productName", "variantInfo",
+                                   "unitPrice", "shopDiscount", "itemTotal")
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String INSERT_PAYMENT_TRANSACTION = """
+            INSERT INTO payment_transactions ("orderId", vnp_txn_ref, amount, payment_method, status,
+                                              created_at, updated_at)
+            VALUES (?, ?, ?, 'VNPAY', 'PENDING', now(), now())
+            """;
+
+    private static final String INSERT_PAYMENT = """
+            INSERT INTO payment ("orderId", amount, provider, currency, status, "paidAt", "createAt")
+            VALUES (?, ?, CAST('VNPAY' AS payment_provider), 'VND', CAST('PENDING' AS payment_status), now(), now())
+            """;
+
+    private static final String INSERT_ORDER_VOUCHER = """
+            INSERT INTO ordervoucher ("orderId", "voucherId", "userId", "appliedAmount", "redemptionCounted",
+                                      "createAt", "updatedAt")
+            VALUES (?, ?, ?, ?, true, now(), now())
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Ghi trong transaction tạo đơn (order đã được insert để có orderId).
+     *
+     * @param voucher kết quả validateVoucher đã thành công, null nếu đơn không dùng voucher
+     *                (lượt dùng được giữ riêng bằng VoucherRedemptionService.redeem)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void write(Order order, List<OrderItem> items, VoucherValidationResult voucher) {
+        Long orderId = order.getOrderId();
+
+        jdbcTemplate.batchUpdate(INSERT_ITEM, items, items.size(), (ps, item) -> {
+            ps.setLong(1, orderId);
+            ps.setLong(2, item.getShoeId());
+            ps.setLong(3, item.getQuantity());
+            ps.setString(4, item.getProductName());
+            ps.setString(5, item.getVariantInfo());
+            ps.setBigDecimal(6, item.getUnitPrice());
+            ps.setBigDecimal(7, item.getShopDiscount());
+            ps.setBigDecimal(8, item.getItemTotal());
+        });
+
+        if ("VNPAY".equals(order.getPaymentMethod())) {
+            jdbcTemplate.update(INSERT_PAYMENT_TRANSACTION, orderId, orderId.toString(), order.getTotalAmount());
+            jdbcTemplate.update(INSERT_PAYMENT, orderId, order.getTotalAmount());
+        }
+
+        if (voucher != null) {
+            jdbcTemplate.update(INSERT_ORDER_VOUCHER, orderId, voucher.getVoucher().getVoucherId(),
+                    order.getUserId(), voucher.getDiscountAmount());
+        }
+    }
+}
@@ -2,46 +2,46 @@ package ecommerce.shoestore.order;
 
 import ecommerce.shoestore.auth.user.User;
 import ecommerce.shoestore.auth.user.UserRepository;
-import ecommerce.shoestore.cart.Cart;
-import ecommerce.shoestore.cart.CartRepository;
-import ecommerce.shoestore.cartitem.CartItem;
+import ecommerce.shoestore.common.IdempotencyInProgressException;
+import ecommerce.shoestore.common.IdempotencyService;
 import ecommerce.shoestore.promotion.CustomerPromotionService;
 import ecommerce.shoestore.payment.VNPayService;
-import ecommerce.shoestore.promotion.VoucherRepository;
 import ecommerce.shoestore.promotion.dto.VoucherValidationResult;
-import ecommerce.shoestore.shoesvariant.ShoesVariant;
-import ecommerce.shoestore.shoesvariant.ShoesVariantRepository;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
 
 @Controller
 @RequestMapping("/order")
 @RequiredArgsConstructor
+@Slf4j
 public class OrderController {
 
     private final OrderService orderService;
     private final OrderAddressService orderAddressService;
     private final UserRepository userRepository;
-    private final CartRepository cartRepository;
-    private final ShoesVariantRepository shoesVariantRepository;
     private final CustomerPromotionService customerPromotionService;
-    private final VoucherRepository voucherRepository;
     private final VNPayService vnPayService;
+    private final IdempotencyService idempotencyService;
+    private final CheckoutSessionService checkoutSessionService;
+
+    private static final String CHECKOUT_EXPIRED = "Phiên đặt hàng đã hết hạn, vui lòng đặt lại";
 
     /**
      * Hiển thị trang checkout GET /order/checkout?type=CART hoặc
      * /order/checkout?type=BUY_NOW&variantId=1&quantity=2
+     *
+     * Món hàng và giá được chụp lại một lần ở đây (CheckoutSession), các bước sau dùng lại.
      */
     @GetMapping("/checkout")
     public String showCheckoutPage(
@@ -53,163 +53,52 @@ public class OrderController {
             Model model,
             RedirectAttributes redirectAttributes) {
 
-        System.out.println("\n===== ORDER CHECKOUT DEBUG START =====");
-        System.out.println("Request received at /order/checkout");
-        System.out.println("Type parameter: " + type);
-        System.out.println("VariantId: " + variantId);
-        System.out.println("Quantity: " + quantity);
-        System.out.println("Session ID: " + session.getId());
-
         // Kiểm tra đăng nhập qua session
         Long userId = (Long) session.getAttribute("USER_ID");
-        System.out.println("Checking session attributes:");
-        System.out.println("  - USER_ID: " + userId);
-        System.out.println("  - FULLNAME: " + session.getAttribute("FULLNAME"));
-        System.out.println("  - ROLE: " + session.getAttribute("ROLE"));
-
         if (userId == null) {
-            System.out.println("USER_ID is null - user not logged in");
-
             // Nếu là BUY_NOW, lưu redirect URL vào session để quay lại sau khi login
             if ("BUY_NOW".equals(type) && variantId != null && quantity != null) {
                 String redirectUrl = String.format("/order/checkout?type=BUY_NOW&variantId=%d&quantity=%d",
                         variantId, quantity);
                 session.setAttribute("REDIRECT_AFTER_LOGIN", redirectUrl);
-                System.out.println("Saved redirect URL to session: " + redirectUrl);
-                System.out.println("Verify saved: " + session.getAttribute("REDIRECT_AFTER_LOGIN"));
             }
-
-            System.out.println("Redirecting to /auth/login");
-            System.out.println("===== ORDER CHECKOUT DEBUG END =====");
+            log.debug("Checkout {} khi chưa đăng nhập, chuyển tới trang đăng nhập", type);
             redirectAttributes.addFlashAttribute("message", "Vui lòng đăng nhập để tiếp tục");
             return "redirect:/auth/login";
         }
 
-        System.out.println("USER_ID found: " + userId + " - user is logged in");
-
-        System.out.println("USER_ID found: " + userId + " - proceeding with checkout");
-
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy thông tin người dùng"));
 
-        System.out.println("User found: " + user.getEmail());
-
         // Lấy thông tin để hiển thị trên form
         model.addAttribute("user", user);
         model.addAttribute("type", type);
 
-        // Lấy danh sách địa chỉ đã lưu của user
-        List<OrderAddress> savedAddresses = orderAddressService.getUserAddresses(userId);
-        model.addAttribute("savedAddresses", savedAddresses);
-
-        if ("CART".equals(type)) {
-            System.out.println("Processing CART checkout");
-            System.out.println("Received cartItemIds parameter: " + cartItemIds);
-            // Đặt hàng từ giỏ
-            Cart cart = cartRepository.findCartWithItems(user).orElse(null);
-
-            if (cart == null || cart.getItems().isEmpty()) {
-                System.out.println("Cart is empty - redirecting to cart page");
-                redirectAttributes.addFlashAttribute("error", "Giỏ hàng trống!");
-                return "redirect:/cart";
-            }
-
-            System.out.println("Cart has " + cart.getItems().size() + " items");
-            for (CartItem item : cart.getItems()) {
-                System.out.println("  - CartItem ID: " + item.getCartItemId()
-                        + ", Shoe: " + item.getVariant().getShoes().getName()
-                        + ", Price: " + item.getUnitPrice()
-                        + ", Qty: " + item.getQuantity());
-            }
-
-            // Lọc các items được chọn
-            List<CartItem> selectedItems;
-            if (cartItemIds != null && !cartItemIds.isEmpty()) {
-                System.out.println("CartItemIds is not empty: " + cartItemIds);
-                List<Long> selectedIds = Arrays.stream(cartItemIds.split(","))
-                        .map(Long::parseLong)
-                        .toList();
-
-                System.out.println("Parsed selected IDs: " + selectedIds);
-
-                selectedItems = cart.getItems().stream()
-                        .filter(item -> selectedIds.contains(item.getCartItemId()))
-                        .toList();
-
-                System.out.println("Filtered to " + selectedItems.size() + " selected items");
+        CheckoutSession checkout;
+        try {
+            if ("CART".equals(type)) {
+                checkout = checkoutSessionService.startFromCart(session, user, cartItemIds);
+            } else if ("BUY_NOW".equals(type)) {
+                checkout = checkoutSessionService.startBuyNow(session, userId, variantId, quantity);
             } else {
-                System.out.println("WARNING: No cartItemIds provided, using ALL items");
-                selectedItems = new ArrayList<>(cart.getItems());
-            }
-
-            if (selectedItems.isEmpty()) {
-                System.out.println("ERROR: No items selected after filtering");
-                redirectAttributes.addFlashAttribute("error", "Vui lòng chọn sản phẩm!");
+                redirectAttributes.addFlashAttribute("error", "Loại đơn hàng không hợp lệ");
                 return "redirect:/cart";
             }
-
-            // Tính tổng tiền CHỈ cho items được chọn
-            BigDecimal subtotal = selectedItems.stream()
-                    .map(item -> {
-                        BigDecimal itemTotal = item.getUnitPrice()
-                                .multiply(BigDecimal.valueOf(item.getQuantity()));
-                        System.out.println("  Item " + item.getCartItemId() + " total: " + itemTotal);
-                        return itemTotal;
-                    })
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            System.out.println("Final subtotal calculated: " + subtotal);
-
-            model.addAttribute("cartItems", selectedItems);
-            model.addAttribute("subtotal", subtotal);
-            model.addAttribute("shipping", new BigDecimal("30000"));
-            model.addAttribute("total", subtotal.add(new BigDecimal("30000")));
-
-            // Lưu cartItemIds vào session để dùng khi tạo order
-            session.setAttribute("SELECTED_CART_ITEM_IDS", cartItemIds);
-            System.out.println("Saved SELECTED_CART_ITEM_IDS to session: " + cartItemIds);
-
-        } else if ("BUY_NOW".equals(type)) {
-            System.out.println("Processing BUY_NOW checkout");
-
-            // Validate input
-            if (variantId == null || quantity == null) {
-                System.out.println("Invalid BUY_NOW parameters");
-                redirectAttributes.addFlashAttribute("error", "Thông tin sản phẩm không hợp lệ!");
-                return "redirect:/";
-            }
-
-            // Validate quantity
-            if (quantity <= 0) {
-                System.out.println("Invalid quantity: " + quantity);
-                redirectAttributes.addFlashAttribute("error", "Số lượng phải lớn hơn 0!");
-                return "redirect:/";
-            }
-
-            // Lấy thông tin variant với eager fetch Shoes entity
-            ShoesVariant variant = shoesVariantRepository.findByIdWithShoes(variantId)
-                    .orElseThrow(() -> new RuntimeException("Sản phẩm không tồn tại"));
-
-            System.out.println("Variant found: " + variant.getShoes().getName() + " - Size: " + variant.getSize());
-
-            BigDecimal subtotal = variant.getShoes().getBasePrice()
-                    .multiply(BigDecimal.valueOf(quantity));
-
-            System.out.println("BUY_NOW - Quantity: " + quantity + ", Subtotal: " + subtotal);
-
-            model.addAttribute("variant", variant);
-            model.addAttribute("variantId", variantId);
-            model.addAttribute("quantity", quantity);
-            model.addAttribute("subtotal", subtotal);
-            model.addAttribute("shipping", new BigDecimal("30000"));
-            model.addAttribute("total", subtotal.add(new BigDecimal("30000")));
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
+            return "CART".equals(type) ? "redirect:/cart" : "redirect:/";
         }
 
-        System.out.println("Returning checkout template");
-        System.out.println("===== ORDER CHECKOUT DEBUG END =====");
+        // Lấy danh sách địa chỉ đã lưu của user
+        List<OrderAddress> savedAddresses = orderAddressService.getUserAddresses(userId);
+        model.addAttribute("savedAddresses", savedAddresses);
+
+        addSummaryAttributes(model, checkout);
+        model.addAttribute("cartItemIds", cartItemIds);
+        model.addAttribute("variantId", variantId);
+        model.addAttribute("quantity", quantity);
         return "shipping-info";
     }
-    
 
     /**
      * Xử lý thông tin giao hàng và chuyển sang trang thanh toán POST
@@ -239,11 +128,22 @@ public class OrderController {
             return "redirect:/auth/login";
         }
 
-        Long addressId;
+        CheckoutSession checkout = checkoutSessionService.current(session, userId).orElse(null);
+        if (checkout == null) {
+            redirectAttributes.addFlashAttribute("error", CHECKOUT_EXPIRED);
+            return "redirect:/order/checkout?type=" + type
+                    + (variantId != null ? "&variantId=" + variantId + "&quantity=" + quantity : "");
+        }
+
+        OrderAddress address;
 
         // Nếu chọn địa chỉ có sẵn
         if (savedAddressId != null) {
-            addressId = savedAddressId;
+            address = orderAddressService.getAddressById(savedAddressId);
+            if (address == null || !userId.equals(address.getUserId())) {
+                redirectAttributes.addFlashAttribute("error", "Địa chỉ giao hàng không hợp lệ");
+                return "redirect:" + checkout.getCheckoutUrl();
+            }
         } // Nếu nhập địa chỉ mới
         else if (recipientName != null && !recipientName.isBlank()) {
             OrderAddress newAddress = new OrderAddress();
@@ -259,25 +159,22 @@ public class OrderController {
 
             // Luôn lưu địa chỉ vào database để có thể hiển thị trong order confirmation
             // Chỉ khác là có set làm default hay không
-            newAddress = orderAddressService.saveAddress(newAddress);
-
-            addressId = newAddress.getAddressId();
+            address = orderAddressService.saveAddress(newAddress);
         } else {
             redirectAttributes.addFlashAttribute("error", "Vui lòng chọn hoặc nhập địa chỉ giao hàng");
-            return "redirect:/order/checkout?type=" + type
-                    + (variantId != null ? "&variantId=" + variantId + "&quantity=" + quantity : "");
+            return "redirect:" + checkout.getCheckoutUrl();
         }
 
-        // Lưu thông tin vào session
-        session.setAttribute("SHIPPING_TYPE", type);
-        session.setAttribute("SHIPPING_ADDRESS_ID", addressId);
-        session.setAttribute("SHIPPING_RECIPIENT_EMAIL", recipientEmail);
-        session.setAttribute("SHIPPING_NOTE", note);
-
-        if ("BUY_NOW".equals(type)) {
-            session.setAttribute("SHIPPING_VARIANT_ID", variantId);
-            session.setAttribute("SHIPPING_QUANTITY", quantity);
-        }
+        // Lưu thông tin giao hàng vào checkout session
+        checkout.setAddressId(address.getAddressId());
+        checkout.setRecipientName(address.getRecipientName());
+        checkout.setRecipientPhone(address.getRecipientPhone());
+        checkout.setRecipientAddress(address.getProvince() + ", " + address.getDistrict() + ", "
+                + address.getCommune() + ", " + address.getStreetDetail());
+        checkout.setDisplayAddress(address.getFullAddress());
+        checkout.setRecipientEmail(recipientEmail);
+        checkout.setNote(note);
+        checkoutSessionService.update(session, checkout);
 
         // Redirect sang trang thanh toán
         return "redirect:/order/payment";
@@ -351,7 +248,8 @@ public class OrderController {
     }
 
     /**
-     * API endpoint để validate voucher (AJAX)
+     * API endpoint để validate voucher (AJAX). Trong lúc checkout, tạm tính lấy
+     * từ CheckoutSession (không tin giá trị client gửi) và kết quả hợp lệ được giữ lại.
      */
     @PostMapping("/voucher/validate")
     @ResponseBody
@@ -365,15 +263,31 @@ public class OrderController {
             throw new RuntimeException("User not logged in");
         }
 
+        CheckoutSession checkout = checkoutSessionService.current(session, userId).orElse(null);
+        java.util.Map<String, Object> response = new java.util.HashMap<>();
+
+        // Áp dụng lại đúng voucher vừa kiểm tra: dùng kết quả đã giữ
+        if (checkout != null && voucherCode.equals(checkout.getVoucherCode())) {
+            response.put("valid", true);
+            response.put("discountAmount", checkout.getVoucherDiscount());
+            response.put("message", String.format("Áp dụng thành công! Giảm %,.0f₫", checkout.getVoucherDiscount()));
+            return response;
+        }
+
+        BigDecimal subTotal = checkout != null ? checkout.getSubtotal() : orderSubTotal;
         VoucherValidationResult result = customerPromotionService.validateVoucher(
-                voucherCode, userId, orderSubTotal);
+                voucherCode, userId, subTotal);
 
-        java.util.Map<String, Object> response = new java.util.HashMap<>();
         response.put("valid", result.isValid());
 
         if (result.isValid()) {
             response.put("discountAmount", result.getDiscountAmount());
             response.put("message", String.format("Áp dụng thành công! Giảm %,.0f₫", result.getDiscountAmount()));
+            if (checkout != null) {
+                checkout.setVoucherCode(voucherCode);
+                checkout.setVoucherDiscount(result.getDiscountAmount());
+                checkoutSessionService.update(session, checkout);
+            }
         } else {
             response.put("message", result.getErrorMessage());
         }
@@ -393,90 +307,30 @@ public class OrderController {
         }
 
         // Kiểm tra có thông tin shipping không
-        String type = (String) session.getAttribute("SHIPPING_TYPE");
-        Long addressId = (Long) session.getAttribute("SHIPPING_ADDRESS_ID");
-
-        if (type == null || addressId == null) {
-            redirectAttributes.addFlashAttribute("error", "Vui lòng nhập thông tin giao hàng trước");
-            return "redirect:/order/checkout?type=CART";
-        }
-
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy thông tin người dùng"));
-
-        // Lấy thông tin địa chỉ
-        OrderAddress address = orderAddressService.getAddressById(addressId);
-        if (address != null) {
-            model.addAttribute("recipientName", address.getRecipientName());
-            model.addAttribute("recipientPhone", address.getRecipientPhone());
-            model.addAttribute("recipientAddress", address.getFullAddress());
-        } else {
-            // Fallback nếu không tìm thấy địa chỉ
-            model.addAttribute("recipientName", "Không có thông tin");
-            model.addAttribute("recipientPhone", "");
-            model.addAttribute("recipientAddress", "Không có thông tin");
+        CheckoutSession checkout = checkoutSessionService.current(session, userId).orElse(null);
+        if (checkout == null) {
+            redirectAttributes.addFlashAttribute("error", CHECKOUT_EXPIRED);
+            return "redirect:/cart";
         }
-        model.addAttribute("type", type);
-
-        // Tính tổng tiền
-        BigDecimal subtotal;
-        BigDecimal shipping = new BigDecimal("30000");
-
-        if ("CART".equals(type)) {
-            Cart cart = cartRepository.findCartWithItems(user).orElse(null);
-            if (cart == null || cart.getItems().isEmpty()) {
-                redirectAttributes.addFlashAttribute("error", "Giỏ hàng trống!");
-                return "redirect:/cart";
-            }
-
-            // Lấy danh sách selected items từ session
-            String cartItemIds = (String) session.getAttribute("SELECTED_CART_ITEM_IDS");
-            List<CartItem> selectedItems;
-
-            if (cartItemIds != null && !cartItemIds.isEmpty()) {
-                List<Long> selectedIds = Arrays.stream(cartItemIds.split(","))
-                        .map(Long::parseLong)
-                        .toList();
-
-                selectedItems = cart.getItems().stream()
-                        .filter(item -> selectedIds.contains(item.getCartItemId()))
-                        .toList();
-            } else {
-                // Fallback: lấy tất cả nếu không có selected IDs
-                selectedItems = new ArrayList<>(cart.getItems());
-            }
-
-            subtotal = selectedItems.stream()
-                    .map(item -> item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            model.addAttribute("cartItems", selectedItems);
-            model.addAttribute("variant", null);
-            model.addAttribute("quantity", 0);
-        } else {
-            Long variantId = (Long) session.getAttribute("SHIPPING_VARIANT_ID");
-            Integer quantity = (Integer) session.getAttribute("SHIPPING_QUANTITY");
-
-            ShoesVariant variant = shoesVariantRepository.findByIdWithShoes(variantId)
-                    .orElseThrow(() -> new RuntimeException("Sản phẩm không tồn tại"));
-
-            subtotal = variant.getShoes().getBasePrice().multiply(BigDecimal.valueOf(quantity));
-
-            model.addAttribute("variant", variant);
-            model.addAttribute("quantity", quantity);
-            model.addAttribute("cartItems", List.of());
+        if (!checkout.hasShippingInfo()) {
+            redirectAttributes.addFlashAttribute("error", "Vui lòng nhập thông tin giao hàng trước");
+            return "redirect:" + checkout.getCheckoutUrl();
         }
 
-        model.addAttribute("subtotal", subtotal);
-        model.addAttribute("shipping", shipping);
-        model.addAttribute("total", subtotal.add(shipping));
+        model.addAttribute("recipientName", checkout.getRecipientName());
+        model.addAttribute("recipientPhone", checkout.getRecipientPhone());
+        model.addAttribute("recipientAddress", checkout.getDisplayAddress());
+        model.addAttribute("type", checkout.getType());
+        addSummaryAttributes(model, checkout);
 
         // Lấy danh sách voucher để hiển thị (bao gồm cả voucher không đủ điều kiện - màu xám)
-        var vouchersForDisplay = customerPromotionService.getVouchersForDisplay(userId, subtotal);
+        var vouchersForDisplay = customerPromotionService.getVouchersForDisplay(userId, checkout.getSubtotal());
 
         model.addAttribute("vouchers", vouchersForDisplay != null ? vouchersForDisplay : List.of());
-        model.addAttribute("recipientEmail", session.getAttribute("SHIPPING_RECIPIENT_EMAIL") != null ? session.getAttribute("SHIPPING_RECIPIENT_EMAIL") : "");
-        model.addAttribute("note", session.getAttribute("SHIPPING_NOTE") != null ? session.getAttribute("SHIPPING_NOTE") : "");
+        model.addAttribute("recipientEmail", checkout.getRecipientEmail() != null ? checkout.getRecipientEmail() : "");
+        model.addAttribute("note", checkout.getNote() != null ? checkout.getNote() : "");
+        // Mỗi lần hiển thị trang là một lần đặt hàng: gửi form nhiều lần chỉ tạo một đơn
+        model.addAttribute("idempotencyKey", UUID.randomUUID().toString());
 
         return "payment";
     }
@@ -493,139 +347,81 @@ public class OrderController {
             @RequestParam(required = false) String recipientEmail,
             @RequestParam(required = false) String recipientAddress,
             @RequestParam(required = false) String note,
+            @RequestParam(required = false) String idempotencyKey,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKeyHeader,
             HttpSession session,
             HttpServletRequest request,
             RedirectAttributes redirectAttributes) {
 
-        System.out.println("\n===== CREATE ORDER REQUEST RECEIVED =====");
-
         try {
             Long userId = (Long) session.getAttribute("USER_ID");
-            System.out.println("UserId from session: " + userId);
-
             if (userId == null) {
                 return "redirect:/auth/login";
             }
 
-            // Lấy thông tin từ session hoặc form
-            String type = (String) session.getAttribute("SHIPPING_TYPE");
-
-            Long addressId = (Long) session.getAttribute("SHIPPING_ADDRESS_ID");
-            String sessionRecipientEmail = (String) session.getAttribute("SHIPPING_RECIPIENT_EMAIL");
-            String sessionNote = (String) session.getAttribute("SHIPPING_NOTE");
-
-            // Ưu tiên dùng giá trị từ session, nếu không có thì dùng từ form
-            String finalRecipientEmail = sessionRecipientEmail != null ? sessionRecipientEmail : recipientEmail;
-            String finalNote = sessionNote != null ? sessionNote : note;
-
-            System.out.println("Type: " + type);
-            System.out.println("AddressId: " + addressId);
-
-            System.out.println("PaymentMethod: " + paymentMethod);
-            System.out.println("VoucherCode: " + voucherCode);
-
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new RuntimeException("Không tìm thấy thông tin người dùng"));
-
-            Order order;
-
-            if ("CART".equals(type)) {
-                // Tạo đơn từ giỏ hàng
-                Cart cart = cartRepository.findCartWithItems(user)
-                        .orElseThrow(() -> new RuntimeException("Giỏ hàng trống"));
-
-                // Lấy danh sách IDs được chọn từ session
-                String cartItemIds = (String) session.getAttribute("SELECTED_CART_ITEM_IDS");
-                System.out.println("Session SELECTED_CART_ITEM_IDS: " + cartItemIds);
-
-                // Lọc items được chọn
-                List<CartItem> selectedItems;
-                if (cartItemIds != null && !cartItemIds.isEmpty()) {
-                    List<Long> selectedIds = Arrays.stream(cartItemIds.split(","))
-                            .map(Long::parseLong)
-                            .toList();
-
-                    selectedItems = cart.getItems().stream()
-                            .filter(item -> selectedIds.contains(item.getCartItemId()))
-                            .toList();
-                } else {
-                    selectedItems = new ArrayList<>(cart.getItems());
-                }
-
-                // Tạo order CHỈ với items được chọn
-                order = orderService.createOrderFromSelectedItems(
-                        user.getUserId(), addressId, finalRecipientEmail,
-                        paymentMethod, finalNote, selectedItems, voucherCode
-                );
-
-                // Xóa session data
-                session.removeAttribute("SELECTED_CART_ITEM_IDS");
-
-            } else if ("BUY_NOW".equals(type)) {
-                // Tạo đơn từ mua ngay
-                Long variantId = (Long) session.getAttribute("SHIPPING_VARIANT_ID");
-                Integer quantity = (Integer) session.getAttribute("SHIPPING_QUANTITY");
-
-                order = orderService.createOrderBuyNow(
-                        user.getUserId(), addressId, finalRecipientEmail,
-                        paymentMethod, finalNote, variantId, quantity, voucherCode
-                );
-
-            } else {
-                throw new RuntimeException("Loại đơn hàng không hợp lệ");
-            }
-
-            // Xóa session shipping data
-            System.out.println("Order created successfully with ID: " + order.getOrderId());
-
-            // Xử lý thanh toán VNPay
-            if ("VNPAY".equals(paymentMethod)) {
-                System.out.println("Redirecting to VNPay...");
-
-                // Lấy IP address
-                String ipAddress = request.getRemoteAddr();
-
-                // Tạo URL thanh toán VNPay
-                String vnpayUrl = vnPayService.createPaymentUrl(
-                        order.getOrderId(),
-                        user.getUserId(),
-                        order.getTotalAmount().longValue(),
-                        "Thanh toan don hang " + order.getOrderId(),
-                        ipAddress
-                );
+            // Gửi lại cùng khóa (bấm đúp, thử lại) → trả lại redirect của lần đầu, không tạo đơn mới
+            String requestKey = idempotencyKeyHeader != null ? idempotencyKeyHeader : idempotencyKey;
+            return idempotencyService.execute("order:create", userId, requestKey, redirectAttributes,
+                    () -> placeOrder(userId, paymentMethod, voucherCode, recipientEmail, note,
+                            session, request, redirectAttributes));
 
-                System.out.println("VNPay URL: " + vnpayUrl);
+        } catch (IdempotencyInProgressException e) {
+            // Lần bấm trước chưa tạo xong đơn sau thời gian chờ (hoặc đang chạy ở instance khác) → đưa tới danh sách đơn
+            redirectAttributes.addFlashAttribute("successMessage", "Đơn hàng của bạn đang được xử lý, vui lòng kiểm tra lại trong giây lát.");
+            return "redirect:/order/history";
+        } catch (Exception e) {
+            log.warn("Đặt hàng thất bại: {}", e.getMessage(), e);
+            redirectAttributes.addFlashAttribute("error", "Đặt hàng thất bại: " + e.getMessage());
+            return "redirect:/cart";
+        }
+    }
 
-                // Xóa session shipping data
-                session.removeAttribute("SHIPPING_TYPE");
-                session.removeAttribute("SHIPPING_ADDRESS_ID");
-                session.removeAttribute("SHIPPING_RECIPIENT_EMAIL");
-                session.removeAttribute("SHIPPING_NOTE");
-                session.removeAttribute("SHIPPING_VARIANT_ID");
-                session.removeAttribute("SHIPPING_QUANTITY");
+    private String placeOrder(Long userId, String paymentMethod, String voucherCode,
+                              String recipientEmail, String note, HttpSession session,
+                              HttpServletRequest request, RedirectAttributes redirectAttributes) {
+        CheckoutSession checkout = checkoutSessionService.current(session, userId)
+                .filter(CheckoutSession::hasShippingInfo)
+                .orElseThrow(() -> new IllegalStateException(CHECKOUT_EXPIRED));
 
-                return "redirect:" + vnpayUrl;
-            }
+        // Ưu tiên dùng giá trị đã nhập ở bước giao hàng, nếu không có thì dùng từ form
+        if (checkout.getRecipientEmail() == null) {
+            checkout.setRecipientEmail(recipientEmail);
+        }
+        if (checkout.getNote() == null) {
+            checkout.setNote(note);
+        }
 
-            // Xóa session shipping data cho COD/TRANSFER
-            session.removeAttribute("SHIPPING_TYPE");
-            session.removeAttribute("SHIPPING_ADDRESS_ID");
-            session.removeAttribute("SHIPPING_RECIPIENT_EMAIL");
-            session.removeAttribute("SHIPPING_NOTE");
-            session.removeAttribute("SHIPPING_VARIANT_ID");
-            session.removeAttribute("SHIPPING_QUANTITY");
+        Order order = orderService.createOrderFromCheckout(checkout, paymentMethod, voucherCode);
+        log.info("Đã tạo đơn {} ({}, {}) cho user {}", order.getOrderId(), checkout.getType(), paymentMethod, userId);
+
+        // Xóa checkout session
+        checkoutSessionService.clear(session);
+
+        // Xử lý thanh toán VNPay
+        if ("VNPAY".equals(paymentMethod)) {
+            // Tạo URL thanh toán VNPay
+            String vnpayUrl = vnPayService.createPaymentUrl(
+                    order.getOrderId(),
+                    userId,
+                    order.getTotalAmount().longValue(),
+                    "Thanh toan don hang " + order.getOrderId(),
+                    request.getRemoteAddr()
+            );
+            return "redirect:" + vnpayUrl;
+        }
 
-            redirectAttributes.addFlashAttribute("message", "Đặt hàng thành công!");
-            return "redirect:/order/confirmation/" + order.getOrderId();
+        redirectAttributes.addFlashAttribute("message", "Đặt hàng thành công!");
+        return "redirect:/order/confirmation/" + order.getOrderId();
+    }
 
-        } catch (Exception e) {
-            System.out.println("===== ORDER CREATION ERROR =====");
-            System.out.println("Error message: " + e.getMessage());
-            System.out.println("Error class: " + e.getClass().getSimpleName());
-            e.printStackTrace();
-            redirectAttributes.addFlashAttribute("error", "Đặt hàng thất bại: " + e.getMessage());
-            return "redirect:/cart";
-        }
+    /** Món hàng và tổng tiền cho phần tóm tắt đơn của trang checkout / thanh toán */
+    private void addSummaryAttributes(Model model, CheckoutSession checkout) {
+        CheckoutSession.Line buyNowLine = checkout.getBuyNowLine();
+        model.addAttribute("cartItems", buyNowLine == null ? checkout.getLines() : List.of());
+        model.addAttribute("variant", buyNowLine);
+        model.addAttribute("subtotal", checkout.getSubtotal());
+        model.addAttribute("shipping", checkout.getShipping());
+        model.addAttribute("total", checkout.getTotal());
     }
 
     /**
@@ -668,8 +464,10 @@ public class OrderController {
             }else if (newStatus == OrderStatus.REQUEST_CANCELLED){
                 redirectAttributes.addFlashAttribute("successMessage", "⚠️Yêu cầu huỷ đơn đã được gửi!. Vui lòng chờ xác nhận");
             }
+        } catch (OptimisticLockingFailureException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Đơn hàng vừa được cửa hàng cập nhật, vui lòng kiểm tra lại trạng thái");
         } catch (Exception e) {
-            e.printStackTrace();
+            log.warn("Huỷ đơn {} thất bại: {}", orderId, e.getMessage());
             redirectAttributes.addFlashAttribute("errorMessage", "Lỗi: " + e.getMessage());
         }
 
@@ -149,11 +149,7 @@ public class OrderHistoryController {
         try {
             String changedBy = (String) session.getAttribute("FULLNAME");
             
-            OrderHistoryDto currentOrder = orderHistoryService.getOrderWithTrackingLogs(orderId);
-            String oldStatus = currentOrder.getStatus().name();
-            String newStatusString = newStatus.name();
-            
-            orderHistoryService.addOrderStatusChange(orderId, oldStatus, newStatusString, changedBy, comment);
+            orderHistoryService.addOrderStatusChange(orderId, newStatus.name(), changedBy, comment, null);
             
             return "redirect:/order/tracking/" + orderId + "?updated=true";
             
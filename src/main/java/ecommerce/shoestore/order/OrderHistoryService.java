@@ -2,14 +2,22 @@ package ecommerce.shoestore.order;
 
 import ecommerce.shoestore.auth.user.User;
 import ecommerce.shoestore.auth.user.UserRepository;
+import ecommerce.shoestore.common.KeysetCursor;
+import ecommerce.shoestore.common.KeysetPage;
+import ecommerce.shoestore.common.LikePatterns;
 import ecommerce.shoestore.common.NotFoundException;
+import ecommerce.shoestore.inventory.StockReservationService;
+import ecommerce.shoestore.order.dto.BulkStatusChangeResult;
 import ecommerce.shoestore.order.dto.OrderHistoryDto;
 import ecommerce.shoestore.order.dto.OrderTrackingLogDto;
+import ecommerce.shoestore.order.outbox.OrderOutbox;
+import ecommerce.shoestore.promotion.VoucherRedemptionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -32,36 +40,30 @@ public class OrderHistoryService {
     private UserRepository userRepository;
     
     @Autowired
-    private OrderSyncService orderSyncService;
+    private AdminOrderQueryRepository adminOrderQueryRepository;
     
+    @Autowired
+    private OrderOutbox orderOutbox;
+    
+    @Autowired
+    private StockReservationService stockReservationService;
+    
+    @Autowired
+    private VoucherRedemptionService voucherRedemptionService;
+    
+    @Autowired
+    private OrderTransitionRepository orderTransitionRepository;
+    
+    public static final int MAX_BULK_ORDERS = 500;
+    
+    /** Khóa sắp xếp ghi trong cursor của danh sách đơn admin (createAt giảm dần) */
+    private static final String ORDER_CURSOR_KEY = "createAt";
+    
+    // Chuỗi không phải trạng thái đơn (vd. "Không có" trong nhật ký) được giữ nguyên
     private String getVietnameseStatus(String statusStr) {
         if (statusStr == null) return "Không xác định";
-        
-        switch (statusStr.toUpperCase().trim()) {
-            case "PENDING": return "Chờ xác nhận";
-            case "CONFIRMED": return "Đã xác nhận";
-            case "SHIPPING": return "Đang giao hàng";
-            case "COMPLETED": return "Hoàn thành";
-            case "CANCELLED": return "Đã hủy";
-            case "REQUEST_CANCELLED": return "Yêu cầu huỷ";
-            default: return statusStr;
-        }
-    }
-    
-    private String getStatusColorClass(String statusStr) {
-        if (statusStr == null) return "secondary";
-        
-        switch (statusStr.toUpperCase().trim()) {
-            case "PENDING": return "warning";
-            case "CONFIRMED": return "info";
-            case "SHIPPING": return "primary";
-            case "SHIPPED": return "primary";
-            case "COMPLETED": return "success";
-            case "DELIVERED": return "success";
-            case "CANCELLED": return "danger";
-            case "REQUEST_CANCELLED": return "danger";
-            default: return "secondary";
-        }
+        OrderStatus status = OrderStatusView.parse(statusStr);
+        return status != null ? OrderStatusView.display(status) : statusStr;
     }
     
     public Page<OrderHistoryDto> getCustomerOrderHistory(Long customerId, int page, int size) {
@@ -71,16 +73,24 @@ public class OrderHistoryService {
         Pageable pageable = PageRequest.of(page, size);
         Page<Order> customerOrders = orderRepository.findByUserIdOrderByCreateAtDesc(customerId, pageable);
         
-        return customerOrders.map(order -> {
-            OrderHistoryDto dto = convertToHistoryDto(order);
-            
-            List<OrderTrackingLog> trackingLogs = trackingLogRepository.findByOrderIdOrderByChangeAtDesc(order.getOrderId());
-            if (trackingLogs.isEmpty()) {
-                orderSyncService.syncSingleOrderToTrackingLog(order);
-            }
-            
-            return dto;
-        });
+        // Mọi đơn trong trang đều của khách này: không cần tra user theo từng đơn
+        Page<OrderHistoryDto> history = customerOrders.map(order -> convertToHistoryDto(order, customer));
+        attachTrackingLogs(history.getContent());
+        return history;
+    }
+    
+    /**
+     * Gắn nhật ký trạng thái (mới nhất trước) cho cả trang bằng một câu IN
+     */
+    private void attachTrackingLogs(List<OrderHistoryDto> dtos) {
+        if (dtos.isEmpty()) {
+            return;
+        }
+        List<Long> orderIds = dtos.stream().map(OrderHistoryDto::getOrderId).toList();
+        Map<Long, List<OrderTrackingLogDto>> logsByOrder = trackingLogRepository.findByOrderIdIn(orderIds).stream()
+                .collect(Collectors.groupingBy(OrderTrackingLog::getOrderId,
+                        Collectors.mapping(this::convertToTrackingLogDto, Collectors.toList())));
+        dtos.forEach(dto -> dto.setTrackingLogs(logsByOrder.getOrDefault(dto.getOrderId(), List.of())));
     }
     
     public OrderHistoryDto getOrderWithTrackingLogs(Long orderId) {
@@ -89,7 +99,8 @@ public class OrderHistoryService {
         
         List<OrderTrackingLog> trackingLogs = trackingLogRepository.findByOrderId(orderId);
         
-        OrderHistoryDto dto = convertToHistoryDto(order);
+        User user = order.getUserId() != null ? userRepository.findById(order.getUserId()).orElse(null) : null;
+        OrderHistoryDto dto = convertToHistoryDto(order, user);
         dto.setTrackingLogs(trackingLogs.stream()
                 .map(this::convertToTrackingLogDto)
                 .collect(Collectors.toList()));
@@ -97,125 +108,166 @@ public class OrderHistoryService {
         return dto;
     }
     
+    /**
+     * Đổi trạng thái một đơn theo OrderStateMachine.
+     *
+     * @param expectedVersion version của đơn lúc người dùng xem (null = không kiểm tra);
+     *                        đơn đã bị thay đổi sau đó thì từ chối thay vì ghi đè
+     */
     @Transactional
-    public void addOrderStatusChange(Long orderId, String oldStatus, String newStatusStr, 
-                                   String changedBy, String comment) {
+    public void addOrderStatusChange(Long orderId, String newStatusStr, String changedBy,
+                                     String comment, Long expectedVersion) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new NotFoundException("Không tìm thấy đơn hàng"));
+        if (expectedVersion != null && !expectedVersion.equals(order.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Order.class, orderId);
+        }
         
+        OrderStatus oldStatus = order.getStatus();
         OrderStatus newStatusEnum = OrderStatus.valueOf(newStatusStr);
+        OrderStateMachine.requireTransition(oldStatus, newStatusEnum);
         order.setStatus(newStatusEnum);
+        // @Version: đơn bị giao dịch khác đổi trong lúc này → lỗi khi commit
         orderRepository.save(order);
+        stockReservationService.onOrderStatusChanged(orderId, newStatusEnum);
+        voucherRedemptionService.onOrderStatusChanged(orderId, newStatusEnum);
+        // Nhật ký trạng thái, bộ đếm bán, doanh thu, email: xử lý ở nền sau commit
+        orderOutbox.statusChanged(orderId, oldStatus.name(), newStatusEnum, changedBy, comment);
+    }
+    
+    /**
+     * Chuyển nhiều đơn sang cùng một trạng thái: một câu UPDATE (kèm ghi nhật ký)
+     * và một batch sự kiện outbox cho cả lô. Đơn không được phép chuyển, hoặc (khi xác nhận)
+     * không còn đủ hàng để giữ lại phần đã hoàn kho, thì bỏ qua thay vì huỷ cả lô.
+     */
+    @Transactional
+    public BulkStatusChangeResult changeStatusInBulk(Collection<Long> orderIds, OrderStatus newStatus,
+                                                     String changedBy, String comment) {
+        Set<Long> ids = new LinkedHashSet<>(orderIds);
+        ids.remove(null);
+        if (ids.size() > MAX_BULK_ORDERS) {
+            throw new IllegalArgumentException("Chỉ được cập nhật tối đa " + MAX_BULK_ORDERS + " đơn mỗi lần");
+        }
+        if (ids.isEmpty()) {
+            return new BulkStatusChangeResult(List.of(), List.of());
+        }
         
-        OrderTrackingLog trackingLog = OrderTrackingLog.builder()
-                .orderId(order.getOrderId())
-                .oldStatus(oldStatus)
-                .newStatus(newStatusStr)
-                .changedAt(LocalDateTime.now())
-                .changedBy(changedBy)
-                .comment(comment)
-                .build();
+        String[] sources = OrderStateMachine.sourcesOf(newStatus).stream().map(Enum::name).toArray(String[]::new);
+        Set<Long> candidates = ids;
+        if (newStatus == OrderStatus.CONFIRMED) {
+            // Khóa đơn trước rồi giữ hàng cho cả lô; đơn thiếu hàng không được chuyển
+            List<Long> locked = orderTransitionRepository.lockAll(ids.toArray(Long[]::new), sources);
+            Set<Long> shortOfStock = stockReservationService.commitOrders(locked);
+            candidates = new LinkedHashSet<>(locked);
+            candidates.removeAll(shortOfStock);
+        }
+        List<OrderTransitionRepository.MovedOrder> moved = candidates.isEmpty() ? List.of()
+                : orderTransitionRepository.transitionAll(
+                        candidates.toArray(Long[]::new), sources, newStatus.name(), changedBy, comment);
+        
+        List<OrderOutbox.StatusChange> changes = moved.stream()
+                .map(m -> new OrderOutbox.StatusChange(m.getOrderId(), m.getOldStatus()))
+                .toList();
+        // Giữ hàng chỉ đổi khi xác nhận (đã xử lý ở trên) / huỷ; giao hàng, hoàn thành không cần gọi
+        if (newStatus == OrderStatus.CANCELLED) {
+            changes.forEach(change -> stockReservationService.onOrderStatusChanged(change.orderId(), newStatus));
+            voucherRedemptionService.onOrdersCancelled(changes.stream().map(OrderOutbox.StatusChange::orderId).toList());
+        }
+        // Nhật ký đã ghi cùng câu UPDATE; các tác vụ còn lại chạy ở nền như đổi từng đơn
+        orderOutbox.statusChangedAll(changes, newStatus, changedBy, comment, TrackingLogEventHandler.NAME);
         
-        trackingLogRepository.save(trackingLog);
+        List<Long> changed = changes.stream().map(OrderOutbox.StatusChange::orderId).toList();
+        Set<Long> changedSet = new HashSet<>(changed);
+        List<Long> skipped = ids.stream().filter(id -> !changedSet.contains(id)).toList();
+        return new BulkStatusChangeResult(changed, skipped);
     }
     
     public Page<OrderHistoryDto> getAllOrders(String statusStr, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<Order> orders;
-        
+        OrderStatus status = parseStatusFilter(statusStr);
+        return adminOrderQueryRepository.findPage(status != null ? status.name() : null, pageable)
+                .map(this::convertToHistoryDto);
+    }
+    
+    // null = không lọc (ALL, rỗng hoặc trạng thái không hợp lệ)
+    private OrderStatus parseStatusFilter(String statusStr) {
         if (statusStr == null || statusStr.trim().isEmpty() || statusStr.equals("ALL")) {
-            orders = orderRepository.findAll(pageable);
-        } else {
-            try {
-                OrderStatus status = OrderStatus.valueOf(statusStr.toUpperCase().trim());
-                orders = orderRepository.findByStatus(status, pageable);
-            } catch (IllegalArgumentException e) {
-                orders = orderRepository.findAll(pageable);
-            }
+            return null;
         }
-        return orders.map(this::convertToHistoryDto);
+        return OrderStatusView.parse(statusStr);
     }
     
+    /**
+     * Danh sách đơn cho admin ở chế độ keyset (mới nhất trước), không OFFSET.
+     * Tổng số chỉ được đếm khi withCount = true.
+     */
+    public KeysetPage<OrderHistoryDto> getAllOrdersKeyset(String statusStr, KeysetCursor cursor, int size, boolean withCount) {
+        OrderStatus status = parseStatusFilter(statusStr);
+        String statusName = status != null ? status.name() : null;
+
+        // Cursor của danh sách khác hoặc ngày không đọc được → trang đầu
+        KeysetCursor c = cursor != null ? cursor.forSort(ORDER_CURSOR_KEY) : null;
+        LocalDateTime afterCreateAt = c != null ? c.sortValueAs(LocalDateTime::parse) : null;
+        List<AdminOrderQueryRepository.AdminOrderRow> rows = afterCreateAt == null
+                ? adminOrderQueryRepository.findFirstPageKeyset(statusName, size + 1)
+                : adminOrderQueryRepository.findPageAfterKeyset(statusName,
+                        afterCreateAt, c.id(), size + 1);
+
+        Long total = null;
+        if (withCount) {
+            total = status != null ? orderRepository.countByStatus(status) : orderRepository.count();
+        }
+        return KeysetPage.of(rows, size,
+                        last -> new KeysetCursor(ORDER_CURSOR_KEY, last.getCreateAt().toString(), last.getOrderId()), total)
+                .map(this::convertToHistoryDto);
+    }
+
     // Thêm method tìm kiếm theo mã đơn hàng hoặc tên khách hàng
     public Page<OrderHistoryDto> searchOrders(String searchType, String keyword, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<Order> orders;
+        Page<AdminOrderQueryRepository.AdminOrderRow> orders;
         
         if (keyword == null || keyword.trim().isEmpty()) {
             return getAllOrders(null, page, size);
         }
         
         String searchKeyword = keyword.trim();
+        String code = searchKeyword.toUpperCase();
+        long orderId = parseOrderId(searchKeyword);
+        // "%" hay "_" trong từ khóa được so khớp đúng ký tự, không phải ký tự đại diện
+        String keywordPattern = LikePatterns.escape(searchKeyword);
         
         if ("orderId".equals(searchType)) {
-            // Tìm kiếm theo mã đơn hàng
-            try {
-                Long orderIdLong = Long.parseLong(searchKeyword);
-                orders = orderRepository.findByOrderId(orderIdLong, pageable);
-            } catch (NumberFormatException e) {
-                // Nếu không phải số, tìm kiếm tương đối
-                orders = orderRepository.findByOrderIdContaining(searchKeyword, pageable);
-            }
+            // Mã đơn: khớp chính xác hoặc theo tiền tố (orderId / order_code)
+            orders = adminOrderQueryRepository.searchByCode(orderId, code, LikePatterns.escape(code), pageable);
         } else if ("customerName".equals(searchType)) {
-            // Tìm kiếm theo tên khách hàng
-            orders = orderRepository.findByCustomerNameContaining(searchKeyword, pageable);
+            // Tên, email hoặc số điện thoại người nhận
+            orders = adminOrderQueryRepository.searchByCustomer(searchKeyword, keywordPattern, pageable);
         } else {
             // Mặc định tìm trong cả hai
-            orders = orderRepository.findByOrderIdOrCustomerNameContaining(searchKeyword, pageable);
+            orders = adminOrderQueryRepository.searchAll(orderId, code, LikePatterns.escape(code), searchKeyword, keywordPattern, pageable);
         }
         
         return orders.map(this::convertToHistoryDto);
     }
     
-    private OrderHistoryDto convertFromTrackingLogToHistoryDto(OrderTrackingLog trackingLog, Order order) {
-        OrderStatus orderStatus = OrderStatus.PENDING;
-        
-        if (trackingLog.getNewStatus() != null && !trackingLog.getNewStatus().trim().isEmpty()) {
-            try {
-                orderStatus = OrderStatus.valueOf(trackingLog.getNewStatus().toUpperCase().trim());
-            } catch (IllegalArgumentException e) {
-                orderStatus = OrderStatus.PENDING;
-            }
-        }
-        
-        String customerName = "Customer";
-        String customerEmail = order.getRecipientEmail() != null ? order.getRecipientEmail() : "customer@example.com";
-        
-        if (order.getUserId() != null) {
-            User user = userRepository.findById(order.getUserId()).orElse(null);
-            if (user != null) {
-                customerName = user.getFullname() != null ? user.getFullname() : "Customer";
-                if (customerEmail == null) {
-                    customerEmail = user.getEmail();
-                }
-            }
+    // -1 (không khớp đơn nào) nếu từ khóa không phải số
+    private long parseOrderId(String keyword) {
+        try {
+            return Long.parseLong(keyword);
+        } catch (NumberFormatException e) {
+            return -1;
         }
-        
-        return OrderHistoryDto.builder()
-                .orderId(order.getOrderId())
-                .customerName(customerName)
-                .customerEmail(customerEmail != null ? customerEmail : "N/A")
-                .createAt(trackingLog.getChangedAt())
-                .status(orderStatus)
-                .statusDisplay(getVietnameseStatus(trackingLog.getNewStatus()))
-                .statusColorClass(getStatusColorClass(trackingLog.getNewStatus()))
-                .subTotal(order.getSubTotal() != null ? order.getSubTotal() : BigDecimal.ZERO)
-                .discountAmount(order.getDiscountAmount() != null ? order.getDiscountAmount() : BigDecimal.ZERO)
-                .totalAmount(order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO)
-                .note(order.getNote())
-                .build();
     }
-    private OrderHistoryDto convertToHistoryDto(Order order) {
+    
+    private OrderHistoryDto convertToHistoryDto(Order order, User user) {
         OrderStatus statusEnum = order.getStatus() != null ? order.getStatus() : OrderStatus.PENDING;
         String customerName = "Customer";
         String customerEmail = order.getRecipientEmail() != null ? order.getRecipientEmail() : "customer@example.com";
         
-        if (order.getUserId() != null) {
-            User user = userRepository.findById(order.getUserId()).orElse(null);
-            if (user != null) {
-                if (user.getFullname() != null) customerName = user.getFullname();
-                if (customerEmail.isEmpty()) customerEmail = user.getEmail();
-            }
+        if (user != null) {
+            if (user.getFullname() != null) customerName = user.getFullname();
+            if (customerEmail.isEmpty()) customerEmail = user.getEmail();
         }
         
         return OrderHistoryDto.builder()
@@ -224,12 +276,31 @@ public class OrderHistoryService {
                 .customerEmail(customerEmail)
                 .createAt(order.getCreateAt())
                 .status(statusEnum)
-                .statusDisplay(getVietnameseStatus(statusEnum.name()))
-                .statusColorClass(getStatusColorClass(statusEnum.name()))
+                .statusDisplay(OrderStatusView.display(statusEnum))
+                .statusColorClass(OrderStatusView.colorClass(statusEnum))
                 .subTotal(order.getSubTotal() != null ? order.getSubTotal() : BigDecimal.ZERO)
                 .discountAmount(order.getDiscountAmount() != null ? order.getDiscountAmount() : BigDecimal.ZERO)
                 .totalAmount(order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO)
                 .note(order.getNote())
+                .version(order.getVersion())
+                .build();
+    }
+    
+    private OrderHistoryDto convertToHistoryDto(AdminOrderQueryRepository.AdminOrderRow row) {
+        OrderStatus statusEnum = row.getStatus() != null ? OrderStatus.valueOf(row.getStatus()) : OrderStatus.PENDING;
+        return OrderHistoryDto.builder()
+                .orderId(row.getOrderId())
+                .customerName(row.getCustomerName())
+                .customerEmail(row.getCustomerEmail())
+                .createAt(row.getCreateAt())
+                .status(statusEnum)
+                .statusDisplay(OrderStatusView.display(statusEnum))
+                .statusColorClass(OrderStatusView.colorClass(statusEnum))
+                .subTotal(row.getSubTotal() != null ? row.getSubTotal() : BigDecimal.ZERO)
+                .discountAmount(row.getDiscountAmount() != null ? row.getDiscountAmount() : BigDecimal.ZERO)
+                .totalAmount(row.getTotalAmount() != null ? row.getTotalAmount() : BigDecimal.ZERO)
+                .note(row.getNote())
+                .version(row.getVersion())
                 .build();
     }
     
@@ -247,12 +318,6 @@ public class OrderHistoryService {
                 .build();
     }
     
-    public String getCurrentOrderStatus(Long orderId) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new NotFoundException("Không tìm thấy đơn hàng"));
-        return order.getStatus() != null ? order.getStatus().name() : "PENDING";
-    }
-    
     public long countOrdersByStatus(String statusStr) {
         if (statusStr == null || statusStr.trim().isEmpty()) {
             return orderRepository.count();
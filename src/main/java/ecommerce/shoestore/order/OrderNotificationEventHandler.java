@@ -0,0 +1,110 @@
+package ecommerce.shoestore.order;
+
+import ecommerce.shoestore.auth.email.EmailService;
+import ecommerce.shoestore.order.outbox.OrderEvent;
+import ecommerce.shoestore.order.outbox.OrderEventHandler;
+import ecommerce.shoestore.order.outbox.OrderEventType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Gửi email cho khách khi đơn được tạo, đổi trạng thái hoặc thanh toán xong.
+ *
+ * Handler chỉ đọc đơn, soạn nội dung rồi giao email cho pool gửi mail riêng
+ * (order.notification.mail-threads); handler xong ngay khi email đã vào hàng đợi,
+ * không chờ SMTP trên luồng dispatcher hay trong transaction của handler.
+ * Pool không phải bean để không thay executor mặc định của @Async.
+ * Email chỉ là thông báo: lỗi gửi mail được ghi log và bỏ qua. Hàng đợi
+ * (order.notification.mail-queue-capacity) đầy thì handler lỗi và sự kiện được thử lại sau.
+ */
+@Component
+@Slf4j
+class OrderNotificationEventHandler implements OrderEventHandler, DisposableBean {
+
+    private final OrderRepository orderRepository;
+    private final EmailService emailService;
+    private final ThreadPoolTaskExecutor mailExecutor = new ThreadPoolTaskExecutor();
+
+    @Value("${order.notification.enabled:true}")
+    private boolean enabled;
+
+    OrderNotificationEventHandler(OrderRepository orderRepository, EmailService emailService,
+                                  @Value("${order.notification.mail-threads:2}") int mailThreads,
+                                  @Value("${order.notification.mail-queue-capacity:500}") int mailQueueCapacity) {
+        this.orderRepository = orderRepository;
+        this.emailService = emailService;
+        mailExecutor.setThreadNamePrefix("order-mail-");
+        mailExecutor.setCorePoolSize(mailThreads);
+        mailExecutor.setMaxPoolSize(mailThreads);
+        mailExecutor.setQueueCapacity(mailQueueCapacity);
+        // Tắt ứng dụng: gửi nốt các email đã nhận trong thời gian ngắn
+        mailExecutor.setWaitForTasksToCompleteOnShutdown(true);
+        mailExecutor.setAwaitTerminationSeconds(10);
+        mailExecutor.initialize();
+    }
+
+    @Override
+    public String name() {
+        return "notification-email";
+    }
+
+    @Override
+    public boolean supports(OrderEventType type) {
+        return enabled;
+    }
+
+    @Override
+    public void handle(OrderEvent event) {
+        Order order = orderRepository.findById(event.orderId()).orElse(null);
+        if (order == null || !StringUtils.hasText(order.getRecipientEmail())) {
+            return;
+        }
+
+        String code = order.getOrderCode() != null ? order.getOrderCode() : "#" + order.getOrderId();
+        String subject;
+        String body;
+        switch (event.type()) {
+            case ORDER_CREATED -> {
+                subject = "Đặt hàng thành công - Đơn " + code;
+                body = "Cảm ơn bạn đã đặt hàng tại ShoeStore.\n"
+                        + "Mã đơn: " + code + "\n"
+                        + "Tổng tiền: " + event.get("totalAmount") + " VND\n"
+                        + "Phương thức thanh toán: " + event.get("paymentMethod");
+            }
+            case ORDER_STATUS_CHANGED -> {
+                subject = "Cập nhật đơn hàng " + code;
+                body = "Đơn hàng " + code + " của bạn đã chuyển sang trạng thái: "
+                        + OrderStatusView.display(OrderStatus.valueOf(event.get("newStatus")));
+            }
+            case PAYMENT_COMPLETED -> {
+                subject = "Thanh toán thành công - Đơn " + code;
+                body = "Đơn hàng " + code + " đã được thanh toán qua VNPay.\n"
+                        + "Số tiền: " + event.get("amount") + " VND\n"
+                        + "Mã giao dịch: " + event.get("transactionNo");
+            }
+            default -> {
+                return;
+            }
+        }
+
+        String to = order.getRecipientEmail();
+        Long orderId = order.getOrderId();
+        mailExecutor.execute(() -> {
+            try {
+                emailService.sendEmailNow(to, subject, body);
+            } catch (MailException e) {
+                log.warn("Không gửi được email đơn {} ({}): {}", orderId, event.type(), e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        mailExecutor.shutdown();
+    }
+}
@@ -1,293 +1,93 @@
 package ecommerce.shoestore.order;
 
-import ecommerce.shoestore.cart.Cart;
-import ecommerce.shoestore.cart.CartRepository;
-import ecommerce.shoestore.cartitem.CartItem;
+import ecommerce.shoestore.cart.CartItemCountCache;
 import ecommerce.shoestore.cartitem.CartItemRepository;
 import ecommerce.shoestore.promotion.CustomerPromotionService;
-import ecommerce.shoestore.promotion.Voucher;
+import ecommerce.shoestore.promotion.VoucherRedemptionService;
 import ecommerce.shoestore.promotion.dto.VoucherValidationResult;
-import ecommerce.shoestore.inventory.InventoryService;
-import ecommerce.shoestore.payment.Payment;
-import ecommerce.shoestore.payment.PaymentRepository;
-import ecommerce.shoestore.payment.PaymentTransaction;
-import ecommerce.shoestore.payment.PaymentTransactionRepository;
-import ecommerce.shoestore.shoesvariant.ShoesVariant;
-import ecommerce.shoestore.shoesvariant.ShoesVariantRepository;
+import ecommerce.shoestore.inventory.StockReservationService;
+import ecommerce.shoestore.order.outbox.OrderOutbox;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class OrderService {
     
     private final OrderRepository orderRepository;
-    private final InventoryService inventoryService;
+    private final StockReservationService stockReservationService;
     private final OrderItemRepository orderItemRepository;
-    private final CartRepository cartRepository;
     private final CartItemRepository cartItemRepository;
-    private final ShoesVariantRepository shoesVariantRepository;
     private final CustomerPromotionService customerPromotionService;
-    private final PaymentRepository paymentRepository;
-    private final PaymentTransactionRepository paymentTransactionRepository;
-    private final OrderAddressRepository orderAddressRepository;
+    private final VoucherRedemptionService voucherRedemptionService;
+    private final OrderCheckoutWriter orderCheckoutWriter;
+    private final CheckoutMetrics checkoutMetrics;
+    private final OrderOutbox orderOutbox;
+    private final CartItemCountCache cartItemCountCache;
     private static final BigDecimal SHIPPING_FEE = new BigDecimal("30000");
     
+    /**
+     * Tạo đơn từ ảnh chụp checkout: món hàng, giá và địa chỉ lấy từ CheckoutSession,
+     * không đọc lại giỏ hàng, sản phẩm hay địa chỉ. Voucher vẫn được kiểm tra lại ở đây
+     * vì lượt dùng có thể đã thay đổi từ lúc áp dụng thử.
+     */
     @Transactional
-    public Order createOrderFromCart(Long userId, Long addressId, String recipientEmail,
-                                     String paymentMethod, String note, Cart cart, String voucherCode) {
-        
-        System.out.println("=== Creating order from cart ===");
-        System.out.println("VoucherCode received: [" + voucherCode + "]");
-        
-        // Tính subTotal từ cart
-        BigDecimal subTotal = BigDecimal.ZERO;
-        for (CartItem item : cart.getItems()) {
-            BigDecimal itemTotal = item.getVariant().getShoes().getBasePrice()
-                    .multiply(BigDecimal.valueOf(item.getQuantity()));
-            subTotal = subTotal.add(itemTotal);
-        }
-        
-        System.out.println("SubTotal calculated: " + subTotal);
+    public Order createOrderFromCheckout(CheckoutSession checkout, String paymentMethod, String voucherCode) {
+        checkoutMetrics.track(CheckoutSession.BUY_NOW.equals(checkout.getType()) ? "buy_now" : "selected");
+        Long userId = checkout.getUserId();
+        BigDecimal subTotal = checkout.getSubtotal();
+        log.debug("Tạo đơn {} cho user {}: tạm tính {}, voucher [{}]", checkout.getType(), userId, subTotal, voucherCode);
         
         // Validate và tính discountAmount từ voucher
-        BigDecimal discountAmount = BigDecimal.ZERO;
-        Voucher appliedVoucher = null;
-        
-        // Chỉ validate voucher nếu có code thực sự (không null, không rỗng, không chỉ có khoảng trắng)
-        if (voucherCode != null && !voucherCode.trim().isEmpty()) {
-            System.out.println("Validating voucher: " + voucherCode.trim());
-            VoucherValidationResult validation = customerPromotionService.validateVoucher(
-                    voucherCode.trim(), userId, subTotal);
-            
-            if (validation.isValid()) {
-                appliedVoucher = validation.getVoucher();
-                discountAmount = validation.getDiscountAmount();
-                System.out.println("Voucher valid! Discount: " + discountAmount);
-            } else {
-                System.out.println("Voucher validation failed: " + validation.getErrorMessage());
-                throw new IllegalArgumentException(validation.getErrorMessage());
-            }
-        } else {
-            System.out.println("No voucher code provided, skipping validation");
-        }
-
-        // Tính totalAmount
+        VoucherValidationResult voucher = validateVoucher(voucherCode, userId, subTotal);
+        BigDecimal discountAmount = voucher != null ? voucher.getDiscountAmount() : BigDecimal.ZERO;
         BigDecimal totalAmount = subTotal.add(SHIPPING_FEE).subtract(discountAmount);
 
-        // Lấy thông tin địa chỉ để điền recipient fields
-        OrderAddress address = orderAddressRepository.findById(addressId)
-                .orElseThrow(() -> new RuntimeException("Địa chỉ không tồn tại"));
-
-        // Generate order code
-        String orderCode = "ORDER" + System.currentTimeMillis();
-
-        // Tạo Order
         Order order = new Order();
         order.setUserId(userId);
-        order.setOrderAddressId(addressId);
-        order.setRecipientEmail(recipientEmail);
-        order.setRecipientName(address.getRecipientName());
-        order.setRecipientPhone(address.getRecipientPhone());
-        order.setRecipientAddress(
-                address.getProvince() + ", "
-                + address.getDistrict() + ", "
-                + address.getCommune() + ", "
-                + address.getStreetDetail()
-        );
+        order.setOrderAddressId(checkout.getAddressId());
+        order.setRecipientEmail(checkout.getRecipientEmail());
+        order.setRecipientName(checkout.getRecipientName());
+        order.setRecipientPhone(checkout.getRecipientPhone());
+        order.setRecipientAddress(checkout.getRecipientAddress());
         order.setSubTotal(subTotal);
         order.setShippingFee(SHIPPING_FEE);
         order.setDiscountAmount(discountAmount);
         order.setTotalAmount(totalAmount);
-        // Use payment method value directly from form (COD or TRANSFER)
         order.setPaymentMethod(paymentMethod);
-        order.setNote(note);
+        order.setOrderCode("ORDER" + System.currentTimeMillis());
+        order.setNote(checkout.getNote());
         order.setStatus(OrderStatus.PENDING);
-
-        // Set payment status based on payment method
-        if ("VNPAY".equals(paymentMethod)) {
-            order.setPaymentStatus("UNPAID");
-        } else {
-            order.setPaymentStatus("UNPAID");
-        }
+        order.setPaymentStatus("UNPAID");
 
         order = orderRepository.save(order);
-        
-        // Create PaymentTransaction and Payment for VNPAY
-        if ("VNPAY".equals(paymentMethod)) {
-            PaymentTransaction transaction = new PaymentTransaction();
-            transaction.setOrderId(order.getOrderId());
-            transaction.setAmount(totalAmount);
-            transaction.setPaymentMethod("VNPAY");
-            transaction.setStatus("PENDING");
-            transaction.setVnpTxnRef(order.getOrderId().toString());
-            paymentTransactionRepository.save(transaction);
-            System.out.println("Created PaymentTransaction for Order ID: " + order.getOrderId());
-            
-            // Create Payment record
-            Payment payment = new Payment();
-            payment.setOrderId(order.getOrderId());
-            payment.setAmount(totalAmount);
-            payment.setProvider("VNPAY");
-            payment.setCurrency("VND");
-            payment.setStatus("PENDING");
-            paymentRepository.save(payment);
-            System.out.println("Created Payment for Order ID: " + order.getOrderId());
-        }
-        
-        // Tạo OrderItems
-        for (CartItem item : cart.getItems()) {
-            ShoesVariant variant = item.getVariant();
-            
-            OrderItem orderItem = new OrderItem();
-            orderItem.setOrderId(order.getOrderId());
-            orderItem.setShoeId(variant.getShoes().getShoeId());
-            orderItem.setQuantity((long) item.getQuantity());
-            orderItem.setProductName(variant.getShoes().getName());
-            orderItem.setVariantInfo("Size: " + variant.getSize() + ", Color: " + variant.getColor());
-            orderItem.setUnitPrice(variant.getShoes().getBasePrice());
-            orderItem.setShopDiscount(BigDecimal.ZERO);
-            orderItem.setItemTotal(variant.getShoes().getBasePrice()
-                    .multiply(BigDecimal.valueOf(item.getQuantity())));
-            orderItemRepository.save(orderItem);
-        }
-        
-        // Áp dụng voucher vào order nếu có
-        if (appliedVoucher != null) {
-            customerPromotionService.applyVoucherToOrder(order, appliedVoucher, userId);
-        }
-        
-        // Xóa cart
-        cartRepository.delete(cart);
-        
-        return order;
-    }
-    
-    @Transactional
-    public Order createOrderBuyNow(Long userId, Long addressId, String recipientEmail,
-                                   String paymentMethod, String note,
-                                   Long variantId, Integer quantity, String voucherCode) {
-        
-        System.out.println("=== Creating order from BUY NOW ===");
-        System.out.println("VoucherCode received: [" + voucherCode + "]");
-        
-        ShoesVariant variant = shoesVariantRepository.findById(variantId)
-                .orElseThrow(() -> new RuntimeException("Variant not found"));
-        
-        // Tính subTotal
-        BigDecimal subTotal = variant.getShoes().getBasePrice()
-                .multiply(BigDecimal.valueOf(quantity));
-        
-        System.out.println("SubTotal calculated: " + subTotal);
-        
-        // Validate và tính discountAmount từ voucher
-        BigDecimal discountAmount = BigDecimal.ZERO;
-        Voucher appliedVoucher = null;
-        
-        // Chỉ validate voucher nếu có code thực sự
-        if (voucherCode != null && !voucherCode.trim().isEmpty()) {
-            System.out.println("Validating voucher: " + voucherCode.trim());
-            VoucherValidationResult validation = customerPromotionService.validateVoucher(
-                    voucherCode.trim(), userId, subTotal);
-            
-            if (validation.isValid()) {
-                appliedVoucher = validation.getVoucher();
-                discountAmount = validation.getDiscountAmount();
-                System.out.println("Voucher valid! Discount: " + discountAmount);
-            } else {
-                System.out.println("Voucher validation failed: " + validation.getErrorMessage());
-                throw new IllegalArgumentException(validation.getErrorMessage());
-            }
-        } else {
-            System.out.println("No voucher code provided, skipping validation");
-        }
-        
-        // Tính totalAmount
-        BigDecimal totalAmount = subTotal.add(SHIPPING_FEE).subtract(discountAmount);
+        orderOutbox.orderCreated(order);
 
-        // Lấy thông tin địa chỉ để điền recipient fields
-        OrderAddress address = orderAddressRepository.findById(addressId)
-                .orElseThrow(() -> new RuntimeException("Địa chỉ không tồn tại"));
-
-        // Generate order code
-        String orderCode = "ORDER" + System.currentTimeMillis();
-
-        // Tạo Order
-        Order order = new Order();
-        order.setUserId(userId);
-        order.setOrderAddressId(addressId);
-        order.setRecipientEmail(recipientEmail);
-        order.setRecipientName(address.getRecipientName());
-        order.setRecipientPhone(address.getRecipientPhone());
-        order.setRecipientAddress(
-                address.getProvince() + ", "
-                + address.getDistrict() + ", "
-                + address.getCommune() + ", "
-                + address.getStreetDetail()
-        );
-        order.setSubTotal(subTotal);
-        order.setShippingFee(SHIPPING_FEE);
-        order.setDiscountAmount(discountAmount);
-        order.setTotalAmount(totalAmount);
-        // Use payment method value directly from form (COD or TRANSFER)
-        order.setPaymentMethod(paymentMethod);
-        order.setOrderCode(orderCode);
-        order.setNote(note);
-        order.setStatus(OrderStatus.PENDING);
+        // Tạo OrderItems, thanh toán VNPay và voucher (ghi theo lô)
+        List<OrderItem> orderItems = checkout.getLines().stream()
+                .map(this::toOrderItem)
+                .toList();
+        orderCheckoutWriter.write(order, orderItems, voucher);
 
-        // Set payment status based on payment method
-        if ("VNPAY".equals(paymentMethod)) {
-            order.setPaymentStatus("UNPAID");
-        } else {
-            order.setPaymentStatus("UNPAID");
+        // Xóa các món đã đặt khỏi giỏ
+        List<Long> cartItemIds = checkout.getCartItemIds();
+        if (!cartItemIds.isEmpty()) {
+            cartItemRepository.deleteAllByIdInBatch(cartItemIds);
+            cartItemRepository.flush();
+            cartItemCountCache.evictAfterCommit(userId);
         }
 
-        order = orderRepository.save(order);
-        
-        // Create PaymentTransaction and Payment for VNPAY
-        if ("VNPAY".equals(paymentMethod)) {
-            PaymentTransaction transaction = new PaymentTransaction();
-            transaction.setOrderId(order.getOrderId());
-            transaction.setAmount(totalAmount);
-            transaction.setPaymentMethod("VNPAY");
-            transaction.setStatus("PENDING");
-            transaction.setVnpTxnRef(order.getOrderId().toString());
-            paymentTransactionRepository.save(transaction);
-            System.out.println("Created PaymentTransaction for Order ID: " + order.getOrderId());
-            
-            // Create Payment record
-            Payment payment = new Payment();
-            payment.setOrderId(order.getOrderId());
-            payment.setAmount(totalAmount);
-            payment.setProvider("VNPAY");
-            payment.setCurrency("VND");
-            payment.setStatus("PENDING");
-            paymentRepository.save(payment);
-            System.out.println("Created Payment for Order ID: " + order.getOrderId());
-        }
-        
-        // Tạo OrderItem
-        OrderItem orderItem = new OrderItem();
-        orderItem.setOrderId(order.getOrderId());
-        orderItem.setShoeId(variant.getShoes().getShoeId());
-        orderItem.setQuantity((long) quantity);
-        orderItem.setProductName(variant.getShoes().getName());
-        orderItem.setVariantInfo("Size: " + variant.getSize() + ", Color: " + variant.getColor());
-        orderItem.setUnitPrice(variant.getShoes().getBasePrice());
-        orderItem.setShopDiscount(BigDecimal.ZERO);
-        orderItem.setItemTotal(subTotal);
-        orderItemRepository.save(orderItem);
-        
-        // Áp dụng voucher vào order nếu có
-        if (appliedVoucher != null) {
-            customerPromotionService.applyVoucherToOrder(order, appliedVoucher, userId);
-        }
-        
+        // Giữ hàng sau cùng để khóa dòng tồn kho trong thời gian ngắn nhất
+        stockReservationService.reserve(order.getOrderId(), checkout.getQuantitiesByVariant(),
+                "VNPAY".equals(paymentMethod));
+        redeemVoucher(voucher, userId);
+
         return order;
     }
     
@@ -300,135 +100,21 @@ public class OrderService {
         return orderItemRepository.findByOrderId(orderId);
     }
     
-    @Transactional
-    public Order createOrderFromSelectedItems(Long userId, Long addressId, String recipientEmail,
-            String paymentMethod, String note,
-            List<CartItem> selectedItems, String voucherCode) {
-
-        System.out.println("=== Creating order from selected items ===");
-        System.out.println("VoucherCode received: [" + voucherCode + "]");
-        
-        // Tính subTotal từ items được chọn
-        BigDecimal subTotal = BigDecimal.ZERO;
-        for (CartItem item : selectedItems) {
-            BigDecimal itemTotal = item.getUnitPrice()
-                    .multiply(BigDecimal.valueOf(item.getQuantity()));
-            subTotal = subTotal.add(itemTotal);
-        }
-        
-        System.out.println("SubTotal calculated: " + subTotal);
-        
-        // Validate và tính discountAmount từ voucher
-        BigDecimal discountAmount = BigDecimal.ZERO;
-        Voucher appliedVoucher = null;
-        
-        // Chỉ validate voucher nếu có code thực sự
-        if (voucherCode != null && !voucherCode.trim().isEmpty()) {
-            System.out.println("Validating voucher: " + voucherCode.trim());
-            VoucherValidationResult validation = customerPromotionService.validateVoucher(
-                    voucherCode.trim(), userId, subTotal);
-            
-            if (validation.isValid()) {
-                appliedVoucher = validation.getVoucher();
-                discountAmount = validation.getDiscountAmount();
-                System.out.println("Voucher valid! Discount: " + discountAmount);
-            } else {
-                System.out.println("Voucher validation failed: " + validation.getErrorMessage());
-                throw new IllegalArgumentException(validation.getErrorMessage());
-            }
-        } else {
-            System.out.println("No voucher code provided, skipping validation");
-        }
-
-        BigDecimal totalAmount = subTotal.add(SHIPPING_FEE).subtract(discountAmount);
-
-        // Tạo Order
-        Order order = new Order();
-        order.setUserId(userId);
-        order.setOrderAddressId(addressId);
-        order.setRecipientEmail(recipientEmail);
-        order.setSubTotal(subTotal);
-        order.setShippingFee(SHIPPING_FEE);
-        order.setDiscountAmount(discountAmount);
-        order.setTotalAmount(totalAmount);
-        order.setPaymentMethod(paymentMethod);
-        order.setNote(note);
-        order.setStatus(OrderStatus.PENDING);
-
-        order = orderRepository.save(order);
-        
-        // Create PaymentTransaction and Payment for VNPAY
-        if ("VNPAY".equals(paymentMethod)) {
-            PaymentTransaction transaction = new PaymentTransaction();
-            transaction.setOrderId(order.getOrderId());
-            transaction.setAmount(totalAmount);
-            transaction.setPaymentMethod("VNPAY");
-            transaction.setStatus("PENDING");
-            transaction.setVnpTxnRef(order.getOrderId().toString());
-            paymentTransactionRepository.save(transaction);
-            System.out.println("Created PaymentTransaction for Order ID: " + order.getOrderId());
-            
-            // Create Payment record
-            Payment payment = new Payment();
-            payment.setOrderId(order.getOrderId());
-            payment.setAmount(totalAmount);
-            payment.setProvider("VNPAY");
-            payment.setCurrency("VND");
-            payment.setStatus("PENDING");
-            paymentRepository.save(payment);
-            System.out.println("Created Payment for Order ID: " + order.getOrderId());
-        }
-
-        // Tạo OrderItems CHỈ cho items được chọn
-        for (CartItem item : selectedItems) {
-            ShoesVariant variant = item.getVariant();
-
-            OrderItem orderItem = new OrderItem();
-            orderItem.setOrderId(order.getOrderId());
-            orderItem.setShoeId(variant.getShoes().getShoeId());
-            orderItem.setQuantity((long) item.getQuantity());
-            orderItem.setProductName(variant.getShoes().getName());
-            orderItem.setVariantInfo("Size: " + variant.getSize() + ", Color: " + variant.getColor());
-            orderItem.setUnitPrice(item.getUnitPrice());
-            orderItem.setShopDiscount(BigDecimal.ZERO);
-            orderItem.setItemTotal(item.getUnitPrice()
-                    .multiply(BigDecimal.valueOf(item.getQuantity())));
-            orderItemRepository.save(orderItem);
-        }
-        // Áp dụng voucher vào order nếu có
-        if (appliedVoucher != null) {
-            customerPromotionService.applyVoucherToOrder(order, appliedVoucher, userId);
-        }
-
-        // === XÓA CART ITEMS ĐÃ ĐẶT HÀNG ===
-        List<Long> cartItemIdsToRemove = selectedItems.stream()
-                .map(CartItem::getCartItemId)
-                .toList();
-
-        System.out.println("Deleting selected cart items: " + cartItemIdsToRemove);
-        // Use batch delete for immediate removal and better consistency
-        cartItemRepository.deleteAllByIdInBatch(cartItemIdsToRemove);
-        // Ensure delete is flushed before returning
-        cartItemRepository.flush();
-        System.out.println("Deleted selected cart items successfully");
-
-        return order;
-    }
     //Thêm hàm cập nhật trạng thái đơn hàng
+    @Transactional
     public void updateOrderStatus(Long orderId, OrderStatus newStatus) {
     Order order = orderRepository.findById(orderId)
             .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng ID: " + orderId));
 
-    if (order.getStatus() == OrderStatus.CANCELLED) {
-        throw new RuntimeException("Đơn hàng đã bị huỷ, không thể cập nhật!");
-    }
-    if (order.getStatus() == OrderStatus.COMPLETED) {
-        throw new RuntimeException("Đã giao thành công!");
-    }
-
+    OrderStatus oldStatus = order.getStatus();
+    OrderStateMachine.requireTransition(oldStatus, newStatus);
     order.setStatus(newStatus);
     orderRepository.save(order);
+    stockReservationService.onOrderStatusChanged(orderId, newStatus);
+    voucherRedemptionService.onOrderStatusChanged(orderId, newStatus);
+    orderOutbox.statusChanged(orderId, oldStatus.name(), newStatus, "System", null);
     }
+    @Transactional
     public OrderStatus requestCancelOrder( Long orderId, Long userId){
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng ID: " + orderId));
@@ -436,19 +122,67 @@ public class OrderService {
             throw new RuntimeException("Bạn không có quyền huỷ đơn hàng này");
         }
         OrderStatus currentStatus = order.getStatus();
-        if (order.getStatus() == OrderStatus.PENDING) {
-            order.setStatus(OrderStatus.CANCELLED);
-            List<OrderItem> items = orderItemRepository.findByOrderId(order.getOrderId());
-            inventoryService.restoreStock(items); 
-            orderRepository.save(order);
-            return OrderStatus.CANCELLED;
-        }else if(currentStatus == OrderStatus.CONFIRMED){
-            order.setStatus(OrderStatus.REQUEST_CANCELLED);
-            orderRepository.save(order);
-            return OrderStatus.REQUEST_CANCELLED;
-        }else if (currentStatus == OrderStatus.SHIPPING || currentStatus == OrderStatus.COMPLETED || currentStatus == OrderStatus.CANCELLED){
-            throw new RuntimeException("Đơn hàng đang giao hoặc đã hoàn thành, không thể hủy!");
+        // Chưa xác nhận: huỷ ngay; đã xác nhận: gửi yêu cầu để cửa hàng duyệt
+        OrderStatus newStatus = switch (currentStatus) {
+            case PENDING -> OrderStatus.CANCELLED;
+            case CONFIRMED -> OrderStatus.REQUEST_CANCELLED;
+            case REQUEST_CANCELLED -> null;
+            default -> throw new RuntimeException("Đơn hàng đang giao hoặc đã hoàn thành, không thể hủy!");
+        };
+        if (newStatus == null) {
+            return currentStatus; // đã gửi yêu cầu huỷ trước đó
+        }
+        OrderStateMachine.requireTransition(currentStatus, newStatus);
+        order.setStatus(newStatus);
+        // @Version: cửa hàng vừa đổi trạng thái đơn thì yêu cầu huỷ bị từ chối khi commit
+        orderRepository.save(order);
+        if (newStatus == OrderStatus.CANCELLED) {
+            stockReservationService.onOrderStatusChanged(orderId, OrderStatus.CANCELLED);
+            voucherRedemptionService.onOrderStatusChanged(orderId, OrderStatus.CANCELLED);
+        }
+        orderOutbox.statusChanged(orderId, currentStatus.name(), newStatus, "Khách hàng",
+                newStatus == OrderStatus.CANCELLED ? "Khách hàng huỷ đơn" : "Khách hàng yêu cầu huỷ đơn");
+        return newStatus;
+    }
+
+    /**
+     * Validate voucher một lần cho cả lần đặt hàng; kết quả được dùng luôn khi ghi OrderVoucher.
+     *
+     * @return null nếu không nhập mã voucher
+     */
+    private VoucherValidationResult validateVoucher(String voucherCode, Long userId, BigDecimal subTotal) {
+        // Chỉ validate voucher nếu có code thực sự (không null, không rỗng, không chỉ có khoảng trắng)
+        if (voucherCode == null || voucherCode.trim().isEmpty()) {
+            return null;
+        }
+        VoucherValidationResult validation = customerPromotionService.validateVoucher(
+                voucherCode.trim(), userId, subTotal);
+        if (!validation.isValid()) {
+            log.debug("Voucher {} không hợp lệ cho user {}: {}", voucherCode.trim(), userId, validation.getErrorMessage());
+            throw new IllegalArgumentException(validation.getErrorMessage());
         }
-        return order.getStatus();
+        return validation;
+    }
+
+    /**
+     * Giữ lượt dùng voucher sau khi giữ hàng: dòng voucher (có thể nhiều đơn cùng dùng)
+     * chỉ bị khóa từ đây đến lúc commit, cùng thứ tự khóa với lúc huỷ đơn.
+     */
+    private void redeemVoucher(VoucherValidationResult voucher, Long userId) {
+        if (voucher != null) {
+            voucherRedemptionService.redeem(voucher.getVoucher(), userId);
+        }
+    }
+
+    private OrderItem toOrderItem(CheckoutSession.Line line) {
+        OrderItem orderItem = new OrderItem();
+        orderItem.setShoeId(line.getShoeId());
+        orderItem.setQuantity((long) line.getQuantity());
+        orderItem.setProductName(line.getProductName());
+        orderItem.setVariantInfo("Size: " + line.getSize() + ", Color: " + line.getColor());
+        orderItem.setUnitPrice(line.getUnitPrice());
+        orderItem.setShopDiscount(BigDecimal.ZERO);
+        orderItem.setItemTotal(line.getLineTotal());
+        return orderItem;
     }
 }
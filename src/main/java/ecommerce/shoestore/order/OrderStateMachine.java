@@ -0,0 +1,58 @@
+package ecommerce.shoestore.order;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Các bước chuyển trạng thái đơn hợp lệ. Mọi chỗ đổi trạng thái (khách huỷ đơn,
+ * admin cập nhật từng đơn hoặc hàng loạt) đều kiểm tra ở đây.
+ *
+ * PENDING → CONFIRMED → SHIPPING → COMPLETED; huỷ được trước khi giao xong.
+ * Đơn đã xác nhận thì khách chỉ gửi yêu cầu huỷ (REQUEST_CANCELLED), cửa hàng
+ * duyệt (CANCELLED) hoặc từ chối (quay lại CONFIRMED).
+ */
+public final class OrderStateMachine {
+
+    private static final Map<OrderStatus, Set<OrderStatus>> TRANSITIONS = new EnumMap<>(Map.of(
+            OrderStatus.PENDING, EnumSet.of(OrderStatus.CONFIRMED, OrderStatus.CANCELLED),
+            OrderStatus.CONFIRMED, EnumSet.of(OrderStatus.SHIPPING, OrderStatus.CANCELLED, OrderStatus.REQUEST_CANCELLED),
+            OrderStatus.REQUEST_CANCELLED, EnumSet.of(OrderStatus.CANCELLED, OrderStatus.CONFIRMED),
+            OrderStatus.SHIPPING, EnumSet.of(OrderStatus.COMPLETED, OrderStatus.CANCELLED),
+            OrderStatus.COMPLETED, EnumSet.noneOf(OrderStatus.class),
+            OrderStatus.CANCELLED, EnumSet.noneOf(OrderStatus.class)));
+
+    private OrderStateMachine() {
+    }
+
+    public static boolean canTransition(OrderStatus from, OrderStatus to) {
+        return from != null && to != null && TRANSITIONS.get(from).contains(to);
+    }
+
+    /**
+     * @throws IllegalStateException nếu không được chuyển từ from sang to
+     */
+    public static void requireTransition(OrderStatus from, OrderStatus to) {
+        if (canTransition(from, to)) {
+            return;
+        }
+        if (from == OrderStatus.CANCELLED) {
+            throw new IllegalStateException("Đơn hàng đã bị huỷ, không thể cập nhật!");
+        }
+        if (from == OrderStatus.COMPLETED) {
+            throw new IllegalStateException("Đơn hàng đã giao thành công, không thể cập nhật!");
+        }
+        throw new IllegalStateException(String.format("Không thể chuyển đơn từ \"%s\" sang \"%s\"",
+                OrderStatusView.display(from), OrderStatusView.display(to)));
+    }
+
+    /** Các trạng thái được phép chuyển sang to (dùng cho câu UPDATE hàng loạt) */
+    public static List<OrderStatus> sourcesOf(OrderStatus to) {
+        return TRANSITIONS.entrySet().stream()
+                .filter(e -> e.getValue().contains(to))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+}
@@ -0,0 +1,52 @@
+package ecommerce.shoestore.order;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Tên hiển thị (tiếng Việt) và class màu Bootstrap của trạng thái đơn.
+ */
+public final class OrderStatusView {
+
+    private static final Map<OrderStatus, String> DISPLAY = new EnumMap<>(Map.of(
+            OrderStatus.PENDING, "Chờ xác nhận",
+            OrderStatus.CONFIRMED, "Đã xác nhận",
+            OrderStatus.SHIPPING, "Đang giao hàng",
+            OrderStatus.COMPLETED, "Giao hàng thành công",
+            OrderStatus.CANCELLED, "Đã hủy",
+            OrderStatus.REQUEST_CANCELLED, "Yêu cầu huỷ"));
+
+    private static final Map<OrderStatus, String> COLOR_CLASS = new EnumMap<>(Map.of(
+            OrderStatus.PENDING, "warning",
+            OrderStatus.CONFIRMED, "info",
+            OrderStatus.SHIPPING, "primary",
+            OrderStatus.COMPLETED, "success",
+            OrderStatus.CANCELLED, "danger",
+            OrderStatus.REQUEST_CANCELLED, "danger"));
+
+    private OrderStatusView() {
+    }
+
+    public static String display(OrderStatus status) {
+        return status != null ? DISPLAY.get(status) : "Không xác định";
+    }
+
+    public static String colorClass(OrderStatus status) {
+        return status != null ? COLOR_CLASS.get(status) : "secondary";
+    }
+
+    /**
+     * Trạng thái dạng chuỗi (cột text của nhật ký đơn); chuỗi không phải
+     * trạng thái hợp lệ thì trả về null.
+     */
+    public static OrderStatus parse(String status) {
+        if (status == null) {
+            return null;
+        }
+        try {
+            return OrderStatus.valueOf(status.toUpperCase().trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
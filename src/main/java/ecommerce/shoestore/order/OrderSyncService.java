@@ -1,61 +1,194 @@
 package ecommerce.shoestore.order;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.time.LocalDateTime;
+import java.sql.Timestamp;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Bổ sung nhật ký trạng thái cho các đơn cũ chưa có dòng nào. Đơn mới được ghi
+ * nhật ký qua sự kiện (TrackingLogEventHandler), nên việc này chỉ chạy ở nền khi
+ * khởi động thay vì kiểm tra từng đơn mỗi khi khách xem lịch sử.
+ *
+ * Chạy theo từng khoảng "orderId" cố định (order.tracking-backfill.chunk-size id
+ * mỗi khoảng): mỗi khoảng đọc các đơn thiếu nhật ký bằng một câu anti-join, ghi
+ * bằng một JDBC batch và commit cùng checkpoint trong backfill_checkpoint. Khoảng
+ * bị chặn theo id chứ không theo số dòng tìm được, nên khi gần hết đơn đã có nhật
+ * ký mỗi câu vẫn chỉ quét chunk-size id; checkpoint luôn dời tới cuối khoảng, kể cả
+ * khi khoảng không có đơn nào thiếu. Bị dừng giữa chừng thì lần sau chạy tiếp từ
+ * khoảng cuối đã commit; chạy xong thì checkpoint dời tới đơn lớn nhất lúc bắt đầu,
+ * lần sau chỉ quét các đơn mới hơn.
+ *
+ * Tiến độ xem ở /actuator/metrics: order.tracking.backfill.rows, .chunk,
+ * .checkpoint, .running.
+ */
 @Service
+@Slf4j
 public class OrderSyncService {
 
-    @Autowired
-    private OrderHistoryRepository orderRepository;
-    
-    @Autowired
-    private OrderTrackingLogRepository trackingLogRepository;
+    static final String JOB = "order-tracking-log";
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void syncOrdersToTrackingLog() {
+    private static final String SELECT_CHUNK = """
+            SELECT o."orderId", CAST(o.status AS text), o."createAt", o.note
+            FROM "order" o
+            WHERE o."orderId" > ? AND o."orderId" <= ?
+              AND NOT EXISTS (SELECT 1 FROM ordertrackinglog l WHERE l."orderId" = o."orderId")
+            ORDER BY o."orderId"
+            """;
+
+    // Giữ NOT EXISTS: đơn có thể vừa được TrackingLogEventHandler ghi nhật ký
+    private static final String INSERT_LOG = """
+            INSERT INTO ordertrackinglog ("orderId", "oldStatus", "newStatus", "changedAt", "changedBy", comment)
+            SELECT ?, 'Không có', ?, ?, 'System', ?
+            WHERE NOT EXISTS (SELECT 1 FROM ordertrackinglog WHERE "orderId" = ?)
+            """;
+
+    private record MissingLog(long orderId, String status, Timestamp createdAt, String note) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate chunkTransaction;
+    private final int chunkSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong checkpoint = new AtomicLong();
+    private final Counter insertedRows;
+    private final Timer chunkTimer;
+
+    public OrderSyncService(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${order.tracking-backfill.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkSize = chunkSize;
+
+        this.insertedRows = Counter.builder("order.tracking.backfill.rows")
+                .description("Số dòng nhật ký mặc định đã tạo cho đơn cũ")
+                .register(meterRegistry);
+        this.chunkTimer = Timer.builder("order.tracking.backfill.chunk")
+                .description("Thời gian xử lý một đoạn backfill")
+                .register(meterRegistry);
+        Gauge.builder("order.tracking.backfill.checkpoint", checkpoint, AtomicLong::get)
+                .description("orderId cuối cùng đã commit")
+                .register(meterRegistry);
+        Gauge.builder("order.tracking.backfill.running", running, r -> r.get() ? 1 : 0)
+                .register(meterRegistry);
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        syncOrdersToTrackingLog();
+    }
+
+    /**
+     * @return số dòng nhật ký đã tạo trong lần chạy này
+     */
+    public long syncOrdersToTrackingLog() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Backfill nhật ký trạng thái đang chạy, bỏ qua");
+            return 0;
+        }
         try {
-            List<Order> allOrders = orderRepository.findAll();
-            
-            for (Order order : allOrders) {
-                List<OrderTrackingLog> existingLogs = trackingLogRepository.findByOrderIdOrderByChangeAtDesc(order.getOrderId());
-                
-                if (existingLogs.isEmpty()) {
-                    createDefaultTrackingLog(order);
-                }
+            long lastId = loadCheckpoint();
+            checkpoint.set(lastId);
+            // Đơn tạo sau thời điểm này đã có nhật ký qua sự kiện
+            long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(\"orderId\"), 0) FROM \"order\"", Long.class);
+            long total = 0;
+            while (lastId < maxId) {
+                long afterId = lastId;
+                long rangeEnd = Math.min(afterId + chunkSize, maxId);
+                Integer inserted = chunkTimer.record(() -> chunkTransaction.execute(status -> processChunk(afterId, rangeEnd)));
+                lastId = rangeEnd;
+                total += inserted;
+                insertedRows.increment(inserted);
+                log.debug("Backfill nhật ký trạng thái: tới đơn {}, +{} dòng", lastId, inserted);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+            markCompleted(Math.max(lastId, maxId));
+            checkpoint.set(Math.max(lastId, maxId));
+            if (total > 0) {
+                log.info("Đã tạo nhật ký trạng thái mặc định cho {} đơn hàng cũ (tới đơn {})", total, lastId);
+            }
+            return total;
+        } catch (RuntimeException e) {
+            log.error("Backfill nhật ký trạng thái dừng ở đơn {}, lần sau sẽ chạy tiếp", checkpoint.get(), e);
+            return 0;
+        } finally {
+            running.set(false);
         }
     }
-    
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void syncSingleOrderToTrackingLog(Order order) {
-        try {
-            List<OrderTrackingLog> existingLogs = trackingLogRepository.findByOrderIdOrderByChangeAtDesc(order.getOrderId());
-            if (existingLogs.isEmpty()) {
-                createDefaultTrackingLog(order);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+
+    /**
+     * Khoảng (afterId, rangeEnd] trong một transaction: đọc, ghi batch, lưu checkpoint = rangeEnd.
+     *
+     * @return số dòng đã tạo (0 nếu mọi đơn trong khoảng đã có nhật ký)
+     */
+    private Integer processChunk(long afterId, long rangeEnd) {
+        List<MissingLog> rows = jdbcTemplate.query(SELECT_CHUNK, (rs, i) -> new MissingLog(
+                rs.getLong(1), rs.getString(2), rs.getTimestamp(3), rs.getString(4)), afterId, rangeEnd);
+        if (rows.isEmpty()) {
+            saveCheckpoint(rangeEnd, 0);
+            return 0;
         }
+
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_LOG, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, row.orderId());
+            ps.setString(2, row.status() != null ? row.status() : OrderStatus.PENDING.name());
+            ps.setTimestamp(3, row.createdAt() != null ? row.createdAt() : new Timestamp(System.currentTimeMillis()));
+            ps.setString(4, row.note() != null ? row.note() : "Không có");
+            ps.setLong(5, row.orderId());
+        });
+        int inserted = Arrays.stream(counts).flatMapToInt(Arrays::stream).map(c -> Math.max(c, 0)).sum();
+
+        saveCheckpoint(rangeEnd, inserted);
+        return inserted;
+    }
+
+    private void saveCheckpoint(long lastId, int inserted) {
+        jdbcTemplate.update("""
+                INSERT INTO backfill_checkpoint (job, "lastId", processed, "updatedAt")
+                VALUES (?, ?, ?, now())
+                ON CONFLICT (job) DO UPDATE SET
+                    "lastId" = EXCLUDED."lastId",
+                    processed = backfill_checkpoint.processed + EXCLUDED.processed,
+                    "updatedAt" = now(),
+                    "completedAt" = NULL
+                """, JOB, lastId, inserted);
+        checkpoint.set(lastId);
+    }
+
+    private long loadCheckpoint() {
+        List<Long> rows = jdbcTemplate.queryForList(
+                "SELECT \"lastId\" FROM backfill_checkpoint WHERE job = ?", Long.class, JOB);
+        return rows.isEmpty() ? 0 : rows.get(0);
+    }
+
+    private void markCompleted(long lastId) {
+        jdbcTemplate.update("""
+                INSERT INTO backfill_checkpoint (job, "lastId", processed, "updatedAt", "completedAt")
+                VALUES (?, ?, 0, now(), now())
+                ON CONFLICT (job) DO UPDATE SET
+                    "lastId" = GREATEST(backfill_checkpoint."lastId", EXCLUDED."lastId"),
+                    "updatedAt" = now(),
+                    "completedAt" = now()
+                """, JOB, lastId);
     }
-    
-    private void createDefaultTrackingLog(Order order) {
-        OrderTrackingLog trackingLog = OrderTrackingLog.builder()
-                .orderId(order.getOrderId())
-                .oldStatus("Không có")
-                .newStatus(order.getStatus() != null ? order.getStatus().name() : "PENDING")
-                .changedAt(order.getCreateAt() != null ? order.getCreateAt() : LocalDateTime.now())
-                .changedBy("System")
-                .comment(order.getNote() != null ? order.getNote() : "Không có")
-                .build();
-        
-        trackingLogRepository.save(trackingLog);
-    }
-}
\ No newline at end of file
+}
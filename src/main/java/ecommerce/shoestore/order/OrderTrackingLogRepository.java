@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -18,6 +19,10 @@ public interface OrderTrackingLogRepository extends JpaRepository<OrderTrackingL
     @Query("SELECT log FROM OrderTrackingLog log WHERE log.orderId = :orderId ORDER BY log.changedAt DESC")
     List<OrderTrackingLog> findByOrderIdOrderByChangeAtDesc(@Param("orderId") Long orderId);
     
+    // Tracking log của nhiều đơn trong một câu (trang lịch sử đơn hàng)
+    @Query("SELECT log FROM OrderTrackingLog log WHERE log.orderId IN :orderIds ORDER BY log.orderId, log.changedAt DESC")
+    List<OrderTrackingLog> findByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+    
     // Lấy tất cả tracking logs sắp xếp theo changedAt mới nhất
     @Query("SELECT log FROM OrderTrackingLog log ORDER BY log.changedAt DESC")
     List<OrderTrackingLog> findAllByOrderByChangeAtDesc();
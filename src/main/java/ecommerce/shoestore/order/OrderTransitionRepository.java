@@ -0,0 +1,66 @@
+package ecommerce.shoestore.order;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+/**
+ * Đổi trạng thái nhiều đơn trong một câu lệnh (admin chuyển hàng loạt).
+ */
+public interface OrderTransitionRepository extends org.springframework.data.repository.Repository<Order, Long> {
+
+    /** Một đơn đã được chuyển trạng thái */
+    interface MovedOrder {
+        Long getOrderId();
+        String getOldStatus();
+    }
+
+    /**
+     * Khóa trước các đơn đang ở một trong fromStatuses (cùng thứ tự với transitionAll)
+     * để kiểm tra tồn kho trước khi chuyển. Trả về các orderId đã khóa.
+     */
+    @Query(value = """
+            SELECT "orderId"
+            FROM "order"
+            WHERE "orderId" = ANY(CAST(:orderIds AS bigint[]))
+              AND CAST(status AS text) = ANY(CAST(:fromStatuses AS text[]))
+            ORDER BY "orderId"
+            FOR UPDATE
+            """, nativeQuery = true)
+    List<Long> lockAll(@Param("orderIds") Long[] orderIds,
+                       @Param("fromStatuses") String[] fromStatuses);
+
+    /**
+     * Khóa các đơn đang ở một trong fromStatuses (thứ tự "orderId" để không deadlock
+     * với lô khác), chuyển sang newStatus, tăng version và ghi nhật ký trạng thái
+     * của cả lô. Đơn không tồn tại hoặc không ở trạng thái hợp lệ thì bỏ qua; đơn
+     * vừa bị giao dịch khác đổi trạng thái được kiểm tra lại sau khi có khóa.
+     */
+    @Query(value = """
+            WITH target AS (
+                SELECT "orderId", CAST(status AS text) AS "oldStatus"
+                FROM "order"
+                WHERE "orderId" = ANY(CAST(:orderIds AS bigint[]))
+                  AND CAST(status AS text) = ANY(CAST(:fromStatuses AS text[]))
+                ORDER BY "orderId"
+                FOR UPDATE
+            ), moved AS (
+                UPDATE "order" o
+                SET status = CAST(:newStatus AS order_status), version = o.version + 1
+                FROM target t
+                WHERE o."orderId" = t."orderId"
+                RETURNING o."orderId", t."oldStatus"
+            ), logged AS (
+                INSERT INTO ordertrackinglog ("orderId", "oldStatus", "newStatus", "changedAt", "changedBy", comment)
+                SELECT "orderId", "oldStatus", :newStatus, now(), :changedBy, COALESCE(NULLIF(:comment, ''), 'Không có')
+                FROM moved
+            )
+            SELECT "orderId" AS "orderId", "oldStatus" AS "oldStatus" FROM moved ORDER BY "orderId"
+            """, nativeQuery = true)
+    List<MovedOrder> transitionAll(@Param("orderIds") Long[] orderIds,
+                                   @Param("fromStatuses") String[] fromStatuses,
+                                   @Param("newStatus") String newStatus,
+                                   @Param("changedBy") String changedBy,
+                                   @Param("comment") String comment);
+}
@@ -0,0 +1,29 @@
+package ecommerce.shoestore.order;
+
+import ecommerce.shoestore.order.outbox.OrderEvent;
+import ecommerce.shoestore.order.outbox.OrderEventHandler;
+import ecommerce.shoestore.order.outbox.OrderEventType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+class SalesCounterEventHandler implements OrderEventHandler {
+
+    private final SalesCounterService salesCounterService;
+
+    @Override
+    public String name() {
+        return "sales-counter";
+    }
+
+    @Override
+    public boolean supports(OrderEventType type) {
+        return type == OrderEventType.ORDER_STATUS_CHANGED;
+    }
+
+    @Override
+    public void handle(OrderEvent event) {
+        salesCounterService.onOrderStatusChanged(event.orderId(), OrderStatus.valueOf(event.get("newStatus")));
+    }
+}
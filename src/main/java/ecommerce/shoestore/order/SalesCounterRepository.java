@@ -0,0 +1,106 @@
+package ecommerce.shoestore.order;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Cập nhật bộ đếm số lượng đã bán (shoe_sales_daily + cột sold* của product_listing).
+ */
+public interface SalesCounterRepository extends org.springframework.data.repository.Repository<Order, Long> {
+
+    /**
+     * Đổi cờ "salesCounted" của đơn. Trả về 1 nếu cờ thực sự đổi, 0 nếu đơn
+     * đã ở đúng trạng thái (không cộng/trừ lần hai).
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = """
+            UPDATE "order"
+            SET "salesCounted" = :counted
+            WHERE "orderId" = :orderId
+              AND "salesCounted" <> :counted
+            """, nativeQuery = true)
+    int markSalesCounted(@Param("orderId") Long orderId, @Param("counted") boolean counted);
+
+    /**
+     * Cộng (sign = 1) hoặc trừ (sign = -1) số lượng của đơn vào ngày đặt hàng
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO shoe_sales_daily ("shoeId", day, quantity)
+            SELECT oi."shoeId", CAST(o."createAt" AS date), SUM(oi.quantity) * :sign
+            FROM orderitem oi
+            JOIN "order" o ON o."orderId" = oi."orderId"
+            WHERE oi."orderId" = :orderId
+            GROUP BY oi."shoeId", CAST(o."createAt" AS date)
+            ON CONFLICT ("shoeId", day) DO UPDATE SET
+                quantity = shoe_sales_daily.quantity + EXCLUDED.quantity
+            """, nativeQuery = true)
+    int applyToDaily(@Param("orderId") Long orderId, @Param("sign") int sign);
+
+    @Modifying
+    @Query(value = """
+            UPDATE product_listing pl
+            SET "soldCount" = pl."soldCount" + s.qty,
+                "sold7d" = pl."sold7d" + CASE WHEN s.day > CURRENT_DATE - 7 THEN s.qty ELSE 0 END,
+                "sold30d" = pl."sold30d" + CASE WHEN s.day > CURRENT_DATE - 30 THEN s.qty ELSE 0 END
+            FROM (
+                SELECT oi."shoeId", CAST(o."createAt" AS date) AS day, SUM(oi.quantity) * :sign AS qty
+                FROM orderitem oi
+                JOIN "order" o ON o."orderId" = oi."orderId"
+                WHERE oi."orderId" = :orderId
+                GROUP BY oi."shoeId", CAST(o."createAt" AS date)
+            ) s
+            WHERE pl."shoeId" = s."shoeId"
+            """, nativeQuery = true)
+    int applyToListing(@Param("orderId") Long orderId, @Param("sign") int sign);
+
+    /**
+     * Đối soát các đơn đổi trạng thái ngoài SalesCounterService (dữ liệu cũ,
+     * sửa tay trong DB): đổi cờ và cộng/trừ shoe_sales_daily trong một câu lệnh.
+     * counted = true: cộng các đơn cần tính mà chưa tính; false: trừ ngược lại.
+     */
+    @Modifying
+    @Query(value = """
+            WITH flipped AS (
+                UPDATE "order"
+                SET "salesCounted" = :counted
+                WHERE "salesCounted" <> :counted
+                  AND (status IN ('CONFIRMED', 'SHIPPING', 'COMPLETED')) = :counted
+                RETURNING "orderId", "createAt"
+            )
+            INSERT INTO shoe_sales_daily ("shoeId", day, quantity)
+            SELECT oi."shoeId", CAST(f."createAt" AS date),
+                   SUM(oi.quantity) * CASE WHEN :counted THEN 1 ELSE -1 END
+            FROM flipped f
+            JOIN orderitem oi ON oi."orderId" = f."orderId"
+            GROUP BY oi."shoeId", CAST(f."createAt" AS date)
+            ON CONFLICT ("shoeId", day) DO UPDATE SET
+                quantity = shoe_sales_daily.quantity + EXCLUDED.quantity
+            """, nativeQuery = true)
+    int reconcileDaily(@Param("counted") boolean counted);
+
+    /**
+     * Tính lại toàn bộ cột sold* từ shoe_sales_daily (cửa sổ 7/30 ngày trượt
+     * theo ngày). Chỉ ghi các dòng có giá trị thay đổi.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE product_listing pl
+            SET "soldCount" = t.total,
+                "sold7d" = t.s7,
+                "sold30d" = t.s30
+            FROM (
+                SELECT p."shoeId",
+                       COALESCE(SUM(d.quantity), 0) AS total,
+                       COALESCE(SUM(d.quantity) FILTER (WHERE d.day > CURRENT_DATE - 7), 0) AS s7,
+                       COALESCE(SUM(d.quantity) FILTER (WHERE d.day > CURRENT_DATE - 30), 0) AS s30
+                FROM product_listing p
+                LEFT JOIN shoe_sales_daily d ON d."shoeId" = p."shoeId"
+                GROUP BY p."shoeId"
+            ) t
+            WHERE pl."shoeId" = t."shoeId"
+              AND (pl."soldCount", pl."sold7d", pl."sold30d") IS DISTINCT FROM (t.total, t.s7, t.s30)
+            """, nativeQuery = true)
+    int recomputeListingTotals();
+}
@@ -0,0 +1,70 @@
+package ecommerce.shoestore.order;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Bộ đếm số lượng đã bán theo sản phẩm, dùng cho sắp xếp "Bán chạy".
+ *
+ * Được cập nhật ở nền từ sự kiện đổi trạng thái đơn (SalesCounterEventHandler):
+ * vào CONFIRMED/SHIPPING/COMPLETED thì cộng, rời khỏi (hủy, yêu cầu hủy) thì trừ.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SalesCounterService {
+
+    /** Trạng thái đơn được tính là đã bán */
+    public static final Set<OrderStatus> COUNTED_STATUSES =
+            EnumSet.of(OrderStatus.CONFIRMED, OrderStatus.SHIPPING, OrderStatus.COMPLETED);
+
+    private final SalesCounterRepository salesCounterRepository;
+
+    /**
+     * Gọi sau khi đã đổi trạng thái đơn. Không làm gì nếu đơn vẫn ở cùng
+     * nhóm (tính / không tính) như trước.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onOrderStatusChanged(Long orderId, OrderStatus newStatus) {
+        boolean counted = COUNTED_STATUSES.contains(newStatus);
+        if (salesCounterRepository.markSalesCounted(orderId, counted) == 0) {
+            return;
+        }
+        int sign = counted ? 1 : -1;
+        salesCounterRepository.applyToDaily(orderId, sign);
+        salesCounterRepository.applyToListing(orderId, sign);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1) // sau ProductListingService.backfillOnStartup
+    @Transactional
+    public void reconcileOnStartup() {
+        int added = salesCounterRepository.reconcileDaily(true);
+        int removed = salesCounterRepository.reconcileDaily(false);
+        int updated = salesCounterRepository.recomputeListingTotals();
+        if (added > 0 || removed > 0 || updated > 0) {
+            log.info("Đối soát số lượng đã bán: +{} / -{} dòng theo ngày, {} sản phẩm cập nhật",
+                    added, removed, updated);
+        }
+    }
+
+    /**
+     * Đầu mỗi ngày: dời cửa sổ 7/30 ngày
+     */
+    @Scheduled(cron = "0 5 0 * * *")
+    @Transactional
+    public void refreshRollingWindows() {
+        int updated = salesCounterRepository.recomputeListingTotals();
+        log.info("Đã cập nhật số lượng bán 7/30 ngày cho {} sản phẩm", updated);
+    }
+}
@@ -0,0 +1,61 @@
+package ecommerce.shoestore.order;
+
+import ecommerce.shoestore.order.outbox.OrderEvent;
+import ecommerce.shoestore.order.outbox.OrderEventHandler;
+import ecommerce.shoestore.order.outbox.OrderEventType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ghi ordertrackinglog cho đơn mới và mỗi lần đổi trạng thái. Thời điểm ghi
+ * nhận lấy theo lúc sự kiện được tạo, không theo lúc handler chạy.
+ */
+@Component
+@RequiredArgsConstructor
+class TrackingLogEventHandler implements OrderEventHandler {
+
+    static final String NAME = "tracking-log";
+
+    private static final String NONE = "Không có";
+    private static final String SYSTEM = "System";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(OrderEventType type) {
+        return type == OrderEventType.ORDER_CREATED || type == OrderEventType.ORDER_STATUS_CHANGED;
+    }
+
+    @Override
+    public void handle(OrderEvent event) {
+        if (event.type() == OrderEventType.ORDER_CREATED) {
+            // Dòng đầu tiên có thể đã được OrderSyncService tạo khi khởi động (đơn chưa kịp xử lý sự kiện)
+            jdbcTemplate.update("""
+                    INSERT INTO ordertrackinglog ("orderId", "oldStatus", "newStatus", "changedAt", "changedBy", comment)
+                    SELECT ?, ?, ?, ?, ?, ?
+                    WHERE NOT EXISTS (SELECT 1 FROM ordertrackinglog WHERE "orderId" = ?)
+                    """, event.orderId(), NONE, event.get("status"), event.createdAt(), SYSTEM,
+                    orDefault(event.get("note"), NONE), event.orderId());
+        } else {
+            insert(event, orDefault(event.get("oldStatus"), NONE), event.get("newStatus"),
+                    orDefault(event.get("changedBy"), SYSTEM), orDefault(event.get("comment"), NONE));
+        }
+    }
+
+    private void insert(OrderEvent event, String oldStatus, String newStatus, String changedBy, String comment) {
+        jdbcTemplate.update("""
+                INSERT INTO ordertrackinglog ("orderId", "oldStatus", "newStatus", "changedAt", "changedBy", comment)
+                VALUES (?, ?, ?, ?, ?, ?)
+                """, event.orderId(), oldStatus, newStatus, event.createdAt(), changedBy, comment);
+    }
+
+    private static String orDefault(String value, String fallback) {
+        return value == null || value.isBlank() ? fallback : value;
+    }
+}
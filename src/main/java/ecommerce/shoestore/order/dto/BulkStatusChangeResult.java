@@ -0,0 +1,10 @@
+package ecommerce.shoestore.order.dto;
+
+import java.util.List;
+
+/**
+ * Kết quả chuyển trạng thái hàng loạt: các đơn đã chuyển và các đơn bị bỏ qua
+ * (không tồn tại hoặc trạng thái hiện tại không cho phép).
+ */
+public record BulkStatusChangeResult(List<Long> changed, List<Long> skipped) {
+}
@@ -5,6 +5,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import ecommerce.shoestore.order.OrderStatus;
+import ecommerce.shoestore.order.OrderStatusView;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -26,34 +27,16 @@ public class OrderHistoryDto {
     private BigDecimal discountAmount;
     private BigDecimal totalAmount;
     private String note;
+    private Long version; // gửi kèm form đổi trạng thái để phát hiện cập nhật trùng
     private List<OrderTrackingLogDto> trackingLogs;
     
     // Helper method for display
     public String getStatusDisplay() {
         if (status == null) return "";
-        
-        switch (status) {
-            case PENDING: return "Chờ xác nhận";
-            case CONFIRMED: return "Đã xác nhận";
-            case SHIPPING: return "Đang giao hàng";
-            case COMPLETED: return "Giao hàng thành công";
-            case CANCELLED: return "Đã hủy";
-            case REQUEST_CANCELLED: return "Yêu cầu huỷ";
-            default: return status.name();
-        }
+        return OrderStatusView.display(status);
     }
     
     public String getStatusColorClass() {
-        if (status == null) return "secondary";
-        
-        switch (status) {
-            case PENDING: return "Chờ xác nhận";
-            case CONFIRMED: return "Đã xác nhận";
-            case SHIPPING: return "Đang giao hàng";
-            case COMPLETED: return "Giao hàng thành công";
-            case CANCELLED: return "Đã hủy";
-            case REQUEST_CANCELLED: return "Yêu cầu huỷ";
-            default: return status.name();
-        }
+        return OrderStatusView.colorClass(status);
     }
-}
\ No newline at end of file
+}
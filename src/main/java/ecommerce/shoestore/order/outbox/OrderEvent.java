@@ -0,0 +1,18 @@
+package ecommerce.shoestore.order.outbox;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Một sự kiện đọc từ order_outbox, chuyển cho các OrderEventHandler.
+ *
+ * @param createdAt thời điểm ghi sự kiện (cùng transaction với thay đổi của đơn)
+ */
+public record OrderEvent(long eventId, long orderId, OrderEventType type,
+                         Map<String, Object> payload, LocalDateTime createdAt) {
+
+    public String get(String key) {
+        Object value = payload.get(key);
+        return value != null ? value.toString() : null;
+    }
+}
@@ -0,0 +1,121 @@
+package ecommerce.shoestore.order.outbox;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Chuyển sự kiện trong order_outbox cho các OrderEventHandler.
+ *
+ * - Chạy ngay sau commit của transaction ghi sự kiện (bất đồng bộ) và định kỳ
+ *   (order.outbox.poll-interval-ms) để nhặt các sự kiện cần thử lại.
+ * - Mỗi lô lấy tối đa order.outbox.batch-size sự kiện, mỗi đơn một sự kiện, nên
+ *   các sự kiện của cùng một đơn luôn được xử lý theo thứ tự.
+ * - Handler lỗi: sự kiện được thử lại với thời gian chờ tăng dần (các handler đã
+ *   xong không chạy lại); quá order.outbox.max-attempts lần thì bị đánh dấu FAILED.
+ */
+@Component
+@Slf4j
+public class OrderEventDispatcher {
+
+    private static final long MAX_RETRY_DELAY_SECONDS = 3600;
+
+    private final OrderOutboxStore store;
+    private final List<OrderEventHandler> handlers;
+    private final TransactionTemplate handlerTransaction;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean rerun = new AtomicBoolean();
+
+    @Value("${order.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${order.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${order.outbox.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${order.outbox.keep-days:7}")
+    private int keepDays;
+
+    public OrderEventDispatcher(OrderOutboxStore store, List<OrderEventHandler> handlers,
+                                PlatformTransactionManager transactionManager) {
+        this.store = store;
+        this.handlers = handlers;
+        this.handlerTransaction = new TransactionTemplate(transactionManager);
+        this.handlerTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Async
+    @TransactionalEventListener
+    public void onAppended(OrderOutboxAppendedEvent event) {
+        dispatchPending();
+    }
+
+    @Scheduled(fixedDelayString = "${order.outbox.poll-interval-ms:1000}")
+    public void dispatchPending() {
+        // Một vòng xử lý mỗi instance; yêu cầu đến trong lúc đang chạy → chạy thêm một vòng
+        if (!running.compareAndSet(false, true)) {
+            rerun.set(true);
+            return;
+        }
+        try {
+            do {
+                rerun.set(false);
+                List<OrderOutboxStore.ClaimedEvent> batch;
+                while (!(batch = store.claimBatch(batchSize, leaseSeconds)).isEmpty()) {
+                    batch.forEach(this::dispatch);
+                }
+            } while (rerun.get());
+        } catch (RuntimeException e) {
+            log.error("Lỗi khi đọc order_outbox", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @Scheduled(cron = "0 30 3 * * *")
+    public void purgeProcessed() {
+        int purged = store.purgeProcessed(keepDays);
+        if (purged > 0) {
+            log.info("Đã xóa {} sự kiện đơn hàng đã xử lý", purged);
+        }
+    }
+
+    private void dispatch(OrderOutboxStore.ClaimedEvent claimed) {
+        OrderEvent event = claimed.event();
+        for (OrderEventHandler handler : handlers) {
+            if (!handler.supports(event.type()) || claimed.doneHandlers().contains(handler.name())) {
+                continue;
+            }
+            try {
+                handlerTransaction.executeWithoutResult(status -> {
+                    handler.handle(event);
+                    store.markHandlerDone(event.eventId(), handler.name());
+                });
+            } catch (RuntimeException e) {
+                long delay = Math.min(MAX_RETRY_DELAY_SECONDS, 5L << Math.min(claimed.attempts(), 20));
+                boolean dropped = store.markFailed(event.eventId(),
+                        handler.name() + ": " + e.getMessage(), delay, maxAttempts);
+                if (dropped) {
+                    log.error("Bỏ sự kiện {} ({}) của đơn {} sau {} lần thử, handler {}",
+                            event.eventId(), event.type(), event.orderId(), maxAttempts, handler.name(), e);
+                } else {
+                    log.warn("Handler {} lỗi với sự kiện {} của đơn {}, thử lại sau {}s: {}",
+                            handler.name(), event.eventId(), event.orderId(), delay, e.getMessage());
+                }
+                return;
+            }
+        }
+        store.markProcessed(event.eventId());
+    }
+}
@@ -0,0 +1,18 @@
+package ecommerce.shoestore.order.outbox;
+
+/**
+ * Xử lý sự kiện đơn hàng ở nền (sau khi transaction của đơn đã commit).
+ *
+ * Mỗi lần gọi chạy trong một transaction riêng, cùng với việc đánh dấu handler
+ * đã xong; ném exception thì transaction rollback và sự kiện được thử lại sau.
+ * Các sự kiện của cùng một đơn đến theo đúng thứ tự ghi.
+ */
+public interface OrderEventHandler {
+
+    /** Tên cố định, được lưu trong order_outbox."doneHandlers" */
+    String name();
+
+    boolean supports(OrderEventType type);
+
+    void handle(OrderEvent event);
+}
@@ -0,0 +1,13 @@
+package ecommerce.shoestore.order.outbox;
+
+/**
+ * Loại sự kiện ghi vào order_outbox
+ */
+public enum OrderEventType {
+    /** Đơn vừa được tạo (payload: status, paymentMethod, totalAmount, note) */
+    ORDER_CREATED,
+    /** Đơn đổi trạng thái (payload: oldStatus, newStatus, changedBy, comment) */
+    ORDER_STATUS_CHANGED,
+    /** Thanh toán online thành công (payload: transactionNo, amount) */
+    PAYMENT_COMPLETED
+}
@@ -0,0 +1,107 @@
+package ecommerce.shoestore.order.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ecommerce.shoestore.order.Order;
+import ecommerce.shoestore.order.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ghi sự kiện đơn hàng vào order_outbox trong transaction của bên gọi: sự kiện
+ * tồn tại khi và chỉ khi thay đổi của đơn được commit. Các tác vụ phụ (nhật ký,
+ * bộ đếm, email...) do OrderEventDispatcher chạy ở nền sau đó.
+ */
+@Component
+@RequiredArgsConstructor
+@Transactional(propagation = Propagation.MANDATORY)
+public class OrderOutbox {
+
+    /** Một đơn trong lần đổi trạng thái hàng loạt */
+    public record StatusChange(long orderId, String oldStatus) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public void orderCreated(Order order) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("status", order.getStatus() != null ? order.getStatus().name() : OrderStatus.PENDING.name());
+        payload.put("paymentMethod", order.getPaymentMethod());
+        payload.put("totalAmount", order.getTotalAmount());
+        payload.put("note", order.getNote());
+        append(order.getOrderId(), OrderEventType.ORDER_CREATED, payload);
+    }
+
+    public void statusChanged(Long orderId, String oldStatus, OrderStatus newStatus,
+                              String changedBy, String comment) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("oldStatus", oldStatus);
+        payload.put("newStatus", newStatus.name());
+        payload.put("changedBy", changedBy);
+        payload.put("comment", comment);
+        append(orderId, OrderEventType.ORDER_STATUS_CHANGED, payload);
+    }
+
+    /**
+     * Sự kiện đổi trạng thái cho nhiều đơn, ghi bằng một JDBC batch.
+     *
+     * @param handledInline tên các handler bên gọi đã tự làm trong transaction này
+     *                      (vd. nhật ký đã ghi hàng loạt), dispatcher sẽ bỏ qua
+     */
+    public void statusChangedAll(List<StatusChange> changes, OrderStatus newStatus,
+                                 String changedBy, String comment, String... handledInline) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO order_outbox ("orderId", "eventType", payload, "doneHandlers")
+                VALUES (?, ?, CAST(? AS jsonb), ?)
+                """, changes, changes.size(), (ps, change) -> {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("oldStatus", change.oldStatus());
+            payload.put("newStatus", newStatus.name());
+            payload.put("changedBy", changedBy);
+            payload.put("comment", comment);
+            ps.setLong(1, change.orderId());
+            ps.setString(2, OrderEventType.ORDER_STATUS_CHANGED.name());
+            ps.setString(3, toJson(OrderEventType.ORDER_STATUS_CHANGED, payload));
+            ps.setArray(4, ps.getConnection().createArrayOf("text", handledInline));
+        });
+        // Một lần đánh thức dispatcher cho cả lô
+        eventPublisher.publishEvent(new OrderOutboxAppendedEvent(changes.get(0).orderId()));
+    }
+
+    public void paymentCompleted(Long orderId, String transactionNo, BigDecimal amount) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("transactionNo", transactionNo);
+        payload.put("amount", amount);
+        append(orderId, OrderEventType.PAYMENT_COMPLETED, payload);
+    }
+
+    public void append(Long orderId, OrderEventType type, Map<String, ?> payload) {
+        jdbcTemplate.update("""
+                INSERT INTO order_outbox ("orderId", "eventType", payload)
+                VALUES (?, ?, CAST(? AS jsonb))
+                """, orderId, type.name(), toJson(type, payload));
+        eventPublisher.publishEvent(new OrderOutboxAppendedEvent(orderId));
+    }
+
+    private String toJson(OrderEventType type, Map<String, ?> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Không ghi được payload sự kiện " + type, e);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package ecommerce.shoestore.order.outbox;
+
+/**
+ * Phát khi có sự kiện mới được ghi vào outbox, để dispatcher xử lý ngay sau commit
+ * thay vì chờ lượt quét kế tiếp.
+ */
+record OrderOutboxAppendedEvent(long orderId) {
+}
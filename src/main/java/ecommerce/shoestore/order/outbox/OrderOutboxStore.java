@@ -0,0 +1,161 @@
+package ecommerce.shoestore.order.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Đọc/ghi order_outbox cho dispatcher
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+class OrderOutboxStore {
+
+    record ClaimedEvent(OrderEvent event, int attempts, Set<String> doneHandlers) {
+    }
+
+    /** Một dòng vừa nhận: claimed, hoặc error nếu dòng không đọc được (payload/loại sự kiện hỏng) */
+    private record ClaimedRow(long eventId, ClaimedEvent claimed, String error) {
+    }
+
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Nhận một lô sự kiện đến hạn xử lý, mỗi đơn tối đa một sự kiện: sự kiện cũ nhất
+     * chưa xong của đơn đó (giữ thứ tự theo đơn). Sự kiện được "thuê" trong leaseSeconds
+     * để instance khác không nhận trùng; SKIP LOCKED để các instance không chờ nhau.
+     * Dòng không đọc được bị đánh dấu FAILED ngay (kèm lỗi), không làm hỏng cả lô.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<ClaimedEvent> claimBatch(int batchSize, long leaseSeconds) {
+        List<ClaimedRow> rows = jdbcTemplate.query("""
+                UPDATE order_outbox o
+                SET "lockedUntil" = now() + make_interval(secs => ?)
+                WHERE o."eventId" IN (
+                    SELECT e."eventId" FROM order_outbox e
+                    WHERE e."processedAt" IS NULL
+                      AND e."nextAttemptAt" <= now()
+                      AND (e."lockedUntil" IS NULL OR e."lockedUntil" < now())
+                      AND NOT EXISTS (
+                          SELECT 1 FROM order_outbox p
+                          WHERE p."orderId" = e."orderId"
+                            AND p."processedAt" IS NULL
+                            AND p."eventId" < e."eventId")
+                    ORDER BY e."eventId"
+                    LIMIT ?
+                    FOR UPDATE SKIP LOCKED)
+                RETURNING o."eventId", o."orderId", o."eventType", CAST(o.payload AS text),
+                          o."createdAt", o.attempts, o."doneHandlers"
+                """, this::mapClaimed, leaseSeconds, batchSize);
+
+        List<ClaimedEvent> claimed = new ArrayList<>(rows.size());
+        for (ClaimedRow row : rows) {
+            if (row.error() != null) {
+                log.error("Bỏ sự kiện {} trong order_outbox: {}", row.eventId(), row.error());
+                markUnreadable(row.eventId(), row.error());
+            } else {
+                claimed.add(row.claimed());
+            }
+        }
+        claimed.sort(Comparator.comparingLong(c -> c.event().eventId()));
+        return claimed;
+    }
+
+    /** Gọi trong transaction của handler: ghi nhận cùng lúc với kết quả xử lý */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void markHandlerDone(long eventId, String handler) {
+        jdbcTemplate.update("""
+                UPDATE order_outbox SET "doneHandlers" = array_append("doneHandlers", ?)
+                WHERE "eventId" = ? AND NOT (? = ANY("doneHandlers"))
+                """, handler, eventId, handler);
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void markProcessed(long eventId) {
+        jdbcTemplate.update("""
+                UPDATE order_outbox
+                SET status = 'DONE', "processedAt" = now(), "lockedUntil" = NULL, "lastError" = NULL
+                WHERE "eventId" = ?
+                """, eventId);
+    }
+
+    /**
+     * Lần xử lý thất bại: hẹn thử lại sau retryDelaySeconds. Hết số lần thử thì đánh
+     * dấu FAILED (coi như đã xử lý để không chặn các sự kiện sau của đơn).
+     *
+     * @return true nếu sự kiện bị bỏ (FAILED)
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean markFailed(long eventId, String error, long retryDelaySeconds, int maxAttempts) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("""
+                UPDATE order_outbox
+                SET attempts = attempts + 1,
+                    "lastError" = ?,
+                    "lockedUntil" = NULL,
+                    "nextAttemptAt" = now() + make_interval(secs => ?),
+                    status = CASE WHEN attempts + 1 >= ? THEN 'FAILED' ELSE 'PENDING' END,
+                    "processedAt" = CASE WHEN attempts + 1 >= ? THEN now() END
+                WHERE "eventId" = ?
+                RETURNING status = 'FAILED'
+                """, Boolean.class, error, retryDelaySeconds, maxAttempts, maxAttempts, eventId));
+    }
+
+    @Transactional
+    public int purgeProcessed(int keepDays) {
+        return jdbcTemplate.update("""
+                DELETE FROM order_outbox
+                WHERE status = 'DONE' AND "processedAt" < now() - make_interval(days => ?)
+                """, keepDays);
+    }
+
+    /** Không thử lại được: coi như đã xử lý để không chặn các sự kiện sau của đơn */
+    private void markUnreadable(long eventId, String error) {
+        jdbcTemplate.update("""
+                UPDATE order_outbox
+                SET status = 'FAILED', "lastError" = ?, "lockedUntil" = NULL, "processedAt" = now()
+                WHERE "eventId" = ?
+                """, error, eventId);
+    }
+
+    private ClaimedRow mapClaimed(ResultSet rs, int rowNum) throws SQLException {
+        long eventId = rs.getLong(1);
+        OrderEventType type;
+        Map<String, Object> payload;
+        try {
+            type = OrderEventType.valueOf(rs.getString(3));
+            payload = objectMapper.readValue(rs.getString(4), PAYLOAD_TYPE);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            return new ClaimedRow(eventId, null, "Sự kiện không đọc được: " + e.getMessage());
+        }
+        OrderEvent event = new OrderEvent(
+                eventId,
+                rs.getLong(2),
+                type,
+                payload,
+                rs.getTimestamp(5).toLocalDateTime());
+        Array done = rs.getArray(7);
+        Set<String> doneHandlers = Set.copyOf(Arrays.asList((String[]) done.getArray()));
+        return new ClaimedRow(eventId, new ClaimedEvent(event, rs.getInt(6), doneHandlers), null);
+    }
+}
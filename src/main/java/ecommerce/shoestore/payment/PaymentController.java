@@ -1,11 +1,18 @@
 package ecommerce.shoestore.payment;
 
+import ecommerce.shoestore.common.IdempotencyInProgressException;
+import ecommerce.shoestore.common.IdempotencyService;
+import ecommerce.shoestore.inventory.OutOfStockException;
+import ecommerce.shoestore.inventory.StockReservationService;
 import ecommerce.shoestore.order.*;
+import ecommerce.shoestore.order.outbox.OrderOutbox;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
@@ -15,26 +22,35 @@ import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @Controller
 @RequestMapping("/payment")
 @RequiredArgsConstructor
+@Slf4j
 public class PaymentController {
     
+    private static final String REFUND_MESSAGE = "Đơn hàng đã bị huỷ trước khi thanh toán hoàn tất. Cửa hàng sẽ hoàn tiền cho bạn.";
+    
     private final VNPayService vnPayService;
     private final PaymentRepository paymentRepository;
     private final PaymentTransactionRepository paymentTransactionRepository;
     private final OrderRepository orderRepository;
     private final OrderService orderService;
+    private final StockReservationService stockReservationService;
+    private final IdempotencyService idempotencyService;
+    private final OrderOutbox orderOutbox;
+    private final TransactionTemplate transactionTemplate;
     
     /**
      * Tạo payment và redirect đến VNPay
      * GET/POST /payment/create-vnpay
      */
     @RequestMapping(value = "/create-vnpay", method = {RequestMethod.GET, RequestMethod.POST})
-    @Transactional
     public String createVNPayPayment(
             @RequestParam Long orderId,
+            @RequestParam(required = false) String idempotencyKey,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKeyHeader,
             HttpServletRequest request,
             HttpSession session,
             RedirectAttributes redirectAttributes) {
@@ -44,71 +60,89 @@ public class PaymentController {
             if (userId == null) {
                 return "redirect:/auth/login";
             }
-            
-            // Lấy thông tin order
-            Order order = orderRepository.findById(orderId)
-                    .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng"));
-            
-            // Kiểm tra order thuộc về user
-            if (!order.getUserId().equals(userId)) {
-                throw new RuntimeException("Đơn hàng không hợp lệ");
-            }
-            
-            // Check if payment already exists (for retry)
-            Payment payment = paymentRepository.findByOrderId(orderId).orElse(null);
-            if (payment == null) {
-                // Tạo mới payment record
-                payment = new Payment();
-                payment.setOrderId(orderId);
-                payment.setProvider("VNPAY");
-                payment.setAmount(order.getTotalAmount());
-                payment.setCurrency("VND");
-            }
-            // Reset status for retry
-            payment.setStatus("PENDING");
-            payment.setPaidAt(null);
-            payment.setTransactionCode(null);
-            payment = paymentRepository.save(payment);
-            
-            // Check if transaction already exists (for retry)
-            PaymentTransaction transaction = paymentTransactionRepository.findByOrderId(orderId).orElse(null);
-            if (transaction == null) {
-                // Tạo mới payment transaction record
-                transaction = new PaymentTransaction();
-                transaction.setOrderId(orderId);
-                transaction.setVnpTxnRef(String.valueOf(orderId));
-                transaction.setAmount(order.getTotalAmount());
-                transaction.setPaymentMethod("VNPAY");
-            }
-            // Reset status for retry
-            transaction.setStatus("PENDING");
-            transaction.setTransactionId(null);
-            transaction.setResponseCode(null);
-            transaction.setBankCode(null);
-            transaction.setCardType(null);
-            transaction = paymentTransactionRepository.save(transaction);
-            
-            // Reset order payment status
-            order.setPaymentStatus("UNPAID");
-            order.setPaidAt(null);
-            order.setTransactionId(null);
-            orderRepository.save(order);
-            
-            // Tạo payment URL
-            String ipAddress = vnPayService.getIpAddress(request);
-            String orderInfo = "Thanh toan don hang " + orderId;
-            long amount = order.getTotalAmount().longValue();
-            
-            String paymentUrl = vnPayService.createPaymentUrl(orderId, userId, amount, orderInfo, ipAddress);
-            
-            return "redirect:" + paymentUrl;
-            
+
+            // Bấm "thanh toán lại" nhiều lần với cùng khóa → dùng lại link VNPay của lần đầu
+            String requestKey = idempotencyKeyHeader != null ? idempotencyKeyHeader : idempotencyKey;
+            // Transaction chỉ bao phần tạo thanh toán: request trùng chờ kết quả mà không giữ kết nối DB
+            return idempotencyService.execute("payment:create-vnpay", userId, requestKey, redirectAttributes,
+                    () -> transactionTemplate.execute(status -> preparePayment(orderId, userId, request)));
+            
+        } catch (IdempotencyInProgressException e) {
+            // Link thanh toán của lần bấm trước chưa tạo xong sau thời gian chờ → cho người dùng thử lại từ danh sách đơn
+            redirectAttributes.addFlashAttribute("errorMessage", "Thanh toán đang được tạo, vui lòng thử lại sau giây lát.");
+            return "redirect:/order/history";
         } catch (Exception e) {
-            e.printStackTrace();
+            log.warn("Không tạo được thanh toán VNPay cho đơn {}: {}", orderId, e.getMessage(), e);
             redirectAttributes.addFlashAttribute("error", "Không thể tạo thanh toán: " + e.getMessage());
             return "redirect:/";
         }
     }
+
+    private String preparePayment(Long orderId, Long userId, HttpServletRequest request) {
+        // Lấy thông tin order
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng"));
+        
+        // Kiểm tra order thuộc về user
+        if (!order.getUserId().equals(userId)) {
+            throw new RuntimeException("Đơn hàng không hợp lệ");
+        }
+        if (order.getStatus() == OrderStatus.CANCELLED) {
+            throw new RuntimeException("Đơn hàng đã bị huỷ");
+        }
+
+        // Gia hạn giữ hàng (hoặc giữ lại nếu đã hết hạn) trước khi chuyển sang VNPay
+        stockReservationService.holdForPayment(orderId);
+        
+        // Check if payment already exists (for retry)
+        Payment payment = paymentRepository.findByOrderId(orderId).orElse(null);
+        if (payment == null) {
+            // Tạo mới payment record
+            payment = new Payment();
+            payment.setOrderId(orderId);
+            payment.setProvider("VNPAY");
+            payment.setAmount(order.getTotalAmount());
+            payment.setCurrency("VND");
+        }
+        // Reset status for retry
+        payment.setStatus("PENDING");
+        payment.setPaidAt(null);
+        payment.setTransactionCode(null);
+        payment = paymentRepository.save(payment);
+        
+        // Check if transaction already exists (for retry)
+        PaymentTransaction transaction = paymentTransactionRepository.findByOrderId(orderId).orElse(null);
+        if (transaction == null) {
+            // Tạo mới payment transaction record
+            transaction = new PaymentTransaction();
+            transaction.setOrderId(orderId);
+            transaction.setVnpTxnRef(String.valueOf(orderId));
+            transaction.setAmount(order.getTotalAmount());
+            transaction.setPaymentMethod("VNPAY");
+        }
+        // Reset status for retry
+        transaction.setStatus("PENDING");
+        transaction.setTransactionId(null);
+        transaction.setResponseCode(null);
+        transaction.setBankCode(null);
+        transaction.setCardType(null);
+        transaction = paymentTransactionRepository.save(transaction);
+        
+        // Reset order payment status
+        order.setPaymentStatus("UNPAID");
+        order.setPaidAt(null);
+        order.setTransactionId(null);
+        orderRepository.save(order);
+        
+        // Tạo payment URL
+        String ipAddress = vnPayService.getIpAddress(request);
+        String orderInfo = "Thanh toan don hang " + orderId;
+        long amount = order.getTotalAmount().longValue();
+        
+        String paymentUrl = vnPayService.createPaymentUrl(orderId, userId, amount, orderInfo, ipAddress);
+        
+        return "redirect:" + paymentUrl;
+    }
     
     /**
      * Xử lý callback từ VNPay
@@ -123,8 +157,7 @@ public class PaymentController {
             RedirectAttributes redirectAttributes) {
         
         try {
-            System.out.println("\n===== VNPAY CALLBACK RECEIVED =====");
-            System.out.println("Params: " + params);
+            log.debug("VNPay callback: {}", params);
             
             // Verify signature
             boolean isValid = vnPayService.verifyPaymentCallback(params);
@@ -142,6 +175,10 @@ public class PaymentController {
             
             Long orderId = Long.parseLong(vnpTxnRef);
             
+            // Khóa đơn trước: F5 / back-forward gửi lại cùng URL đã ký, chỉ lần đầu được ghi nhận
+            Order order = orderRepository.findByIdForUpdate(orderId)
+                    .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng"));
+            
             // Lấy payment transaction record
             PaymentTransaction transaction = paymentTransactionRepository.findByOrderId(orderId)
                     .orElseThrow(() -> new RuntimeException("Không tìm thấy giao dịch thanh toán"));
@@ -150,9 +187,14 @@ public class PaymentController {
             Payment payment = paymentRepository.findByOrderId(orderId)
                     .orElseThrow(() -> new RuntimeException("Không tìm thấy thông tin thanh toán"));
             
-            // Lấy order
-            Order order = orderRepository.findById(orderId)
-                    .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng"));
+            if (isPaymentRecorded(order, transaction, vnpTransactionNo)) {
+                log.debug("Callback VNPay cho đơn {} đã được xử lý trước đó, bỏ qua", orderId);
+                if ("REFUND_PENDING".equals(order.getPaymentStatus())) {
+                    redirectAttributes.addFlashAttribute("errorMessage", REFUND_MESSAGE);
+                    return "redirect:/order/history";
+                }
+                return "redirect:/payment/success?orderId=" + orderId;
+            }
             
             // Parse payment date
             LocalDateTime vnpPayDate = null;
@@ -178,15 +220,31 @@ public class PaymentController {
                 payment.setTransactionCode(vnpTransactionNo);
                 payment.setPaidAt(vnpPayDate);
                 
-                order.setPaymentStatus("PAID");
                 order.setTransactionId(vnpTransactionNo);
                 order.setPaidAt(vnpPayDate);
-                order.setStatus(OrderStatus.PENDING); // Chờ xác nhận từ cửa hàng
+                // Trạng thái đơn không đổi ở đây: URL trả về có thể đến muộn, khi đơn đã được xử lý tiếp
+                boolean cancelled = order.getStatus() == OrderStatus.CANCELLED;
+                order.setPaymentStatus(cancelled ? "REFUND_PENDING" : "PAID");
                 
                 paymentRepository.save(payment);
                 orderRepository.save(order);
+                orderOutbox.paymentCompleted(orderId, vnpTransactionNo, order.getTotalAmount());
+
+                if (cancelled) {
+                    // Đơn đã huỷ (hàng và lượt voucher đã trả lại): ghi nhận tiền để hoàn, không mở lại đơn
+                    log.warn("Đơn {} đã huỷ nhưng vẫn được thanh toán (giao dịch {}), cần hoàn tiền", orderId, vnpTransactionNo);
+                    redirectAttributes.addFlashAttribute("errorMessage", REFUND_MESSAGE);
+                    return "redirect:/order/history";
+                }
+
+                try {
+                    stockReservationService.confirmPayment(orderId);
+                } catch (OutOfStockException e) {
+                    // Tiền đã trừ nhưng hàng đã bị hoàn kho và bán hết: giữ ghi nhận thanh toán để cửa hàng xử lý
+                    log.warn("Đơn {} đã thanh toán nhưng không còn đủ hàng: {}", orderId, e.getMessage());
+                }
                 
-                System.out.println("Payment SUCCESS for order: " + orderId);
+                log.info("Thanh toán VNPay thành công cho đơn {}", orderId);
                 
                 // Redirect đến trang success
                 return "redirect:/payment/success?orderId=" + orderId;
@@ -208,8 +266,10 @@ public class PaymentController {
                 
                 paymentRepository.save(payment);
                 orderRepository.save(order);
+                // Trả hàng đang giữ; thanh toán lại sẽ giữ lại nếu còn hàng
+                stockReservationService.releaseHold(orderId);
                 
-                System.out.println("Payment FAILED for order: " + orderId + ", Response Code: " + vnpResponseCode);
+                log.info("Thanh toán VNPay thất bại cho đơn {}, mã phản hồi {}", orderId, vnpResponseCode);
                 
                 String errorMessage = vnPayService.getResponseMessage(vnpResponseCode);
                 
@@ -224,13 +284,24 @@ public class PaymentController {
             }
             
         } catch (Exception e) {
-            System.out.println("===== VNPAY CALLBACK ERROR =====");
-            e.printStackTrace();
+            log.error("Lỗi xử lý VNPay callback", e);
             redirectAttributes.addFlashAttribute("error", "Lỗi xử lý thanh toán: " + e.getMessage());
             return "redirect:/";
         }
     }
     
+    /**
+     * Thanh toán của đơn đã được ghi nhận: không ghi lại, không gửi thêm sự kiện/email,
+     * không đụng giữ hàng (kể cả khi callback gửi lại là callback thất bại cũ)
+     */
+    private static boolean isPaymentRecorded(Order order, PaymentTransaction transaction, String vnpTransactionNo) {
+        if ("PAID".equals(order.getPaymentStatus()) || "REFUND_PENDING".equals(order.getPaymentStatus())) {
+            return true;
+        }
+        return "SUCCESS".equals(transaction.getStatus())
+                && vnpTransactionNo != null && vnpTransactionNo.equals(transaction.getTransactionId());
+    }
+    
     /**
      * Trang thanh toán thành công
      * GET /payment/success
@@ -312,12 +383,13 @@ public class PaymentController {
             model.addAttribute("order", order);
             model.addAttribute("payment", payment);
             model.addAttribute("errorMessage", message != null ? message : "Giao dịch không thành công");
+            // Khóa cho nút "Thử thanh toán lại": bấm nhiều lần chỉ tạo một link thanh toán
+            model.addAttribute("idempotencyKey", UUID.randomUUID().toString());
             
             return "payment-failed";
             
         } catch (Exception e) {
-            System.err.println("Error in payment failed page: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("Lỗi hiển thị trang thanh toán thất bại: {}", e.getMessage(), e);
             model.addAttribute("error", e.getMessage());
             model.addAttribute("errorMessage", "Có lỗi xảy ra khi xử lý thanh toán");
             return "payment-failed";
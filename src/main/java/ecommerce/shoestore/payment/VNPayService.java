@@ -125,7 +125,7 @@ public class VNPayService {
     /**
      * Hash HMAC SHA512
      */
-    private String hmacSHA512(String key, String data) {
+    String hmacSHA512(String key, String data) {
         try {
             Mac hmac512 = Mac.getInstance("HmacSHA512");
             SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
@@ -1,10 +1,12 @@
 package ecommerce.shoestore.promotion;
 
-import ecommerce.shoestore.order.Order;
+import ecommerce.shoestore.promotion.dto.ActiveCampaignDto;
 import ecommerce.shoestore.promotion.dto.VoucherDisplayDTO;
 import ecommerce.shoestore.promotion.dto.VoucherValidationResult;
+import ecommerce.shoestore.shoes.ProductPageCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -12,6 +14,8 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Service xử lý khuyến mãi cho customer (áp dụng voucher vào order)
@@ -22,8 +26,9 @@ import java.util.List;
 public class CustomerPromotionService {
 
     private final VoucherRepository voucherRepository;
-    private final OrderVoucherRepository orderVoucherRepository;
+    private final VoucherRedemptionRepository voucherRedemptionRepository;
     private final PromotionCampaignRepository promotionCampaignRepository;
+    private final VoucherEligibilityIndex voucherEligibilityIndex;
 
     /**
      * Lấy danh sách voucher khả dụng cho customer
@@ -32,29 +37,7 @@ public class CustomerPromotionService {
      */
     @Transactional(readOnly = true)
     public List<Voucher> getAvailableVouchers(Long userId, BigDecimal orderSubTotal) {
-        LocalDate today = LocalDate.now();
-        
-        return voucherRepository.findAllWithCampaign().stream()
-                // Voucher phải enabled
-                .filter(v -> Boolean.TRUE.equals(v.getEnabled()))
-                // Campaign cũng phải enabled
-                .filter(v -> v.getCampaign() != null && Boolean.TRUE.equals(v.getCampaign().getEnabled()))
-                // Trong thời gian hiệu lực của voucher
-                .filter(v -> !v.getStartDate().isAfter(today))
-                .filter(v -> !v.getEndDate().isBefore(today))
-                // Trong thời gian hiệu lực của campaign
-                .filter(v -> v.getCampaign() != null && !v.getCampaign().getStartDate().isAfter(today))
-                .filter(v -> v.getCampaign() != null && !v.getCampaign().getEndDate().isBefore(today))
-                // Đủ giá trị đơn tối thiểu (nếu có)
-                .filter(v -> v.getMinOrderValue() == null || orderSubTotal.compareTo(v.getMinOrderValue()) >= 0)
-                // Cập nhật status trước khi trả về
-                .peek(v -> {
-                    v.updateStatus();
-                    if (v.getCampaign() != null) {
-                        v.getCampaign().updateStatus();
-                    }
-                })
-                .toList();
+        return voucherEligibilityIndex.eligibleFor(orderSubTotal);
     }
 
     /**
@@ -63,27 +46,7 @@ public class CustomerPromotionService {
      */
     @Transactional(readOnly = true)
     public List<Voucher> getAllActiveVouchers() {
-        LocalDate today = LocalDate.now();
-        
-        return voucherRepository.findAllWithCampaign().stream()
-                // Voucher phải enabled
-                .filter(v -> Boolean.TRUE.equals(v.getEnabled()))
-                // Campaign cũng phải enabled
-                .filter(v -> v.getCampaign() != null && Boolean.TRUE.equals(v.getCampaign().getEnabled()))
-                // Trong thời gian hiệu lực của voucher
-                .filter(v -> !v.getStartDate().isAfter(today))
-                .filter(v -> !v.getEndDate().isBefore(today))
-                // Trong thời gian hiệu lực của campaign
-                .filter(v -> v.getCampaign() != null && !v.getCampaign().getStartDate().isAfter(today))
-                .filter(v -> v.getCampaign() != null && !v.getCampaign().getEndDate().isBefore(today))
-                // Cập nhật status trước khi trả về
-                .peek(v -> {
-                    v.updateStatus();
-                    if (v.getCampaign() != null) {
-                        v.getCampaign().updateStatus();
-                    }
-                })
-                .toList();
+        return voucherEligibilityIndex.activeVouchers();
     }
 
     /**
@@ -92,33 +55,38 @@ public class CustomerPromotionService {
      */
     @Transactional(readOnly = true)
     public List<VoucherDisplayDTO> getVouchersForDisplay(Long userId, BigDecimal orderSubTotal) {
-        LocalDate today = LocalDate.now();
-        
-        return voucherRepository.findAllWithCampaign().stream()
-                // Chỉ lấy voucher enabled và campaign enabled
-                .filter(v -> Boolean.TRUE.equals(v.getEnabled()))
-                .filter(v -> v.getCampaign() != null && Boolean.TRUE.equals(v.getCampaign().getEnabled()))
-                // Chỉ lấy voucher trong thời gian hiệu lực (không lấy voucher đã hết hạn)
-                .filter(v -> !v.getStartDate().isAfter(today))
-                .filter(v -> !v.getEndDate().isBefore(today))
-                // Chỉ lấy voucher trong thời gian campaign
-                .filter(v -> v.getCampaign() != null && !v.getCampaign().getStartDate().isAfter(today))
-                .filter(v -> v.getCampaign() != null && !v.getCampaign().getEndDate().isBefore(today))
+        List<Voucher> vouchers = voucherEligibilityIndex.activeVouchers();
+        Map<Long, Long> usageByVoucher = countUsageByVoucher(userId, vouchers);
+
+        return vouchers.stream()
                 // Chuyển sang DTO (bao gồm kiểm tra minOrderValue và giới hạn lượt dùng)
-                .map(v -> {
-                    // Lấy số lần user đã sử dụng voucher này
-                    Long userUsageCount = 0L;
-                    if (userId != null && v.getMaxRedeemPerCustomer() != null && v.getMaxRedeemPerCustomer() > 0) {
-                        userUsageCount = orderVoucherRepository.countByVoucher_VoucherIdAndUserId(v.getVoucherId(), userId);
-                    }
-                    return VoucherDisplayDTO.fromVoucher(v, orderSubTotal, v.getMaxRedeemPerCustomer(), userUsageCount);
-                })
+                .map(v -> VoucherDisplayDTO.fromVoucher(v, orderSubTotal, v.getMaxRedeemPerCustomer(),
+                        usageByVoucher.getOrDefault(v.getVoucherId(), 0L)))
                 // Sắp xếp: voucher áp dụng được trước, sau đó theo giá trị giảm
                 .sorted(Comparator.comparing(VoucherDisplayDTO::isApplicable).reversed()
                         .thenComparing(VoucherDisplayDTO::getDiscountValue, Comparator.reverseOrder()))
                 .toList();
     }
 
+    /**
+     * Số lần user đã dùng các voucher có giới hạn lượt dùng (một truy vấn cho cả danh sách)
+     */
+    private Map<Long, Long> countUsageByVoucher(Long userId, List<Voucher> vouchers) {
+        if (userId == null) {
+            return Map.of();
+        }
+        List<Long> limitedIds = vouchers.stream()
+                .filter(v -> v.getMaxRedeemPerCustomer() != null && v.getMaxRedeemPerCustomer() > 0)
+                .map(Voucher::getVoucherId)
+                .toList();
+        if (limitedIds.isEmpty()) {
+            return Map.of();
+        }
+        return voucherRedemptionRepository.findUsageByUser(userId, limitedIds).stream()
+                .collect(Collectors.toMap(OrderVoucherRepository.VoucherUsage::getVoucherId,
+                        OrderVoucherRepository.VoucherUsage::getUsageCount));
+    }
+
     /**
      * Validate voucher code và kiểm tra điều kiện áp dụng
      */
@@ -168,9 +136,14 @@ public class CustomerPromotionService {
             );
         }
 
-        // Kiểm tra số lần sử dụng tối đa của user
-        if (voucher.getMaxRedeemPerCustomer() != null && voucher.getMaxRedeemPerCustomer() > 0) {
-            long usedCount = orderVoucherRepository.countByVoucher_VoucherIdAndUserId(voucher.getVoucherId(), userId);
+        // Tổng số lượt của voucher (kiểm tra lại khi giữ lượt trong VoucherRedemptionService.redeem)
+        if (voucher.isRedemptionLimitReached()) {
+            return VoucherValidationResult.fail("Mã voucher đã hết lượt sử dụng");
+        }
+
+        // Kiểm tra số lần sử dụng tối đa của user (không tính đơn đã huỷ)
+        if (voucher.getMaxRedeemPerCustomer() != null && voucher.getMaxRedeemPerCustomer() > 0 && userId != null) {
+            long usedCount = voucherRedemptionRepository.findUsedCount(voucher.getVoucherId(), userId);
             if (usedCount >= voucher.getMaxRedeemPerCustomer()) {
                 return VoucherValidationResult.fail("Bạn đã sử dụng hết lượt áp dụng voucher này");
             }
@@ -212,56 +185,26 @@ public class CustomerPromotionService {
     }
 
     /**
-     * Áp dụng voucher vào order (sau khi order đã được tạo)
-     */
-    @Transactional
-    public void applyVoucherToOrder(Order order, Voucher voucher, Long userId) {
-        // Kiểm tra lại voucher có hợp lệ không
-        VoucherValidationResult validation = validateVoucher(
-                voucher.getCode(), 
-                userId, 
-                order.getSubTotal()
-        );
-
-        if (!validation.isValid()) {
-            throw new IllegalArgumentException(validation.getErrorMessage());
-        }
-
-        // Tạo bản ghi OrderVoucher
-        OrderVoucher orderVoucher = OrderVoucher.builder()
-                .orderId(order.getOrderId())
-                .voucher(voucher)
-                .userId(userId)
-                .appliedAmount(validation.getDiscountAmount())
-                .build();
-
-        orderVoucherRepository.save(orderVoucher);
-        log.info("Applied voucher {} to order {} with discount {}", 
-                voucher.getCode(), order.getOrderId(), validation.getDiscountAmount());
-    }
-
-    /**
-     * Kiểm tra user đã dùng voucher này bao nhiêu lần
+     * Kiểm tra user đã dùng voucher này bao nhiêu lần (không tính đơn đã huỷ)
      */
     @Transactional(readOnly = true)
     public long countVoucherUsage(Long voucherId, Long userId) {
-        return orderVoucherRepository.countByVoucher_VoucherIdAndUserId(voucherId, userId);
+        return voucherRedemptionRepository.findUsedCount(voucherId, userId);
     }
     
     /**
-     * Lấy danh sách campaign đang hoạt động cho sản phẩm cụ thể
+     * Lấy danh sách campaign đang hoạt động cho sản phẩm cụ thể (DTO, không cache entity).
+     * Khóa cache gồm cả ngày hiện tại nên sang ngày mới tự tính lại.
      */
     @Transactional(readOnly = true)
-    public List<PromotionCampaign> getActiveCampaignsForProduct(Long shoeId, Long categoryId) {
-        LocalDate today = LocalDate.now();
-        List<PromotionCampaign> campaigns = promotionCampaignRepository.findActiveCampaignsForProduct(
-                shoeId, categoryId, today);
-        
-        // Update status cho mỗi campaign
-        campaigns.forEach(PromotionCampaign::updateStatus);
-        
-        return campaigns.stream()
-                .filter(c -> c.getStatus() == PromotionCampaignStatus.ACTIVE)
+    @Cacheable(cacheNames = ProductPageCache.PRODUCT_CAMPAIGNS,
+            key = "#shoeId + ':' + #categoryId + ':' + T(java.time.LocalDate).now()")
+    public List<ActiveCampaignDto> getActiveCampaignsForProduct(Long shoeId, Long categoryId) {
+        // Truy vấn đã lọc enabled + thời gian (đúng điều kiện ACTIVE), không phụ thuộc
+        // việc job đầu ngày đã cập nhật cột status hay chưa
+        return promotionCampaignRepository.findActiveCampaignsForProduct(shoeId, categoryId, LocalDate.now())
+                .stream()
+                .map(ActiveCampaignDto::from)
                 .toList();
     }
     
@@ -270,13 +213,6 @@ public class CustomerPromotionService {
      */
     @Transactional(readOnly = true)
     public List<PromotionCampaign> getAllActiveCampaigns() {
-        LocalDate today = LocalDate.now();
-        List<PromotionCampaign> campaigns = promotionCampaignRepository.findAllActiveCampaigns(today);
-        
-        campaigns.forEach(PromotionCampaign::updateStatus);
-        
-        return campaigns.stream()
-                .filter(c -> c.getStatus() == PromotionCampaignStatus.ACTIVE)
-                .toList();
+        return promotionCampaignRepository.findAllActiveCampaigns(LocalDate.now());
     }
 }
@@ -5,4 +5,10 @@ import org.springframework.data.jpa.repository.JpaRepository;
 public interface OrderVoucherRepository extends JpaRepository<OrderVoucher, Long> {
     boolean existsByVoucher_VoucherId(Long voucherId);
     long countByVoucher_VoucherIdAndUserId(Long voucherId, Long userId);
+
+    /** Số lần user đã dùng từng voucher (VoucherRedemptionRepository.findUsageByUser) */
+    interface VoucherUsage {
+        Long getVoucherId();
+        Long getUsageCount();
+    }
 }
@@ -0,0 +1,8 @@
+package ecommerce.shoestore.promotion;
+
+/**
+ * Phát ra khi chiến dịch khuyến mãi được tạo/sửa/bật-tắt/xóa
+ * (thời gian, mức giảm hoặc phạm vi sản phẩm áp dụng có thể đã đổi).
+ */
+public record PromotionCampaignChangedEvent(Long campaignId) {
+}
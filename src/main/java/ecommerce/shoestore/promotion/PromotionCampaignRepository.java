@@ -1,6 +1,7 @@
 package ecommerce.shoestore.promotion;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -8,7 +9,8 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
-public interface PromotionCampaignRepository extends JpaRepository<PromotionCampaign, Long> {
+public interface PromotionCampaignRepository extends JpaRepository<PromotionCampaign, Long>,
+        JpaSpecificationExecutor<PromotionCampaign> {
     
     @Query("SELECT DISTINCT c FROM PromotionCampaign c " +
            "LEFT JOIN FETCH c.targets t " +
@@ -9,6 +9,11 @@ import ecommerce.shoestore.shoes.ShoesRepository;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -27,40 +32,34 @@ public class PromotionService {
     private final PromotionTargetRepository promotionTargetRepository;
     private final ShoesRepository shoesRepository;
     private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final VoucherRedemptionService voucherRedemptionService;
 
     /* ===== Campaign ===== */
     @Transactional(readOnly = true)
     public List<PromotionCampaign> listCampaigns() {
-        List<PromotionCampaign> campaigns = campaignRepository.findAll();
-        // Cập nhật status dựa trên thời gian hiện tại
-        campaigns.forEach(PromotionCampaign::updateStatus);
-        return campaigns;
+        return campaignRepository.findAll();
     }
 
+    /**
+     * Tìm chiến dịch cho trang quản trị, lọc và phân trang trong DB (page bắt đầu từ 1)
+     */
     @Transactional(readOnly = true)
-    public List<PromotionCampaign> searchCampaigns(String keyword, String discountType, String status, Boolean enabled) {
-        List<PromotionCampaign> campaigns = campaignRepository.findAll();
-        // Cập nhật status dựa trên thời gian hiện tại trước khi filter
-        campaigns.forEach(PromotionCampaign::updateStatus);
-        
-        return campaigns.stream()
-                .filter(c -> keyword == null || keyword.isBlank() || 
-                        c.getName().toLowerCase().contains(keyword.toLowerCase()))
-                .filter(c -> discountType == null || discountType.isBlank() || 
-                        c.getDiscountType().name().equals(discountType))
-                .filter(c -> status == null || status.isBlank() || 
-                        c.getStatus().name().equals(status))
-                .filter(c -> enabled == null || c.getEnabled().equals(enabled))
-                .toList();
+    public Page<PromotionCampaign> searchCampaigns(String keyword, String discountType, String status, Boolean enabled,
+                                                   int page, int size, String sortKey) {
+        Specification<PromotionCampaign> spec = Specification.allOf(
+                PromotionSpecifications.campaignNameMatches(normalizeKeyword(keyword)),
+                PromotionSpecifications.campaignHasDiscountType(parseEnum(VoucherDiscountType.class, discountType)),
+                PromotionSpecifications.campaignHasStatus(parseEnum(PromotionCampaignStatus.class, status)),
+                PromotionSpecifications.campaignEnabled(enabled)
+        );
+        return campaignRepository.findAll(spec, PageRequest.of(Math.max(page, 1) - 1, size, toCampaignSort(sortKey)));
     }
 
     @Transactional(readOnly = true)
     public PromotionCampaign getCampaign(Long id) {
-        PromotionCampaign campaign = campaignRepository.findByIdWithTargets(id)
+        return campaignRepository.findByIdWithTargets(id)
                 .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy chiến dịch"));
-        // Cập nhật status dựa trên thời gian hiện tại
-        campaign.updateStatus();
-        return campaign;
     }
 
     @Transactional
@@ -121,6 +120,7 @@ public class PromotionService {
         }
         
         log.info("Saved campaign {} with targetType: {}", saved.getCampaignId(), targetType);
+        eventPublisher.publishEvent(new PromotionCampaignChangedEvent(saved.getCampaignId()));
         return saved;
     }
     
@@ -176,6 +176,7 @@ public class PromotionService {
         c.setEnabled(!Boolean.TRUE.equals(c.getEnabled()) ? Boolean.TRUE : Boolean.FALSE);
         // Status sẽ được tự động set bởi @PreUpdate
         campaignRepository.save(c);
+        eventPublisher.publishEvent(new PromotionCampaignChangedEvent(id));
     }
 
     @Transactional
@@ -186,49 +187,48 @@ public class PromotionService {
             throw new IllegalStateException("Chiến dịch có voucher, không thể xóa");
         }
         campaignRepository.delete(campaign);
+        eventPublisher.publishEvent(new PromotionCampaignChangedEvent(id));
     }
 
     /* ===== Voucher ===== */
     @Transactional(readOnly = true)
     public List<Voucher> listVouchers() {
-        List<Voucher> vouchers = voucherRepository.findAllWithCampaign();
-        // Cập nhật status dựa trên thời gian hiện tại
-        vouchers.forEach(Voucher::updateStatus);
-        return vouchers;
+        return voucherRepository.findAllWithCampaign();
     }
 
+    /**
+     * Tìm voucher cho trang quản trị, lọc và phân trang trong DB (page bắt đầu từ 1)
+     */
     @Transactional(readOnly = true)
-    public List<Voucher> searchVouchers(String keyword, Long campaignId, String discountType, Boolean enabled) {
-        List<Voucher> vouchers = voucherRepository.findAllWithCampaign();
-        // Cập nhật status dựa trên thời gian hiện tại trước khi filter
-        vouchers.forEach(Voucher::updateStatus);
-        
-        return vouchers.stream()
-                .filter(v -> keyword == null || keyword.isBlank() || 
-                        v.getCode().toLowerCase().contains(keyword.toLowerCase()) ||
-                        (v.getTitle() != null && v.getTitle().toLowerCase().contains(keyword.toLowerCase())))
-                .filter(v -> campaignId == null || v.getCampaign().getCampaignId().equals(campaignId))
-                .filter(v -> discountType == null || discountType.isBlank() || 
-                        v.getDiscountType().name().equals(discountType))
-                .filter(v -> enabled == null || v.getEnabled().equals(enabled))
-                .toList();
+    public Page<Voucher> searchVouchers(String keyword, Long campaignId, String discountType, Boolean enabled,
+                                        int page, int size, String sortKey) {
+        Specification<Voucher> spec = Specification.allOf(
+                PromotionSpecifications.voucherKeywordMatches(normalizeKeyword(keyword)),
+                PromotionSpecifications.voucherInCampaign(campaignId),
+                PromotionSpecifications.voucherHasDiscountType(parseEnum(VoucherDiscountType.class, discountType)),
+                PromotionSpecifications.voucherEnabled(enabled),
+                PromotionSpecifications.fetchCampaign()
+        );
+        return voucherRepository.findAll(spec, PageRequest.of(Math.max(page, 1) - 1, size, toVoucherSort(sortKey)));
     }
 
     @Transactional(readOnly = true)
     public Voucher getVoucher(Long id) {
-        Voucher voucher = voucherRepository.findByIdWithCampaign(id)
+        return voucherRepository.findByIdWithCampaign(id)
                 .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy voucher"));
-        // Cập nhật status dựa trên thời gian hiện tại
-        voucher.updateStatus();
-        return voucher;
     }
     
+    /**
+     * Voucher tạo tay của chiến dịch; mã sinh hàng loạt xem ở danh sách voucher (lọc theo chiến dịch)
+     */
     @Transactional(readOnly = true)
     public List<Voucher> getVouchersByCampaign(Long campaignId) {
-        List<Voucher> vouchers = voucherRepository.findByCampaign_CampaignId(campaignId);
-        // Cập nhật status dựa trên thời gian hiện tại
-        vouchers.forEach(Voucher::updateStatus);
-        return vouchers;
+        return voucherRepository.findManualByCampaignId(campaignId);
+    }
+
+    @Transactional(readOnly = true)
+    public long countGeneratedVouchers(Long campaignId) {
+        return voucherRepository.countByCampaign_CampaignIdAndBulkGeneratedTrue(campaignId);
     }
 
     @Transactional
@@ -271,11 +271,19 @@ public class PromotionService {
         voucher.setStartDate(form.getStartDate());
         voucher.setEndDate(form.getEndDate());
         voucher.setMaxRedeemPerCustomer(form.getMaxRedeemPerCustomer());
+        boolean limitChanged = form.getMaxRedemptions() != null
+                && !form.getMaxRedemptions().equals(voucher.getMaxRedemptions());
+        voucher.setMaxRedemptions(form.getMaxRedemptions());
         voucher.setEnabled(form.getEnabled() != null ? form.getEnabled() : Boolean.TRUE);
         voucher.setCampaign(campaign);
 
         Voucher saved = voucherRepository.save(voucher);
+        if (limitChanged && form.getVoucherId() != null) {
+            // Voucher không giới hạn không đếm tổng lượt: tính lại trước khi giới hạn có hiệu lực
+            voucherRedemptionService.onLimitChanged(saved.getVoucherId());
+        }
         log.info("Saved voucher {}", saved.getVoucherId());
+        eventPublisher.publishEvent(new VoucherChangedEvent(saved.getVoucherId()));
         return saved;
     }
 
@@ -284,6 +292,7 @@ public class PromotionService {
         Voucher v = getVoucher(id);
         v.setEnabled(!Boolean.TRUE.equals(v.getEnabled()) ? Boolean.TRUE : Boolean.FALSE);
         voucherRepository.save(v);
+        eventPublisher.publishEvent(new VoucherChangedEvent(id));
     }
 
     @Transactional
@@ -294,6 +303,49 @@ public class PromotionService {
         //     throw new IllegalStateException("Voucher đã được sử dụng, không thể xóa");
         // }
         voucherRepository.delete(v);
+        eventPublisher.publishEvent(new VoucherChangedEvent(id));
+    }
+
+    /**
+     * Khóa sắp xếp danh sách chiến dịch → Sort (luôn kèm campaignId để thứ tự ổn định)
+     */
+    private Sort toCampaignSort(String sortKey) {
+        return switch (sortKey == null ? "" : sortKey) {
+            case "name_asc" -> Sort.by(Sort.Order.asc("name"), Sort.Order.asc("campaignId"));
+            case "start_desc" -> Sort.by(Sort.Order.desc("startDate"), Sort.Order.desc("campaignId"));
+            case "start_asc" -> Sort.by(Sort.Order.asc("startDate"), Sort.Order.asc("campaignId"));
+            case "end_asc" -> Sort.by(Sort.Order.asc("endDate"), Sort.Order.asc("campaignId"));
+            default -> Sort.by(Sort.Order.desc("campaignId"));
+        };
+    }
+
+    /**
+     * Khóa sắp xếp danh sách voucher → Sort (luôn kèm voucherId để thứ tự ổn định)
+     */
+    private Sort toVoucherSort(String sortKey) {
+        return switch (sortKey == null ? "" : sortKey) {
+            case "code_asc" -> Sort.by(Sort.Order.asc("code"), Sort.Order.asc("voucherId"));
+            case "start_desc" -> Sort.by(Sort.Order.desc("startDate"), Sort.Order.desc("voucherId"));
+            case "end_asc" -> Sort.by(Sort.Order.asc("endDate"), Sort.Order.asc("voucherId"));
+            case "min_order_asc" -> Sort.by(Sort.Order.asc("minOrderValue"), Sort.Order.asc("voucherId"));
+            default -> Sort.by(Sort.Order.desc("voucherId"));
+        };
+    }
+
+    private static String normalizeKeyword(String keyword) {
+        return keyword == null || keyword.isBlank() ? null : keyword.trim();
+    }
+
+    /** Giá trị rỗng hoặc không hợp lệ (không có trong dropdown) = không lọc */
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, value.trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 
     private void validateDateRange(LocalDate start, LocalDate end) {
@@ -345,10 +397,24 @@ public class PromotionService {
      * Validate all vouchers of a campaign when campaign dates are updated.
      * Called when updating campaign to ensure existing vouchers are still valid.
      * Also updates voucher discount rules to match campaign rules.
+     * Mã sinh hàng loạt (có thể hàng trăm nghìn) được cập nhật bằng một câu UPDATE thay vì từng entity.
      */
     @Transactional
     public void validateAndAdjustVouchersForCampaignDateChange(PromotionCampaign campaign) {
-        List<Voucher> vouchers = voucherRepository.findByCampaign_CampaignId(campaign.getCampaignId());
+        int bulkAdjusted = voucherRepository.applyCampaignRulesToBulkVouchers(
+                campaign.getCampaignId(),
+                campaign.getDiscountType() != null ? campaign.getDiscountType().name() : null,
+                campaign.getDiscountValue(),
+                campaign.getMaxDiscountAmount(),
+                campaign.getMinOrderValue(),
+                campaign.getStartDate(),
+                campaign.getEndDate(),
+                LocalDate.now());
+        if (bulkAdjusted > 0) {
+            log.info("Adjusted {} generated vouchers of campaign {} to campaign rules", bulkAdjusted, campaign.getCampaignId());
+        }
+
+        List<Voucher> vouchers = voucherRepository.findManualByCampaignId(campaign.getCampaignId());
         
         for (Voucher voucher : vouchers) {
             boolean needsUpdate = false;
@@ -0,0 +1,98 @@
+package ecommerce.shoestore.promotion;
+
+import ecommerce.shoestore.common.LikePatterns;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Điều kiện lọc cho trang quản trị chiến dịch / voucher. Tham số null = không lọc theo tiêu chí đó.
+ * Từ khóa được thoát %, _ và \ (LikePatterns) nên mã như "SALE_50" chỉ khớp đúng chữ.
+ */
+public final class PromotionSpecifications {
+
+    private PromotionSpecifications() {
+    }
+
+    /* ===== Campaign ===== */
+
+    /**
+     * Khớp tên chiến dịch, không phân biệt hoa/thường và dấu
+     * (GIN trigram index trên search_normalize(name), xem schema.sql)
+     */
+    public static Specification<PromotionCampaign> campaignNameMatches(String keyword) {
+        if (keyword == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.like(normalize(cb, root.get("name")), containsPattern(cb, keyword),
+                LikePatterns.ESCAPE);
+    }
+
+    public static Specification<PromotionCampaign> campaignHasDiscountType(VoucherDiscountType discountType) {
+        return discountType == null ? null
+                : (root, query, cb) -> cb.equal(root.get("discountType"), discountType);
+    }
+
+    public static Specification<PromotionCampaign> campaignHasStatus(PromotionCampaignStatus status) {
+        return status == null ? null
+                : (root, query, cb) -> cb.equal(root.get("status"), status);
+    }
+
+    public static Specification<PromotionCampaign> campaignEnabled(Boolean enabled) {
+        return enabled == null ? null
+                : (root, query, cb) -> cb.equal(root.get("enabled"), enabled);
+    }
+
+    /* ===== Voucher ===== */
+
+    /**
+     * Khớp mã (không phân biệt hoa/thường) hoặc tiêu đề (không phân biệt dấu)
+     * (GIN trigram index trên lower(code) và search_normalize(title), xem schema.sql)
+     */
+    public static Specification<Voucher> voucherKeywordMatches(String keyword) {
+        if (keyword == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.or(
+                cb.like(cb.lower(root.get("code")), "%" + LikePatterns.escape(keyword.toLowerCase()) + "%",
+                        LikePatterns.ESCAPE),
+                cb.like(normalize(cb, root.get("title")), containsPattern(cb, keyword), LikePatterns.ESCAPE)
+        );
+    }
+
+    public static Specification<Voucher> voucherInCampaign(Long campaignId) {
+        return campaignId == null ? null
+                : (root, query, cb) -> cb.equal(root.get("campaign").get("campaignId"), campaignId);
+    }
+
+    public static Specification<Voucher> voucherHasDiscountType(VoucherDiscountType discountType) {
+        return discountType == null ? null
+                : (root, query, cb) -> cb.equal(root.get("discountType"), discountType);
+    }
+
+    public static Specification<Voucher> voucherEnabled(Boolean enabled) {
+        return enabled == null ? null
+                : (root, query, cb) -> cb.equal(root.get("enabled"), enabled);
+    }
+
+    /**
+     * Nạp luôn chiến dịch của voucher (bảng hiển thị tên chiến dịch). Bỏ qua với query đếm (count).
+     */
+    public static Specification<Voucher> fetchCampaign() {
+        return (root, query, cb) -> {
+            if (query.getResultType() != Long.class && query.getResultType() != long.class) {
+                root.fetch("campaign");
+            }
+            return null;
+        };
+    }
+
+    /** search_normalize (lower + unaccent) giữ nguyên ký tự thoát nên thoát trước khi chuẩn hóa được */
+    private static Expression<String> containsPattern(CriteriaBuilder cb, String keyword) {
+        return cb.concat(cb.concat("%", normalize(cb, cb.literal(LikePatterns.escape(keyword)))), "%");
+    }
+
+    private static Expression<String> normalize(CriteriaBuilder cb, Expression<String> value) {
+        return cb.function("search_normalize", String.class, value);
+    }
+}
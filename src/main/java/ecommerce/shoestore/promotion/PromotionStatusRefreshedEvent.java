@@ -0,0 +1,9 @@
+package ecommerce.shoestore.promotion;
+
+import java.time.LocalDate;
+
+/**
+ * Phát ra sau khi status của chiến dịch / voucher đã được tính lại cho ngày day.
+ */
+public record PromotionStatusRefreshedEvent(LocalDate day) {
+}
@@ -0,0 +1,53 @@
+package ecommerce.shoestore.promotion;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+
+/**
+ * Ghi lại cột status của chiến dịch / voucher theo ngày hiện tại
+ * (cùng quy tắc với PromotionCampaign.updateStatus / Voucher.updateStatus).
+ * Chỉ cập nhật các dòng có status thực sự đổi.
+ */
+public interface PromotionStatusRepository extends org.springframework.data.repository.Repository<PromotionCampaign, Long> {
+
+    @Modifying
+    @Query(value = """
+            UPDATE promotioncampaign c
+            SET status = s.status
+            FROM (
+                SELECT "campaignId",
+                       CAST(CASE
+                                WHEN NOT enabled THEN 'CANCELLED'
+                                WHEN "startDate" > :today THEN 'DRAFT'
+                                WHEN "endDate" < :today THEN 'ENDED'
+                                ELSE 'ACTIVE'
+                            END AS promotion_campaign_status) AS status
+                FROM promotioncampaign
+            ) s
+            WHERE c."campaignId" = s."campaignId"
+              AND c.status IS DISTINCT FROM s.status
+            """, nativeQuery = true)
+    int refreshCampaignStatuses(@Param("today") LocalDate today);
+
+    @Modifying
+    @Query(value = """
+            UPDATE voucher v
+            SET status = s.status
+            FROM (
+                SELECT "voucherId",
+                       CAST(CASE
+                                WHEN NOT enabled THEN 'CANCELLED'
+                                WHEN "startDate" > :today THEN 'DRAFT'
+                                WHEN "endDate" < :today THEN 'ENDED'
+                                ELSE 'ACTIVE'
+                            END AS voucher_status) AS status
+                FROM voucher
+            ) s
+            WHERE v."voucherId" = s."voucherId"
+              AND v.status IS DISTINCT FROM s.status
+            """, nativeQuery = true)
+    int refreshVoucherStatuses(@Param("today") LocalDate today);
+}
@@ -0,0 +1,42 @@
+package ecommerce.shoestore.promotion;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+/**
+ * Cập nhật status (DRAFT → ACTIVE → ENDED) của chiến dịch và voucher đầu mỗi ngày.
+ *
+ * Status chỉ phụ thuộc vào enabled và ngày, nên chỉ đổi khi sang ngày mới hoặc
+ * khi admin sửa (lúc đó @PrePersist/@PreUpdate của entity đã tính lại). Các chỗ
+ * đọc dùng status như dữ liệu thường, không tính lại trên từng request.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PromotionStatusService {
+
+    private final PromotionStatusRepository promotionStatusRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Chạy lúc khởi động (bù cho những ngày ứng dụng tắt qua nửa đêm) và đầu mỗi ngày
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "0 0 0 * * *")
+    @Transactional
+    public void refreshStatuses() {
+        LocalDate today = LocalDate.now();
+        int campaigns = promotionStatusRepository.refreshCampaignStatuses(today);
+        int vouchers = promotionStatusRepository.refreshVoucherStatuses(today);
+        log.info("Cập nhật status khuyến mãi ngày {}: {} chiến dịch, {} voucher", today, campaigns, vouchers);
+        eventPublisher.publishEvent(new PromotionStatusRefreshedEvent(today));
+    }
+}
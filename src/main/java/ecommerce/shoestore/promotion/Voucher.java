@@ -55,8 +55,20 @@ public class Voucher {
     @Column(name = "\"maxRedeemPerCustomer\"")
     private Long maxRedeemPerCustomer;
 
+    /** Tổng số lượt dùng tối đa của voucher (null = không giới hạn) */
+    @Column(name = "\"maxRedemptions\"")
+    private Long maxRedemptions;
+
+    /** Số lượt đã dùng (đơn chưa huỷ). Chỉ VoucherRedemptionService ghi cột này, entity không ghi đè */
+    @Column(name = "\"redeemedCount\"", insertable = false, updatable = false)
+    private Long redeemedCount;
+
     @Column(name = "enabled", nullable = false)
     private Boolean enabled;
+
+    /** Mã sinh hàng loạt cho chiến dịch: phát riêng từng khách, không hiện trong danh sách công khai */
+    @Column(name = "\"bulkGenerated\"", nullable = false)
+    private boolean bulkGenerated;
     
     @Enumerated(EnumType.STRING)
     @JdbcType(PostgreSQLEnumJdbcType.class)
@@ -86,6 +98,13 @@ public class Voucher {
         }
     }
     
+    /**
+     * Đã dùng hết tổng số lượt (theo giá trị đọc được, bộ đếm có thể đã tăng thêm)
+     */
+    public boolean isRedemptionLimitReached() {
+        return maxRedemptions != null && redeemedCount != null && redeemedCount >= maxRedemptions;
+    }
+
     @PrePersist
     @PreUpdate
     protected void onSaveOrUpdate() {
@@ -0,0 +1,7 @@
+package ecommerce.shoestore.promotion;
+
+/**
+ * Phát ra khi voucher được tạo/sửa/bật-tắt/xóa từ trang quản trị.
+ */
+public record VoucherChangedEvent(Long voucherId) {
+}
@@ -0,0 +1,147 @@
+package ecommerce.shoestore.promotion;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Danh sách voucher đang hiệu lực nằm trong bộ nhớ, sắp tăng dần theo giá trị
+ * đơn tối thiểu: voucher áp dụng được cho một đơn là đoạn đầu của danh sách,
+ * tìm bằng tìm kiếm nhị phân thay vì đọc và lọc toàn bộ bảng voucher.
+ *
+ * Nạp lại khi admin sửa voucher/chiến dịch, sau khi PromotionStatusService cập
+ * nhật status đầu ngày, và khi đọc thấy dữ liệu thuộc ngày cũ (job chưa chạy xong).
+ * Voucher đã hết tổng lượt dùng không nằm trong danh sách; redeemedCount thay đổi
+ * liên tục nên khi một voucher có giới hạn được giữ/trả lượt, bản chụp bị bỏ và lần
+ * đọc sau nạp lại (nhiều lượt dùng liền nhau chỉ tốn một lần nạp).
+ * Các Voucher trong đây đã tách khỏi persistence context và được dùng chung
+ * giữa các request: chỉ đọc, không sửa.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VoucherEligibilityIndex {
+
+    private static final Comparator<Voucher> BY_MIN_ORDER_VALUE =
+            Comparator.comparing(Voucher::getMinOrderValue).thenComparing(Voucher::getVoucherId);
+
+    /**
+     * Voucher hiệu lực trong ngày day; minOrderValues[i] là giá trị tối thiểu của vouchers[i].
+     * limitedIds: mọi voucher hiệu lực có tổng giới hạn, kể cả voucher đã hết lượt.
+     */
+    private record Snapshot(LocalDate day, List<Voucher> vouchers, BigDecimal[] minOrderValues,
+                            Set<Long> limitedIds) {
+    }
+
+    private final VoucherRepository voucherRepository;
+
+    private volatile Snapshot snapshot;
+
+    /** Sau job đầu ngày (và lúc khởi động) để status trong index khớp với DB */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onStatusRefreshed(PromotionStatusRefreshedEvent event) {
+        reload(LocalDate.now());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onVoucherChanged(VoucherChangedEvent event) {
+        reload(LocalDate.now());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onCampaignChanged(PromotionCampaignChangedEvent event) {
+        reload(LocalDate.now());
+    }
+
+    /** Sau commit của đơn giữ/trả lượt: bỏ bản chụp nếu có voucher có giới hạn liên quan */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onRedemptionChanged(VoucherRedemptionChangedEvent event) {
+        Snapshot current = snapshot;
+        if (current == null || current.limitedIds().isEmpty()) {
+            return;
+        }
+        if (event.voucherId() == null || current.limitedIds().contains(event.voucherId())) {
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Tất cả voucher đang hiệu lực hôm nay (voucher và campaign đều bật, trong thời gian của cả hai)
+     */
+    public List<Voucher> activeVouchers() {
+        return current().vouchers();
+    }
+
+    /**
+     * Voucher đang hiệu lực có giá trị đơn tối thiểu không vượt quá orderSubTotal
+     */
+    public List<Voucher> eligibleFor(BigDecimal orderSubTotal) {
+        Snapshot current = current();
+        return current.vouchers().subList(0, upperBound(current.minOrderValues(), orderSubTotal));
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        LocalDate today = LocalDate.now();
+        if (current == null || !current.day().equals(today)) {
+            current = loadIfStale(today);
+        }
+        return current;
+    }
+
+    /** Nhiều request cùng thấy bản chụp cũ/bị bỏ thì chỉ request đầu tiên nạp lại */
+    private synchronized Snapshot loadIfStale(LocalDate today) {
+        Snapshot current = snapshot;
+        if (current != null && current.day().equals(today)) {
+            return current;
+        }
+        return reload(today);
+    }
+
+    private synchronized Snapshot reload(LocalDate today) {
+        List<Voucher> effective = voucherRepository.findEffectiveOn(today);
+        Set<Long> limitedIds = effective.stream()
+                .filter(v -> v.getMaxRedemptions() != null)
+                .map(Voucher::getVoucherId)
+                .collect(Collectors.toUnmodifiableSet());
+        List<Voucher> vouchers = effective.stream()
+                .filter(v -> !v.isRedemptionLimitReached())
+                .sorted(BY_MIN_ORDER_VALUE)
+                .toList();
+        BigDecimal[] minOrderValues = vouchers.stream()
+                .map(Voucher::getMinOrderValue)
+                .toArray(BigDecimal[]::new);
+        Snapshot fresh = new Snapshot(today, vouchers, minOrderValues, limitedIds);
+        snapshot = fresh;
+        log.debug("Đã nạp {} voucher hiệu lực ngày {}", vouchers.size(), today);
+        return fresh;
+    }
+
+    /** Số phần tử <= value (mảng đã sắp tăng dần) */
+    static int upperBound(BigDecimal[] sorted, BigDecimal value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid].compareTo(value) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
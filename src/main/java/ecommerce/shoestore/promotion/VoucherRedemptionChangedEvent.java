@@ -0,0 +1,8 @@
+package ecommerce.shoestore.promotion;
+
+/**
+ * Phát ra khi tổng lượt dùng của voucher có giới hạn thay đổi (giữ lượt khi đặt hàng,
+ * trả lượt khi huỷ đơn). voucherId = null khi không rõ voucher nào (huỷ/đối soát hàng loạt).
+ */
+public record VoucherRedemptionChangedEvent(Long voucherId) {
+}
@@ -0,0 +1,164 @@
+package ecommerce.shoestore.promotion;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Bộ đếm lượt dùng voucher: theo (voucher, khách) trong voucher_redemption và
+ * tổng theo voucher ở cột voucher."redeemedCount".
+ *
+ * "redeemedCount" chỉ được giữ cho voucher có "maxRedemptions": mã không giới hạn
+ * mà được nhiều khách dùng cùng lúc sẽ không phải xếp hàng chờ khóa dòng voucher.
+ * Số lượt đã dùng để hiển thị đếm từ ordervoucher (countRedeemed).
+ */
+public interface VoucherRedemptionRepository extends org.springframework.data.repository.Repository<Voucher, Long> {
+
+    /**
+     * Cộng một lượt cho khách nếu chưa đạt maxPerCustomer (null = không giới hạn).
+     * Trả về 0 nếu khách đã dùng hết lượt. Chỉ khóa dòng của chính khách đó.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO voucher_redemption ("voucherId", "userId", "usedCount")
+            VALUES (:voucherId, :userId, 1)
+            ON CONFLICT ("voucherId", "userId") DO UPDATE
+                SET "usedCount" = voucher_redemption."usedCount" + 1
+                WHERE CAST(:maxPerCustomer AS bigint) IS NULL
+                   OR voucher_redemption."usedCount" < CAST(:maxPerCustomer AS bigint)
+            """, nativeQuery = true)
+    int tryRedeemForUser(@Param("voucherId") Long voucherId, @Param("userId") Long userId,
+                         @Param("maxPerCustomer") Long maxPerCustomer);
+
+    /**
+     * Cộng một lượt vào tổng của voucher nếu chưa đạt "maxRedemptions".
+     * Trả về 0 nếu voucher đã hết lượt. Dòng voucher bị khóa đến khi commit,
+     * nên chỉ gọi cho voucher có giới hạn tổng.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE voucher
+            SET "redeemedCount" = "redeemedCount" + 1
+            WHERE "voucherId" = :voucherId
+              AND ("maxRedemptions" IS NULL OR "redeemedCount" < "maxRedemptions")
+            """, nativeQuery = true)
+    int tryRedeemGlobal(@Param("voucherId") Long voucherId);
+
+    /**
+     * Trả lại lượt dùng của các đơn (đơn bị huỷ): bỏ cờ "redemptionCounted" và trừ cả
+     * hai bộ đếm trong một câu lệnh. Đơn đã được trả trước đó không bị trừ lần hai.
+     *
+     * @return số voucher có giới hạn tổng có lượt dùng thay đổi
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = """
+            WITH released AS (
+                UPDATE ordervoucher
+                SET "redemptionCounted" = false
+                WHERE "orderId" = ANY(:orderIds) AND "redemptionCounted"
+                RETURNING "voucherId", "userId"
+            ), per_user AS (
+                UPDATE voucher_redemption r
+                SET "usedCount" = GREATEST(r."usedCount" - x.n, 0)
+                FROM (
+                    SELECT "voucherId", "userId", COUNT(*) AS n
+                    FROM released
+                    WHERE "userId" IS NOT NULL
+                    GROUP BY "voucherId", "userId"
+                ) x
+                WHERE r."voucherId" = x."voucherId" AND r."userId" = x."userId"
+            )
+            UPDATE voucher v
+            SET "redeemedCount" = GREATEST(v."redeemedCount" - x.n, 0)
+            FROM (SELECT "voucherId", COUNT(*) AS n FROM released GROUP BY "voucherId") x
+            WHERE v."voucherId" = x."voucherId" AND v."maxRedemptions" IS NOT NULL
+            """, nativeQuery = true)
+    int releaseOrders(@Param("orderIds") Long[] orderIds);
+
+    /**
+     * Đối soát các lượt dùng ghi ngoài VoucherRedemptionService (dữ liệu cũ, sửa tay
+     * trong DB): counted = true cộng các đơn chưa huỷ mà chưa tính, false trừ các đơn
+     * đã huỷ mà vẫn đang tính. Đổi cờ và cập nhật cả hai bộ đếm trong một câu lệnh.
+     */
+    @Modifying
+    @Query(value = """
+            WITH flipped AS (
+                UPDATE ordervoucher ov
+                SET "redemptionCounted" = :counted
+                FROM "order" o
+                WHERE o."orderId" = ov."orderId"
+                  AND ov."redemptionCounted" <> :counted
+                  AND (o.status <> 'CANCELLED') = :counted
+                RETURNING ov."voucherId", ov."userId"
+            ), per_user AS (
+                INSERT INTO voucher_redemption ("voucherId", "userId", "usedCount")
+                SELECT "voucherId", "userId", COUNT(*) * CASE WHEN :counted THEN 1 ELSE -1 END
+                FROM flipped
+                WHERE "userId" IS NOT NULL
+                GROUP BY "voucherId", "userId"
+                ON CONFLICT ("voucherId", "userId") DO UPDATE
+                    SET "usedCount" = GREATEST(voucher_redemption."usedCount" + EXCLUDED."usedCount", 0)
+            )
+            UPDATE voucher v
+            SET "redeemedCount" = GREATEST(v."redeemedCount" + x.n, 0)
+            FROM (
+                SELECT "voucherId", COUNT(*) * CASE WHEN :counted THEN 1 ELSE -1 END AS n
+                FROM flipped
+                GROUP BY "voucherId"
+            ) x
+            WHERE v."voucherId" = x."voucherId" AND v."maxRedemptions" IS NOT NULL
+            """, nativeQuery = true)
+    int reconcile(@Param("counted") boolean counted);
+
+    /**
+     * Tính lại "redeemedCount" từ các đơn đang được tính lượt, cho voucher có giới hạn
+     * tổng (voucherId = null: mọi voucher như vậy). Dùng khi voucher vừa được đặt giới hạn
+     * (trước đó không đếm) và lúc khởi động.
+     *
+     * @return số voucher có bộ đếm được sửa
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE voucher v
+            SET "redeemedCount" = x.n
+            FROM (
+                SELECT v2."voucherId", COUNT(ov."orderId") AS n
+                FROM voucher v2
+                LEFT JOIN ordervoucher ov ON ov."voucherId" = v2."voucherId" AND ov."redemptionCounted"
+                WHERE v2."maxRedemptions" IS NOT NULL
+                  AND (CAST(:voucherId AS bigint) IS NULL OR v2."voucherId" = CAST(:voucherId AS bigint))
+                GROUP BY v2."voucherId"
+            ) x
+            WHERE v."voucherId" = x."voucherId" AND v."redeemedCount" <> x.n
+            """, nativeQuery = true)
+    int syncRedeemedCounts(@Param("voucherId") Long voucherId);
+
+    /** Số lượt đã dùng của voucher (đơn chưa huỷ), kể cả voucher không giới hạn tổng */
+    @Query(value = """
+            SELECT COUNT(*) FROM ordervoucher
+            WHERE "voucherId" = :voucherId AND "redemptionCounted"
+            """, nativeQuery = true)
+    long countRedeemed(@Param("voucherId") Long voucherId);
+
+    @Query(value = """
+            SELECT COALESCE(MAX("usedCount"), 0)
+            FROM voucher_redemption
+            WHERE "voucherId" = :voucherId AND "userId" = :userId
+            """, nativeQuery = true)
+    long findUsedCount(@Param("voucherId") Long voucherId, @Param("userId") Long userId);
+
+    /**
+     * Lượt dùng của một khách cho nhiều voucher trong một truy vấn
+     * (voucher chưa dùng lần nào không có trong kết quả)
+     */
+    @Query(value = """
+            SELECT "voucherId" AS "voucherId", "usedCount" AS "usageCount"
+            FROM voucher_redemption
+            WHERE "userId" = :userId AND "voucherId" IN (:voucherIds) AND "usedCount" > 0
+            """, nativeQuery = true)
+    List<OrderVoucherRepository.VoucherUsage> findUsageByUser(@Param("userId") Long userId,
+                                                              @Param("voucherIds") Collection<Long> voucherIds);
+}
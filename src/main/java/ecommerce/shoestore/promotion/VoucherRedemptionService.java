@@ -0,0 +1,116 @@
+package ecommerce.shoestore.promotion;
+
+import ecommerce.shoestore.order.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+
+/**
+ * Giới hạn lượt dùng voucher (mỗi khách: maxRedeemPerCustomer, tổng: maxRedemptions).
+ * Tổng lượt chỉ được đếm trên dòng voucher khi voucher có maxRedemptions.
+ *
+ * validateVoucher chỉ đọc bộ đếm để báo lỗi sớm; việc giữ lượt dùng thực sự là
+ * UPDATE/INSERT có điều kiện trong transaction tạo đơn, nên hai lần đặt hàng cùng
+ * lúc không thể cùng vượt giới hạn. Huỷ đơn thì trả lại lượt.
+ *
+ * Khi nhiều khách cùng dùng một mã có giới hạn tổng (flash sale), dòng voucher bị khóa
+ * từ lúc cộng tổng đến lúc commit: redeem() nên được gọi ở cuối transaction, sau khi giữ hàng,
+ * cùng thứ tự khóa với lúc huỷ đơn (tồn kho trước, voucher sau) để không deadlock.
+ * Mã đã hết lượt bị từ chối ngay ở bước đọc, không phải chờ khóa.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VoucherRedemptionService {
+
+    private final VoucherRedemptionRepository voucherRedemptionRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Giữ một lượt dùng voucher cho đơn, trong transaction tạo đơn (OrderVoucher được
+     * ghi cùng transaction với cờ "redemptionCounted").
+     *
+     * @throws IllegalStateException nếu khách đã dùng hết lượt hoặc voucher đã hết lượt;
+     *                               transaction tạo đơn rollback, không lượt nào bị giữ
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void redeem(Voucher voucher, Long userId) {
+        if (userId != null && voucherRedemptionRepository.tryRedeemForUser(
+                voucher.getVoucherId(), userId, perCustomerLimit(voucher)) == 0) {
+            throw new IllegalStateException("Bạn đã sử dụng hết lượt áp dụng voucher này");
+        }
+        if (voucher.getMaxRedemptions() == null) {
+            // Không giới hạn tổng: không cộng vào dòng voucher, các đơn dùng chung mã không chờ nhau
+            return;
+        }
+        if (voucherRedemptionRepository.tryRedeemGlobal(voucher.getVoucherId()) == 0) {
+            throw new IllegalStateException("Mã voucher đã hết lượt sử dụng");
+        }
+        eventPublisher.publishEvent(new VoucherRedemptionChangedEvent(voucher.getVoucherId()));
+    }
+
+    /**
+     * Đơn đổi trạng thái: huỷ → trả lại lượt dùng voucher.
+     * Gọi cùng chỗ với StockReservationService.onOrderStatusChanged (sau khi hoàn kho).
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onOrderStatusChanged(Long orderId, OrderStatus newStatus) {
+        if (newStatus == OrderStatus.CANCELLED) {
+            release(new Long[]{orderId});
+        }
+    }
+
+    /** Huỷ hàng loạt: trả lại lượt dùng của cả lô trong một câu lệnh */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onOrdersCancelled(Collection<Long> orderIds) {
+        if (!orderIds.isEmpty()) {
+            release(orderIds.toArray(Long[]::new));
+        }
+    }
+
+    private void release(Long[] orderIds) {
+        if (voucherRedemptionRepository.releaseOrders(orderIds) > 0) {
+            eventPublisher.publishEvent(new VoucherRedemptionChangedEvent(null));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void reconcileOnStartup() {
+        int added = voucherRedemptionRepository.reconcile(true);
+        int removed = voucherRedemptionRepository.reconcile(false);
+        int resynced = voucherRedemptionRepository.syncRedeemedCounts(null);
+        if (added > 0 || removed > 0 || resynced > 0) {
+            eventPublisher.publishEvent(new VoucherRedemptionChangedEvent(null));
+            log.info("Đối soát lượt dùng voucher: {} voucher được cộng, {} voucher được trừ, {} voucher được tính lại",
+                    added, removed, resynced);
+        }
+    }
+
+    /**
+     * Voucher vừa được đặt/đổi giới hạn tổng (trước đó có thể không được đếm):
+     * tính lại bộ đếm từ các đơn, trong transaction lưu voucher.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onLimitChanged(Long voucherId) {
+        voucherRedemptionRepository.syncRedeemedCounts(voucherId);
+    }
+
+    /** Số lượt đã dùng để hiển thị (voucher không giới hạn tổng không giữ "redeemedCount") */
+    @Transactional(readOnly = true)
+    public long countRedeemed(Long voucherId) {
+        return voucherRedemptionRepository.countRedeemed(voucherId);
+    }
+
+    private static Long perCustomerLimit(Voucher voucher) {
+        Long max = voucher.getMaxRedeemPerCustomer();
+        return max != null && max > 0 ? max : null;
+    }
+}
@@ -1,13 +1,17 @@
 package ecommerce.shoestore.promotion;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
-public interface VoucherRepository extends JpaRepository<Voucher, Long> {
+public interface VoucherRepository extends JpaRepository<Voucher, Long>, JpaSpecificationExecutor<Voucher> {
     Optional<Voucher> findByCode(String code);
     boolean existsByCode(String code);
     boolean existsByCampaign_CampaignId(Long campaignId);
@@ -15,9 +19,74 @@ public interface VoucherRepository extends JpaRepository<Voucher, Long> {
     @Query("SELECT v FROM Voucher v LEFT JOIN FETCH v.campaign")
     List<Voucher> findAllWithCampaign();
     
+    /**
+     * Voucher đang hiệu lực trong ngày: voucher và campaign đều bật,
+     * ngày nằm trong khoảng thời gian của cả hai (VoucherEligibilityIndex).
+     * Không gồm mã sinh hàng loạt (phát riêng, không hiện công khai)
+     */
+    @Query("""
+            SELECT v FROM Voucher v JOIN FETCH v.campaign c
+            WHERE v.enabled = true AND c.enabled = true AND v.bulkGenerated = false
+              AND v.startDate <= :today AND v.endDate >= :today
+              AND c.startDate <= :today AND c.endDate >= :today
+            """)
+    List<Voucher> findEffectiveOn(@Param("today") LocalDate today);
+
     @Query("SELECT v FROM Voucher v LEFT JOIN FETCH v.campaign WHERE v.voucherId = :id")
     Optional<Voucher> findByIdWithCampaign(@Param("id") Long id);
     
     @Query("SELECT v FROM Voucher v LEFT JOIN FETCH v.campaign WHERE v.campaign.campaignId = :campaignId")
     List<Voucher> findByCampaign_CampaignId(@Param("campaignId") Long campaignId);
+
+    /** Voucher tạo tay của chiến dịch (không gồm mã sinh hàng loạt) */
+    @Query("SELECT v FROM Voucher v LEFT JOIN FETCH v.campaign WHERE v.campaign.campaignId = :campaignId AND v.bulkGenerated = false")
+    List<Voucher> findManualByCampaignId(@Param("campaignId") Long campaignId);
+
+    long countByCampaign_CampaignIdAndBulkGeneratedTrue(Long campaignId);
+
+    /**
+     * Áp quy tắc của chiến dịch cho mọi mã sinh hàng loạt của nó trong một câu lệnh
+     * (cùng quy tắc với PromotionService.validateAndAdjustVouchersForCampaignDateChange).
+     * Chỉ ghi các dòng thực sự đổi; status tính lại ngay theo ngày today (như Voucher.updateStatus).
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE voucher v
+            SET "discountType" = s."discountType",
+                "discountValue" = s."discountValue",
+                "maxDiscountValue" = s."maxDiscountValue",
+                "minOrderValue" = s."minOrderValue",
+                "startDate" = s."startDate",
+                "endDate" = s."endDate",
+                enabled = v.enabled AND s."startDate" <= s."endDate",
+                status = CAST(CASE
+                                  WHEN NOT (v.enabled AND s."startDate" <= s."endDate") THEN 'CANCELLED'
+                                  WHEN s."startDate" > :today THEN 'DRAFT'
+                                  WHEN s."endDate" < :today THEN 'ENDED'
+                                  ELSE 'ACTIVE'
+                              END AS voucher_status)
+            FROM (
+                SELECT "voucherId",
+                       COALESCE(CAST(:discountType AS voucher_discount_type), "discountType") AS "discountType",
+                       COALESCE(CAST(:discountValue AS numeric), "discountValue") AS "discountValue",
+                       COALESCE(CAST(:maxDiscountValue AS numeric), "maxDiscountValue") AS "maxDiscountValue",
+                       COALESCE(CAST(:minOrderValue AS numeric), "minOrderValue") AS "minOrderValue",
+                       GREATEST("startDate", CAST(:startDate AS date)) AS "startDate",
+                       LEAST("endDate", CAST(:endDate AS date)) AS "endDate"
+                FROM voucher
+                WHERE "campaignId" = :campaignId AND "bulkGenerated"
+            ) s
+            WHERE v."voucherId" = s."voucherId"
+              AND (v."discountType", v."discountValue", v."maxDiscountValue", v."minOrderValue", v."startDate", v."endDate")
+                  IS DISTINCT FROM
+                  (s."discountType", s."discountValue", s."maxDiscountValue", s."minOrderValue", s."startDate", s."endDate")
+            """, nativeQuery = true)
+    int applyCampaignRulesToBulkVouchers(@Param("campaignId") Long campaignId,
+                                         @Param("discountType") String discountType,
+                                         @Param("discountValue") BigDecimal discountValue,
+                                         @Param("maxDiscountValue") BigDecimal maxDiscountValue,
+                                         @Param("minOrderValue") BigDecimal minOrderValue,
+                                         @Param("startDate") LocalDate startDate,
+                                         @Param("endDate") LocalDate endDate,
+                                         @Param("today") LocalDate today);
 }
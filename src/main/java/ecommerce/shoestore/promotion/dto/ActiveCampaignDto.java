@@ -0,0 +1,28 @@
+package ecommerce.shoestore.promotion.dto;
+
+import ecommerce.shoestore.promotion.PromotionCampaign;
+import ecommerce.shoestore.promotion.VoucherDiscountType;
+import lombok.Value;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Campaign đang áp dụng cho sản phẩm, chỉ gồm phần hiển thị trên trang chi tiết.
+ * Được cache (ProductPageCache.PRODUCT_CAMPAIGNS) thay cho entity PromotionCampaign:
+ * bất biến, không gắn với session Hibernate và Serializable nên dùng được với cache phân tán.
+ */
+@Value
+public class ActiveCampaignDto implements Serializable {
+
+    Long campaignId;
+    String name;
+    VoucherDiscountType discountType;
+    BigDecimal discountValue;
+    BigDecimal maxDiscountAmount;
+
+    public static ActiveCampaignDto from(PromotionCampaign campaign) {
+        return new ActiveCampaignDto(campaign.getCampaignId(), campaign.getName(), campaign.getDiscountType(),
+                campaign.getDiscountValue(), campaign.getMaxDiscountAmount());
+    }
+}
@@ -39,6 +39,9 @@ public class VoucherForm {
 
     private Long maxRedeemPerCustomer;
 
+    @Positive(message = "Tổng số lượt dùng phải > 0")
+    private Long maxRedemptions;
+
     private Boolean enabled = Boolean.TRUE;
 
     @NotNull(message = "Chiến dịch không được để trống")
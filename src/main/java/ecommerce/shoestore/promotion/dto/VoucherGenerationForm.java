@@ -0,0 +1,36 @@
+package ecommerce.shoestore.promotion.dto;
+
+import jakarta.validation.constraints.*;
+import lombok.Data;
+
+/**
+ * Form sinh mã voucher hàng loạt cho một chiến dịch. Loại giảm, mức giảm,
+ * đơn tối thiểu và thời gian lấy theo chiến dịch.
+ */
+@Data
+public class VoucherGenerationForm {
+
+    public static final int MAX_COUNT = 500_000;
+
+    @NotNull(message = "Số lượng mã không được để trống")
+    @Min(value = 1, message = "Số lượng mã phải >= 1")
+    @Max(value = MAX_COUNT, message = "Mỗi lần sinh tối đa 500.000 mã")
+    private Integer count = 1000;
+
+    @Pattern(regexp = "[A-Za-z0-9]{0,12}", message = "Tiền tố chỉ gồm chữ và số, tối đa 12 ký tự")
+    private String prefix;
+
+    @NotNull(message = "Độ dài phần ngẫu nhiên không được để trống")
+    @Min(value = 8, message = "Phần ngẫu nhiên tối thiểu 8 ký tự")
+    @Max(value = 16, message = "Phần ngẫu nhiên tối đa 16 ký tự")
+    private Integer randomLength = 10;
+
+    private String title;
+
+    private String description;
+
+    @Positive(message = "Số lượt dùng mỗi khách phải > 0")
+    private Long maxRedeemPerCustomer = 1L;
+
+    private Boolean enabled = Boolean.TRUE;
+}
@@ -0,0 +1,76 @@
+package ecommerce.shoestore.revenue;
+
+import ecommerce.shoestore.order.Order;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Doanh thu đơn COMPLETED cộng dồn theo ngày đặt hàng (revenue_daily).
+ */
+public interface RevenueRollupRepository extends org.springframework.data.repository.Repository<Order, Long> {
+
+    /**
+     * Đổi cờ "revenueCounted" của đơn. Trả về 1 nếu cờ thực sự đổi, 0 nếu đơn
+     * đã ở đúng trạng thái (không cộng/trừ lần hai).
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = """
+            UPDATE "order"
+            SET "revenueCounted" = :counted
+            WHERE "orderId" = :orderId
+              AND "revenueCounted" <> :counted
+            """, nativeQuery = true)
+    int markRevenueCounted(@Param("orderId") Long orderId, @Param("counted") boolean counted);
+
+    /**
+     * Cộng (sign = 1) hoặc trừ (sign = -1) đơn vào ngày đặt hàng
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO revenue_daily (day, "completedOrders", revenue)
+            SELECT CAST(o."createAt" AS date), :sign, COALESCE(o."totalAmount", 0) * :sign
+            FROM "order" o
+            WHERE o."orderId" = :orderId
+            ON CONFLICT (day) DO UPDATE SET
+                "completedOrders" = revenue_daily."completedOrders" + EXCLUDED."completedOrders",
+                revenue = revenue_daily.revenue + EXCLUDED.revenue
+            """, nativeQuery = true)
+    int applyToDaily(@Param("orderId") Long orderId, @Param("sign") int sign);
+
+    /**
+     * Đối soát các đơn đổi trạng thái ngoài luồng sự kiện (dữ liệu cũ, sửa tay
+     * trong DB). counted = true: cộng các đơn COMPLETED chưa tính; false: trừ ngược lại.
+     */
+    @Modifying
+    @Query(value = """
+            WITH flipped AS (
+                UPDATE "order"
+                SET "revenueCounted" = :counted
+                WHERE "revenueCounted" <> :counted
+                  AND (status = 'COMPLETED') = :counted
+                RETURNING "createAt", "totalAmount"
+            )
+            INSERT INTO revenue_daily (day, "completedOrders", revenue)
+            SELECT CAST(f."createAt" AS date),
+                   COUNT(*) * CASE WHEN :counted THEN 1 ELSE -1 END,
+                   COALESCE(SUM(f."totalAmount"), 0) * CASE WHEN :counted THEN 1 ELSE -1 END
+            FROM flipped f
+            GROUP BY CAST(f."createAt" AS date)
+            ON CONFLICT (day) DO UPDATE SET
+                "completedOrders" = revenue_daily."completedOrders" + EXCLUDED."completedOrders",
+                revenue = revenue_daily.revenue + EXCLUDED.revenue
+            """, nativeQuery = true)
+    int reconcileDaily(@Param("counted") boolean counted);
+
+    @Query(value = """
+            SELECT day, "completedOrders", revenue
+            FROM revenue_daily
+            WHERE day BETWEEN :startDate AND :endDate
+            ORDER BY day
+            """, nativeQuery = true)
+    List<Object[]> findDaily(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+}
@@ -0,0 +1,54 @@
+package ecommerce.shoestore.revenue;
+
+import ecommerce.shoestore.order.OrderStatus;
+import ecommerce.shoestore.order.outbox.OrderEvent;
+import ecommerce.shoestore.order.outbox.OrderEventHandler;
+import ecommerce.shoestore.order.outbox.OrderEventType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Cộng dồn doanh thu theo ngày từ sự kiện đổi trạng thái đơn: vào COMPLETED
+ * thì cộng, rời khỏi COMPLETED thì trừ. Báo cáo doanh thu đọc từ revenue_daily
+ * thay vì quét toàn bộ bảng order.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RevenueRollupService implements OrderEventHandler {
+
+    private final RevenueRollupRepository revenueRollupRepository;
+
+    @Override
+    public String name() {
+        return "revenue-rollup";
+    }
+
+    @Override
+    public boolean supports(OrderEventType type) {
+        return type == OrderEventType.ORDER_STATUS_CHANGED;
+    }
+
+    @Override
+    public void handle(OrderEvent event) {
+        boolean counted = OrderStatus.valueOf(event.get("newStatus")) == OrderStatus.COMPLETED;
+        if (revenueRollupRepository.markRevenueCounted(event.orderId(), counted) == 0) {
+            return;
+        }
+        revenueRollupRepository.applyToDaily(event.orderId(), counted ? 1 : -1);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void reconcileOnStartup() {
+        int added = revenueRollupRepository.reconcileDaily(true);
+        int removed = revenueRollupRepository.reconcileDaily(false);
+        if (added > 0 || removed > 0) {
+            log.info("Đối soát doanh thu theo ngày: +{} / -{} dòng", added, removed);
+        }
+    }
+}
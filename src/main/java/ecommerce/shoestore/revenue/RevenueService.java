@@ -10,8 +10,8 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.util.Collections;
+import java.time.LocalTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -21,12 +21,17 @@ import java.util.stream.Collectors;
 public class RevenueService {
     
     private final OrderHistoryRepository orderRepository;
+    private final RevenueRollupRepository revenueRollupRepository;
     
     public RevenueReportDto generateRevenueReport(LocalDate startDate, LocalDate endDate, String reportType) {
-        List<Order> completedOrders = getCompletedOrdersInDateRange(startDate, endDate);
+        Map<LocalDate, RevenueReportDto.DailyRevenueDto> dailyTotals = getDailyTotals(startDate, endDate);
         
-        BigDecimal totalRevenue = calculateTotalRevenue(completedOrders);
-        Long totalCompletedOrders = (long) completedOrders.size();
+        BigDecimal totalRevenue = dailyTotals.values().stream()
+            .map(RevenueReportDto.DailyRevenueDto::getRevenue)
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        Long totalCompletedOrders = dailyTotals.values().stream()
+            .mapToLong(RevenueReportDto.DailyRevenueDto::getOrderCount)
+            .sum();
         BigDecimal averageOrderValue = totalCompletedOrders > 0 
             ? totalRevenue.divide(BigDecimal.valueOf(totalCompletedOrders), 2, RoundingMode.HALF_UP)
             : BigDecimal.ZERO;
@@ -38,49 +43,39 @@ public class RevenueService {
             .totalRevenue(totalRevenue)
             .totalCompletedOrders(totalCompletedOrders)
             .averageOrderValue(averageOrderValue)
-            .dailyBreakdown(generateDailyBreakdown(completedOrders, startDate, endDate))
-            .orderDetails(generateOrderDetails(completedOrders))
+            .dailyBreakdown(generateDailyBreakdown(dailyTotals, startDate, endDate))
+            .orderDetails(generateOrderDetails(getCompletedOrdersInDateRange(startDate, endDate)))
             .build();
     }
     
-    private List<Order> getCompletedOrdersInDateRange(LocalDate startDate, LocalDate endDate) {
-        LocalDateTime startDateTime = startDate.atStartOfDay();
-        LocalDateTime endDateTime = endDate.plusDays(1).atStartOfDay();
-        
-        return orderRepository.findAll().stream()
-            .filter(order -> order.getStatus() == OrderStatus.COMPLETED)
-            .filter(order -> {
-                LocalDateTime createAt = order.getCreateAt();
-                return createAt != null && 
-                       !createAt.isBefore(startDateTime) && 
-                       createAt.isBefore(endDateTime);
-            })
-            .collect(Collectors.toList());
+    // Tổng theo ngày đã được cộng dồn sẵn trong revenue_daily (RevenueRollupService)
+    private Map<LocalDate, RevenueReportDto.DailyRevenueDto> getDailyTotals(LocalDate startDate, LocalDate endDate) {
+        Map<LocalDate, RevenueReportDto.DailyRevenueDto> totals = new HashMap<>();
+        for (Object[] row : revenueRollupRepository.findDaily(startDate, endDate)) {
+            LocalDate date = ((java.sql.Date) row[0]).toLocalDate();
+            totals.put(date, RevenueReportDto.DailyRevenueDto.builder()
+                .date(date)
+                .orderCount(((Number) row[1]).longValue())
+                .revenue((BigDecimal) row[2])
+                .build());
+        }
+        return totals;
     }
     
-    private BigDecimal calculateTotalRevenue(List<Order> orders) {
-        return orders.stream()
-            .map(order -> order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
+    private List<Order> getCompletedOrdersInDateRange(LocalDate startDate, LocalDate endDate) {
+        return orderRepository.findByStatusAndCreateAtBetween(OrderStatus.COMPLETED.name(),
+            startDate.atStartOfDay(), endDate.atTime(LocalTime.MAX));
     }
     
-    private List<RevenueReportDto.DailyRevenueDto> generateDailyBreakdown(List<Order> orders, 
+    private List<RevenueReportDto.DailyRevenueDto> generateDailyBreakdown(Map<LocalDate, RevenueReportDto.DailyRevenueDto> dailyTotals,
                                                                           LocalDate startDate, 
                                                                           LocalDate endDate) {
-        Map<LocalDate, List<Order>> ordersByDate = orders.stream()
-            .collect(Collectors.groupingBy(order -> order.getCreateAt().toLocalDate()));
-        
         return startDate.datesUntil(endDate.plusDays(1))
-            .map(date -> {
-                List<Order> dayOrders = ordersByDate.getOrDefault(date, List.of());
-                BigDecimal dayRevenue = calculateTotalRevenue(dayOrders);
-                
-                return RevenueReportDto.DailyRevenueDto.builder()
-                    .date(date)
-                    .revenue(dayRevenue)
-                    .orderCount((long) dayOrders.size())
-                    .build();
-            })
+            .map(date -> dailyTotals.getOrDefault(date, RevenueReportDto.DailyRevenueDto.builder()
+                .date(date)
+                .revenue(BigDecimal.ZERO)
+                .orderCount(0L)
+                .build()))
             .collect(Collectors.toList());
     }
     
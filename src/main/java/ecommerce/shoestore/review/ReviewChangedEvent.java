@@ -0,0 +1,7 @@
+package ecommerce.shoestore.review;
+
+/**
+ * Phát ra khi sản phẩm có thêm (hoặc thay đổi) đánh giá.
+ */
+public record ReviewChangedEvent(Long shoeId) {
+}
@@ -1,16 +1,23 @@
 package ecommerce.shoestore.review;
 
 import ecommerce.shoestore.auth.user.UserRepository;
+import ecommerce.shoestore.review.dto.ProductReviewsDto;
+import ecommerce.shoestore.review.dto.ReviewItemDto;
 import ecommerce.shoestore.review.dto.ReviewRequest;
 import ecommerce.shoestore.shoes.Shoes;
 import ecommerce.shoestore.shoes.ShoesRepository;
 import ecommerce.shoestore.order.OrderItem;
 import ecommerce.shoestore.order.OrderItemRepository;
 import ecommerce.shoestore.auth.user.User;
+import ecommerce.shoestore.shoes.ProductPageCache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
 public class ReviewService {
@@ -19,7 +26,37 @@ public class ReviewService {
     private final ShoesRepository shoesRepository;
     private final OrderItemRepository orderItemRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Danh sách đánh giá + điểm trung bình cho trang chi tiết sản phẩm.
+     * Được cache, xóa khi có đánh giá mới (ReviewChangedEvent).
+     */
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = ProductPageCache.PRODUCT_REVIEWS, key = "#shoeId")
+    public ProductReviewsDto getProductReviews(Long shoeId) {
+        List<ReviewItemDto> reviews = reviewRepository.findByShoesIdWithDetails(shoeId).stream()
+                .map(r -> ReviewItemDto.builder()
+                        .reviewId(r.getReviewId())
+                        .rate(r.getRate())
+                        .comment(r.getComment())
+                        .reviewDate(r.getReviewDate())
+                        .userFullname(r.getUser() != null ? r.getUser().getFullname() : null)
+                        .variantInfo(r.getOrderItem() != null ? r.getOrderItem().getVariantInfo() : null)
+                        .build())
+                .toList();
+
+        double averageRate = reviews.stream()
+                .filter(r -> r.getRate() != null)
+                .mapToInt(ReviewItemDto::getRate)
+                .average()
+                .orElse(0.0);
 
+        return ProductReviewsDto.builder()
+                .reviews(reviews)
+                .averageRate(averageRate)
+                .build();
+    }
 
     @Transactional
     public Review createReview(ReviewRequest request, Long userId){
@@ -48,6 +85,8 @@ public class ReviewService {
                 .shoes(shoe)
                 .orderItem(orderItem)
                 .build();
-        return reviewRepository.save(review);
+        Review saved = reviewRepository.save(review);
+        eventPublisher.publishEvent(new ReviewChangedEvent(shoe.getShoeId()));
+        return saved;
     }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package ecommerce.shoestore.review.dto;
+
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Đánh giá của một sản phẩm kèm điểm trung bình (trang chi tiết sản phẩm)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductReviewsDto implements Serializable {
+
+    private List<ReviewItemDto> reviews;
+    private double averageRate;
+}
@@ -0,0 +1,20 @@
+package ecommerce.shoestore.review.dto;
+
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewItemDto implements Serializable {
+
+    private Long reviewId;
+    private Integer rate;
+    private String comment;
+    private LocalDateTime reviewDate;
+    private String userFullname;
+    private String variantInfo;
+}
@@ -0,0 +1,95 @@
+package ecommerce.shoestore.shoes;
+
+import ecommerce.shoestore.promotion.PromotionCampaignChangedEvent;
+import ecommerce.shoestore.review.ReviewChangedEvent;
+import ecommerce.shoestore.shoes.dto.ShoesDetailDto;
+import ecommerce.shoestore.shoes.dto.ShoesSummaryDto;
+import ecommerce.shoestore.shoes.listing.ProductListing;
+import ecommerce.shoestore.shoes.listing.ProductListingRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Cache cho trang chi tiết sản phẩm và việc xóa cache khi dữ liệu gốc đổi.
+ *
+ * Xóa sau khi commit để request đọc song song không nạp lại dữ liệu cũ:
+ * - sản phẩm sửa / đổi tồn kho / ngừng bán → chi tiết của chính nó và của các
+ *   sản phẩm đang hiện nó (hoặc sẽ hiện nó) trong khối "sản phẩm liên quan"
+ * - đánh giá mới → đánh giá của sản phẩm đó
+ * - chiến dịch khuyến mãi đổi → toàn bộ campaign theo sản phẩm
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductPageCache {
+
+    public static final String PRODUCT_DETAIL = "productDetail";
+    public static final String PRODUCT_REVIEWS = "productReviews";
+    public static final String PRODUCT_CAMPAIGNS = "productCampaigns";
+
+    private final CacheManager cacheManager;
+    private final ProductListingRepository productListingRepository;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onShoesChanged(ShoesChangedEvent event) {
+        Cache cache = cacheManager.getCache(PRODUCT_DETAIL);
+        if (cache == null || event.shoeIds().isEmpty()) {
+            return;
+        }
+        Set<Long> changed = new HashSet<>(event.shoeIds());
+        if (!(cache instanceof CaffeineCache caffeineCache)) {
+            cache.clear(); // cache ngoài (Redis, ...) không duyệt được → xóa hết
+            return;
+        }
+        Set<Long> categories = new HashSet<>();
+        for (ProductListing listing : productListingRepository.findAllById(changed)) {
+            if (listing.getCategoryId() != null) {
+                categories.add(listing.getCategoryId());
+            }
+        }
+        caffeineCache.getNativeCache().asMap().values().removeIf(value ->
+                value instanceof ShoesDetailDto detail && isAffected(detail, changed, categories));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReviewChanged(ReviewChangedEvent event) {
+        evict(PRODUCT_REVIEWS, event.shoeId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCampaignChanged(PromotionCampaignChangedEvent event) {
+        Cache cache = cacheManager.getCache(PRODUCT_CAMPAIGNS);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private static boolean isAffected(ShoesDetailDto detail, Set<Long> changed, Set<Long> categories) {
+        if (changed.contains(detail.getShoeId()) || categories.contains(detail.getCategoryId())) {
+            return true;
+        }
+        Collection<ShoesSummaryDto> related = detail.getRelatedProducts();
+        return related != null && related.stream()
+                .map(ShoesSummaryDto::getShoeId)
+                .filter(Objects::nonNull)
+                .anyMatch(changed::contains);
+    }
+
+    private void evict(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ecommerce.shoestore.shoes;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Phát ra khi dữ liệu hiển thị của sản phẩm thay đổi
+ * (thông tin chung, ảnh, biến thể, tồn kho, trạng thái bán).
+ * Các bản sao dữ liệu phía đọc (gợi ý tìm kiếm, ...) lắng nghe để cập nhật.
+ */
+public record ShoesChangedEvent(Collection<Long> shoeIds) {
+
+    public static ShoesChangedEvent of(Long shoeId) {
+        return new ShoesChangedEvent(List.of(shoeId));
+    }
+}
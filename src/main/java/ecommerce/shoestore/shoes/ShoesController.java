@@ -1,13 +1,16 @@
 package ecommerce.shoestore.shoes;
 
+import ecommerce.shoestore.common.KeysetCursor;
+import ecommerce.shoestore.common.KeysetLinks;
+import ecommerce.shoestore.common.KeysetPage;
 import ecommerce.shoestore.promotion.CustomerPromotionService;
-import ecommerce.shoestore.promotion.PromotionCampaign;
-import ecommerce.shoestore.review.Review;
-import ecommerce.shoestore.review.ReviewRepository;
+import ecommerce.shoestore.promotion.dto.ActiveCampaignDto;
+import ecommerce.shoestore.review.ReviewService;
+import ecommerce.shoestore.review.dto.ProductReviewsDto;
 import ecommerce.shoestore.shoes.crud.ShoesSearchService;
 import ecommerce.shoestore.shoes.dto.ShoesDetailDto;
 import ecommerce.shoestore.shoes.dto.ShoesListDto;
-import ecommerce.shoestore.category.CategoryRepository;
+import ecommerce.shoestore.shoes.dto.ShoesSummaryDto;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -27,22 +30,43 @@ public class ShoesController {
 
     private final ShoesService shoesService;
     private final ShoesSearchService shoesSearchService;
-    private final CategoryRepository categoryRepository;
     private final CustomerPromotionService customerPromotionService;
-    private final ReviewRepository reviewRepository;
+    private final ReviewService reviewService;
 
     @GetMapping("/")
     public String homePage(
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "12") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean count,
             Model model) {
         // Session attributes (isLoggedIn, fullname, role, avatar)
-        // được tự động thêm bởi SessionModelAdvice
+        // được tự động thêm bởi SessionModelInterceptor
 
         // Validate page: nếu < 1 thì chuyển về trang 1
         if (page < 1) {
             page = 1;
         }
+        if (size < 1) {
+            size = 12;
+        }
+
+        model.addAttribute("facets", shoesSearchService.getFacets(null, null, null, null, null, null));
+
+        // Chế độ cursor (?cursor=...): phân trang keyset, không OFFSET/COUNT
+        if (cursor != null) {
+            KeysetPage<ShoesSummaryDto> slice = shoesService.getShoesListKeyset(
+                    KeysetCursor.decodeOrFirstPage(cursor), size, count);
+
+            model.addAttribute("products", slice.content());
+            model.addAttribute("cursorMode", true);
+            model.addAttribute("nextPageUrl", KeysetLinks.nextPageUrl(slice.nextCursor()));
+            // Không có số trang: template hiện thanh "trang trước / trang sau" riêng
+            model.addAttribute("firstPage", cursor.isBlank());
+            model.addAttribute("firstPageUrl", KeysetLinks.firstPageUrl());
+            model.addAttribute("totalItems", slice.totalItems());
+            return "shoe/shoes-list";
+        }
 
         ShoesListDto data = shoesService.getShoesList(page, size);
 
@@ -50,30 +74,23 @@ public class ShoesController {
         model.addAttribute("currentPage", data.getCurrentPage());
         model.addAttribute("totalPages", data.getTotalPages());
         model.addAttribute("totalItems", data.getTotalItems());
-        model.addAttribute("categories", categoryRepository.findAll());
-        model.addAttribute("brands", shoesSearchService.findAllBrands(null));
 
         return "shoe/shoes-list";
     }
 
     @GetMapping("/product/{shoeId}")
     public String productDetail(@PathVariable Long shoeId, Model model) {
-        // Session attributes được tự động thêm bởi SessionModelAdvice
+        // Session attributes được tự động thêm bởi SessionModelInterceptor
         ShoesDetailDto product = shoesService.getShoesDetail(shoeId);
         model.addAttribute("product", product);
 
-        // Lấy danh sách đánh giá thực tế từ database
-        List<Review> reviews = reviewRepository.findByShoesIdWithDetails(shoeId);
-        model.addAttribute("reviews", reviews);
-
-        double averageRate = reviews.stream()
-                .mapToInt(Review::getRate)
-                .average()
-                .orElse(0.0);
-        model.addAttribute("averageRate", averageRate);
+        // Đánh giá + điểm trung bình (cache, xóa khi có đánh giá mới)
+        ProductReviewsDto reviews = reviewService.getProductReviews(shoeId);
+        model.addAttribute("reviews", reviews.getReviews());
+        model.addAttribute("averageRate", reviews.getAverageRate());
         
         // Lấy các campaign khuyến mãi đang áp dụng cho sản phẩm này
-        List<PromotionCampaign> activeCampaigns = customerPromotionService.getActiveCampaignsForProduct(
+        List<ActiveCampaignDto> activeCampaigns = customerPromotionService.getActiveCampaignsForProduct(
                 shoeId, product.getCategoryId());
         model.addAttribute("activeCampaigns", activeCampaigns);
 
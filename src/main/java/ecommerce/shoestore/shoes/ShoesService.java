@@ -1,22 +1,29 @@
 package ecommerce.shoestore.shoes;
 
+import ecommerce.shoestore.common.KeysetCursor;
+import ecommerce.shoestore.common.KeysetPage;
 import ecommerce.shoestore.common.NotFoundException;
 import ecommerce.shoestore.shoes.dto.ShoesDetailDto;
 import ecommerce.shoestore.shoes.dto.ShoesListDto;
 import ecommerce.shoestore.shoes.dto.ShoesSummaryDto;
+import ecommerce.shoestore.shoes.listing.ProductListing;
+import ecommerce.shoestore.shoes.listing.ProductListingRepository;
+import ecommerce.shoestore.shoes.listing.ProductListingService;
+import ecommerce.shoestore.shoes.listing.ProductListingSpecifications;
 import ecommerce.shoestore.shoesimage.ShoesImage;
 import ecommerce.shoestore.shoesvariant.ShoesVariant;
 import ecommerce.shoestore.shoesvariant.ShoesVariantDto;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.time.OffsetDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 /**
@@ -28,9 +35,11 @@ import java.util.*;
 public class ShoesService {
 
     private final ShoesRepository shoesRepository;
+    private final ProductListingRepository productListingRepository;
+    private final ProductListingService productListingService;
 
     /**
-     * Lấy danh sách giày có phân trang
+     * Lấy danh sách giày có phân trang (đọc từ bảng product_listing, 1 query/trang)
      */
     @Transactional(readOnly = true)
     public ShoesListDto getShoesList(int page, int size) {
@@ -38,77 +47,51 @@ public class ShoesService {
         if (page < 1) {
             page = 1;
         }
-        Pageable pageable = PageRequest.of(page - 1, size);
+        Pageable pageable = PageRequest.of(page - 1, size, Sort.by("shoeId").descending());
 
-        // Bước 1: Lấy danh sách ID (có phân trang, không bị lặp)
-        Page<Shoes> shoesPage = shoesRepository.findAllPaged(pageable);
+        Page<ProductListing> listingPage = productListingRepository.findAll(
+                ProductListingSpecifications.isActive(), pageable);
 
         // Validate: nếu page > totalPages, chuyển về trang cuối
-        int totalPages = shoesPage.getTotalPages();
+        int totalPages = listingPage.getTotalPages();
         if (totalPages > 0 && page > totalPages) {
             page = totalPages;
-            pageable = PageRequest.of(page - 1, size);
-            shoesPage = shoesRepository.findAllPaged(pageable);
+            pageable = PageRequest.of(page - 1, size, Sort.by("shoeId").descending());
+            listingPage = productListingRepository.findAll(ProductListingSpecifications.isActive(), pageable);
         }
 
-        // Bước 2: Lấy danh sách ID từ kết quả
-        List<Long> shoeIds = new ArrayList<>();
-        for (Shoes s : shoesPage.getContent()) {
-            shoeIds.add(s.getShoeId());
-        }
-
-        // Bước 3: Lấy chi tiết giày theo IDs (chỉ kèm images)
-        List<Shoes> shoesList = new ArrayList<>();
-        Map<Long, Shoes> shoesWithVariantsMap = new HashMap<>();
-        
-        if (!shoeIds.isEmpty()) {
-            shoesList = shoesRepository.findAllByIdsWithImages(shoeIds);
-            
-            // Lấy variants riêng để tính stock (query riêng tránh tích Descartes)
-            List<Shoes> shoesWithVariants = shoesRepository.findAllByIdsWithVariants(shoeIds);
-            for (Shoes s : shoesWithVariants) {
-                shoesWithVariantsMap.put(s.getShoeId(), s);
-            }
-            
-            // Merge variants vào shoesList
-            for (Shoes s : shoesList) {
-                Shoes withVariants = shoesWithVariantsMap.get(s.getShoeId());
-                if (withVariants != null) {
-                    s.setVariants(withVariants.getVariants());
-                }
-            }
-            
-            // Sắp xếp lại theo thứ tự của shoeIds (vì database không đảm bảo thứ tự)
-            List<Shoes> sortedList = new ArrayList<>();
-            for (Long id : shoeIds) {
-                for (Shoes s : shoesList) {
-                    if (s.getShoeId().equals(id)) {
-                        sortedList.add(s);
-                        break;
-                    }
-                }
-            }
-            shoesList = sortedList;
-        }
-
-        // Chuyển đổi sang DTO
-        List<ShoesSummaryDto> products = new ArrayList<>();
-        for (Shoes shoes : shoesList) {
-            products.add(convertToSummaryDto(shoes));
-        }
+        List<ShoesSummaryDto> products = listingPage.getContent().stream()
+                .map(productListingService::toSummaryDto)
+                .toList();
 
         return ShoesListDto.builder()
                 .products(products)
                 .currentPage(page)
-                .totalPages(shoesPage.getTotalPages())
-                .totalItems(shoesPage.getTotalElements())
+                .totalPages(listingPage.getTotalPages())
+                .totalItems(listingPage.getTotalElements())
                 .build();
     }
 
     /**
-     * Lấy chi tiết 1 sản phẩm giày
+     * Trang chủ ở chế độ keyset: "trang sau" = các sản phẩm có shoeId nhỏ hơn cursor
      */
     @Transactional(readOnly = true)
+    public KeysetPage<ShoesSummaryDto> getShoesListKeyset(KeysetCursor cursor, int size, boolean withCount) {
+        Specification<ProductListing> active = ProductListingSpecifications.isActive();
+        List<ProductListing> rows = productListingRepository.findBy(
+                active.and(ProductListingSpecifications.after("id", cursor)),
+                q -> q.sortBy(Sort.by("shoeId").descending()).limit(size + 1).all());
+
+        Long total = withCount ? productListingRepository.count(active) : null;
+        return KeysetPage.of(rows, size, last -> ProductListingSpecifications.cursorOf("id", last), total)
+                .map(productListingService::toSummaryDto);
+    }
+
+    /**
+     * Lấy chi tiết 1 sản phẩm giày (được cache, xem ProductPageCache)
+     */
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = ProductPageCache.PRODUCT_DETAIL, key = "#shoeId")
     public ShoesDetailDto getShoesDetail(Long shoeId) {
         // Lấy shoes với images và category
         Shoes shoes = shoesRepository.findByIdWithImages(shoeId)
@@ -125,58 +108,10 @@ public class ShoesService {
         return convertToDetailDto(shoes);
     }
 
-    /**
-     * Chuyển đổi Shoes -> ShoesSummaryDto (dùng cho danh sách)
-     */
-    private ShoesSummaryDto convertToSummaryDto(Shoes shoes) {
-        // Lấy ảnh thumbnail
-        String thumbnailUrl = "https://placehold.co/400x400?text=No+Image";
-        if (shoes.getImages() != null) {
-            for (ShoesImage img : shoes.getImages()) {
-                if (img.isThumbnail()) {
-                    thumbnailUrl = img.getUrl();
-                    break;
-                }
-            }
-            // Nếu không có thumbnail, lấy ảnh đầu tiên
-            if (thumbnailUrl.contains("placehold") && !shoes.getImages().isEmpty()) {
-                thumbnailUrl = shoes.getImages().iterator().next().getUrl();
-            }
-        }
-
-        // Tính tổng stock thực tế từ variants
-        int totalStock = 0;
-        if (shoes.getVariants() != null) {
-            for (ShoesVariant variant : shoes.getVariants()) {
-                if (variant.getStock() != null) {
-                    totalStock += variant.getStock();
-                }
-            }
-        }
-
-        // Kiểm tra sản phẩm mới (trong vòng 14 ngày)
-        boolean isNew = false;
-        if (shoes.getCreatedAt() != null) {
-            long daysSinceCreated = ChronoUnit.DAYS.between(shoes.getCreatedAt(), OffsetDateTime.now());
-            isNew = daysSinceCreated <= 14;
-        }
-
-        return ShoesSummaryDto.builder()
-                .shoeId(shoes.getShoeId())
-                .name(shoes.getName())
-                .brand(shoes.getBrand())
-                .price(shoes.getBasePrice() != null ? shoes.getBasePrice() : BigDecimal.ZERO)
-                .thumbnailUrl(thumbnailUrl)
-                .outOfStock(totalStock <= 0)
-                .isNew(isNew)
-                .type(shoes.getType() != null ? shoes.getType().name() : null)
-                .build();
-    }
-
     /**
      * Chuyển đổi Shoes -> ShoesDetailDto (dùng cho trang chi tiết)
      */
-    private ShoesDetailDto convertToDetailDto(Shoes shoes) {
+    ShoesDetailDto convertToDetailDto(Shoes shoes) {
         // Lấy tên danh mục và categoryId
         String categoryName = "General";
         Long categoryId = null;
@@ -259,15 +194,14 @@ public class ShoesService {
         }
 
         // Lấy tối đa 5 sản phẩm cùng category
-        Pageable pageable = PageRequest.of(0, 5);
-        List<Shoes> relatedList = shoesRepository.findRelatedProducts(
-                shoes.getCategory().getCategoryId(),
-                shoes.getShoeId(),
-                pageable
-        );
-
-        for (Shoes s : relatedList) {
-            result.add(convertToSummaryDto(s));
+        List<ProductListing> relatedList = productListingRepository
+                .findTop5ByCategoryIdAndShoeIdNotAndStatusTrueOrderByShoeIdDesc(
+                        shoes.getCategory().getCategoryId(),
+                        shoes.getShoeId()
+                );
+
+        for (ProductListing listing : relatedList) {
+            result.add(productListingService.toSummaryDto(listing));
         }
 
         return result;
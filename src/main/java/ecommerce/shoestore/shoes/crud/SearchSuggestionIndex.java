@@ -0,0 +1,171 @@
+package ecommerce.shoestore.shoes.crud;
+
+import ecommerce.shoestore.shoes.ShoesChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bộ gợi ý tìm kiếm nằm trong bộ nhớ.
+ *
+ * Nạp toàn bộ tên/thương hiệu sản phẩm đang bán khi ứng dụng khởi động,
+ * sau đó cập nhật từng sản phẩm qua ShoesChangedEvent. Gợi ý được xếp theo
+ * số lượng đã bán nên tra cứu không cần chạm tới DB; số lượng đã bán được
+ * đọc lại định kỳ (search.suggestions.weight-refresh-ms).
+ *
+ * Sự kiện đến trong lúc rebuild() đang chạy được ghi lại và áp dụng lên trie mới
+ * sau khi đổi, để không mất thay đổi nào xảy ra giữa lúc đọc và lúc đổi.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SearchSuggestionIndex {
+
+    private final ShoesSearchRepository shoesSearchRepository;
+
+    private volatile SuggestionTrie trie;
+
+    /** Có rebuild() đang chạy: sự kiện chỉ được ghi vào changedDuringRebuild */
+    private volatile boolean rebuilding;
+
+    private final Set<Long> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        SuggestionTrie fresh = new SuggestionTrie();
+        rebuilding = true;
+        try {
+            changedDuringRebuild.clear();
+            List<Object[]> rows = shoesSearchRepository.findSuggestionSources();
+            for (Object[] row : rows) {
+                index(fresh, row);
+            }
+            trie = fresh;
+        } finally {
+            rebuilding = false;
+        }
+        applyChangedDuringRebuild(fresh);
+        log.info("Đã nạp {} sản phẩm vào bộ gợi ý tìm kiếm", fresh.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onShoesChanged(ShoesChangedEvent event) {
+        if (event.shoeIds().isEmpty()) {
+            return;
+        }
+        SuggestionTrie current = trie;
+        if (rebuilding || current == null) {
+            changedDuringRebuild.addAll(event.shoeIds());
+            current = trie;
+            if (rebuilding || current == null) {
+                return; // rebuild() sẽ áp dụng sau khi đổi trie
+            }
+            // rebuild() vừa xong trước khi kịp ghi lại → tự áp dụng
+            applyChangedDuringRebuild(current);
+            return;
+        }
+        apply(current, event.shoeIds());
+    }
+
+    /**
+     * Đọc lại số lượng đã bán: bộ đếm bán được cập nhật ở nền theo đơn hàng,
+     * không phát ShoesChangedEvent.
+     */
+    @Scheduled(fixedDelayString = "${search.suggestions.weight-refresh-ms:300000}",
+            initialDelayString = "${search.suggestions.weight-refresh-ms:300000}")
+    @Transactional(readOnly = true)
+    public void refreshWeights() {
+        SuggestionTrie current = trie;
+        if (current == null || rebuilding) {
+            return;
+        }
+        int changed = 0;
+        for (Object[] row : shoesSearchRepository.findSuggestionWeights()) {
+            long sold = row[1] != null ? ((Number) row[1]).longValue() : 0L;
+            if (current.reweight(((Number) row[0]).longValue(), sold)) {
+                changed++;
+            }
+        }
+        log.debug("Cập nhật thứ tự gợi ý cho {} sản phẩm", changed);
+    }
+
+    /**
+     * @return null nếu bộ gợi ý chưa sẵn sàng (đang khởi động)
+     */
+    public List<String> suggest(String keyword, int limit) {
+        SuggestionTrie current = trie;
+        if (current == null) {
+            return null;
+        }
+        String prefix = SearchTextNormalizer.normalize(keyword);
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        return current.suggest(prefix, limit);
+    }
+
+    private void applyChangedDuringRebuild(SuggestionTrie target) {
+        List<Long> ids = new ArrayList<>(changedDuringRebuild);
+        if (!ids.isEmpty()) {
+            changedDuringRebuild.removeAll(ids);
+            apply(target, ids);
+        }
+    }
+
+    private void apply(SuggestionTrie target, Collection<Long> shoeIds) {
+        Set<Long> remaining = new HashSet<>(shoeIds);
+        for (Object[] row : shoesSearchRepository.findSuggestionSourcesByIds(shoeIds)) {
+            index(target, row);
+            remaining.remove(((Number) row[0]).longValue());
+        }
+        // Không còn trong kết quả = đã ngừng bán
+        remaining.forEach(target::remove);
+    }
+
+    private void index(SuggestionTrie target, Object[] row) {
+        long shoeId = ((Number) row[0]).longValue();
+        String name = (String) row[1];
+        String brand = (String) row[2];
+        long sold = row[3] != null ? ((Number) row[3]).longValue() : 0L;
+        if (name == null || name.isBlank()) {
+            return;
+        }
+        target.put(shoeId, name, buildKeys(name, brand), sold);
+    }
+
+    /**
+     * Khóa gồm: tên đầy đủ, thương hiệu và phần đuôi tên bắt đầu từ mỗi từ,
+     * để "air" hay "max" cũng gợi ý được "Nike Air Max 90".
+     */
+    private Set<String> buildKeys(String name, String brand) {
+        Set<String> keys = new LinkedHashSet<>();
+        String normalizedName = SearchTextNormalizer.normalize(name);
+        keys.add(normalizedName);
+        for (int i = 1; i < normalizedName.length(); i++) {
+            if (normalizedName.charAt(i - 1) == ' ') {
+                keys.add(normalizedName.substring(i));
+            }
+        }
+        String normalizedBrand = SearchTextNormalizer.normalize(brand);
+        if (!normalizedBrand.isEmpty()) {
+            keys.add(normalizedBrand);
+        }
+        return keys;
+    }
+}
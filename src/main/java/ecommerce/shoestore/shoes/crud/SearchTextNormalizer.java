@@ -0,0 +1,27 @@
+package ecommerce.shoestore.shoes.crud;
+
+import java.text.Normalizer;
+import java.util.regex.Pattern;
+
+/**
+ * Chuẩn hóa chuỗi tìm kiếm phía Java, tương đương search_normalize() trong DB:
+ * chữ thường, bỏ dấu tiếng Việt (kể cả đ → d), gộp khoảng trắng.
+ */
+public final class SearchTextNormalizer {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private SearchTextNormalizer() {
+    }
+
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.toLowerCase(), Normalizer.Form.NFD);
+        String stripped = COMBINING_MARKS.matcher(decomposed).replaceAll("")
+                .replace('đ', 'd');
+        return WHITESPACE.matcher(stripped).replaceAll(" ").trim();
+    }
+}
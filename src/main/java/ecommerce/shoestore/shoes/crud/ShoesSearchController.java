@@ -1,8 +1,11 @@
 package ecommerce.shoestore.shoes.crud;
 
-import ecommerce.shoestore.category.CategoryRepository;
+import ecommerce.shoestore.common.KeysetCursor;
+import ecommerce.shoestore.common.KeysetLinks;
+import ecommerce.shoestore.common.KeysetPage;
 import ecommerce.shoestore.shoes.ShoesType;
 import ecommerce.shoestore.shoes.dto.ShoesListDto;
+import ecommerce.shoestore.shoes.dto.ShoesSummaryDto;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -18,7 +21,6 @@ import java.util.List;
 public class ShoesSearchController {
 
     private final ShoesSearchService shoesSearchService;
-    private final CategoryRepository categoryRepository;
 
     @GetMapping("/api/search-suggestions")
     @ResponseBody
@@ -44,25 +46,57 @@ public class ShoesSearchController {
             @RequestParam(required = false) String brand,
             @RequestParam(required = false) BigDecimal minPrice,
             @RequestParam(required = false) BigDecimal maxPrice,
-            @RequestParam(defaultValue = "name_asc") String sort,
+            @RequestParam(required = false) String sort,
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "12") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean count,
             Model model
     ) {
         // Validate page: nếu < 1 thì chuyển về trang 1
         if (page < 1) {
             page = 1;
         }
+        if (size < 1) {
+            size = 12;
+        }
 
         ShoesType shoesType = parseGender(gender);
 
-        // Hiển thị tất cả category (kể cả chưa có sản phẩm)
-        model.addAttribute("categories", categoryRepository.findAllCategories());
+        String type = shoesType != null ? shoesType.name() : null;
 
-        model.addAttribute("brands",
-                shoesSearchService.findAllBrands(shoesType));
+        // Thanh lọc: tất cả category (kể cả chưa có sản phẩm), thương hiệu,
+        // đối tượng, khoảng giá – kèm số sản phẩm cho bộ lọc hiện tại
+        model.addAttribute("facets", shoesSearchService.getFacets(
+                keyword, categoryId, brand, type, minPrice, maxPrice));
 
-        String type = shoesType != null ? shoesType.name() : null;
+        // GIỮ TRẠNG THÁI FILTER
+        model.addAttribute("keyword", keyword);
+        model.addAttribute("gender", gender);
+        model.addAttribute("categoryId", categoryId);
+        model.addAttribute("brand", brand);
+        model.addAttribute("minPrice", minPrice);
+        model.addAttribute("maxPrice", maxPrice);
+        model.addAttribute("sort", sort);
+
+        // Chế độ cursor (?cursor=...): phân trang keyset, không OFFSET/COUNT
+        if (cursor != null && shoesSearchService.supportsKeyset(keyword, sort)) {
+            KeysetPage<ShoesSummaryDto> slice = shoesSearchService.searchProductsKeyset(
+                    keyword, categoryId, brand, type, minPrice, maxPrice, sort,
+                    KeysetCursor.decodeOrFirstPage(cursor), size, count);
+
+            model.addAttribute("products", slice.content());
+            model.addAttribute("cursorMode", true);
+            model.addAttribute("nextPageUrl", KeysetLinks.nextPageUrl(slice.nextCursor()));
+            // Không có số trang: template hiện thanh "trang trước / trang sau" riêng
+            model.addAttribute("firstPage", cursor.isBlank());
+            model.addAttribute("firstPageUrl", KeysetLinks.firstPageUrl());
+            model.addAttribute("totalItems", slice.totalItems());
+            if (slice.content().isEmpty()) {
+                model.addAttribute("errorMessage", "Không tìm thấy sản phẩm phù hợp");
+            }
+            return "shoe/shoes-list";
+        }
 
         ShoesListDto data = shoesSearchService.searchProducts(
                 keyword,
@@ -82,15 +116,6 @@ public class ShoesSearchController {
         model.addAttribute("totalItems", data.getTotalItems());
         model.addAttribute("resultCount", data.getTotalSearchResults());
 
-        // GIỮ TRẠNG THÁI FILTER
-        model.addAttribute("keyword", keyword);
-        model.addAttribute("gender", gender);
-        model.addAttribute("categoryId", categoryId);
-        model.addAttribute("brand", brand);
-        model.addAttribute("minPrice", minPrice);
-        model.addAttribute("maxPrice", maxPrice);
-        model.addAttribute("sort", sort);
-
         if (data.getTotalItems() == 0) {
             model.addAttribute("errorMessage", "Không tìm thấy sản phẩm phù hợp");
         }
@@ -1,7 +1,6 @@
 package ecommerce.shoestore.shoes.crud;
 
 import ecommerce.shoestore.shoes.Shoes;
-import ecommerce.shoestore.shoes.ShoesType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -9,134 +8,90 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ShoesSearchRepository extends JpaRepository<Shoes, Long> {
 
-    @Query("""
-        SELECT s FROM Shoes s
-        WHERE s.name ILIKE CONCAT('%', :kw, '%')
-           OR s.brand ILIKE CONCAT('%', :kw, '%')
-    """)
-    Page<Shoes> search(
-            @Param("kw") String keyword,
-            Pageable pageable
-    );
-
-    @Query("""
-        SELECT s.name
-        FROM Shoes s
-        WHERE s.name ILIKE CONCAT('%', :kw, '%')
-           OR s.brand ILIKE CONCAT('%', :kw, '%')
-    """)
-    List<String> findSuggestions(@Param("kw") String keyword);
-
-
+    /*
+     * Tìm kiếm không phân biệt hoa/thường và dấu tiếng Việt.
+     * search_normalize() được định nghĩa trong schema.sql, các điều kiện LIKE
+     * dùng được GIN trigram index trên search_normalize(name) / search_normalize(brand).
+     */
     @Query(value = """
         SELECT *
         FROM shoes s
-        WHERE (:kw IS NULL
-                OR s.name ILIKE '%' || :kw || '%'
-                OR s.brand ILIKE '%' || :kw || '%')
-          AND (:categoryId IS NULL OR s."categoryId" = :categoryId)
-          AND (:brand IS NULL OR s.brand ILIKE '%' || :brand || '%')
-          AND (:type IS NULL OR s.type = CAST(:type AS varchar))
-          AND (:minPrice IS NULL OR s."basePrice" >= :minPrice)
-          AND (:maxPrice IS NULL OR s."basePrice" <= :maxPrice)
-    
-        ORDER BY
-          CASE WHEN :sort = 'newest'     THEN s."createdAt" END DESC,
-          CASE WHEN :sort = 'price_asc'  THEN s."basePrice" END ASC,
-          CASE WHEN :sort = 'price_desc' THEN s."basePrice" END DESC,
-          CASE WHEN :sort = 'name_asc'   THEN s.name END ASC,
-          CASE WHEN :sort = 'name_desc'  THEN s.name END DESC,
-          s."createdAt" DESC
+        WHERE search_normalize(s.name) LIKE '%' || search_normalize(:kw) || '%'
+           OR search_normalize(s.brand) LIKE '%' || search_normalize(:kw) || '%'
+        ORDER BY GREATEST(
+                    word_similarity(search_normalize(:kw), search_normalize(s.name)),
+                    word_similarity(search_normalize(:kw), search_normalize(s.brand))
+                 ) DESC,
+                 s.name ASC
         """,
             countQuery = """
             SELECT COUNT(*)
             FROM shoes s
-            WHERE (:kw IS NULL
-                    OR s.name ILIKE '%' || :kw || '%'
-                    OR s.brand ILIKE '%' || :kw || '%')
-              AND (:categoryId IS NULL OR s."categoryId" = :categoryId)
-              AND (:brand IS NULL OR s.brand ILIKE '%' || :brand || '%')
-              AND (:type IS NULL OR s.type = CAST(:type AS varchar))
-              AND (:minPrice IS NULL OR s."basePrice" >= :minPrice)
-              AND (:maxPrice IS NULL OR s."basePrice" <= :maxPrice)
+            WHERE search_normalize(s.name) LIKE '%' || search_normalize(:kw) || '%'
+               OR search_normalize(s.brand) LIKE '%' || search_normalize(:kw) || '%'
         """,
             nativeQuery = true)
-    Page<Shoes> searchAndFilter(
+    Page<Shoes> search(
             @Param("kw") String keyword,
-            @Param("categoryId") Long categoryId,
-            @Param("brand") String brand,
-            @Param("type") String type,
-            @Param("minPrice") BigDecimal minPrice,
-            @Param("maxPrice") BigDecimal maxPrice,
-            @Param("sort") String sort,
             Pageable pageable
     );
 
+    /**
+     * Dự phòng khi bộ gợi ý trong bộ nhớ chưa nạp xong, khớp giống SuggestionTrie:
+     * tiền tố của tên, của một từ trong tên hoặc của thương hiệu, xếp theo số lượng đã bán.
+     * prefix đã được chuẩn hóa (SearchTextNormalizer) và thoát ký tự LIKE.
+     */
+    @Query(value = """
+        SELECT s.name
+        FROM shoes s
+        LEFT JOIN product_listing pl ON pl."shoeId" = s."shoeId"
+        WHERE s.status = true
+          AND (search_normalize(s.name) LIKE :prefix || '%' ESCAPE '\\'
+               OR search_normalize(s.name) LIKE '% ' || :prefix || '%' ESCAPE '\\'
+               OR search_normalize(s.brand) LIKE :prefix || '%' ESCAPE '\\')
+        ORDER BY COALESCE(pl."soldCount", 0) DESC, s.name ASC, s."shoeId" ASC
+        LIMIT 20
+        """, nativeQuery = true)
+    List<String> findSuggestions(@Param("prefix") String prefix);
 
-    @Query("""
-        SELECT DISTINCT s.brand
-        FROM Shoes s
-        WHERE s.brand IS NOT NULL
-    """)
-    List<String> findDistinctBrands();
-
-    @Query("""
-        SELECT DISTINCT s.brand
-        FROM Shoes s
-        WHERE s.brand IS NOT NULL
-          AND s.type = :type
-    """)
-    List<String> findDistinctBrandsByType(@Param("type") ShoesType type);
+    /**
+     * Nguồn dữ liệu cho bộ gợi ý tìm kiếm: tên, thương hiệu và số lượng đã bán
+     * của các sản phẩm đang bán. Mỗi dòng: [shoeId, name, brand, sold]
+     */
+    @Query(value = """
+            SELECT s."shoeId", s.name, s.brand, COALESCE(pl."soldCount", 0)
+            FROM shoes s
+            LEFT JOIN product_listing pl ON pl."shoeId" = s."shoeId"
+            WHERE s.status = true
+            """, nativeQuery = true)
+    List<Object[]> findSuggestionSources();
 
+    /**
+     * Như findSuggestionSources nhưng chỉ cho các sản phẩm vừa thay đổi
+     * (sản phẩm ngừng bán sẽ không có trong kết quả)
+     */
     @Query(value = """
-            SELECT s.*
+            SELECT s."shoeId", s.name, s.brand, COALESCE(pl."soldCount", 0)
             FROM shoes s
-            LEFT JOIN (
-                SELECT oi."shoeId", SUM(oi.quantity) AS total_sold
-                FROM orderitem oi
-                JOIN "order" o ON oi."orderId" = o."orderId"
-                WHERE o.status IN ('CONFIRMED', 'SHIPPING', 'COMPLETED')
-                GROUP BY oi."shoeId"
-            ) sold ON s."shoeId" = sold."shoeId"
-            WHERE (:keyword IS NULL 
-                    OR LOWER(s.name) LIKE LOWER(CONCAT('%', :keyword, '%'))
-                    OR LOWER(s.brand) LIKE LOWER(CONCAT('%', :keyword, '%')))
-              AND (COALESCE(:categoryId, s."categoryId") = s."categoryId")
-              AND (:brand IS NULL OR LOWER(s.brand) LIKE LOWER(CONCAT('%', :brand, '%')))
-              AND (COALESCE(:type, s.type) = s.type)
-              AND (:minPrice IS NULL OR s."basePrice" >= :minPrice)
-              AND (:maxPrice IS NULL OR s."basePrice" <= :maxPrice)
-            ORDER BY COALESCE(sold.total_sold, 0) DESC
-            """,
-            countQuery = """
-                    SELECT COUNT(*)
-                    FROM shoes s
-                    """,
-            nativeQuery = true)
-    Page<Shoes> findBestSeller(
-            @Param("keyword") String keyword,
-            @Param("categoryId") Long categoryId,
-            @Param("brand") String brand,
-            @Param("type") String type,
-            @Param("minPrice") BigDecimal minPrice,
-            @Param("maxPrice") BigDecimal maxPrice,
-            Pageable pageable
-    );
+            LEFT JOIN product_listing pl ON pl."shoeId" = s."shoeId"
+            WHERE s.status = true
+              AND s."shoeId" IN :shoeIds
+            """, nativeQuery = true)
+    List<Object[]> findSuggestionSourcesByIds(@Param("shoeIds") Collection<Long> shoeIds);
 
     /**
-     * Lấy tổng stock cho danh sách shoe IDs
+     * Số lượng đã bán hiện tại để cập nhật thứ tự gợi ý. Mỗi dòng: [shoeId, sold]
      */
     @Query(value = """
-            SELECT sv."shoeId", COALESCE(SUM(sv.stock), 0) as totalStock
-            FROM shoes_variant sv
-            WHERE sv."shoeId" IN :shoeIds
-            GROUP BY sv."shoeId"
+            SELECT pl."shoeId", pl."soldCount"
+            FROM product_listing pl
+            WHERE pl.status = true
             """, nativeQuery = true)
-    List<Object[]> findStockByShoeIds(@Param("shoeIds") List<Long> shoeIds);
+    List<Object[]> findSuggestionWeights();
 }
@@ -1,36 +1,54 @@
 package ecommerce.shoestore.shoes.crud;
 
-import ecommerce.shoestore.shoes.Shoes;
-import ecommerce.shoestore.shoes.ShoesType;
-import ecommerce.shoestore.shoes.dto.ShoesDetailDto;
+import ecommerce.shoestore.common.KeysetCursor;
+import ecommerce.shoestore.common.KeysetPage;
+import ecommerce.shoestore.common.LikePatterns;
 import ecommerce.shoestore.shoes.dto.ShoesListDto;
 import ecommerce.shoestore.shoes.dto.ShoesSummaryDto;
-import ecommerce.shoestore.shoesimage.ShoesImage;
-import ecommerce.shoestore.shoesvariant.ShoesVariant;
-import ecommerce.shoestore.shoesvariant.ShoesVariantDto;
+import ecommerce.shoestore.shoes.listing.ProductFacetIndex;
+import ecommerce.shoestore.shoes.listing.ProductFacets;
+import ecommerce.shoestore.shoes.listing.ProductListing;
+import ecommerce.shoestore.shoes.listing.ProductListingRepository;
+import ecommerce.shoestore.shoes.listing.ProductListingService;
+import ecommerce.shoestore.shoes.listing.ProductListingSpecifications;
 import lombok.RequiredArgsConstructor;
 
-import java.time.OffsetDateTime;
-import java.time.temporal.ChronoUnit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class ShoesSearchService {
 
+    private static final int MAX_SUGGESTIONS = 10;
+
     private final ShoesSearchRepository shoesSearchRepository;
+    private final ProductListingRepository productListingRepository;
+    private final ProductListingService productListingService;
+    private final SearchSuggestionIndex searchSuggestionIndex;
+    private final ProductFacetIndex productFacetIndex;
 
-    @Transactional(readOnly = true)
     public List<String> getSearchSuggestions(String keyword) {
-        List<String> suggestions = shoesSearchRepository.findSuggestions(keyword);
+        List<String> fromIndex = searchSuggestionIndex.suggest(keyword, MAX_SUGGESTIONS);
+        if (fromIndex != null) {
+            return fromIndex;
+        }
+
+        // Bộ gợi ý trong bộ nhớ chưa nạp xong → tạm truy vấn DB (cùng cách khớp tiền tố)
+        String prefix = SearchTextNormalizer.normalize(keyword);
+        if (prefix.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> suggestions = shoesSearchRepository.findSuggestions(LikePatterns.escape(prefix));
 
         if (suggestions == null || suggestions.isEmpty()) {
             return Collections.emptyList();
@@ -39,7 +57,7 @@ public class ShoesSearchService {
         // Giới hạn 10 gợi ý tối đa
         return suggestions.stream()
                 .distinct()
-                .limit(10)
+                .limit(MAX_SUGGESTIONS)
                 .collect(Collectors.toList());
     }
 
@@ -65,248 +83,166 @@ public class ShoesSearchService {
             maxPrice = null;
         }
 
-        // sold → chuyển sang query riêng
-        if ("sold".equals(sort)) {
-            return searchProductsWithSoldSort(
-                    keyword,
-                    categoryId,
-                    brand,
-                    type,
-                    minPrice,
-                    maxPrice,
-                    page,
-                    size
-            );
-        }
-
-        String sortKey = buildSortKey(sort);
-        Pageable pageable = PageRequest.of(page - 1, size);
-
         String kw = (keyword != null && !keyword.isBlank())
                 ? keyword.trim()
                 : null;
 
-        Page<Shoes> pageResult = shoesSearchRepository.searchAndFilter(
-                kw,
-                categoryId,
-                brand,
-                type,
-                minPrice,
-                maxPrice,
-                sortKey,
-                pageable
+        String sortKey = buildSortKey(sort, kw != null);
+
+        Specification<ProductListing> spec = Specification.allOf(
+                ProductListingSpecifications.isActive(),
+                ProductListingSpecifications.keywordMatches(kw),
+                ProductListingSpecifications.hasCategory(categoryId),
+                ProductListingSpecifications.brandContains(brand),
+                ProductListingSpecifications.hasType(type),
+                ProductListingSpecifications.priceBetween(minPrice, maxPrice)
         );
+        if ("relevance".equals(sortKey)) {
+            spec = spec.and(ProductListingSpecifications.orderByRelevance(kw));
+        }
+        Sort orderBy = toSort(sortKey);
+
+        Page<ProductListing> pageResult = productListingRepository.findAll(
+                spec, PageRequest.of(page - 1, size, orderBy));
 
         // Validate: nếu page > totalPages, chuyển về trang cuối
         int totalPages = pageResult.getTotalPages();
         if (totalPages > 0 && page > totalPages) {
             page = totalPages;
-            pageable = PageRequest.of(page - 1, size);
-            pageResult = shoesSearchRepository.searchAndFilter(
-                    kw, categoryId, brand, type, minPrice, maxPrice, sortKey, pageable
-            );
+            pageResult = productListingRepository.findAll(spec, PageRequest.of(page - 1, size, orderBy));
         }
 
-        // Lấy stock map cho tất cả shoes trong kết quả
-        List<Long> shoeIds = pageResult.getContent().stream()
-                .map(Shoes::getShoeId)
-                .toList();
-        List<ShoesSummaryDto> dtos = pageResult.getContent().stream()
-                .map(this::convertToSummaryDto)
-                .toList();
-
-        return ShoesListDto.builder()
-                .products(dtos)
-                .currentPage(page)
-                .totalPages(pageResult.getTotalPages())
-                .totalItems(pageResult.getTotalElements())
-                .build();
+        return toListDto(pageResult, page);
     }
 
+    /**
+     * Phân trang keyset cho /products: không dùng OFFSET, mặc định không đếm tổng.
+     * Chỉ áp dụng cho các kiểu sắp xếp có khóa ổn định (xem supportsKeyset).
+     */
     @Transactional(readOnly = true)
-    public ShoesListDto searchProductsWithSoldSort(
+    public KeysetPage<ShoesSummaryDto> searchProductsKeyset(
             String keyword,
             Long categoryId,
             String brand,
             String type,
             BigDecimal minPrice,
             BigDecimal maxPrice,
-            int page,
-            int size
+            String sort,
+            KeysetCursor cursor,
+            int size,
+            boolean withCount
     ) {
-        Pageable pageable = PageRequest.of(page - 1, size);
-
+        brand = (brand != null && brand.isBlank()) ? null : brand;
+        if (minPrice != null && minPrice.compareTo(BigDecimal.ZERO) <= 0) {
+            minPrice = null;
+        }
+        if (maxPrice != null && maxPrice.compareTo(BigDecimal.ZERO) <= 0) {
+            maxPrice = null;
+        }
         String kw = (keyword != null && !keyword.isBlank())
                 ? keyword.trim()
                 : null;
-
-        Page<Shoes> pageResult = shoesSearchRepository.findBestSeller(
-                kw,
-                categoryId,
-                brand,
-                type,
-                minPrice,
-                maxPrice,
-                pageable
+        String sortKey = buildSortKey(sort, false);
+
+        Specification<ProductListing> filter = Specification.allOf(
+                ProductListingSpecifications.isActive(),
+                ProductListingSpecifications.keywordMatches(kw),
+                ProductListingSpecifications.hasCategory(categoryId),
+                ProductListingSpecifications.brandContains(brand),
+                ProductListingSpecifications.hasType(type),
+                ProductListingSpecifications.priceBetween(minPrice, maxPrice)
         );
 
-        // Validate: nếu page > totalPages, chuyển về trang cuối
-        int totalPages = pageResult.getTotalPages();
-        if (totalPages > 0 && page > totalPages) {
-            page = totalPages;
-            pageable = PageRequest.of(page - 1, size);
-            pageResult = shoesSearchRepository.findBestSeller(
-                    kw, categoryId, brand, type, minPrice, maxPrice, pageable
-            );
-        }
+        List<ProductListing> rows = productListingRepository.findBy(
+                filter.and(ProductListingSpecifications.after(sortKey, cursor)),
+                q -> q.sortBy(toSort(sortKey)).limit(size + 1).all());
 
-        // Lấy stock map cho tất cả shoes trong kết quả
-        List<Long> shoeIds = pageResult.getContent().stream()
-                .map(Shoes::getShoeId)
-                .toList();
-        List<ShoesSummaryDto> dtos = pageResult.getContent().stream()
-                .map(this::convertToSummaryDto)
-                .toList();
+        Long total = withCount ? productListingRepository.count(filter) : null;
+        return KeysetPage.of(rows, size, last -> ProductListingSpecifications.cursorOf(sortKey, last), total)
+                .map(productListingService::toSummaryDto);
+    }
 
-        return ShoesListDto.builder()
-                .products(dtos)
-                .currentPage(page)
-                .totalPages(pageResult.getTotalPages())
-                .totalItems(pageResult.getTotalElements())
-                .build();
+    /**
+     * relevance không có khóa sắp xếp ổn định → vẫn dùng phân trang thường
+     */
+    public boolean supportsKeyset(String keyword, String sort) {
+        boolean hasKeyword = keyword != null && !keyword.isBlank();
+        return !"relevance".equals(buildSortKey(sort, hasKeyword));
     }
 
-    public List<String> findAllBrands(ShoesType type) {
-        if (type == null) {
-            return shoesSearchRepository.findDistinctBrands();
+    /**
+     * Số sản phẩm theo danh mục/thương hiệu/đối tượng/khoảng giá cho bộ lọc hiện tại.
+     * Chỉ từ khóa cần một query (id khớp được đọc dần thành bitmap), phần đếm làm trên ProductFacetIndex.
+     */
+    @Transactional(readOnly = true)
+    public ProductFacets getFacets(
+            String keyword,
+            Long categoryId,
+            String brand,
+            String type,
+            BigDecimal minPrice,
+            BigDecimal maxPrice
+    ) {
+        brand = (brand != null && brand.isBlank()) ? null : brand;
+        if (minPrice != null && minPrice.compareTo(BigDecimal.ZERO) <= 0) {
+            minPrice = null;
+        }
+        if (maxPrice != null && maxPrice.compareTo(BigDecimal.ZERO) <= 0) {
+            maxPrice = null;
+        }
+        if (keyword == null || keyword.isBlank()) {
+            return productFacetIndex.facets(null, categoryId, brand, type, minPrice, maxPrice);
+        }
+        try (Stream<Long> keywordMatches = productListingRepository.streamActiveIdsMatching(keyword.trim())) {
+            return productFacetIndex.facets(keywordMatches, categoryId, brand, type, minPrice, maxPrice);
         }
-        return shoesSearchRepository.findDistinctBrandsByType(type);
     }
 
-    private String buildSortKey(String sortKey) {
+    private String buildSortKey(String sortKey, boolean hasKeyword) {
+        // Mặc định theo tên như trước; độ liên quan chỉ khi người dùng chọn và có từ khóa
         if (sortKey == null || sortKey.isBlank()) {
-            return "name_asc"; // mặc định
+            return "name_asc";
         }
 
         return switch (sortKey) {
-            case "newest", "price_asc", "price_desc", "name_asc", "name_desc" ->
+            case "newest", "price_asc", "price_desc", "name_asc", "name_desc",
+                 "sold", "sold_7d", "sold_30d" ->
                 sortKey;
+            case "relevance" ->
+                hasKeyword ? "relevance" : "name_asc";
             default ->
                 "name_asc";
         };
     }
 
-    private ShoesSummaryDto convertToSummaryDto(Shoes shoes) {
-
-        // Lấy ảnh thumbnail
-        String thumbnailUrl = "https://placehold.co/400x400?text=No+Image";
-        if (shoes.getImages() != null) {
-            for (ShoesImage img : shoes.getImages()) {
-                if (img.isThumbnail()) {
-                    thumbnailUrl = img.getUrl();
-                    break;
-                }
-            }
-            // Nếu không có thumbnail, lấy ảnh đầu tiên
-            if (thumbnailUrl.contains("placehold") && !shoes.getImages().isEmpty()) {
-                thumbnailUrl = shoes.getImages().iterator().next().getUrl();
-            }
-        }
-
-        // Tính tổng stock thực tế từ variants
-        int totalStock = 0;
-        if (shoes.getVariants() != null) {
-            for (ShoesVariant variant : shoes.getVariants()) {
-                if (variant.getStock() != null) {
-                    totalStock += variant.getStock();
-                }
-            }
-        }
-
-        // Kiểm tra sản phẩm mới (trong vòng 14 ngày)
-        boolean isNew = false;
-        if (shoes.getCreatedAt() != null) {
-            long daysSinceCreated = ChronoUnit.DAYS.between(shoes.getCreatedAt(), OffsetDateTime.now());
-            isNew = daysSinceCreated <= 14;
-        }
-
-        return ShoesSummaryDto.builder()
-                .shoeId(shoes.getShoeId())
-                .name(shoes.getName())
-                .brand(shoes.getBrand())
-                .price(shoes.getBasePrice() != null ? shoes.getBasePrice() : BigDecimal.ZERO)
-                .thumbnailUrl(thumbnailUrl)
-                .outOfStock(totalStock <= 0)
-                .isNew(isNew)
-                .type(shoes.getType() != null ? shoes.getType().name() : null)
-                .build();
-    }
-
     /**
-     * Chuyển đổi Shoes -> ShoesDetailDto (dùng cho trang chi tiết)
+     * Khóa sắp xếp → Sort trên product_listing (luôn kèm shoeId để thứ tự ổn định).
+     * "relevance" được sắp trong ProductListingSpecifications.orderByRelevance.
      */
-    private ShoesDetailDto convertToDetailDto(Shoes shoes) {
-        // Lấy tên danh mục và categoryId
-        String categoryName = "General";
-        Long categoryId = null;
-        if (shoes.getCategory() != null) {
-            categoryName = shoes.getCategory().getName();
-            categoryId = shoes.getCategory().getCategoryId();
-        }
-
-        // Lấy danh sách URL hình ảnh
-        List<String> imageUrls = new ArrayList<>();
-        if (shoes.getImages() != null) {
-            for (ShoesImage img : shoes.getImages()) {
-                imageUrls.add(img.getUrl());
-            }
-        }
-        if (imageUrls.isEmpty()) {
-            imageUrls.add("https://placehold.co/600x600?text=No+Image");
-        }
-
-        // Lấy danh sách sizes, colors, variants và tổng tồn kho
-        Set<String> sizes = new HashSet<>();
-        Set<String> colors = new HashSet<>();
-        int totalStock = 0;
-        List<ShoesVariantDto> variants = new ArrayList<>();
-
-        if (shoes.getVariants() != null) {
-            for (ShoesVariant v : shoes.getVariants()) {
-                if (v.getSizeValue() != null) {
-                    sizes.add(v.getSizeValue());
-                }
-                if (v.getColorValue() != null) {
-                    colors.add(v.getColorValue());
-                }
-                if (v.getStock() != null) {
-                    totalStock += v.getStock();
-                }
+    private Sort toSort(String sortKey) {
+        return switch (sortKey) {
+            case "newest" -> Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("shoeId"));
+            case "price_asc" -> Sort.by(Sort.Order.asc("price"), Sort.Order.asc("shoeId"));
+            case "price_desc" -> Sort.by(Sort.Order.desc("price"), Sort.Order.desc("shoeId"));
+            case "name_desc" -> Sort.by(Sort.Order.desc("name"), Sort.Order.desc("shoeId"));
+            case "sold" -> Sort.by(Sort.Order.desc("soldCount"), Sort.Order.desc("shoeId"));
+            case "sold_7d" -> Sort.by(Sort.Order.desc("sold7d"), Sort.Order.desc("shoeId"));
+            case "sold_30d" -> Sort.by(Sort.Order.desc("sold30d"), Sort.Order.desc("shoeId"));
+            case "relevance" -> Sort.unsorted();
+            default -> Sort.by(Sort.Order.asc("name"), Sort.Order.asc("shoeId"));
+        };
+    }
 
-                variants.add(ShoesVariantDto.builder()
-                        .variantId(v.getVariantId())
-                        .size(v.getSizeValue())
-                        .color(v.getColorValue())
-                        .stock(v.getStock())
-                        .build());
-            }
-        }
+    private ShoesListDto toListDto(Page<ProductListing> pageResult, int page) {
+        List<ShoesSummaryDto> dtos = pageResult.getContent().stream()
+                .map(productListingService::toSummaryDto)
+                .toList();
 
-        return ShoesDetailDto.builder()
-                .shoeId(shoes.getShoeId())
-                .name(shoes.getName())
-                .brand(shoes.getBrand())
-                .basePrice(shoes.getBasePrice() != null ? shoes.getBasePrice() : BigDecimal.ZERO)
-                .description(shoes.getDescription())
-                .category(categoryName)
-                .categoryId(categoryId)
-                .type(shoes.getType() != null ? shoes.getType().name() : null)
-                .collection(shoes.getCollection())
-                .imageUrls(imageUrls)
-                .sizes(sizes)
-                .colors(colors)
-                .variants(variants)
-                .totalStock(totalStock)
+        return ShoesListDto.builder()
+                .products(dtos)
+                .currentPage(page)
+                .totalPages(pageResult.getTotalPages())
+                .totalItems(pageResult.getTotalElements())
                 .build();
     }
 }
@@ -0,0 +1,247 @@
+package ecommerce.shoestore.shoes.crud;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Cây tiền tố (trie) cho gợi ý tìm kiếm.
+ *
+ * Mỗi node lưu sẵn TOP_K mục có trọng số cao nhất trong cây con của nó,
+ * nên tra cứu chỉ tốn O(độ dài tiền tố). Khi thêm/xóa một sản phẩm, chỉ
+ * các node trên đường đi của khóa bị ảnh hưởng được tính lại (từ lá lên gốc).
+ */
+final class SuggestionTrie {
+
+    /** Giữ dư hơn số gợi ý trả về để còn đủ sau khi gộp các tên trùng nhau */
+    static final int TOP_K = 16;
+
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private static final Comparator<Entry> BY_WEIGHT = Comparator
+            .comparingLong(Entry::weight).reversed()
+            .thenComparing(Entry::display)
+            .thenComparingLong(Entry::shoeId);
+
+    record Entry(long shoeId, String display, long weight) {
+    }
+
+    private record Indexed(Entry entry, List<String> keys) {
+    }
+
+    private final Node root = new Node();
+    private final Map<Long, Indexed> byShoeId = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Thêm hoặc thay thế toàn bộ khóa của một sản phẩm.
+     * Các khóa phải đã được chuẩn hóa (xem SearchTextNormalizer).
+     */
+    void put(long shoeId, String display, Set<String> keys, long weight) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(shoeId);
+            Entry entry = new Entry(shoeId, display, weight);
+            List<String> keyList = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                if (key.isEmpty()) {
+                    continue;
+                }
+                keyList.add(key);
+                List<Node> path = walk(key, true);
+                Node leaf = path.get(path.size() - 1);
+                leaf.terminals.add(entry);
+                recompute(path);
+            }
+            byShoeId.put(shoeId, new Indexed(entry, keyList));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Đổi trọng số (số lượng đã bán) của sản phẩm đã có, giữ nguyên các khóa.
+     *
+     * @return false nếu sản phẩm không có trong trie hoặc trọng số không đổi
+     */
+    boolean reweight(long shoeId, long weight) {
+        lock.writeLock().lock();
+        try {
+            Indexed indexed = byShoeId.get(shoeId);
+            if (indexed == null || indexed.entry().weight() == weight) {
+                return false;
+            }
+            put(shoeId, indexed.entry().display(), new LinkedHashSet<>(indexed.keys()), weight);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long shoeId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(shoeId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Trả về tối đa {@code limit} tên hiển thị (không trùng) khớp tiền tố.
+     */
+    List<String> suggest(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.child(prefix.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+            Set<String> names = new LinkedHashSet<>();
+            for (Entry entry : node.top) {
+                names.add(entry.display());
+                if (names.size() >= limit) {
+                    break;
+                }
+            }
+            return new ArrayList<>(names);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return byShoeId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeInternal(long shoeId) {
+        Indexed indexed = byShoeId.remove(shoeId);
+        if (indexed == null) {
+            return;
+        }
+        for (String key : indexed.keys()) {
+            List<Node> path = walk(key, false);
+            if (path == null) {
+                continue;
+            }
+            Node leaf = path.get(path.size() - 1);
+            leaf.terminals.removeIf(e -> e.shoeId() == shoeId);
+            prune(key, path);
+            recompute(path);
+        }
+    }
+
+    /** Đường đi root → node của khóa; null nếu không tồn tại và create = false */
+    private List<Node> walk(String key, boolean create) {
+        List<Node> path = new ArrayList<>(key.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < key.length(); i++) {
+            Node next = node.child(key.charAt(i));
+            if (next == null) {
+                if (!create) {
+                    return null;
+                }
+                next = node.addChild(key.charAt(i));
+            }
+            node = next;
+            path.add(node);
+        }
+        return path;
+    }
+
+    /** Bỏ các node rỗng ở cuối đường đi để trie không phình ra theo thời gian */
+    private void prune(String key, List<Node> path) {
+        for (int depth = path.size() - 1; depth > 0; depth--) {
+            Node node = path.get(depth);
+            if (!node.terminals.isEmpty() || node.childCount > 0) {
+                break;
+            }
+            path.get(depth - 1).removeChild(key.charAt(depth - 1));
+            path.remove(depth);
+        }
+    }
+
+    /** Tính lại top-K từ lá lên gốc: top(node) = top(terminals ∪ top của các con) */
+    private void recompute(List<Node> path) {
+        for (int depth = path.size() - 1; depth >= 0; depth--) {
+            Node node = path.get(depth);
+            List<Entry> candidates = new ArrayList<>(node.terminals);
+            for (int i = 0; i < node.childCount; i++) {
+                candidates.addAll(Arrays.asList(node.children[i].top));
+            }
+            candidates.sort(BY_WEIGHT);
+
+            List<Entry> top = new ArrayList<>(TOP_K);
+            Set<Long> seen = new HashSet<>();
+            for (Entry entry : candidates) {
+                if (seen.add(entry.shoeId())) {
+                    top.add(entry);
+                    if (top.size() == TOP_K) {
+                        break;
+                    }
+                }
+            }
+            node.top = top.toArray(NO_ENTRIES);
+        }
+    }
+
+    /** Node dùng mảng ký tự đã sắp xếp thay cho Map để tiết kiệm bộ nhớ */
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        int childCount;
+        final List<Entry> terminals = new ArrayList<>(1);
+        Entry[] top = NO_ENTRIES;
+
+        Node child(char c) {
+            int idx = Arrays.binarySearch(keys, 0, childCount, c);
+            return idx >= 0 ? children[idx] : null;
+        }
+
+        Node addChild(char c) {
+            int idx = -(Arrays.binarySearch(keys, 0, childCount, c) + 1);
+            if (childCount == keys.length) {
+                int capacity = Math.max(2, childCount * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, idx, keys, idx + 1, childCount - idx);
+            System.arraycopy(children, idx, children, idx + 1, childCount - idx);
+            Node node = new Node();
+            keys[idx] = c;
+            children[idx] = node;
+            childCount++;
+            return node;
+        }
+
+        void removeChild(char c) {
+            int idx = Arrays.binarySearch(keys, 0, childCount, c);
+            if (idx < 0) {
+                return;
+            }
+            System.arraycopy(keys, idx + 1, keys, idx, childCount - idx - 1);
+            System.arraycopy(children, idx + 1, children, idx, childCount - idx - 1);
+            childCount--;
+            children[childCount] = null;
+        }
+    }
+}
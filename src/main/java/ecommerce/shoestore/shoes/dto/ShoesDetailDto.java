@@ -1,6 +1,7 @@
 package ecommerce.shoestore.shoes.dto;
 
 import lombok.*;
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Set;
@@ -15,7 +16,7 @@ import ecommerce.shoestore.shoesvariant.ShoesVariantDto;
 @NoArgsConstructor
 @AllArgsConstructor
 
-public class ShoesDetailDto {
+public class ShoesDetailDto implements Serializable {
 
     private Long shoeId;
     private String name;
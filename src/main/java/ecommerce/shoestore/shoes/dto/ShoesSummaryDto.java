@@ -1,6 +1,7 @@
 package ecommerce.shoestore.shoes.dto;
 
 import lombok.*;
+import java.io.Serializable;
 import java.math.BigDecimal;
 
 /**
@@ -10,7 +11,7 @@ import java.math.BigDecimal;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class ShoesSummaryDto {
+public class ShoesSummaryDto implements Serializable {
 
     private Long shoeId;
 
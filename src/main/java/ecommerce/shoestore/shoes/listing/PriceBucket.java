@@ -0,0 +1,32 @@
+package ecommerce.shoestore.shoes.listing;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * Các khoảng giá trong bộ lọc. Cận trên/dưới đều tính (giống priceBetween),
+ * nên sản phẩm đúng 1 triệu thuộc cả "Dưới 1 triệu" và "1 – 2 triệu".
+ */
+@Getter
+public enum PriceBucket {
+    UNDER_1M(null, 1_000_000L, "Dưới 1 triệu"),
+    FROM_1M_TO_2M(1_000_000L, 2_000_000L, "1 – 2 triệu"),
+    FROM_2M_TO_3M(2_000_000L, 3_000_000L, "2 – 3 triệu"),
+    OVER_3M(3_000_000L, null, "Trên 3 triệu");
+
+    private final BigDecimal min;
+    private final BigDecimal max;
+    private final String label;
+
+    PriceBucket(Long min, Long max, String label) {
+        this.min = min != null ? BigDecimal.valueOf(min) : null;
+        this.max = max != null ? BigDecimal.valueOf(max) : null;
+        this.label = label;
+    }
+
+    public boolean contains(BigDecimal price) {
+        return (min == null || price.compareTo(min) >= 0)
+                && (max == null || price.compareTo(max) <= 0);
+    }
+}
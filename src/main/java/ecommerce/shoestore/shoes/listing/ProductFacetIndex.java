@@ -0,0 +1,380 @@
+package ecommerce.shoestore.shoes.listing;
+
+import ecommerce.shoestore.category.Category;
+import ecommerce.shoestore.category.CategoryRepository;
+import ecommerce.shoestore.shoes.ShoesChangedEvent;
+import ecommerce.shoestore.shoes.ShoesType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Chỉ mục bitmap trong bộ nhớ để đếm số sản phẩm theo bộ lọc
+ * (danh mục, thương hiệu, đối tượng, khoảng giá).
+ *
+ * Mỗi sản phẩm đang bán có một vị trí bit cố định; mỗi giá trị lọc giữ một
+ * BitSet các vị trí khớp. Số của một giá trị = số bit của giao giữa bitmap
+ * của nó và bitmap các bộ lọc còn lại, nên cả thanh lọc chỉ cần một lượt
+ * giao bitmap thay vì một query GROUP BY cho mỗi nhóm.
+ * Nạp từ product_listing khi khởi động, cập nhật qua ShoesChangedEvent.
+ * Vị trí của sản phẩm ngừng bán được đưa vào danh sách trống và cấp lại cho
+ * sản phẩm mới, nên các bitmap không phình ra sau nhiều lần ẩn/hiện sản phẩm.
+ * Tên danh mục được nạp lại định kỳ (catalog.facets.category-refresh-ms), vì danh mục
+ * chưa có màn hình quản trị mà được sửa thẳng trong DB.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductFacetIndex {
+
+    private final ProductListingRepository productListingRepository;
+    private final CategoryRepository categoryRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> slotByShoeId = new HashMap<>();
+    /** Thuộc tính đã đánh chỉ mục của từng vị trí (null = vị trí trống) */
+    private final List<Slot> slots = new ArrayList<>();
+    /** Vị trí của sản phẩm đã ngừng bán, cấp lại trước khi mở vị trí mới */
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final BitSet active = new BitSet();
+    private final Map<Long, BitSet> byCategory = new HashMap<>();
+    private final Map<String, BitSet> byBrand = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, BitSet> byType = new HashMap<>();
+    private final NavigableMap<BigDecimal, BitSet> byPrice = new TreeMap<>();
+    private final Map<PriceBucket, BitSet> byPriceBucket = new EnumMap<>(PriceBucket.class);
+
+    /** categoryId → tên, theo thứ tự tên */
+    private volatile Map<Long, String> categoryNames = Map.of();
+    private volatile boolean loaded;
+
+    private record Slot(Long categoryId, String brand, String type, BigDecimal price) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1) // sau ProductListingService.backfillOnStartup
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        List<Object[]> rows = productListingRepository.findFacetSources();
+        reloadCategoryNames();
+
+        lock.writeLock().lock();
+        try {
+            slotByShoeId.clear();
+            slots.clear();
+            freeSlots.clear();
+            active.clear();
+            byCategory.clear();
+            byBrand.clear();
+            byType.clear();
+            byPrice.clear();
+            byPriceBucket.clear();
+            for (Object[] row : rows) {
+                index(row);
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Đã nạp {} sản phẩm vào chỉ mục bộ lọc", rows.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onShoesChanged(ShoesChangedEvent event) {
+        if (!loaded || event.shoeIds().isEmpty()) {
+            return; // chưa nạp xong, rebuild() sẽ lấy dữ liệu mới nhất
+        }
+        List<Object[]> rows = productListingRepository.findFacetSourcesByIds(event.shoeIds());
+
+        boolean unknownCategory = false;
+        Set<Long> remaining = new HashSet<>(event.shoeIds());
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : rows) {
+                index(row);
+                remaining.remove(((Number) row[0]).longValue());
+                Long categoryId = row[1] != null ? ((Number) row[1]).longValue() : null;
+                unknownCategory |= categoryId != null && !categoryNames.containsKey(categoryId);
+            }
+            // Không còn trong kết quả = đã ngừng bán
+            for (Long shoeId : remaining) {
+                Integer slot = slotByShoeId.remove(shoeId);
+                if (slot != null) {
+                    unindex(slot);
+                    freeSlots.push(slot);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (unknownCategory) {
+            reloadCategoryNames();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.facets.category-refresh-ms:600000}",
+            initialDelayString = "${catalog.facets.category-refresh-ms:600000}")
+    @Transactional(readOnly = true)
+    public void refreshCategoryNames() {
+        if (loaded) {
+            reloadCategoryNames();
+        }
+    }
+
+    /**
+     * Đếm theo từng nhóm lọc. Tham số null = không lọc theo tiêu chí đó.
+     *
+     * @param keywordMatches shoeId khớp từ khóa, đọc dần trong lúc giữ read lock
+     *                       (null nếu không tìm theo từ khóa); không đóng stream
+     * @param brand          khớp một phần, không phân biệt hoa/thường (giống brandContains)
+     */
+    public ProductFacets facets(
+            Stream<Long> keywordMatches,
+            Long categoryId,
+            String brand,
+            String type,
+            BigDecimal minPrice,
+            BigDecimal maxPrice
+    ) {
+        if (!loaded) {
+            return ProductFacets.EMPTY;
+        }
+        lock.readLock().lock();
+        try {
+            BitSet keywordBits = keywordMatches != null ? slotsOf(keywordMatches) : null;
+            BitSet categoryBits = categoryId != null ? byCategory.get(categoryId) : null;
+            BitSet brandBits = brand != null ? brandBits(brand) : null;
+            BitSet typeBits = type != null ? byType.get(type) : null;
+            BitSet priceBits = (minPrice != null || maxPrice != null) ? priceBits(minPrice, maxPrice) : null;
+
+            // Giá trị lọc không tồn tại trong chỉ mục → không sản phẩm nào khớp
+            if (categoryId != null && categoryBits == null) {
+                categoryBits = new BitSet();
+            }
+            if (type != null && typeBits == null) {
+                typeBits = new BitSet();
+            }
+
+            BitSet forCategories = intersect(keywordBits, brandBits, typeBits, priceBits);
+            List<ProductFacets.FacetValue> categories = new ArrayList<>();
+            categoryNames.forEach((id, name) -> categories.add(new ProductFacets.FacetValue(
+                    String.valueOf(id), name, countWithin(forCategories, byCategory.get(id)))));
+
+            BitSet forBrands = intersect(keywordBits, categoryBits, typeBits, priceBits);
+            List<ProductFacets.FacetValue> brands = new ArrayList<>();
+            byBrand.forEach((name, bits) -> {
+                int count = countWithin(forBrands, bits);
+                if (count > 0 || name.equalsIgnoreCase(brand)) {
+                    brands.add(new ProductFacets.FacetValue(name, name, count));
+                }
+            });
+
+            BitSet forTypes = intersect(keywordBits, categoryBits, brandBits, priceBits);
+            List<ProductFacets.FacetValue> types = new ArrayList<>();
+            for (ShoesType shoesType : ShoesType.values()) {
+                types.add(new ProductFacets.FacetValue(genderParam(shoesType), typeLabel(shoesType),
+                        countWithin(forTypes, byType.get(shoesType.name()))));
+            }
+
+            BitSet forPrices = intersect(keywordBits, categoryBits, brandBits, typeBits);
+            List<ProductFacets.PriceFacet> priceBuckets = new ArrayList<>();
+            for (PriceBucket bucket : PriceBucket.values()) {
+                priceBuckets.add(new ProductFacets.PriceFacet(bucket.getMin(), bucket.getMax(),
+                        bucket.getLabel(), countWithin(forPrices, byPriceBucket.get(bucket))));
+            }
+
+            int total = intersect(keywordBits, categoryBits, brandBits, typeBits, priceBits).cardinality();
+            return new ProductFacets(categories, brands, types, priceBuckets, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Số vị trí bit đã mở (kể cả vị trí trống chờ cấp lại) */
+    int slotCount() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ===== Ghi chỉ mục (gọi khi đang giữ write lock) =====
+
+    /** row = [shoeId, categoryId, brand, type, price] */
+    private void index(Object[] row) {
+        long shoeId = ((Number) row[0]).longValue();
+        Long categoryId = row[1] != null ? ((Number) row[1]).longValue() : null;
+        String brand = row[2] != null && !((String) row[2]).isBlank() ? ((String) row[2]).trim() : null;
+        String type = (String) row[3];
+        BigDecimal price = (BigDecimal) row[4];
+
+        int slot = slotByShoeId.computeIfAbsent(shoeId, id -> {
+            Integer free = freeSlots.poll();
+            if (free != null) {
+                return free;
+            }
+            slots.add(null);
+            return slots.size() - 1;
+        });
+        unindex(slot);
+
+        Slot entry = new Slot(categoryId, brand, type, price);
+        slots.set(slot, entry);
+        active.set(slot);
+        if (categoryId != null) {
+            byCategory.computeIfAbsent(categoryId, k -> new BitSet()).set(slot);
+        }
+        if (brand != null) {
+            byBrand.computeIfAbsent(brand, k -> new BitSet()).set(slot);
+        }
+        if (type != null) {
+            byType.computeIfAbsent(type, k -> new BitSet()).set(slot);
+        }
+        if (price != null) {
+            byPrice.computeIfAbsent(price, k -> new BitSet()).set(slot);
+            for (PriceBucket bucket : PriceBucket.values()) {
+                if (bucket.contains(price)) {
+                    byPriceBucket.computeIfAbsent(bucket, k -> new BitSet()).set(slot);
+                }
+            }
+        }
+    }
+
+    private void unindex(int slot) {
+        Slot old = slots.get(slot);
+        if (old == null) {
+            return;
+        }
+        slots.set(slot, null);
+        active.clear(slot);
+        clearBit(byCategory, old.categoryId(), slot);
+        clearBit(byBrand, old.brand(), slot);
+        clearBit(byType, old.type(), slot);
+        clearBit(byPrice, old.price(), slot);
+        for (BitSet bits : byPriceBucket.values()) {
+            bits.clear(slot);
+        }
+    }
+
+    private static <K> void clearBit(Map<K, BitSet> map, K key, int slot) {
+        if (key == null) {
+            return;
+        }
+        BitSet bits = map.get(key);
+        if (bits != null) {
+            bits.clear(slot);
+            if (bits.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    // ===== Đọc chỉ mục (gọi khi đang giữ read lock) =====
+
+    private BitSet slotsOf(Stream<Long> shoeIds) {
+        BitSet bits = new BitSet();
+        shoeIds.forEach(shoeId -> {
+            Integer slot = slotByShoeId.get(shoeId);
+            if (slot != null) {
+                bits.set(slot);
+            }
+        });
+        return bits;
+    }
+
+    private BitSet brandBits(String brand) {
+        String needle = brand.toLowerCase();
+        BitSet bits = new BitSet();
+        byBrand.forEach((name, nameBits) -> {
+            if (name.toLowerCase().contains(needle)) {
+                bits.or(nameBits);
+            }
+        });
+        return bits;
+    }
+
+    private BitSet priceBits(BigDecimal minPrice, BigDecimal maxPrice) {
+        NavigableMap<BigDecimal, BitSet> range = byPrice;
+        if (minPrice != null) {
+            range = range.tailMap(minPrice, true);
+        }
+        if (maxPrice != null) {
+            range = range.headMap(maxPrice, true);
+        }
+        BitSet bits = new BitSet();
+        range.values().forEach(bits::or);
+        return bits;
+    }
+
+    /** active ∩ các bitmap khác null */
+    private BitSet intersect(BitSet... filters) {
+        BitSet result = (BitSet) active.clone();
+        for (BitSet filter : filters) {
+            if (filter != null) {
+                result.and(filter);
+            }
+        }
+        return result;
+    }
+
+    private static int countWithin(BitSet base, BitSet values) {
+        if (values == null) {
+            return 0;
+        }
+        BitSet bits = (BitSet) values.clone();
+        bits.and(base);
+        return bits.cardinality();
+    }
+
+    private void reloadCategoryNames() {
+        Map<Long, String> names = new LinkedHashMap<>();
+        for (Category category : categoryRepository.findAllCategories()) {
+            names.put(category.getCategoryId(), category.getName());
+        }
+        categoryNames = names;
+    }
+
+    /** Giá trị tham số gender của /products */
+    private static String genderParam(ShoesType type) {
+        return switch (type) {
+            case FOR_MALE -> "male";
+            case FOR_FEMALE -> "female";
+            case FOR_UNISEX -> "unisex";
+        };
+    }
+
+    private static String typeLabel(ShoesType type) {
+        return switch (type) {
+            case FOR_MALE -> "Nam";
+            case FOR_FEMALE -> "Nữ";
+            case FOR_UNISEX -> "Unisex";
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package ecommerce.shoestore.shoes.listing;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Số sản phẩm theo từng giá trị lọc cho bộ lọc hiện tại.
+ *
+ * Số của một nhóm được tính với mọi bộ lọc trừ chính nhóm đó, nên khi đã
+ * chọn thương hiệu thì các thương hiệu khác vẫn hiện đúng số để đổi sang.
+ */
+public record ProductFacets(
+        List<FacetValue> categories,
+        List<FacetValue> brands,
+        List<FacetValue> types,
+        List<PriceFacet> priceBuckets,
+        int total
+) {
+
+    public static final ProductFacets EMPTY = new ProductFacets(List.of(), List.of(), List.of(), List.of(), 0);
+
+    /**
+     * @param value giá trị gửi lên khi chọn (categoryId, brand, gender)
+     */
+    public record FacetValue(String value, String label, int count) {
+    }
+
+    public record PriceFacet(BigDecimal min, BigDecimal max, String label, int count) {
+    }
+}
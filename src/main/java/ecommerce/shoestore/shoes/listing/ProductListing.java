@@ -0,0 +1,70 @@
+package ecommerce.shoestore.shoes.listing;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Bản chiếu phẳng của sản phẩm cho trang danh sách và kết quả tìm kiếm.
+ *
+ * Mỗi dòng chứa sẵn đúng dữ liệu của ShoesSummaryDto (ảnh đại diện, tổng
+ * tồn kho, ...) cùng các cột dùng để lọc, nên một trang chỉ cần một query.
+ * Bảng chỉ được ghi bởi ProductListingRepository.refresh/backfillMissing,
+ * riêng các cột số lượng đã bán do SalesCounterService cập nhật.
+ */
+@Entity
+@Immutable
+@Table(name = "product_listing")
+@Getter
+@NoArgsConstructor
+public class ProductListing {
+
+    @Id
+    @Column(name = "\"shoeId\"")
+    private Long shoeId;
+
+    @Column(nullable = false, length = 500)
+    private String name;
+
+    @Column(length = 255)
+    private String brand;
+
+    @Column(nullable = false, length = 50)
+    private String type;
+
+    @Column(nullable = false)
+    private BigDecimal price;
+
+    @Column(name = "\"thumbnailUrl\"", length = 1000)
+    private String thumbnailUrl;
+
+    @Column(name = "\"totalStock\"", nullable = false)
+    private Integer totalStock;
+
+    @Column(name = "\"categoryId\"")
+    private Long categoryId;
+
+    @Column(nullable = false)
+    private Boolean status;
+
+    /** Tổng số lượng đã bán, duy trì bởi SalesCounterService */
+    @Column(name = "\"soldCount\"", nullable = false)
+    private Long soldCount;
+
+    /** Số lượng bán của đơn đặt trong 7 / 30 ngày gần nhất */
+    @Column(name = "\"sold7d\"", nullable = false)
+    private Long sold7d;
+
+    @Column(name = "\"sold30d\"", nullable = false)
+    private Long sold30d;
+
+    @Column(name = "\"createdAt\"")
+    private OffsetDateTime createdAt;
+
+    @Column(name = "\"updatedAt\"", nullable = false)
+    private OffsetDateTime updatedAt;
+}
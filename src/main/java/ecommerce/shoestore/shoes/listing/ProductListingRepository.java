@@ -0,0 +1,110 @@
+package ecommerce.shoestore.shoes.listing;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface ProductListingRepository
+        extends JpaRepository<ProductListing, Long>, JpaSpecificationExecutor<ProductListing> {
+
+    /**
+     * Tính lại dòng listing từ shoes + shoes_image + shoes_variant.
+     * Ảnh đại diện: ảnh isThumbnail, nếu không có thì ảnh đầu tiên.
+     * createdAt luôn có giá trị (epoch nếu thiếu) để làm khóa phân trang keyset.
+     */
+    String LISTING_SELECT = """
+            INSERT INTO product_listing ("shoeId", name, brand, type, price, "thumbnailUrl",
+                                         "totalStock", "categoryId", status, "createdAt", "updatedAt")
+            SELECT s."shoeId", s.name, s.brand, CAST(s.type AS varchar), s."basePrice",
+                   (SELECT i.url
+                    FROM shoes_image i
+                    WHERE i."shoeId" = s."shoeId"
+                    ORDER BY i."isThumbnail" DESC, i."imageId" ASC
+                    LIMIT 1),
+                   COALESCE((SELECT SUM(v.stock) FROM shoes_variant v WHERE v."shoeId" = s."shoeId"), 0),
+                   s."categoryId", s.status, COALESCE(s."createdAt", TIMESTAMPTZ 'epoch'), now()
+            FROM shoes s
+            """;
+
+    String ON_CONFLICT_UPDATE = """
+            ON CONFLICT ("shoeId") DO UPDATE SET
+                name = EXCLUDED.name,
+                brand = EXCLUDED.brand,
+                type = EXCLUDED.type,
+                price = EXCLUDED.price,
+                "thumbnailUrl" = EXCLUDED."thumbnailUrl",
+                "totalStock" = EXCLUDED."totalStock",
+                "categoryId" = EXCLUDED."categoryId",
+                status = EXCLUDED.status,
+                "createdAt" = EXCLUDED."createdAt",
+                "updatedAt" = EXCLUDED."updatedAt"
+            """;
+
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query(value = LISTING_SELECT + """
+            WHERE s."shoeId" IN :shoeIds
+            """ + ON_CONFLICT_UPDATE, nativeQuery = true)
+    int refresh(@Param("shoeIds") Collection<Long> shoeIds);
+
+    /**
+     * Bổ sung các sản phẩm chưa có trong listing (lần chạy đầu / dữ liệu nhập tay vào DB)
+     */
+    @Transactional
+    @Modifying
+    @Query(value = LISTING_SELECT + """
+            WHERE NOT EXISTS (SELECT 1 FROM product_listing pl WHERE pl."shoeId" = s."shoeId")
+            ON CONFLICT ("shoeId") DO NOTHING
+            """, nativeQuery = true)
+    int backfillMissing();
+
+    /**
+     * Sản phẩm đang bán cùng danh mục (khối "sản phẩm liên quan")
+     */
+    List<ProductListing> findTop5ByCategoryIdAndShoeIdNotAndStatusTrueOrderByShoeIdDesc(
+            Long categoryId, Long excludeShoeId);
+
+    /**
+     * Nguồn dữ liệu cho ProductFacetIndex: [shoeId, categoryId, brand, type, price]
+     */
+    @Query(value = """
+            SELECT pl."shoeId", pl."categoryId", pl.brand, pl.type, pl.price
+            FROM product_listing pl
+            WHERE pl.status = true
+            """, nativeQuery = true)
+    List<Object[]> findFacetSources();
+
+    @Query(value = """
+            SELECT pl."shoeId", pl."categoryId", pl.brand, pl.type, pl.price
+            FROM product_listing pl
+            WHERE pl.status = true
+              AND pl."shoeId" IN :shoeIds
+            """, nativeQuery = true)
+    List<Object[]> findFacetSourcesByIds(@Param("shoeIds") Collection<Long> shoeIds);
+
+    /**
+     * Id sản phẩm đang bán khớp từ khóa (cùng điều kiện với keywordMatches), đọc dần
+     * theo lô để không giữ cả danh sách trong bộ nhớ. Cần transaction và phải đóng stream.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = """
+            SELECT pl."shoeId"
+            FROM product_listing pl
+            WHERE pl.status = true
+              AND (search_normalize(pl.name) LIKE '%' || search_normalize(:keyword) || '%'
+                    OR search_normalize(pl.brand) LIKE '%' || search_normalize(:keyword) || '%')
+            """, nativeQuery = true)
+    Stream<Long> streamActiveIdsMatching(@Param("keyword") String keyword);
+}
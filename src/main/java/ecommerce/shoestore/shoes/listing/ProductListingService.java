@@ -0,0 +1,71 @@
+package ecommerce.shoestore.shoes.listing;
+
+import ecommerce.shoestore.shoes.ShoesChangedEvent;
+import ecommerce.shoestore.shoes.dto.ShoesSummaryDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Giữ bảng product_listing đồng bộ với shoes/ảnh/biến thể/tồn kho
+ * và chuyển dòng listing sang ShoesSummaryDto.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductListingService {
+
+    private static final String NO_IMAGE_URL = "https://placehold.co/400x400?text=No+Image";
+    private static final long NEW_PRODUCT_DAYS = 14;
+
+    private final ProductListingRepository productListingRepository;
+
+    /**
+     * Cập nhật trong cùng transaction với thay đổi gốc, để listing không bao giờ
+     * lệch với shoes sau khi commit.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onShoesChanged(ShoesChangedEvent event) {
+        if (event.shoeIds().isEmpty()) {
+            return;
+        }
+        productListingRepository.refresh(event.shoeIds());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void backfillOnStartup() {
+        int added = productListingRepository.backfillMissing();
+        if (added > 0) {
+            log.info("Đã bổ sung {} sản phẩm vào product_listing", added);
+        }
+    }
+
+    public ShoesSummaryDto toSummaryDto(ProductListing listing) {
+        // Kiểm tra sản phẩm mới (trong vòng 14 ngày)
+        boolean isNew = false;
+        if (listing.getCreatedAt() != null) {
+            long daysSinceCreated = ChronoUnit.DAYS.between(listing.getCreatedAt(), OffsetDateTime.now());
+            isNew = daysSinceCreated <= NEW_PRODUCT_DAYS;
+        }
+
+        return ShoesSummaryDto.builder()
+                .shoeId(listing.getShoeId())
+                .name(listing.getName())
+                .brand(listing.getBrand())
+                .price(listing.getPrice())
+                .thumbnailUrl(listing.getThumbnailUrl() != null ? listing.getThumbnailUrl() : NO_IMAGE_URL)
+                .outOfStock(listing.getTotalStock() <= 0)
+                .isNew(isNew)
+                .type(listing.getType())
+                .build();
+    }
+}
@@ -0,0 +1,154 @@
+package ecommerce.shoestore.shoes.listing;
+
+import ecommerce.shoestore.common.KeysetCursor;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Điều kiện lọc cho ProductListing. Tham số null = không lọc theo tiêu chí đó.
+ */
+public final class ProductListingSpecifications {
+
+    private ProductListingSpecifications() {
+    }
+
+    public static Specification<ProductListing> isActive() {
+        return (root, query, cb) -> cb.isTrue(root.get("status"));
+    }
+
+    /**
+     * Khớp tên hoặc thương hiệu, không phân biệt hoa/thường và dấu
+     * (dùng GIN trigram index trên search_normalize(...), xem schema.sql)
+     */
+    public static Specification<ProductListing> keywordMatches(String keyword) {
+        if (keyword == null) {
+            return null;
+        }
+        return (root, query, cb) -> {
+            Expression<String> pattern = cb.concat(cb.concat("%", normalize(cb, cb.literal(keyword))), "%");
+            return cb.or(
+                    cb.like(normalize(cb, root.get("name")), pattern),
+                    cb.like(normalize(cb, root.get("brand")), pattern)
+            );
+        };
+    }
+
+    /**
+     * Sắp xếp theo độ liên quan với từ khóa. Bỏ qua với query đếm (count).
+     */
+    public static Specification<ProductListing> orderByRelevance(String keyword) {
+        return (root, query, cb) -> {
+            if (query.getResultType() != Long.class && query.getResultType() != long.class) {
+                Expression<String> kw = normalize(cb, cb.literal(keyword));
+                Expression<Float> score = cb.function("GREATEST", Float.class,
+                        cb.function("word_similarity", Float.class, kw, normalize(cb, root.get("name"))),
+                        cb.function("word_similarity", Float.class, kw, normalize(cb, root.get("brand"))));
+                query.orderBy(cb.desc(score), cb.asc(root.get("name")), cb.desc(root.get("shoeId")));
+            }
+            return null;
+        };
+    }
+
+    public static Specification<ProductListing> hasCategory(Long categoryId) {
+        return categoryId == null ? null
+                : (root, query, cb) -> cb.equal(root.get("categoryId"), categoryId);
+    }
+
+    public static Specification<ProductListing> brandContains(String brand) {
+        return brand == null ? null
+                : (root, query, cb) -> cb.like(cb.lower(root.get("brand")), "%" + brand.toLowerCase() + "%");
+    }
+
+    public static Specification<ProductListing> hasType(String type) {
+        return type == null ? null
+                : (root, query, cb) -> cb.equal(root.get("type"), type);
+    }
+
+    public static Specification<ProductListing> priceBetween(BigDecimal minPrice, BigDecimal maxPrice) {
+        return (root, query, cb) -> {
+            if (minPrice != null && maxPrice != null) {
+                return cb.between(root.get("price"), minPrice, maxPrice);
+            }
+            if (minPrice != null) {
+                return cb.greaterThanOrEqualTo(root.get("price"), minPrice);
+            }
+            if (maxPrice != null) {
+                return cb.lessThanOrEqualTo(root.get("price"), maxPrice);
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Điều kiện "nằm sau cursor" cho phân trang keyset. Thứ tự phải khớp với
+     * Sort tương ứng: newest/price_desc/name_desc/sold.../id giảm dần, còn lại tăng dần,
+     * luôn kèm shoeId làm khóa phụ. Cursor null = trang đầu; cursor của kiểu sắp xếp
+     * khác hoặc có giá trị không đọc được cũng được coi là trang đầu.
+     */
+    public static Specification<ProductListing> after(String sortKey, KeysetCursor cursor) {
+        KeysetCursor c = cursor != null ? cursor.forSort(sortKey) : null;
+        if (c == null) {
+            return null;
+        }
+        Long lastId = c.id();
+        if ("id".equals(sortKey)) {
+            return (root, query, cb) -> cb.lessThan(root.get("shoeId"), lastId);
+        }
+        return switch (sortKey) {
+            case "newest" -> seekAfter("createdAt", c.sortValueAs(OffsetDateTime::parse), lastId, true);
+            case "price_asc" -> seekAfter("price", c.sortValueAs(BigDecimal::new), lastId, false);
+            case "price_desc" -> seekAfter("price", c.sortValueAs(BigDecimal::new), lastId, true);
+            case "name_desc" -> seekAfter("name", c.sortValue(), lastId, true);
+            case "sold" -> seekAfter("soldCount", c.sortValueAs(Long::valueOf), lastId, true);
+            case "sold_7d" -> seekAfter("sold7d", c.sortValueAs(Long::valueOf), lastId, true);
+            case "sold_30d" -> seekAfter("sold30d", c.sortValueAs(Long::valueOf), lastId, true);
+            default -> seekAfter("name", c.sortValue(), lastId, false);
+        };
+    }
+
+    /**
+     * Cursor trỏ tới dòng cuối cùng của trang hiện tại (ngược với after())
+     */
+    public static KeysetCursor cursorOf(String sortKey, ProductListing last) {
+        String value = switch (sortKey) {
+            case "newest" -> last.getCreatedAt().toString();
+            case "price_asc", "price_desc" -> last.getPrice().toPlainString();
+            case "sold" -> String.valueOf(last.getSoldCount());
+            case "sold_7d" -> String.valueOf(last.getSold7d());
+            case "sold_30d" -> String.valueOf(last.getSold30d());
+            case "id" -> null;
+            default -> last.getName();
+        };
+        return new KeysetCursor(sortKey, value, last.getShoeId());
+    }
+
+    /** value null (cursor thiếu/hỏng giá trị) → trang đầu */
+    private static <V extends Comparable<? super V>> Specification<ProductListing> seekAfter(
+            String attribute, V value, Long lastId, boolean descending) {
+        if (value == null) {
+            return null;
+        }
+        return (root, query, cb) -> seek(cb, root.get(attribute), value, root.get("shoeId"), lastId, descending);
+    }
+
+    /** (key, id) > (value, lastId) hoặc < khi sắp giảm dần */
+    private static <V extends Comparable<? super V>> Predicate seek(
+            CriteriaBuilder cb, Path<V> key, V value, Path<Long> id, Long lastId, boolean descending) {
+        if (descending) {
+            return cb.or(cb.lessThan(key, value),
+                    cb.and(cb.equal(key, value), cb.lessThan(id, lastId)));
+        }
+        return cb.or(cb.greaterThan(key, value),
+                cb.and(cb.equal(key, value), cb.greaterThan(id, lastId)));
+    }
+
+    private static Expression<String> normalize(CriteriaBuilder cb, Expression<String> value) {
+        return cb.function("search_normalize", String.class, value);
+    }
+}
@@ -2,11 +2,13 @@ package ecommerce.shoestore.shoesvariant;
 
 import lombok.*;
 
+import java.io.Serializable;
+
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class ShoesVariantDto {
+public class ShoesVariantDto implements Serializable {
 
     private Long variantId;
     private String size;
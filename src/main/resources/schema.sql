@@ -0,0 +1,274 @@
+-- =====================================================================
+-- Các đối tượng DB bổ sung (idempotent, chạy mỗi lần khởi động
+-- trước khi Hibernate validate schema – xem spring.sql.init.mode)
+-- =====================================================================
+
+-- ===== TÌM KIẾM SẢN PHẨM: bỏ dấu tiếng Việt + trigram =====
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+-- unaccent() chỉ là STABLE nên không dùng trực tiếp trong index được.
+-- Hàm bọc IMMUTABLE: chữ thường + bỏ dấu ("Giày Đỏ" -> "giay do").
+CREATE OR REPLACE FUNCTION search_normalize(text)
+    RETURNS text
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT
+    SET search_path = public, extensions, pg_catalog
+AS 'SELECT lower(unaccent($1))';
+
+CREATE INDEX IF NOT EXISTS idx_shoes_name_search_trgm
+    ON shoes USING gin (search_normalize(name) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_shoes_brand_search_trgm
+    ON shoes USING gin (search_normalize(brand) gin_trgm_ops);
+
+-- ===== PRODUCT LISTING: bản chiếu phẳng cho trang danh sách / tìm kiếm =====
+CREATE TABLE IF NOT EXISTS product_listing (
+    "shoeId"       BIGINT PRIMARY KEY REFERENCES shoes ("shoeId") ON DELETE CASCADE,
+    name           VARCHAR(500)  NOT NULL,
+    brand          VARCHAR(255),
+    type           VARCHAR(50)   NOT NULL,
+    price          NUMERIC(15, 2) NOT NULL,
+    "thumbnailUrl" VARCHAR(1000),
+    "totalStock"   INTEGER       NOT NULL DEFAULT 0,
+    "categoryId"   BIGINT,
+    status         BOOLEAN       NOT NULL DEFAULT true,
+    "createdAt"    TIMESTAMPTZ,
+    "updatedAt"    TIMESTAMPTZ   NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_active_id
+    ON product_listing ("shoeId" DESC) WHERE status;
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_active_category
+    ON product_listing ("categoryId", "shoeId" DESC) WHERE status;
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_active_price
+    ON product_listing (price, "shoeId") WHERE status;
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_active_created
+    ON product_listing ("createdAt" DESC, "shoeId" DESC) WHERE status;
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_active_name
+    ON product_listing (name, "shoeId") WHERE status;
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_name_search_trgm
+    ON product_listing USING gin (search_normalize(name) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_brand_search_trgm
+    ON product_listing USING gin (search_normalize(brand) gin_trgm_ops);
+
+-- ===== PHÂN TRANG KEYSET =====
+CREATE INDEX IF NOT EXISTS idx_order_created_id
+    ON "order" ("createAt" DESC, "orderId" DESC);
+
+CREATE INDEX IF NOT EXISTS idx_order_status_created_id
+    ON "order" (status, "createAt" DESC, "orderId" DESC);
+
+-- ===== BỘ ĐẾM SỐ LƯỢNG ĐÃ BÁN =====
+-- Đơn được tính khi ở CONFIRMED/SHIPPING/COMPLETED; cờ "salesCounted" cho biết
+-- đơn đã được cộng vào bộ đếm chưa, để cộng/trừ đúng một lần khi đổi trạng thái.
+ALTER TABLE "order" ADD COLUMN IF NOT EXISTS "salesCounted" BOOLEAN NOT NULL DEFAULT false;
+
+-- Số lượng bán theo ngày đặt hàng (phục vụ cửa sổ 7/30 ngày)
+CREATE TABLE IF NOT EXISTS shoe_sales_daily (
+    "shoeId"  BIGINT NOT NULL REFERENCES shoes ("shoeId") ON DELETE CASCADE,
+    day       DATE   NOT NULL,
+    quantity  BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY ("shoeId", day)
+);
+
+CREATE INDEX IF NOT EXISTS idx_shoe_sales_daily_day
+    ON shoe_sales_daily (day);
+
+ALTER TABLE product_listing ADD COLUMN IF NOT EXISTS "soldCount" BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE product_listing ADD COLUMN IF NOT EXISTS "sold7d" BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE product_listing ADD COLUMN IF NOT EXISTS "sold30d" BIGINT NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_active_sold
+    ON product_listing ("soldCount" DESC, "shoeId" DESC) WHERE status;
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_active_sold7d
+    ON product_listing ("sold7d" DESC, "shoeId" DESC) WHERE status;
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_active_sold30d
+    ON product_listing ("sold30d" DESC, "shoeId" DESC) WHERE status;
+
+-- ===== GIỮ HÀNG KHI ĐẶT ĐƠN =====
+-- Mỗi dòng là số lượng của một biến thể đã trừ khỏi shoes_variant.stock cho một đơn.
+-- HELD: đang giữ ("expiresAt" có giá trị nếu là đơn VNPay chờ thanh toán)
+-- COMMITTED: đơn đã thanh toán / đã xác nhận
+-- RELEASED: đã trả lại kho (huỷ đơn, thanh toán thất bại, hết hạn giữ)
+CREATE TABLE IF NOT EXISTS stock_reservation (
+    "reservationId" BIGSERIAL PRIMARY KEY,
+    "orderId"       BIGINT      NOT NULL REFERENCES "order" ("orderId") ON DELETE CASCADE,
+    "variantId"     BIGINT      NOT NULL REFERENCES shoes_variant ("variantId") ON DELETE CASCADE,
+    quantity        INTEGER     NOT NULL CHECK (quantity > 0),
+    status          VARCHAR(20) NOT NULL DEFAULT 'HELD',
+    "expiresAt"     TIMESTAMPTZ,
+    "createdAt"     TIMESTAMPTZ NOT NULL DEFAULT now(),
+    "releasedAt"    TIMESTAMPTZ
+);
+
+CREATE INDEX IF NOT EXISTS idx_stock_reservation_order
+    ON stock_reservation ("orderId");
+
+CREATE INDEX IF NOT EXISTS idx_stock_reservation_expiring
+    ON stock_reservation ("expiresAt") WHERE status = 'HELD' AND "expiresAt" IS NOT NULL;
+
+-- ===== KHÓA IDEMPOTENCY (đặt hàng, tạo thanh toán VNPay) =====
+-- Một lần gửi form mang một khóa; gửi lại cùng khóa (bấm đúp, trình duyệt/app thử lại)
+-- nhận lại kết quả cũ thay vì tạo đơn mới. Bộ nhớ trong là lớp đầu, bảng này dùng khi
+-- khóa đã bị đẩy khỏi bộ nhớ, sau khi khởi động lại, hoặc khi chạy nhiều instance.
+CREATE TABLE IF NOT EXISTS idempotency_key (
+    scope            VARCHAR(50)  NOT NULL,
+    "userId"         BIGINT       NOT NULL,
+    "idempotencyKey" VARCHAR(100) NOT NULL,
+    status           VARCHAR(20)  NOT NULL DEFAULT 'IN_PROGRESS',
+    result           TEXT,
+    "createdAt"      TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    "expiresAt"      TIMESTAMPTZ  NOT NULL,
+    PRIMARY KEY (scope, "userId", "idempotencyKey")
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_key_expires
+    ON idempotency_key ("expiresAt");
+
+-- ===== OUTBOX SỰ KIỆN ĐƠN HÀNG =====
+-- Ghi cùng transaction với "order"; OrderEventDispatcher đọc theo lô và chuyển cho các handler
+-- (nhật ký trạng thái, bộ đếm bán, doanh thu, email). Sự kiện của cùng một đơn được xử lý
+-- theo đúng thứ tự "eventId". "doneHandlers": các handler đã xử lý xong (thử lại thì bỏ qua).
+CREATE TABLE IF NOT EXISTS order_outbox (
+    "eventId"       BIGSERIAL PRIMARY KEY,
+    "orderId"       BIGINT      NOT NULL,
+    "eventType"     VARCHAR(50) NOT NULL,
+    payload         JSONB       NOT NULL DEFAULT '{}',
+    status          VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    "doneHandlers"  TEXT[]      NOT NULL DEFAULT '{}',
+    attempts        INTEGER     NOT NULL DEFAULT 0,
+    "lastError"     TEXT,
+    "createdAt"     TIMESTAMPTZ NOT NULL DEFAULT now(),
+    "nextAttemptAt" TIMESTAMPTZ NOT NULL DEFAULT now(),
+    "lockedUntil"   TIMESTAMPTZ,
+    "processedAt"   TIMESTAMPTZ
+);
+
+CREATE INDEX IF NOT EXISTS idx_order_outbox_pending
+    ON order_outbox ("eventId") WHERE "processedAt" IS NULL;
+
+CREATE INDEX IF NOT EXISTS idx_order_outbox_pending_order
+    ON order_outbox ("orderId", "eventId") WHERE "processedAt" IS NULL;
+
+-- ===== DOANH THU THEO NGÀY =====
+-- Tổng các đơn COMPLETED theo ngày đặt hàng; cờ "revenueCounted" giống "salesCounted".
+ALTER TABLE "order" ADD COLUMN IF NOT EXISTS "revenueCounted" BOOLEAN NOT NULL DEFAULT false;
+
+CREATE TABLE IF NOT EXISTS revenue_daily (
+    day               DATE           PRIMARY KEY,
+    "completedOrders" BIGINT         NOT NULL DEFAULT 0,
+    revenue           NUMERIC(15, 2) NOT NULL DEFAULT 0
+);
+
+-- ===== LỊCH SỬ ĐƠN HÀNG CỦA KHÁCH =====
+-- Trang lịch sử: các đơn của một khách (mới nhất trước) + nhật ký của cả trang trong một câu IN.
+CREATE INDEX IF NOT EXISTS idx_order_user_created
+    ON "order" ("userId", "createAt" DESC);
+
+CREATE INDEX IF NOT EXISTS idx_ordertrackinglog_order_changed
+    ON ordertrackinglog ("orderId", "changedAt");
+
+-- ===== TIẾN ĐỘ CÁC JOB BACKFILL =====
+-- Mỗi job chạy theo từng đoạn "orderId" tăng dần; "lastId" là id cuối của đoạn đã commit,
+-- khởi động lại thì chạy tiếp từ đó.
+CREATE TABLE IF NOT EXISTS backfill_checkpoint (
+    job           VARCHAR(100) PRIMARY KEY,
+    "lastId"      BIGINT       NOT NULL DEFAULT 0,
+    processed     BIGINT       NOT NULL DEFAULT 0,
+    "updatedAt"   TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    "completedAt" TIMESTAMPTZ
+);
+-- Bảng tạo trước đó dùng TIMESTAMP; đã là TIMESTAMPTZ thì lệnh không ghi lại bảng
+ALTER TABLE backfill_checkpoint
+    ALTER COLUMN "updatedAt" TYPE TIMESTAMPTZ,
+    ALTER COLUMN "completedAt" TYPE TIMESTAMPTZ;
+
+-- ===== TÌM KIẾM ĐƠN HÀNG (ADMIN) =====
+-- Mã đơn: khớp tiền tố trên "orderId" (dạng chuỗi) và order_code.
+-- Khách hàng: trigram trên tên (bỏ dấu), email, số điện thoại người nhận.
+CREATE INDEX IF NOT EXISTS idx_order_id_text_prefix
+    ON "order" ((CAST("orderId" AS text)) text_pattern_ops);
+
+CREATE INDEX IF NOT EXISTS idx_order_code_prefix
+    ON "order" (order_code text_pattern_ops);
+
+CREATE INDEX IF NOT EXISTS idx_order_recipient_name_trgm
+    ON "order" USING gin (search_normalize("recipientName") gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_order_recipient_email_trgm
+    ON "order" USING gin (lower("recipientEmail") gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_order_recipient_phone_trgm
+    ON "order" USING gin ("recipientPhone" gin_trgm_ops);
+
+-- ===== TRẠNG THÁI ĐƠN: KHÓA LẠC QUAN =====
+-- Mỗi lần đổi trạng thái tăng version (entity Order dùng @Version, chuyển hàng loạt
+-- tăng trong cùng câu UPDATE): thay đổi dựa trên bản đọc cũ sẽ bị từ chối.
+ALTER TABLE "order" ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- ===== TÌM KIẾM CHIẾN DỊCH / VOUCHER (ADMIN) =====
+-- Từ khóa: trigram trên tên chiến dịch, mã voucher (không phân biệt hoa/thường)
+-- và tiêu đề voucher (bỏ dấu). Lọc voucher theo chiến dịch dùng index "campaignId".
+CREATE INDEX IF NOT EXISTS idx_promotioncampaign_name_trgm
+    ON promotioncampaign USING gin (search_normalize(name) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_voucher_code_trgm
+    ON voucher USING gin (lower(code) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_voucher_title_trgm
+    ON voucher USING gin (search_normalize(title) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_voucher_campaign_id
+    ON voucher ("campaignId", "voucherId" DESC);
+
+-- ===== VOUCHER SINH HÀNG LOẠT =====
+-- Mã sinh theo lô cho một chiến dịch (/admin/promotions/campaigns/{id}/vouchers/generate):
+-- phát riêng cho từng khách nên không hiện trong danh sách voucher công khai.
+ALTER TABLE voucher ADD COLUMN IF NOT EXISTS "bulkGenerated" BOOLEAN NOT NULL DEFAULT false;
+
+-- ===== GIỚI HẠN LƯỢT DÙNG VOUCHER =====
+-- Bộ đếm lượt dùng được cộng bằng UPDATE/INSERT có điều kiện ngay khi đặt đơn (hai đơn
+-- cùng lúc không thể vượt giới hạn) và trừ lại khi đơn bị huỷ.
+-- "maxRedemptions": tổng số lượt tối đa của voucher (NULL = không giới hạn).
+-- "redemptionCounted" của ordervoucher: lượt dùng của đơn đang được tính vào bộ đếm,
+-- để cộng/trừ đúng một lần (giống "salesCounted").
+ALTER TABLE voucher ADD COLUMN IF NOT EXISTS "maxRedemptions" BIGINT;
+ALTER TABLE voucher ADD COLUMN IF NOT EXISTS "redeemedCount" BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE ordervoucher ADD COLUMN IF NOT EXISTS "redemptionCounted" BOOLEAN NOT NULL DEFAULT false;
+
+CREATE TABLE IF NOT EXISTS voucher_redemption (
+    "voucherId"  BIGINT NOT NULL REFERENCES voucher ("voucherId") ON DELETE CASCADE,
+    "userId"     BIGINT NOT NULL,
+    "usedCount"  BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY ("voucherId", "userId")
+);
+
+-- Mã sinh hàng loạt tạo trước khi có giới hạn tổng: mỗi mã chỉ dùng được một lần.
+-- Chỉ chạy một lần (đánh dấu trong backfill_checkpoint): giới hạn admin bỏ đi sau đó được giữ nguyên.
+WITH claimed AS (
+    INSERT INTO backfill_checkpoint (job, "completedAt")
+    VALUES ('bulk_voucher_max_redemptions', now())
+    ON CONFLICT (job) DO NOTHING
+    RETURNING job
+)
+UPDATE voucher SET "maxRedemptions" = 1
+WHERE "bulkGenerated" AND "maxRedemptions" IS NULL
+  AND EXISTS (SELECT 1 FROM claimed);
+
+CREATE INDEX IF NOT EXISTS idx_voucher_redemption_user
+    ON voucher_redemption ("userId");
+
+CREATE INDEX IF NOT EXISTS idx_ordervoucher_order
+    ON ordervoucher ("orderId");
+
+-- Số lượt đã dùng của voucher không giới hạn tổng (không giữ "redeemedCount")
+CREATE INDEX IF NOT EXISTS idx_ordervoucher_voucher_counted
+    ON ordervoucher ("voucherId") WHERE "redemptionCounted";
@@ -0,0 +1,113 @@
+package ecommerce.shoestore.admin.product;
+
+import ecommerce.shoestore.admin.product.dto.CreateShoesRequest;
+import ecommerce.shoestore.shoes.ShoesType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class CsvProductImportReaderTest {
+
+    private static final String HEADER = "name,brand,type,basePrice,categoryId,description,images,variants\r\n";
+
+    private static List<ProductImportReader.ImportRecord> readAll(String csv) throws IOException {
+        List<ProductImportReader.ImportRecord> records = new ArrayList<>();
+        try (CsvProductImportReader reader = new CsvProductImportReader(new StringReader(csv))) {
+            ProductImportReader.ImportRecord record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    @Test
+    void readsPlainRow() throws IOException {
+        List<ProductImportReader.ImportRecord> records = readAll(HEADER
+                + "Air Max,Nike,for_male,1500000,3,Êm chân,a.jpg|b.jpg,BLACK:40|WHITE:41\r\n");
+
+        assertThat(records).hasSize(1);
+        ProductImportReader.ImportRecord record = records.get(0);
+        assertThat(record.row()).isEqualTo(1);
+        assertThat(record.error()).isNull();
+        CreateShoesRequest request = record.request();
+        assertThat(request.getName()).isEqualTo("Air Max");
+        assertThat(request.getType()).isEqualTo(ShoesType.FOR_MALE);
+        assertThat(request.getBasePrice()).isEqualByComparingTo(BigDecimal.valueOf(1_500_000));
+        assertThat(request.getCategoryId()).isEqualTo(3L);
+        assertThat(request.getImages()).extracting(CreateShoesRequest.ImageDto::isThumbnail).containsExactly(true, false);
+        assertThat(request.getVariants()).extracting(CreateShoesRequest.VariantDto::getColor, CreateShoesRequest.VariantDto::getSize)
+                .containsExactly(tuple("BLACK", "40"), tuple("WHITE", "41"));
+    }
+
+    @Test
+    void handlesQuotedCommasEscapedQuotesAndLineBreaks() throws IOException {
+        List<ProductImportReader.ImportRecord> records = readAll(HEADER
+                + "\"Giày \"\"Classic\"\", bản 2\",Vans,FOR_UNISEX,900000,1,\"Dòng 1\nDòng 2\",,RED:39\n"
+                + "Chuck,Converse,FOR_FEMALE,800000,1,,,RED:38\n");
+
+        assertThat(records).hasSize(2);
+        assertThat(records.get(0).request().getName()).isEqualTo("Giày \"Classic\", bản 2");
+        assertThat(records.get(0).request().getDescription()).isEqualTo("Dòng 1\nDòng 2");
+        assertThat(records.get(0).request().getImages()).isEmpty();
+        // Xuống dòng trong ngoặc kép không làm lệch số thứ tự bản ghi
+        assertThat(records.get(1).row()).isEqualTo(2);
+        assertThat(records.get(1).request().getName()).isEqualTo("Chuck");
+    }
+
+    @Test
+    void reportsBadRowsWithTheirNumberAndKeepsReading() throws IOException {
+        List<ProductImportReader.ImportRecord> records = readAll(HEADER
+                + "A,Nike,FOR_MALE,abc,1,,,RED:40\n"
+                + "B,Nike,SANDAL,100,1,,,RED:40\n"
+                + "C,Nike,FOR_MALE,100,x,,,RED:40\n"
+                + "D,Nike,FOR_MALE,100,1,,,RED-40\n"
+                + "E,Nike,FOR_MALE,100,1,,,RED:40\n");
+
+        assertThat(records).extracting(ProductImportReader.ImportRecord::row).containsExactly(1, 2, 3, 4, 5);
+        assertThat(records.get(0).error()).contains("Giá không hợp lệ");
+        assertThat(records.get(1).error()).contains("Loại giày không hợp lệ");
+        assertThat(records.get(2).error()).contains("Mã danh mục không hợp lệ");
+        assertThat(records.get(3).error()).contains("MÀU:SIZE");
+        assertThat(records.get(4).error()).isNull();
+        assertThat(records.get(4).request().getName()).isEqualTo("E");
+    }
+
+    @Test
+    void blankLinesAreSkippedButStillCounted() throws IOException {
+        List<ProductImportReader.ImportRecord> records = readAll(HEADER
+                + "A,Nike,FOR_MALE,100,1,,,RED:40\n"
+                + "\n"
+                + "B,Nike,FOR_MALE,100,1,,,RED:40");
+
+        assertThat(records).extracting(ProductImportReader.ImportRecord::row).containsExactly(1, 3);
+    }
+
+    @Test
+    void missingTrailingColumnsReadAsEmpty() throws IOException {
+        // Tiêu đề có BOM (Excel) và viết hoa
+        List<ProductImportReader.ImportRecord> records = readAll(
+                "\uFEFFName,Brand,Type,BasePrice,CategoryId,Variants\n" + "A,Nike,FOR_MALE,100,1\n");
+
+        assertThat(records.get(0).error()).isNull();
+        assertThat(records.get(0).request().getVariants()).isEmpty();
+    }
+
+    @Test
+    void rejectsEmptyFileAndMissingRequiredColumns() {
+        assertThatThrownBy(() -> new CsvProductImportReader(new StringReader("")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("rỗng");
+        assertThatThrownBy(() -> new CsvProductImportReader(new StringReader("name,brand,type,basePrice,variants\n")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("categoryId");
+    }
+}
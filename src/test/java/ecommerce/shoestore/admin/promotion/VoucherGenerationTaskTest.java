@@ -0,0 +1,55 @@
+package ecommerce.shoestore.admin.promotion;
+
+import ecommerce.shoestore.promotion.PromotionCampaign;
+import ecommerce.shoestore.promotion.VoucherDiscountType;
+import ecommerce.shoestore.promotion.VoucherRepository;
+import ecommerce.shoestore.promotion.dto.VoucherGenerationForm;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VoucherGenerationTaskTest {
+
+    @Test
+    void generatedCodesAreSingleUseInTotal() {
+        VoucherBatchWriter writer = mock(VoucherBatchWriter.class);
+        VoucherRepository voucherRepository = mock(VoucherRepository.class);
+        when(writer.write(any(), anyList())).thenReturn(List.of());
+        VoucherGenerationTask task = new VoucherGenerationTask(writer, voucherRepository);
+        ReflectionTestUtils.setField(task, "chunkSize", 10);
+
+        PromotionCampaign campaign = PromotionCampaign.builder()
+                .campaignId(7L)
+                .discountType(VoucherDiscountType.PERCENT)
+                .discountValue(BigDecimal.TEN)
+                .startDate(LocalDate.now().minusDays(1))
+                .endDate(LocalDate.now().plusDays(30))
+                .build();
+        VoucherGenerationForm form = new VoucherGenerationForm();
+        form.setMaxRedeemPerCustomer(1L);
+        VoucherGenerationJob job = new VoucherGenerationJob(7L, "Flash", 25, "VIP");
+
+        task.run(job, campaign, form);
+
+        ArgumentCaptor<VoucherBatchWriter.Template> template = ArgumentCaptor.forClass(VoucherBatchWriter.Template.class);
+        verify(writer, atLeastOnce()).write(template.capture(), anyList());
+        assertThat(job.getStatus()).isEqualTo(VoucherGenerationJob.Status.COMPLETED);
+        assertThat(job.getGenerated()).isEqualTo(25);
+        // Giới hạn theo khách không chặn được khách thứ hai dùng mã bị lộ → cần tổng giới hạn
+        assertThat(template.getValue().maxRedemptions()).isEqualTo(1L);
+        assertThat(template.getValue().maxRedeemPerCustomer()).isEqualTo(1L);
+        assertThat(template.getValue().campaignId()).isEqualTo(7L);
+    }
+}
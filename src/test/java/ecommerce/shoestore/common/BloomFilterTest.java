@@ -0,0 +1,63 @@
+package ecommerce.shoestore.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BloomFilterTest {
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+
+        assertThat(filter.mightContain("SALE50")).isFalse();
+        assertThat(filter.mightContain("")).isFalse();
+    }
+
+    @Test
+    void neverReportsAddedValuesAsMissing() {
+        BloomFilter filter = new BloomFilter(50_000, 0.001);
+        for (int i = 0; i < 50_000; i++) {
+            filter.put("GEN" + i);
+        }
+
+        for (int i = 0; i < 50_000; i++) {
+            assertThat(filter.mightContain("GEN" + i)).as("GEN" + i).isTrue();
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTarget() {
+        BloomFilter filter = new BloomFilter(20_000, 0.01);
+        for (int i = 0; i < 20_000; i++) {
+            filter.put("IN" + i);
+        }
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("OUT" + i)) {
+                falsePositives++;
+            }
+        }
+        // Mục tiêu 1%; cho phép dư để test không phụ thuộc may rủi
+        assertThat((double) falsePositives / probes).isLessThan(0.02);
+    }
+
+    @Test
+    void hashesUnicodeByUtf8Bytes() {
+        BloomFilter filter = new BloomFilter(10, 0.001);
+        filter.put("Giảm giá");
+
+        assertThat(filter.mightContain("Giảm giá")).isTrue();
+        assertThat(filter.mightContain("Giam gia")).isFalse();
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThatThrownBy(() -> new BloomFilter(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BloomFilter(10, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BloomFilter(10, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,180 @@
+package ecommerce.shoestore.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.mvc.support.RedirectAttributesModelMap;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceTest {
+
+    private IdempotencyKeyStore store;
+    private IdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        store = mock(IdempotencyKeyStore.class);
+        service = new IdempotencyService(store, new ObjectMapper(), 60, 120, 100, 2000);
+    }
+
+    private void claimSucceeds(boolean claimed) {
+        when(store.claim(anyString(), anyLong(), anyString(), anyLong(), anyLong())).thenReturn(claimed);
+    }
+
+    @Test
+    void replaysViewAndFlashMessageOnTheSameInstance() {
+        claimSucceeds(true);
+        AtomicInteger runs = new AtomicInteger();
+        RedirectAttributes first = new RedirectAttributesModelMap();
+
+        String view = service.execute("order:create", 1L, "k1", first, () -> {
+            runs.incrementAndGet();
+            first.addFlashAttribute("message", "Đặt hàng thành công!");
+            return "redirect:/order/confirmation/7";
+        });
+
+        RedirectAttributes second = new RedirectAttributesModelMap();
+        String replayed = service.execute("order:create", 1L, "k1", second, () -> {
+            runs.incrementAndGet();
+            return "redirect:/cart";
+        });
+
+        assertThat(runs).hasValue(1);
+        assertThat(replayed).isEqualTo(view);
+        assertThat(second.getFlashAttributes().get("message")).isEqualTo("Đặt hàng thành công!");
+        verify(store).complete(eq("order:create"), eq(1L), eq("k1"), anyString());
+    }
+
+    @Test
+    void replaysStoredResultWithFlashFromAnotherInstance() {
+        claimSucceeds(false);
+        when(store.find("order:create", 1L, "k2")).thenReturn(Optional.of(new IdempotencyKeyStore.StoredKey(
+                IdempotencyKeyStore.COMPLETED,
+                "{\"view\":\"redirect:/order/confirmation/9\",\"flash\":{\"message\":\"Đặt hàng thành công!\"}}")));
+        RedirectAttributes attributes = new RedirectAttributesModelMap();
+
+        String view = service.execute("order:create", 1L, "k2", attributes, () -> "redirect:/cart");
+
+        assertThat(view).isEqualTo("redirect:/order/confirmation/9");
+        assertThat(attributes.getFlashAttributes().get("message")).isEqualTo("Đặt hàng thành công!");
+    }
+
+    @Test
+    void readsResultsStoredAsPlainView() {
+        claimSucceeds(false);
+        when(store.find("payment:create-vnpay", 1L, "k3")).thenReturn(Optional.of(
+                new IdempotencyKeyStore.StoredKey(IdempotencyKeyStore.COMPLETED, "redirect:https://vnpay/x")));
+
+        assertThat(service.execute("payment:create-vnpay", 1L, "k3", new RedirectAttributesModelMap(), () -> "other"))
+                .isEqualTo("redirect:https://vnpay/x");
+    }
+
+    @Test
+    void inProgressOnAnotherInstanceFailsFast() {
+        claimSucceeds(false);
+        when(store.find("order:create", 1L, "k4")).thenReturn(Optional.of(
+                new IdempotencyKeyStore.StoredKey("IN_PROGRESS", null)));
+
+        assertThatThrownBy(() -> service.execute("order:create", 1L, "k4", null, () -> "x"))
+                .isInstanceOf(IdempotencyInProgressException.class);
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForAndReplaysTheFirstResult() throws Exception {
+        claimSucceeds(true);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            RedirectAttributes firstAttributes = new RedirectAttributesModelMap();
+            Future<String> first = executor.submit(() -> service.execute("order:create", 1L, "k5", firstAttributes, () -> {
+                runs.incrementAndGet();
+                started.countDown();
+                await(release);
+                firstAttributes.addFlashAttribute("message", "Đặt hàng thành công!");
+                return "redirect:/order/confirmation/1";
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // Bấm đúp: request thứ hai chờ lần đầu thay vì báo "đang xử lý"
+            RedirectAttributes secondAttributes = new RedirectAttributesModelMap();
+            Future<String> second = executor.submit(() -> service.execute("order:create", 1L, "k5", secondAttributes, () -> {
+                runs.incrementAndGet();
+                return "redirect:/cart";
+            }));
+            Thread.sleep(100);
+            assertThat(second).isNotDone();
+
+            release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("redirect:/order/confirmation/1");
+            assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("redirect:/order/confirmation/1");
+            assertThat(secondAttributes.getFlashAttributes().get("message")).isEqualTo("Đặt hàng thành công!");
+            assertThat(runs).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentDuplicateGivesUpAfterTheWaitLimit() throws Exception {
+        IdempotencyService shortWait = new IdempotencyService(store, new ObjectMapper(), 60, 120, 100, 50);
+        claimSucceeds(true);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> first = executor.submit(() -> shortWait.execute("order:create", 1L, "k7", null, () -> {
+                started.countDown();
+                await(release);
+                return "redirect:/order/confirmation/2";
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> shortWait.execute("order:create", 1L, "k7", null, () -> "x"))
+                    .isInstanceOf(IdempotencyInProgressException.class);
+
+            release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("redirect:/order/confirmation/2");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedActionReleasesTheKey() {
+        claimSucceeds(true);
+
+        assertThatThrownBy(() -> service.execute("order:create", 1L, "k6", null, () -> {
+            throw new IllegalStateException("hết hàng");
+        })).hasMessage("hết hàng");
+
+        verify(store).release("order:create", 1L, "k6");
+        assertThat(service.execute("order:create", 1L, "k6", null, () -> "redirect:/ok")).isEqualTo("redirect:/ok");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
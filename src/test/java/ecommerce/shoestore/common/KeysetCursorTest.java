@@ -0,0 +1,74 @@
+package ecommerce.shoestore.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTest {
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        KeysetCursor cursor = new KeysetCursor("price_asc", "1250000.00", 42L);
+
+        assertThat(KeysetCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void roundTripKeepsSeparatorInsideValueAndNullValue() {
+        KeysetCursor withPipe = new KeysetCursor("name_asc", "Giày | Đen", 7L);
+        KeysetCursor idOnly = new KeysetCursor("id", null, 99L);
+
+        assertThat(KeysetCursor.decode(withPipe.encode())).isEqualTo(withPipe);
+        assertThat(KeysetCursor.decode(idOnly.encode())).isEqualTo(idOnly);
+    }
+
+    @Test
+    void blankTokenIsFirstPage() {
+        assertThat(KeysetCursor.decode(null)).isNull();
+        assertThat(KeysetCursor.decode("  ")).isNull();
+    }
+
+    @Test
+    void garbageTokenIsRejected() {
+        assertThatThrownBy(() -> KeysetCursor.decode("%%%not-base64"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode(token("price_asc|10|abc")))
+                .isInstanceOf(IllegalArgumentException.class);
+        // Định dạng cũ không có khóa sắp xếp
+        assertThatThrownBy(() -> KeysetCursor.decode(token("10|5")))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(KeysetCursor.decodeOrFirstPage("%%%not-base64")).isNull();
+    }
+
+    @Test
+    void forSortRejectsCursorOfAnotherSort() {
+        KeysetCursor cursor = new KeysetCursor("name_asc", "Nike", 1L);
+
+        assertThat(cursor.forSort("name_asc")).isSameAs(cursor);
+        assertThat(cursor.forSort("newest")).isNull();
+    }
+
+    @Test
+    void sortValueAsReturnsNullForMissingOrUnparsableValue() {
+        BigDecimal price = new KeysetCursor("price_asc", "99.5", 1L).sortValueAs(BigDecimal::new);
+        OffsetDateTime createdAt = new KeysetCursor("newest", "Nike", 1L).sortValueAs(OffsetDateTime::parse);
+        Long sold = new KeysetCursor("sold", "1e9x", 1L).sortValueAs(Long::valueOf);
+        Long missing = new KeysetCursor("id", null, 1L).sortValueAs(Long::valueOf);
+
+        assertThat(price).isEqualByComparingTo("99.5");
+        assertThat(createdAt).isNull();
+        assertThat(sold).isNull();
+        assertThat(missing).isNull();
+    }
+}
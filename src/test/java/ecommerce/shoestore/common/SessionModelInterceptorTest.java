@@ -0,0 +1,65 @@
+package ecommerce.shoestore.common;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.view.RedirectView;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionModelInterceptorTest {
+
+    @Controller
+    static class PageController {
+        public String page() {
+            return "index";
+        }
+
+        @ResponseBody
+        public String body() {
+            return "ok";
+        }
+    }
+
+    @RestController
+    static class ApiController {
+        public String data() {
+            return "ok";
+        }
+    }
+
+    private static HandlerMethod handler(Object bean, String method) throws NoSuchMethodException {
+        return new HandlerMethod(bean, method);
+    }
+
+    @Test
+    void rendersNamedView() throws Exception {
+        assertThat(SessionModelInterceptor.rendersView(handler(new PageController(), "page"), new ModelAndView("index")))
+                .isTrue();
+    }
+
+    @Test
+    void skipsResponseBodyHandlers() throws Exception {
+        ModelAndView mav = new ModelAndView("index");
+
+        assertThat(SessionModelInterceptor.rendersView(handler(new PageController(), "body"), mav)).isFalse();
+        assertThat(SessionModelInterceptor.rendersView(handler(new ApiController(), "data"), mav)).isFalse();
+    }
+
+    @Test
+    void skipsRedirectsAndMissingModel() throws Exception {
+        HandlerMethod page = handler(new PageController(), "page");
+
+        assertThat(SessionModelInterceptor.rendersView(page, null)).isFalse();
+        assertThat(SessionModelInterceptor.rendersView(page, new ModelAndView("redirect:/cart"))).isFalse();
+        assertThat(SessionModelInterceptor.rendersView(page, new ModelAndView(new RedirectView("/cart")))).isFalse();
+    }
+
+    @Test
+    void skipsNonControllerHandlers() {
+        assertThat(SessionModelInterceptor.rendersView(new Object(), new ModelAndView("index"))).isFalse();
+    }
+}
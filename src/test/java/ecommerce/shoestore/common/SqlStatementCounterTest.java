@@ -0,0 +1,81 @@
+package ecommerce.shoestore.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SqlStatementCounterTest {
+
+    @AfterEach
+    void tearDown() {
+        SqlStatementCounter.stop();
+    }
+
+    @Test
+    void countsOnlyInsideAScope() {
+        SqlStatementCounter inspector = new SqlStatementCounter();
+        assertThat(inspector.inspect("select 1")).isEqualTo("select 1");
+
+        assertThat(SqlStatementCounter.start()).isTrue();
+        inspector.inspect("select 1");
+        inspector.inspect("select 2");
+
+        assertThat(SqlStatementCounter.stop()).isEqualTo(2);
+        assertThat(SqlStatementCounter.stop()).isZero();
+    }
+
+    @Test
+    void nestedStartKeepsTheOuterScope() {
+        SqlStatementCounter inspector = new SqlStatementCounter();
+        assertThat(SqlStatementCounter.start()).isTrue();
+        inspector.inspect("select 1");
+
+        assertThat(SqlStatementCounter.start()).isFalse();
+        inspector.inspect("select 2");
+
+        assertThat(SqlStatementCounter.stop()).isEqualTo(2);
+    }
+
+    @Test
+    void scopesAreThreadLocal() throws Exception {
+        SqlStatementCounter.start();
+        Thread other = new Thread(() -> new SqlStatementCounter().inspect("select 1"));
+        other.start();
+        other.join();
+
+        assertThat(SqlStatementCounter.stop()).isZero();
+    }
+
+    @Test
+    void jdbcTemplateCountsABatchAsOneStatement() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.supportsBatchUpdates()).thenReturn(true);
+        when(statement.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeUpdate()).thenReturn(1);
+        when(statement.executeBatch()).thenReturn(new int[]{1, 1, 1});
+        CountingJdbcTemplate jdbcTemplate = new CountingJdbcTemplate(dataSource);
+
+        SqlStatementCounter.start();
+        jdbcTemplate.update("update t set a = ?", 1);
+        jdbcTemplate.batchUpdate("insert into t values (?)", List.of(1, 2, 3), 3,
+                (ps, value) -> ps.setInt(1, value));
+
+        assertThat(SqlStatementCounter.stop()).isEqualTo(2);
+    }
+}
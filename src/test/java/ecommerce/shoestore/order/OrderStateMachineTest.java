@@ -0,0 +1,78 @@
+package ecommerce.shoestore.order;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OrderStateMachineTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "PENDING, CONFIRMED",
+            "PENDING, CANCELLED",
+            "CONFIRMED, SHIPPING",
+            "CONFIRMED, REQUEST_CANCELLED",
+            "CONFIRMED, CANCELLED",
+            "REQUEST_CANCELLED, CANCELLED",
+            "REQUEST_CANCELLED, CONFIRMED",
+            "SHIPPING, COMPLETED",
+            "SHIPPING, CANCELLED"
+    })
+    void allowsForwardStepsAndCancellation(OrderStatus from, OrderStatus to) {
+        assertThat(OrderStateMachine.canTransition(from, to)).isTrue();
+        assertThatCode(() -> OrderStateMachine.requireTransition(from, to)).doesNotThrowAnyException();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "PENDING, SHIPPING",
+            "PENDING, COMPLETED",
+            "PENDING, REQUEST_CANCELLED",
+            "CONFIRMED, PENDING",
+            "SHIPPING, CONFIRMED",
+            "SHIPPING, REQUEST_CANCELLED",
+            "REQUEST_CANCELLED, SHIPPING"
+    })
+    void rejectsSkippedOrBackwardSteps(OrderStatus from, OrderStatus to) {
+        assertThat(OrderStateMachine.canTransition(from, to)).isFalse();
+        assertThatThrownBy(() -> OrderStateMachine.requireTransition(from, to))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Không thể chuyển đơn");
+    }
+
+    @ParameterizedTest
+    @EnumSource(OrderStatus.class)
+    void finalStatesAreTerminal(OrderStatus to) {
+        assertThat(OrderStateMachine.canTransition(OrderStatus.COMPLETED, to)).isFalse();
+        assertThat(OrderStateMachine.canTransition(OrderStatus.CANCELLED, to)).isFalse();
+        assertThatThrownBy(() -> OrderStateMachine.requireTransition(OrderStatus.CANCELLED, to))
+                .hasMessageContaining("đã bị huỷ");
+        assertThatThrownBy(() -> OrderStateMachine.requireTransition(OrderStatus.COMPLETED, to))
+                .hasMessageContaining("đã giao thành công");
+    }
+
+    @Test
+    void nullStatusNeverTransitions() {
+        assertThat(OrderStateMachine.canTransition(null, OrderStatus.CONFIRMED)).isFalse();
+        assertThat(OrderStateMachine.canTransition(OrderStatus.PENDING, null)).isFalse();
+    }
+
+    @Test
+    void sourcesOfMatchesTheTransitionTable() {
+        assertThat(OrderStateMachine.sourcesOf(OrderStatus.CANCELLED)).containsExactlyInAnyOrder(
+                OrderStatus.PENDING, OrderStatus.CONFIRMED, OrderStatus.REQUEST_CANCELLED, OrderStatus.SHIPPING);
+        assertThat(OrderStateMachine.sourcesOf(OrderStatus.CONFIRMED)).containsExactlyInAnyOrder(
+                OrderStatus.PENDING, OrderStatus.REQUEST_CANCELLED);
+        assertThat(OrderStateMachine.sourcesOf(OrderStatus.PENDING)).isEmpty();
+        for (OrderStatus to : OrderStatus.values()) {
+            for (OrderStatus from : OrderStateMachine.sourcesOf(to)) {
+                assertThat(OrderStateMachine.canTransition(from, to)).isTrue();
+            }
+        }
+    }
+}
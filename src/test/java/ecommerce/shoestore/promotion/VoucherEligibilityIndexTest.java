@@ -0,0 +1,149 @@
+package ecommerce.shoestore.promotion;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VoucherEligibilityIndexTest {
+
+    private VoucherRepository voucherRepository;
+    private VoucherEligibilityIndex index;
+
+    private static BigDecimal[] values(long... values) {
+        BigDecimal[] result = new BigDecimal[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = BigDecimal.valueOf(values[i]);
+        }
+        return result;
+    }
+
+    private static Voucher voucher(long id, long minOrderValue, Long maxRedemptions, Long redeemedCount) {
+        return Voucher.builder()
+                .voucherId(id)
+                .code("V" + id)
+                .minOrderValue(BigDecimal.valueOf(minOrderValue))
+                .maxRedemptions(maxRedemptions)
+                .redeemedCount(redeemedCount)
+                .build();
+    }
+
+    private static List<Long> ids(List<Voucher> vouchers) {
+        return vouchers.stream().map(Voucher::getVoucherId).toList();
+    }
+
+    @BeforeEach
+    void setUp() {
+        voucherRepository = mock(VoucherRepository.class);
+        index = new VoucherEligibilityIndex(voucherRepository);
+    }
+
+    @Test
+    void upperBoundCountsValuesNotAboveTheTarget() {
+        BigDecimal[] sorted = values(0, 100, 200, 200, 500);
+
+        assertThat(VoucherEligibilityIndex.upperBound(sorted, BigDecimal.valueOf(-1))).isZero();
+        assertThat(VoucherEligibilityIndex.upperBound(sorted, BigDecimal.ZERO)).isEqualTo(1);
+        assertThat(VoucherEligibilityIndex.upperBound(sorted, BigDecimal.valueOf(199))).isEqualTo(2);
+        // Các giá trị bằng nhau đều được tính
+        assertThat(VoucherEligibilityIndex.upperBound(sorted, BigDecimal.valueOf(200))).isEqualTo(4);
+        assertThat(VoucherEligibilityIndex.upperBound(sorted, BigDecimal.valueOf(10_000))).isEqualTo(5);
+    }
+
+    @Test
+    void upperBoundComparesByValueNotScale() {
+        BigDecimal[] sorted = {new BigDecimal("100.00"), new BigDecimal("300")};
+
+        assertThat(VoucherEligibilityIndex.upperBound(sorted, new BigDecimal("100"))).isEqualTo(1);
+        assertThat(VoucherEligibilityIndex.upperBound(sorted, new BigDecimal("300.000"))).isEqualTo(2);
+    }
+
+    @Test
+    void upperBoundOfEmptyArrayIsZero() {
+        assertThat(VoucherEligibilityIndex.upperBound(new BigDecimal[0], BigDecimal.TEN)).isZero();
+    }
+
+    @Test
+    void eligibleForReturnsVouchersUpToTheSubTotalInMinOrderOrder() {
+        when(voucherRepository.findEffectiveOn(any(LocalDate.class))).thenReturn(List.of(
+                voucher(3, 500_000, null, 0L),
+                voucher(1, 0, null, 0L),
+                voucher(2, 200_000, null, 0L)));
+
+        assertThat(ids(index.eligibleFor(BigDecimal.valueOf(199_999)))).containsExactly(1L);
+        assertThat(ids(index.eligibleFor(BigDecimal.valueOf(200_000)))).containsExactly(1L, 2L);
+        assertThat(ids(index.activeVouchers())).containsExactly(1L, 2L, 3L);
+        // Cùng ngày → chỉ nạp một lần
+        verify(voucherRepository, times(1)).findEffectiveOn(any(LocalDate.class));
+    }
+
+    @Test
+    void exhaustedVouchersAreLeftOut() {
+        when(voucherRepository.findEffectiveOn(any(LocalDate.class))).thenReturn(List.of(
+                voucher(1, 0, 10L, 10L),
+                voucher(2, 0, 10L, 9L)));
+
+        assertThat(ids(index.activeVouchers())).containsExactly(2L);
+    }
+
+    @Test
+    void redemptionOfLimitedVoucherReloadsOnNextRead() {
+        when(voucherRepository.findEffectiveOn(any(LocalDate.class)))
+                .thenReturn(List.of(voucher(1, 0, 2L, 1L), voucher(2, 0, null, 0L)))
+                .thenReturn(List.of(voucher(1, 0, 2L, 2L), voucher(2, 0, null, 0L)));
+        assertThat(ids(index.activeVouchers())).containsExactly(1L, 2L);
+
+        index.onRedemptionChanged(new VoucherRedemptionChangedEvent(1L));
+
+        assertThat(ids(index.activeVouchers())).containsExactly(2L);
+        verify(voucherRepository, times(2)).findEffectiveOn(any(LocalDate.class));
+    }
+
+    @Test
+    void releaseBringsBackExhaustedVoucher() {
+        when(voucherRepository.findEffectiveOn(any(LocalDate.class)))
+                .thenReturn(List.of(voucher(1, 0, 2L, 2L)))
+                .thenReturn(List.of(voucher(1, 0, 2L, 1L)));
+        assertThat(index.activeVouchers()).isEmpty();
+
+        // Huỷ đơn hàng loạt không biết voucher nào → bỏ bản chụp nếu có voucher giới hạn
+        index.onRedemptionChanged(new VoucherRedemptionChangedEvent(null));
+
+        assertThat(ids(index.activeVouchers())).containsExactly(1L);
+    }
+
+    @Test
+    void redemptionOfOtherVouchersKeepsSnapshot() {
+        when(voucherRepository.findEffectiveOn(any(LocalDate.class)))
+                .thenReturn(List.of(voucher(1, 0, 2L, 0L), voucher(2, 0, null, 0L)));
+        index.activeVouchers();
+
+        // Mã sinh hàng loạt không nằm trong index
+        index.onRedemptionChanged(new VoucherRedemptionChangedEvent(99L));
+        index.activeVouchers();
+
+        verify(voucherRepository, times(1)).findEffectiveOn(any(LocalDate.class));
+    }
+
+    @Test
+    void adminChangeForcesReloadForTheSameDay() {
+        when(voucherRepository.findEffectiveOn(any(LocalDate.class)))
+                .thenReturn(List.of(voucher(1, 0, null, 0L)))
+                .thenReturn(List.of(voucher(1, 0, null, 0L), voucher(2, 0, null, 0L)));
+        index.activeVouchers();
+
+        index.onVoucherChanged(new VoucherChangedEvent(2L));
+
+        assertThat(ids(index.activeVouchers())).containsExactly(1L, 2L);
+        verify(voucherRepository, times(2)).findEffectiveOn(any(LocalDate.class));
+    }
+}
@@ -0,0 +1,112 @@
+package ecommerce.shoestore.promotion;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VoucherRedemptionServiceTest {
+
+    private VoucherRedemptionRepository repository;
+    private ApplicationEventPublisher eventPublisher;
+    private VoucherRedemptionService service;
+
+    /** Lượt dùng tổng của voucher, cộng có điều kiện như câu UPDATE trong tryRedeemGlobal */
+    private final AtomicLong redeemedCount = new AtomicLong();
+    /** Lượt dùng theo khách, như voucher_redemption */
+    private final Map<Long, Long> usedByUser = new HashMap<>();
+
+    private static Voucher bulkCode() {
+        return Voucher.builder()
+                .voucherId(42L)
+                .code("VIPK3M9QX2ZT")
+                .bulkGenerated(true)
+                .maxRedeemPerCustomer(1L)
+                .maxRedemptions(1L)
+                .redeemedCount(0L)
+                .build();
+    }
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(VoucherRedemptionRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        service = new VoucherRedemptionService(repository, eventPublisher);
+        when(repository.tryRedeemForUser(eq(42L), anyLong(), any())).thenAnswer(invocation -> {
+            Long userId = invocation.getArgument(1);
+            Long max = invocation.getArgument(2);
+            long used = usedByUser.getOrDefault(userId, 0L);
+            if (max != null && used >= max) {
+                return 0;
+            }
+            usedByUser.put(userId, used + 1);
+            return 1;
+        });
+        when(repository.tryRedeemGlobal(42L)).thenAnswer(invocation -> {
+            if (redeemedCount.get() >= bulkCode().getMaxRedemptions()) {
+                return 0;
+            }
+            redeemedCount.incrementAndGet();
+            return 1;
+        });
+    }
+
+    @Test
+    void bulkCodeCannotBeRedeemedByASecondCustomer() {
+        Voucher voucher = bulkCode();
+
+        service.redeem(voucher, 1L);
+
+        assertThatThrownBy(() -> service.redeem(voucher, 2L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Mã voucher đã hết lượt sử dụng");
+        assertThat(redeemedCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    void sameCustomerHitsPerCustomerLimitFirst() {
+        Voucher voucher = bulkCode();
+
+        service.redeem(voucher, 1L);
+
+        assertThatThrownBy(() -> service.redeem(voucher, 1L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Bạn đã sử dụng hết lượt áp dụng voucher này");
+    }
+
+    @Test
+    void redeemingLimitedVoucherNotifiesTheIndex() {
+        service.redeem(bulkCode(), 1L);
+
+        verify(eventPublisher).publishEvent(new VoucherRedemptionChangedEvent(42L));
+    }
+
+    @Test
+    void uncappedVoucherDoesNotLockTheVoucherRow() {
+        Voucher voucher = Voucher.builder()
+                .voucherId(5L)
+                .code("FREESHIP")
+                .maxRedeemPerCustomer(3L)
+                .build();
+        when(repository.tryRedeemForUser(5L, 1L, 3L)).thenReturn(1);
+
+        service.redeem(voucher, 1L);
+        service.redeem(voucher, null);
+
+        verify(repository, never()).tryRedeemGlobal(anyLong());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+}
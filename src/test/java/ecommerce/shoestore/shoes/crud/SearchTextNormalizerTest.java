@@ -0,0 +1,30 @@
+package ecommerce.shoestore.shoes.crud;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchTextNormalizerTest {
+
+    @Test
+    void removesVietnameseAccentsAndLowercases() {
+        assertThat(SearchTextNormalizer.normalize("Giày Thể Thao Nữ")).isEqualTo("giay the thao nu");
+        assertThat(SearchTextNormalizer.normalize("ĐẾ BẰNG đi bộ")).isEqualTo("de bang di bo");
+    }
+
+    @Test
+    void collapsesAndTrimsWhitespace() {
+        assertThat(SearchTextNormalizer.normalize("  Nike \t Air\n\nMax  ")).isEqualTo("nike air max");
+    }
+
+    @Test
+    void nullAndBlankBecomeEmpty() {
+        assertThat(SearchTextNormalizer.normalize(null)).isEmpty();
+        assertThat(SearchTextNormalizer.normalize("   ")).isEmpty();
+    }
+
+    @Test
+    void keepsPunctuationAndDigits() {
+        assertThat(SearchTextNormalizer.normalize("Air Max 90 (Đen/Trắng)")).isEqualTo("air max 90 (den/trang)");
+    }
+}
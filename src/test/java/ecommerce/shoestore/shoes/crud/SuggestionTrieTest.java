@@ -0,0 +1,86 @@
+package ecommerce.shoestore.shoes.crud;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SuggestionTrieTest {
+
+    private static Set<String> keys(String... keys) {
+        return new LinkedHashSet<>(List.of(keys));
+    }
+
+    @Test
+    void suggestReturnsEntriesMatchingPrefix() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.put(1, "Nike Air Max 90", keys("nike air max 90", "air max 90", "max 90", "90", "nike"), 5);
+        trie.put(2, "Adidas Ultraboost", keys("adidas ultraboost", "ultraboost", "adidas"), 3);
+
+        assertThat(trie.suggest("air", 10)).containsExactly("Nike Air Max 90");
+        assertThat(trie.suggest("ad", 10)).containsExactly("Adidas Ultraboost");
+        assertThat(trie.suggest("puma", 10)).isEmpty();
+    }
+
+    @Test
+    void suggestRanksByWeightThenName() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.put(1, "Nike Pegasus", keys("nike pegasus", "nike"), 10);
+        trie.put(2, "Nike Air Force", keys("nike air force", "nike"), 50);
+        trie.put(3, "Nike Cortez", keys("nike cortez", "nike"), 10);
+
+        assertThat(trie.suggest("nike", 10))
+                .containsExactly("Nike Air Force", "Nike Cortez", "Nike Pegasus");
+    }
+
+    @Test
+    void suggestRespectsLimitAndMergesDuplicateNames() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.put(1, "Vans Old Skool", keys("vans old skool"), 9);
+        trie.put(2, "Vans Old Skool", keys("vans old skool"), 8);
+        trie.put(3, "Vans Authentic", keys("vans authentic"), 7);
+        trie.put(4, "Vans Slip-On", keys("vans slip-on"), 6);
+
+        assertThat(trie.suggest("vans", 2)).containsExactly("Vans Old Skool", "Vans Authentic");
+    }
+
+    @Test
+    void putReplacesKeysAndRemoveDropsEntry() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.put(1, "Giày cũ", keys("giay cu"), 1);
+        trie.put(1, "Giày mới", keys("giay moi"), 1);
+
+        assertThat(trie.suggest("giay cu", 10)).isEmpty();
+        assertThat(trie.suggest("giay", 10)).containsExactly("Giày mới");
+        assertThat(trie.size()).isEqualTo(1);
+
+        trie.remove(1);
+        assertThat(trie.suggest("giay", 10)).isEmpty();
+        assertThat(trie.size()).isZero();
+    }
+
+    @Test
+    void reweightChangesRankingOnlyWhenWeightDiffers() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.put(1, "Puma Suede", keys("puma suede"), 1);
+        trie.put(2, "Puma RS-X", keys("puma rs-x"), 2);
+
+        assertThat(trie.reweight(1, 1)).isFalse();
+        assertThat(trie.reweight(99, 5)).isFalse();
+        assertThat(trie.reweight(1, 5)).isTrue();
+        assertThat(trie.suggest("puma", 10)).containsExactly("Puma Suede", "Puma RS-X");
+    }
+
+    @Test
+    void accentedInputMatchesAfterNormalization() {
+        SuggestionTrie trie = new SuggestionTrie();
+        String name = "Giày Thể Thao Đế Bằng";
+        trie.put(1, name, keys(SearchTextNormalizer.normalize(name)), 1);
+
+        assertThat(trie.suggest(SearchTextNormalizer.normalize("giày thể"), 10)).containsExactly(name);
+        assertThat(trie.suggest(SearchTextNormalizer.normalize("GIAY THE THAO DE"), 10)).containsExactly(name);
+    }
+}
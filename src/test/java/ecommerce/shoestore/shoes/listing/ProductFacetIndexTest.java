@@ -0,0 +1,114 @@
+package ecommerce.shoestore.shoes.listing;
+
+import ecommerce.shoestore.category.Category;
+import ecommerce.shoestore.category.CategoryRepository;
+import ecommerce.shoestore.shoes.ShoesChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductFacetIndexTest {
+
+    private ProductListingRepository productListingRepository;
+    private CategoryRepository categoryRepository;
+    private ProductFacetIndex index;
+
+    private static Object[] row(long shoeId, Long categoryId, String brand, String type, long price) {
+        return new Object[]{shoeId, categoryId, brand, type, BigDecimal.valueOf(price)};
+    }
+
+    private static Category category(long id, String name) {
+        return Category.builder().categoryId(id).name(name).build();
+    }
+
+    @BeforeEach
+    void setUp() {
+        productListingRepository = mock(ProductListingRepository.class);
+        categoryRepository = mock(CategoryRepository.class);
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(row(1, 10L, "Nike", "FOR_MALE", 900_000));
+        rows.add(row(2, 10L, "Nike", "FOR_FEMALE", 1_500_000));
+        rows.add(row(3, 20L, "Adidas", "FOR_MALE", 2_500_000));
+        rows.add(row(4, 20L, "Converse", "FOR_UNISEX", 3_500_000));
+        when(productListingRepository.findFacetSources()).thenReturn(rows);
+        when(categoryRepository.findAllCategories())
+                .thenReturn(List.of(category(10, "Chạy bộ"), category(20, "Thời trang")));
+        index = new ProductFacetIndex(productListingRepository, categoryRepository);
+        index.rebuild();
+    }
+
+    private static int count(List<ProductFacets.FacetValue> values, String value) {
+        return values.stream().filter(v -> v.value().equals(value)).findFirst()
+                .map(ProductFacets.FacetValue::count).orElse(-1);
+    }
+
+    @Test
+    void countsEachGroupWithTheOtherFilters() {
+        ProductFacets facets = index.facets(null, 10L, null, null, null, null);
+
+        assertThat(facets.total()).isEqualTo(2);
+        // Nhóm danh mục không tự lọc chính nó
+        assertThat(count(facets.categories(), "10")).isEqualTo(2);
+        assertThat(count(facets.categories(), "20")).isEqualTo(2);
+        assertThat(count(facets.brands(), "Nike")).isEqualTo(2);
+        assertThat(count(facets.brands(), "Adidas")).isEqualTo(-1);
+        assertThat(count(facets.types(), "male")).isEqualTo(1);
+        assertThat(facets.priceBuckets()).extracting(ProductFacets.PriceFacet::count).containsExactly(1, 1, 0, 0);
+    }
+
+    @Test
+    void brandMatchesPartiallyAndKeywordMatchesRestrictCounts() {
+        assertThat(index.facets(null, null, "nik", null, null, null).total()).isEqualTo(2);
+
+        ProductFacets facets = index.facets(Stream.of(1L, 3L, 999L), null, null, null, null, null);
+        assertThat(facets.total()).isEqualTo(2);
+        assertThat(count(facets.categories(), "20")).isEqualTo(1);
+    }
+
+    @Test
+    void priceRangeIsInclusive() {
+        ProductFacets facets = index.facets(null, null, null, null,
+                BigDecimal.valueOf(1_500_000), BigDecimal.valueOf(2_500_000));
+
+        assertThat(facets.total()).isEqualTo(2);
+    }
+
+    @Test
+    void delistedSlotsAreReusedInsteadOfGrowing() {
+        int slotsBefore = index.slotCount();
+        for (long shoeId = 100; shoeId < 110; shoeId++) {
+            long id = shoeId;
+            when(productListingRepository.findFacetSourcesByIds(anyCollection()))
+                    .thenReturn(List.<Object[]>of(row(id, 20L, "Vans", "FOR_UNISEX", 1_200_000)));
+            index.onShoesChanged(ShoesChangedEvent.of(id));
+            when(productListingRepository.findFacetSourcesByIds(anyCollection())).thenReturn(List.of());
+            index.onShoesChanged(ShoesChangedEvent.of(id));
+        }
+
+        assertThat(index.slotCount()).isEqualTo(slotsBefore + 1);
+        ProductFacets facets = index.facets(null, null, null, null, null, null);
+        assertThat(facets.total()).isEqualTo(4);
+        assertThat(count(facets.brands(), "Vans")).isEqualTo(-1);
+    }
+
+    @Test
+    void scheduledRefreshReloadsCategoryNames() {
+        when(categoryRepository.findAllCategories())
+                .thenReturn(List.of(category(10, "Running"), category(20, "Thời trang")));
+
+        index.refreshCategoryNames();
+
+        assertThat(index.facets(null, null, null, null, null, null).categories())
+                .extracting(ProductFacets.FacetValue::label)
+                .containsExactly("Running", "Thời trang");
+    }
+}